@@ -0,0 +1,88 @@
+package dev.slimevr.autobone;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import dev.slimevr.benchmark.SyntheticRecording;
+import dev.slimevr.poserecorder.PoseFrames;
+import io.eiren.vr.VRServer;
+import io.eiren.vr.processor.SkeletonConfigValue;
+
+/**
+ * AutoBone epochs over a recording. Bone vectors are precomputed once
+ * like in sweeps, or skeletons are posed for every pair without them, and
+ * every invocation starts from the configured lengths.
+ * <p>The average error of the last epoch, the height error and the lengths
+ * are printed when the trial ends, so the parallel mode can be checked to
+ * converge like the sequential one and optimizers can be compared over the
+ * same number of epochs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AutoBoneEpochBenchmark {
+	
+	@Param("")
+	public String recording;
+	@Param("3000")
+	public int frameCount;
+	@Param({"probe", "sgd", "momentum", "adam"})
+	public String optimizer;
+	@Param({"1", "4"})
+	public int threadCount;
+	@Param("1")
+	public int epochs;
+	@Param({"true", "false"})
+	public boolean useFrameBasis;
+	
+	private AutoBone autoBone;
+	private PoseFrames frames;
+	private FrameBasis basis;
+	private float targetHeight;
+	private float lastEpochError;
+	private float heightError;
+	private Consumer<AutoBone.Epoch> epochCallback;
+	
+	@Setup
+	public void setUp() {
+		// The server is only used for its config and is never started
+		autoBone = new AutoBone(new VRServer(), false);
+		autoBone.numEpochs = epochs;
+		autoBone.threadCount = threadCount;
+		autoBone.logProgress = false;
+		autoBone.optimizer = AutoBoneOptimizer.create(optimizer, -1f);
+		autoBone.useFrameBasis = useFrameBasis;
+		
+		frames = SyntheticRecording.load(recording, frameCount).toColumnar();
+		basis = useFrameBasis ? new FrameBasis(frames) : null;
+		targetHeight = autoBone.getMaxHmdHeight(frames);
+		epochCallback = epoch -> lastEpochError = epoch.epochError;
+	}
+	
+	@TearDown
+	public void tearDown() {
+		StringBuilder lengths = new StringBuilder();
+		for(SkeletonConfigValue config : SkeletonConfigValue.values) {
+			if(autoBone.configs.has(config)) {
+				lengths.append(' ').append(config.stringVal).append('=').append(autoBone.configs.get(config));
+			}
+		}
+		System.out.println(optimizer + ", " + threadCount + " threads, " + epochs + " epochs, " + (useFrameBasis ? "frame basis" : "posed skeletons") + ": final error " + lastEpochError + ", height error " + heightError + "," + lengths);
+	}
+	
+	@Benchmark
+	public float epoch() {
+		heightError = autoBone.processFrames(frames, basis, false, targetHeight, epochCallback);
+		return heightError;
+	}
+}
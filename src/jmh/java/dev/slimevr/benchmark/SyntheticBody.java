@@ -0,0 +1,139 @@
+package dev.slimevr.benchmark;
+
+import java.util.List;
+
+import com.jme3.math.Quaternion;
+
+import dev.slimevr.poserecorder.PoseFrames;
+import dev.slimevr.poserecorder.TrackerFrame;
+import dev.slimevr.poserecorder.TrackerFrameData;
+import io.eiren.util.collections.FastList;
+import io.eiren.vr.VRServer;
+import io.eiren.vr.processor.ComputedHumanPoseTracker;
+import io.eiren.vr.processor.ComputedHumanPoseTrackerPosition;
+import io.eiren.vr.processor.HumanSkeletonWithLegs;
+import io.eiren.vr.trackers.ComputedTracker;
+import io.eiren.vr.trackers.ReferenceAdjustedTracker;
+import io.eiren.vr.trackers.Tracker;
+import io.eiren.vr.trackers.TrackerPosition;
+import io.eiren.vr.trackers.TrackersByPosition;
+import io.eiren.vr.trackers.TrackerRole;
+import io.eiren.vr.trackers.TrackerStatus;
+import io.eiren.vr.trackers.TrackersSnapshot;
+
+/**
+ * A full body skeleton driven by a recording instead of real trackers.
+ * The server is never started, it only provides the config and the
+ * trackers by position.
+ */
+public class SyntheticBody {
+	
+	public final BenchmarkServer server = new BenchmarkServer();
+	public final List<ReferenceAdjustedTracker<ComputedTracker>> trackers = new FastList<>();
+	public final List<ComputedHumanPoseTracker> computedTrackers = new FastList<>();
+	public final HumanSkeletonWithLegs skeleton;
+	
+	private final PoseFrames frames;
+	private final int frameCount;
+	private final TrackerFrame[] frameBuffer;
+	// The tracker each recorded tracker drives, null if the body has none at its position
+	private final ComputedTracker[] targets;
+	private int cursor = -1;
+	
+	public SyntheticBody(PoseFrames frames) {
+		this.frames = frames.toColumnar();
+		this.frameCount = this.frames.getMaxFrameCount();
+		this.frameBuffer = new TrackerFrame[this.frames.getTrackerCount()];
+		this.targets = new ComputedTracker[frameBuffer.length];
+		
+		this.frames.getFrames(0, frameBuffer);
+		for(int i = 0; i < frameBuffer.length; i++) {
+			TrackerFrame frame = frameBuffer[i];
+			if(frame == null || frame.getBodyPosition() == null)
+				continue;
+			if(frame.getBodyPosition() == TrackerPosition.HMD) {
+				targets[i] = server.hmdTracker;
+				continue;
+			}
+			ComputedTracker tracker = new ComputedTracker(Tracker.getNextLocalTrackerId(), "synthetic://" + frame.getBodyPosition().designation, true, false);
+			tracker.setBodyPosition(frame.getBodyPosition());
+			tracker.setStatus(TrackerStatus.OK);
+			targets[i] = tracker;
+			ReferenceAdjustedTracker<ComputedTracker> adjustedTracker = new ReferenceAdjustedTracker<>(tracker);
+			trackers.add(adjustedTracker);
+			server.snapshot = server.snapshot.withTracker(adjustedTracker);
+		}
+		server.hmdTracker.setStatus(TrackerStatus.OK);
+		
+		// Same computed trackers as HumanPoseProcessor
+		computedTrackers.add(new ComputedHumanPoseTracker(Tracker.getNextLocalTrackerId(), ComputedHumanPoseTrackerPosition.WAIST, TrackerRole.WAIST));
+		computedTrackers.add(new ComputedHumanPoseTracker(Tracker.getNextLocalTrackerId(), ComputedHumanPoseTrackerPosition.LEFT_FOOT, TrackerRole.LEFT_FOOT));
+		computedTrackers.add(new ComputedHumanPoseTracker(Tracker.getNextLocalTrackerId(), ComputedHumanPoseTrackerPosition.RIGHT_FOOT, TrackerRole.RIGHT_FOOT));
+		computedTrackers.add(new ComputedHumanPoseTracker(Tracker.getNextLocalTrackerId(), ComputedHumanPoseTrackerPosition.CHEST, TrackerRole.CHEST));
+		computedTrackers.add(new ComputedHumanPoseTracker(Tracker.getNextLocalTrackerId(), ComputedHumanPoseTrackerPosition.LEFT_KNEE, TrackerRole.LEFT_KNEE));
+		computedTrackers.add(new ComputedHumanPoseTracker(Tracker.getNextLocalTrackerId(), ComputedHumanPoseTrackerPosition.RIGHT_KNEE, TrackerRole.RIGHT_KNEE));
+		
+		nextFrame();
+		skeleton = new HumanSkeletonWithLegs(server, computedTrackers);
+		resetTrackers();
+	}
+	
+	/**
+	 * Resets the trackers to the current pose, like the reset button
+	 */
+	public void resetTrackers() {
+		Quaternion reference = new Quaternion();
+		server.hmdTracker.getRotation(reference);
+		for(int i = 0; i < trackers.size(); i++) {
+			trackers.get(i).resetFull(reference);
+		}
+	}
+	
+	/**
+	 * Moves the trackers to the next frame of the recording, going back to
+	 * the start after the last frame
+	 */
+	public void nextFrame() {
+		if(++cursor >= frameCount)
+			cursor = 0;
+		frames.getFrames(cursor, frameBuffer);
+		for(int i = 0; i < frameBuffer.length; i++) {
+			TrackerFrame frame = frameBuffer[i];
+			ComputedTracker target = targets[i];
+			if(frame == null || target == null)
+				continue;
+			if(frame.hasData(TrackerFrameData.ROTATION))
+				target.rotation.set(frame.rotation);
+			if(frame.hasData(TrackerFrameData.POSITION))
+				target.position.set(frame.position);
+		}
+	}
+	
+	public int getFrameCount() {
+		return frameCount;
+	}
+	
+	/**
+	 * Serves the synthetic trackers to the skeleton without running the
+	 * server's tasks
+	 */
+	public static class BenchmarkServer extends VRServer {
+		
+		private TrackersSnapshot snapshot = TrackersSnapshot.EMPTY;
+		
+		@Override
+		public TrackersByPosition<Tracker> getTrackersByPosition() {
+			return snapshot.getTrackersByPosition();
+		}
+		
+		@Override
+		public TrackersSnapshot getTrackersSnapshot() {
+			return snapshot;
+		}
+		
+		@Override
+		public List<Tracker> getAllTrackers() {
+			return snapshot.getTrackers();
+		}
+	}
+}
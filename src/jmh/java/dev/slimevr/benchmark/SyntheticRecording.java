@@ -0,0 +1,83 @@
+package dev.slimevr.benchmark;
+
+import java.io.File;
+import java.util.Random;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+
+import dev.slimevr.poserecorder.PoseFrameIO;
+import dev.slimevr.poserecorder.PoseFrameTracker;
+import dev.slimevr.poserecorder.PoseFrames;
+import dev.slimevr.poserecorder.TrackerFrame;
+import io.eiren.vr.trackers.TrackerPosition;
+
+/**
+ * Recordings for the benchmarks. They're generated from a fixed seed, so
+ * every run and every machine processes the same frames, or read from a
+ * recording passed with the {@code recording} parameter.
+ */
+public final class SyntheticRecording {
+	
+	/**
+	 * The trackers of a full body set with an HMD, in recording order
+	 */
+	public static final TrackerPosition[] DESIGNATIONS = {TrackerPosition.HMD, TrackerPosition.CHEST, TrackerPosition.WAIST, TrackerPosition.LEFT_LEG, TrackerPosition.RIGHT_LEG, TrackerPosition.LEFT_ANKLE, TrackerPosition.RIGHT_ANKLE};
+	
+	public static final long SEED = 42L;
+	
+	private SyntheticRecording() {
+		// Do not allow instantiating
+	}
+	
+	/**
+	 * @param path a recording to read, or empty to generate one
+	 * @param frameCount the number of frames to generate
+	 */
+	public static PoseFrames load(String path, int frameCount) {
+		if(path == null || path.isEmpty()) {
+			return generate(frameCount, SEED);
+		}
+		PoseFrames frames = PoseFrameIO.readFromFile(new File(path));
+		if(frames == null) {
+			throw new IllegalArgumentException("Unable to read recording " + path);
+		}
+		return frames;
+	}
+	
+	/**
+	 * Generates someone walking in a circle and looking around at 50 frames
+	 * per second, with sensor noise on every rotation
+	 */
+	public static PoseFrames generate(int frameCount, long seed) {
+		Random random = new Random(seed);
+		PoseFrames frames = new PoseFrames(DESIGNATIONS.length);
+		PoseFrameTracker[] trackers = new PoseFrameTracker[DESIGNATIONS.length];
+		for(int t = 0; t < DESIGNATIONS.length; t++) {
+			trackers[t] = frames.addTracker(new PoseFrameTracker(DESIGNATIONS[t].designation, frameCount));
+		}
+		
+		for(int i = 0; i < frameCount; i++) {
+			float time = i * 0.02f;
+			float heading = time * 0.2f;
+			// Legs swing in opposite phase, the lower legs bend on the back swing
+			float stride = (float) Math.sin(time * 5f) * 0.4f;
+			float[] pitches = {(float) Math.sin(time * 0.9f) * 0.3f, 0.05f, 0f, stride, -stride, stride - Math.abs(stride), -stride - Math.abs(stride)};
+			
+			for(int t = 0; t < DESIGNATIONS.length; t++) {
+				float yaw = t == 0 ? heading + (float) Math.sin(time * 0.4f) * 0.8f : heading;
+				Quaternion rotation = new Quaternion().fromAngles(pitches[t] + noise(random), yaw + noise(random), noise(random));
+				Vector3f position = null;
+				if(t == 0) {
+					position = new Vector3f((float) Math.sin(heading) * 2f, 1.7f + (float) Math.abs(Math.sin(time * 5f)) * 0.03f, (float) Math.cos(heading) * 2f);
+				}
+				trackers[t].addFrame(new TrackerFrame(DESIGNATIONS[t], rotation, position));
+			}
+		}
+		return frames;
+	}
+	
+	private static float noise(Random random) {
+		return (random.nextFloat() - 0.5f) * 0.004f;
+	}
+}
@@ -0,0 +1,86 @@
+package dev.slimevr.bridge;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.google.protobuf.CodedOutputStream;
+
+import dev.slimevr.benchmark.SyntheticBody;
+import dev.slimevr.benchmark.SyntheticRecording;
+import dev.slimevr.bridge.ProtobufMessages.ProtobufMessage;
+import dev.slimevr.bridge.ProtobufMessages.TrackerAdded;
+import io.eiren.vr.trackers.HMDTracker;
+import io.eiren.vr.trackers.VRTracker;
+
+/**
+ * Writing the computed trackers of one tick to a protobuf bridge, from
+ * building the messages to serializing them like {@link NamedPipeBridge}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProtobufBridgeBenchmark {
+	
+	private BenchmarkBridge bridge;
+	
+	@Setup
+	public void setUp() {
+		SyntheticBody body = new SyntheticBody(SyntheticRecording.generate(10, SyntheticRecording.SEED));
+		body.skeleton.updatePose();
+		
+		bridge = new BenchmarkBridge(body.server.hmdTracker);
+		for(int i = 0; i < body.computedTrackers.size(); ++i)
+			bridge.addSharedTracker(body.computedTrackers.get(i));
+		// Send the added trackers
+		bridge.updateMessageQueue();
+	}
+	
+	@Benchmark
+	public long writeTrackerUpdates() {
+		for(int i = 0; i < bridge.sharedTrackers.size(); ++i)
+			bridge.writeTrackerUpdate(bridge.sharedTrackers.get(i));
+		bridge.updateMessageQueue();
+		return bridge.bytesWritten;
+	}
+	
+	private static class BenchmarkBridge extends ProtobufBridge<VRTracker> {
+		
+		private final byte[] buffer = new byte[2048];
+		private long bytesWritten = 0;
+		
+		BenchmarkBridge(HMDTracker hmd) {
+			super("Benchmark Bridge", hmd);
+		}
+		
+		@Override
+		protected boolean sendMessageReal(ProtobufMessage message) {
+			try {
+				int size = message.getSerializedSize();
+				CodedOutputStream os = CodedOutputStream.newInstance(buffer, 4, size);
+				message.writeTo(os);
+				bytesWritten += size + 4;
+				return true;
+			} catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		@Override
+		protected VRTracker createNewTracker(TrackerAdded trackerAdded) {
+			return null;
+		}
+		
+		@Override
+		public void startBridge() {
+		}
+	}
+}
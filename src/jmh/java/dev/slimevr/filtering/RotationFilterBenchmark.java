@@ -0,0 +1,73 @@
+package dev.slimevr.filtering;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.jme3.math.Quaternion;
+
+import dev.slimevr.benchmark.SyntheticRecording;
+import dev.slimevr.poserecorder.PoseFrameTracker;
+import dev.slimevr.poserecorder.PoseFrames;
+import dev.slimevr.poserecorder.TrackerFrame;
+import dev.slimevr.poserecorder.TrackerFrameData;
+import io.eiren.util.collections.FastList;
+
+/**
+ * Filtering one tracker's sample on a 1 kHz server tick, the worst case of
+ * a new sample every tick. A tick is 1 ms, so the average time divided by
+ * 10000 is the share of a tick per tracker in percent.
+ * <p>Samples are every rotation of the recording, tracker by tracker.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RotationFilterBenchmark {
+	
+	private static final long TICK_INTERVAL = 1000000L;
+	
+	@Param("")
+	public String recording;
+	@Param("3000")
+	public int frameCount;
+	@Param({"slerp:20", "median:5", "oneeuro:1.0:0.5:1.0", "median:3, oneeuro:1.0:0.5:1.0, slerp:10"})
+	public String filters;
+	
+	private RotationFilterChain filter;
+	private Quaternion[] samples;
+	private final Quaternion rotation = new Quaternion();
+	private int sample = 0;
+	private long time = 0;
+	
+	@Setup
+	public void setUp() {
+		PoseFrames frames = SyntheticRecording.load(recording, frameCount);
+		FastList<Quaternion> rotations = new FastList<Quaternion>();
+		for(PoseFrameTracker tracker : frames.getTrackers()) {
+			for(int i = 0; i < tracker.getFrameCount(); i++) {
+				TrackerFrame frame = tracker.safeGetFrame(i);
+				if(frame != null && frame.hasData(TrackerFrameData.ROTATION)) {
+					rotations.add(frame.rotation.clone());
+				}
+			}
+		}
+		samples = rotations.toArray(new Quaternion[rotations.size()]);
+		filter = RotationFilters.parse(filters);
+	}
+	
+	@Benchmark
+	public Quaternion tick() {
+		rotation.set(samples[sample]);
+		sample = (sample + 1) % samples.length;
+		filter.filter(rotation, time);
+		time += TICK_INTERVAL;
+		return rotation;
+	}
+}
@@ -0,0 +1,69 @@
+package dev.slimevr.poserecorder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import dev.slimevr.benchmark.SyntheticRecording;
+
+/**
+ * Writing and reading a whole recording in memory, so only encoding and
+ * decoding are measured
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PoseFrameIOBenchmark {
+	
+	@Param("")
+	public String recording;
+	@Param("3000")
+	public int frameCount;
+	@Param({"v1", "v2", "compressed"})
+	public String format;
+	
+	private PoseFrames frames;
+	private ByteArrayOutputStream output;
+	private byte[] encoded;
+	
+	@Setup
+	public void setUp() {
+		frames = SyntheticRecording.load(recording, frameCount);
+		output = new ByteArrayOutputStream(1 << 20);
+		if(!write())
+			throw new IllegalStateException("Unable to write the recording as " + format);
+		encoded = output.toByteArray();
+	}
+	
+	@Benchmark
+	public boolean write() {
+		output.reset();
+		DataOutputStream outputStream = new DataOutputStream(output);
+		switch(format) {
+		case "v1":
+			return PoseFrameIO.writeFrames(outputStream, frames);
+		case "v2":
+			return PoseFrameIO.writeFramesV2(outputStream, frames);
+		case "compressed":
+			return PoseFrameIO.writeFramesCompressed(outputStream, frames);
+		default:
+			throw new IllegalArgumentException("Unknown format " + format);
+		}
+	}
+	
+	@Benchmark
+	public PoseFrames read() {
+		return PoseFrameIO.readFrames(new DataInputStream(new ByteArrayInputStream(encoded)));
+	}
+}
@@ -0,0 +1,124 @@
+package dev.slimevr.posestreamer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+
+import dev.slimevr.benchmark.SyntheticRecording;
+import dev.slimevr.poserecorder.PoseFrames;
+import dev.slimevr.poserecorder.TrackerFrame;
+import dev.slimevr.poserecorder.TrackerFrameData;
+
+/**
+ * Formatting a frame of BVH channels with Float.toString, as
+ * BVHFileStream used to, and with {@link FixedFloatFormatter}. Both format
+ * the same channels, the root position in centimeters and the angles of
+ * every tracker of a synthetic recording in degrees.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BVHChannelFormatBenchmark {
+	
+	private static final int FRAMES = 500;
+	
+	// Counts characters instead of writing them anywhere
+	private static class CountingWriter extends Writer {
+		
+		long count = 0;
+		
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+			count += len;
+		}
+		
+		@Override
+		public void write(String str) {
+			count += str.length();
+		}
+		
+		@Override
+		public void flush() {
+		}
+		
+		@Override
+		public void close() {
+		}
+	}
+	
+	private float[][] channels;
+	private int frame = 0;
+	private final FixedFloatFormatter formatter = new FixedFloatFormatter();
+	private final BufferedWriter writer = new BufferedWriter(new CountingWriter(), 4096);
+	
+	@Setup
+	public void setUp() {
+		PoseFrames frames = SyntheticRecording.generate(FRAMES, SyntheticRecording.SEED);
+		int trackerCount = frames.getTrackerCount();
+		channels = new float[FRAMES][3 + trackerCount * 3];
+		Quaternion rotation = new Quaternion();
+		float[] angles = new float[3];
+		for(int i = 0; i < FRAMES; i++) {
+			float[] frameChannels = channels[i];
+			for(int t = 0; t < trackerCount; t++) {
+				TrackerFrame trackerFrame = frames.getTrackers().get(t).safeGetFrame(i);
+				if(trackerFrame == null) {
+					continue;
+				}
+				if(t == 0 && trackerFrame.hasData(TrackerFrameData.POSITION)) {
+					frameChannels[0] = trackerFrame.position.getX() * 100f;
+					frameChannels[1] = trackerFrame.position.getY() * 100f;
+					frameChannels[2] = trackerFrame.position.getZ() * 100f;
+				}
+				if(trackerFrame.hasData(TrackerFrameData.ROTATION)) {
+					BVHFileStream.quatToXyzAngles(rotation.set(trackerFrame.rotation), angles);
+					for(int a = 0; a < 3; a++) {
+						frameChannels[3 + t * 3 + a] = angles[a] * FastMath.RAD_TO_DEG;
+					}
+				}
+			}
+		}
+	}
+	
+	private float[] nextFrame() {
+		float[] frameChannels = channels[frame];
+		frame = (frame + 1) % channels.length;
+		return frameChannels;
+	}
+	
+	@Benchmark
+	public void floatToString() throws IOException {
+		float[] frameChannels = nextFrame();
+		for(int c = 0; c < frameChannels.length; c++) {
+			if(c > 0) {
+				writer.write(' ');
+			}
+			writer.write(Float.toString(frameChannels[c]));
+		}
+		writer.newLine();
+	}
+	
+	@Benchmark
+	public void fixedFloatFormatter() throws IOException {
+		float[] frameChannels = nextFrame();
+		for(int c = 0; c < frameChannels.length; c++) {
+			if(c > 0) {
+				writer.write(' ');
+			}
+			formatter.write(writer, frameChannels[c]);
+		}
+		writer.newLine();
+	}
+}
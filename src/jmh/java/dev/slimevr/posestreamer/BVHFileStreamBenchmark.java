@@ -0,0 +1,64 @@
+package dev.slimevr.posestreamer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import dev.slimevr.benchmark.SyntheticBody;
+import dev.slimevr.benchmark.SyntheticRecording;
+
+/**
+ * Writing a BVH frame of the full body skeleton. The output is discarded,
+ * so only computing and formatting the channels is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BVHFileStreamBenchmark {
+	
+	private SyntheticBody body;
+	private BVHFileStream stream;
+	
+	@Setup
+	public void setUp() throws IOException {
+		body = new SyntheticBody(SyntheticRecording.generate(500, SyntheticRecording.SEED));
+		body.skeleton.updatePose();
+		stream = new BVHFileStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+			
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		});
+		stream.writeHeader(body.skeleton, new PoseStreamer(body.server));
+	}
+	
+	// Formatting depends on the values, so they change between iterations
+	@Setup(Level.Iteration)
+	public void nextPose() {
+		body.nextFrame();
+		body.skeleton.updatePose();
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException {
+		stream.close();
+	}
+	
+	@Benchmark
+	public void writeFrame() throws IOException {
+		stream.writeFrame(body.skeleton);
+	}
+}
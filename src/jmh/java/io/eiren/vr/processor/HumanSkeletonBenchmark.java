@@ -0,0 +1,44 @@
+package io.eiren.vr.processor;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import dev.slimevr.benchmark.SyntheticBody;
+import dev.slimevr.benchmark.SyntheticRecording;
+
+/**
+ * Updating the full body skeleton from the trackers, the work
+ * {@link HumanPoseProcessor#update()} does every tick. Each update moves
+ * the trackers to the next frame of the recording first.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HumanSkeletonBenchmark {
+	
+	@Param("")
+	public String recording;
+	@Param("3000")
+	public int frameCount;
+	
+	private SyntheticBody body;
+	
+	@Setup
+	public void setUp() {
+		body = new SyntheticBody(SyntheticRecording.load(recording, frameCount));
+	}
+	
+	@Benchmark
+	public void updatePose() {
+		body.nextFrame();
+		body.skeleton.updatePose();
+	}
+}
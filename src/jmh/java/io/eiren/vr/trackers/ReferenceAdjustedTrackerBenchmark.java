@@ -0,0 +1,54 @@
+package io.eiren.vr.trackers;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.jme3.math.Quaternion;
+
+/**
+ * Adjusting a tracker's rotation after a full reset, done for every
+ * tracker the skeleton reads each tick
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ReferenceAdjustedTrackerBenchmark {
+	
+	private static final int ROTATION_COUNT = 1024;
+	
+	private final Quaternion[] rotations = new Quaternion[ROTATION_COUNT];
+	private final Quaternion store = new Quaternion();
+	private ComputedTracker tracker;
+	private ReferenceAdjustedTracker<ComputedTracker> adjustedTracker;
+	private int cursor = 0;
+	
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		for(int i = 0; i < ROTATION_COUNT; i++) {
+			rotations[i] = new Quaternion().fromAngles(random.nextFloat() * 2f - 1f, random.nextFloat() * 6f - 3f, random.nextFloat() * 2f - 1f);
+		}
+		
+		tracker = new ComputedTracker(Tracker.getNextLocalTrackerId(), "synthetic://waist", true, false);
+		tracker.setStatus(TrackerStatus.OK);
+		tracker.rotation.set(rotations[0]);
+		adjustedTracker = new ReferenceAdjustedTracker<>(tracker);
+		adjustedTracker.resetFull(new Quaternion().fromAngles(0.1f, 1.2f, 0f));
+	}
+	
+	@Benchmark
+	public Quaternion getRotation() {
+		tracker.rotation.set(rotations[cursor]);
+		cursor = (cursor + 1) & (ROTATION_COUNT - 1);
+		adjustedTracker.getRotation(store);
+		return store;
+	}
+}
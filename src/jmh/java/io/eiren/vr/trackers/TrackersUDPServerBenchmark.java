@@ -0,0 +1,105 @@
+package io.eiren.vr.trackers;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import io.eiren.util.collections.FastList;
+
+/**
+ * Decoding of the packets a SlimeVR tracker sends every sample, without
+ * the socket. The tracker is set up by a handshake like a real one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TrackersUDPServerBenchmark {
+	
+	private final FastList<Tracker> trackers = new FastList<>();
+	private TrackersUDPServer server;
+	// Receives the server's responses, never read
+	private DatagramSocket trackerSocket;
+	
+	private DatagramPacket rotationPacket;
+	private ByteBuffer rotationBuffer;
+	private DatagramPacket rotationDataPacket;
+	private ByteBuffer rotationDataBuffer;
+	
+	@Setup
+	public void setUp() throws IOException {
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+		trackerSocket = new DatagramSocket(0, loopback);
+		InetSocketAddress trackerAddress = new InetSocketAddress(loopback, trackerSocket.getLocalPort());
+		
+		server = new TrackersUDPServer(0, "Benchmark UDP server", trackers::add);
+		server.socket = new DatagramSocket(0, loopback);
+		
+		ByteBuffer handshake = allocate();
+		handshake.putInt(3);
+		handshake.putLong(0L);
+		handshake.putInt(2); // Board type
+		handshake.putInt(4); // IMU type
+		handshake.putInt(1); // MCU type
+		handshake.putInt(0).putInt(0).putInt(0); // IMU info
+		handshake.putInt(8); // Firmware build
+		byte[] firmware = "0.0.8".getBytes("ASCII");
+		handshake.put((byte) firmware.length).put(firmware);
+		handshake.put(new byte[] {0x1A, 0x2B, 0x3C, 0x4D, 0x5E, 0x6F, 0});
+		server.processPacket(new DatagramPacket(handshake.array(), handshake.position(), trackerAddress), handshake);
+		if(trackers.isEmpty())
+			throw new IllegalStateException("Handshake didn't add a tracker");
+		
+		rotationBuffer = allocate();
+		rotationBuffer.putInt(1); // PACKET_ROTATION
+		rotationBuffer.putLong(1L);
+		putRotation(rotationBuffer);
+		rotationPacket = new DatagramPacket(rotationBuffer.array(), rotationBuffer.position(), trackerAddress);
+		
+		rotationDataBuffer = allocate();
+		rotationDataBuffer.putInt(17); // PACKET_ROTATION_DATA
+		rotationDataBuffer.putLong(2L);
+		rotationDataBuffer.put((byte) 0); // Sensor id
+		rotationDataBuffer.put((byte) 1); // DATA_TYPE_NORMAL
+		putRotation(rotationDataBuffer);
+		rotationDataBuffer.put((byte) 3); // Calibration info
+		rotationDataPacket = new DatagramPacket(rotationDataBuffer.array(), rotationDataBuffer.position(), trackerAddress);
+	}
+	
+	private static ByteBuffer allocate() {
+		return ByteBuffer.wrap(new byte[512]).order(ByteOrder.BIG_ENDIAN);
+	}
+	
+	private static void putRotation(ByteBuffer buffer) {
+		buffer.putFloat(0.1f).putFloat(0.2f).putFloat(-0.3f).putFloat(0.927f);
+	}
+	
+	@TearDown
+	public void tearDown() {
+		server.socket.close();
+		trackerSocket.close();
+	}
+	
+	@Benchmark
+	public void rotation() throws IOException {
+		server.processPacket(rotationPacket, rotationBuffer);
+	}
+	
+	@Benchmark
+	public void rotationData() throws IOException {
+		server.processPacket(rotationDataPacket, rotationDataBuffer);
+	}
+}
@@ -0,0 +1,50 @@
+package dev.slimevr.autobone;
+
+import java.util.Arrays;
+
+import io.eiren.vr.processor.SkeletonConfigValue;
+
+/**
+ * Adam (Kingma and Ba, 2014). Steps are normalized by the running gradient
+ * magnitude of each bone, so the learning rate is roughly the step size in
+ * meters regardless of how large the error terms are.
+ */
+public class AdamOptimizer implements AutoBoneOptimizer {
+	
+	public static final float DEFAULT_LEARNING_RATE = 0.001f;
+	
+	public final float learningRate;
+	public float beta1 = 0.9f;
+	public float beta2 = 0.999f;
+	public float epsilon = 1e-8f;
+	
+	private final float[] firstMoment = new float[SkeletonConfigValue.values.length];
+	private final float[] secondMoment = new float[SkeletonConfigValue.values.length];
+	private int steps = 0;
+	
+	public AdamOptimizer(float learningRate) {
+		this.learningRate = learningRate;
+	}
+	
+	@Override
+	public void reset() {
+		Arrays.fill(firstMoment, 0f);
+		Arrays.fill(secondMoment, 0f);
+		steps = 0;
+	}
+	
+	@Override
+	public void step(float[] lengths, float[] gradient, boolean[] mask, float rateScale) {
+		steps++;
+		// Bias correction of the moments is folded into the rate
+		float rate = (float) (learningRate * rateScale * Math.sqrt(1.0 - Math.pow(beta2, steps)) / (1.0 - Math.pow(beta1, steps)));
+		for(int i = 0; i < firstMoment.length; ++i) {
+			if(!mask[i])
+				continue;
+			float g = gradient[i];
+			firstMoment[i] = beta1 * firstMoment[i] + (1f - beta1) * g;
+			secondMoment[i] = beta2 * secondMoment[i] + (1f - beta2) * g * g;
+			lengths[i] -= rate * firstMoment[i] / ((float) Math.sqrt(secondMoment[i]) + epsilon);
+		}
+	}
+}
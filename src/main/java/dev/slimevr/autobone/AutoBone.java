@@ -1,8 +1,9 @@
 package dev.slimevr.autobone;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 import java.util.function.Consumer;
 
 import com.jme3.math.Vector3f;
@@ -16,8 +17,12 @@ import io.eiren.util.collections.FastList;
 import io.eiren.vr.VRServer;
 import io.eiren.vr.processor.HumanSkeleton;
 import io.eiren.vr.processor.HumanSkeletonWithLegs;
-import io.eiren.vr.processor.HumanSkeletonWithWaist;
+import io.eiren.vr.processor.SkeletonConfigStore;
+import io.eiren.vr.processor.SkeletonConfigValue;
+import io.eiren.vr.trackers.Tracker;
 import io.eiren.vr.trackers.TrackerPosition;
+import io.eiren.vr.trackers.TrackerPositionIndex;
+import io.eiren.vr.trackers.TrackersByPosition;
 import io.eiren.vr.trackers.TrackerUtils;
 
 public class AutoBone {
@@ -45,9 +50,21 @@ public class AutoBone {
 	
 	public int numEpochs = 5;
 	
+	// Frame pairs are split across this many threads, 1 runs sequentially
+	public int threadCount = 1;
+	// Frame pairs per thread evaluated before the adjustments are applied
+	public int parallelBatchSize = 32;
+	
 	public float initialAdjustRate = 2.5f;
 	public float adjustRateDecay = 1.01f;
 	
+	// Update rule for gradient descent, null to probe each bone in both directions instead
+	public AutoBoneOptimizer optimizer = null;
+	// Frame pairs averaged into one gradient step, also the batch size of the parallel mode
+	public int miniBatchSize = 64;
+	// Length difference the gradient is estimated with, in meters
+	public float gradientStep = 0.001f;
+	
 	public float slideErrorFactor = 1.0f;
 	public float offsetErrorFactor = 0.0f;
 	public float proportionErrorFactor = 0.2f;
@@ -69,49 +86,119 @@ public class AutoBone {
 	protected HumanSkeletonWithLegs skeleton = null;
 	
 	// This is filled by reloadConfigValues()
-	public final HashMap<String, Float> configs = new HashMap<String, Float>();
-	public final HashMap<String, Float> staticConfigs = new HashMap<String, Float>();
+	public final SkeletonConfigStore configs = new SkeletonConfigStore();
+	public final SkeletonConfigStore staticConfigs = new SkeletonConfigStore();
+	
+	// Evaluate candidate lengths from precomputed bone vectors instead of posing skeletons
+	public boolean useFrameBasis = true;
+	
+	// Only set while frames are being processed
+	protected FrameBasis frameBasis = null;
+	
+	// Log every epoch and the time taken, off when processing many times such as in sweeps
+	public boolean logProgress = true;
 	
-	public final FastList<String> heightConfigs = new FastList<String>(new String[]{"Neck", "Torso", "Legs length"});
+	// Config values all workers of the parallel mode read during a batch
+	protected final SkeletonConfigStore batchConfigs = new SkeletonConfigStore();
+	
+	// Gradient summed over the current mini-batch and the buffers a step is taken with
+	protected final float[] batchGradient = new float[SkeletonConfigValue.values.length];
+	protected final float[] stepLengths = new float[SkeletonConfigValue.values.length];
+	protected final boolean[] stepMask = new boolean[SkeletonConfigValue.values.length];
+	
+	public final FastList<SkeletonConfigValue> heightConfigs = new FastList<SkeletonConfigValue>(new SkeletonConfigValue[]{SkeletonConfigValue.NECK, SkeletonConfigValue.TORSO, SkeletonConfigValue.LEGS_LENGTH});
 	
 	public AutoBone(VRServer server) {
+		this(server, true);
+	}
+	
+	/**
+	 * @param followSkeleton whether to apply the configs to the server's
+	 * skeleton when it's updated. Tools that only use the server for its
+	 * config never start it, so the callback would stay queued forever.
+	 */
+	public AutoBone(VRServer server, boolean followSkeleton) {
 		this.server = server;
 		
 		reloadConfigValues();
 		
-		server.addSkeletonUpdatedCallback(this::skeletonUpdated);
+		if(followSkeleton) {
+			server.addSkeletonUpdatedCallback(this::skeletonUpdated);
+		}
 	}
 	
 	public void reloadConfigValues() {
-		reloadConfigValues(null);
+		reloadConfigValues((TrackerPositionIndex<TrackerFrame>) null);
 	}
 	
 	public void reloadConfigValues(TrackerFrame[] frame) {
+		TrackerPositionIndex<TrackerFrame> index = null;
+		if(frame != null) {
+			index = new TrackerPositionIndex<TrackerFrame>();
+			index.rebuild(frame);
+		}
+		reloadConfigValues(index);
+	}
+	
+	public void reloadConfigValues(TrackerPositionIndex<TrackerFrame> frame) {
+		TrackersByPosition<Tracker> trackers = server.getTrackersByPosition();
+		
 		// Load torso configs
-		staticConfigs.put("Head", server.config.getFloat("body.headShift", HumanSkeletonWithWaist.HEAD_SHIFT_DEFAULT));
-		staticConfigs.put("Neck", server.config.getFloat("body.neckLength", HumanSkeletonWithWaist.NECK_LENGTH_DEFAULT));
-		configs.put("Torso", server.config.getFloat("body.torsoLength", 0.7f));
-		if(server.config.getBoolean("autobone.forceChestTracker", false) || (frame != null && TrackerUtils.findTrackerForBodyPosition(frame, TrackerPosition.CHEST) != null) || TrackerUtils.findTrackerForBodyPosition(server.getAllTrackers(), TrackerPosition.CHEST) != null) {
+		staticConfigs.load(server.config, SkeletonConfigValue.HEAD);
+		staticConfigs.load(server.config, SkeletonConfigValue.NECK);
+		configs.load(server.config, SkeletonConfigValue.TORSO);
+		if(server.config.getBoolean("autobone.forceChestTracker", false) || (frame != null && frame.get(TrackerPosition.CHEST) != null) || trackers.get(TrackerPosition.CHEST) != null) {
 			// If force enabled or has a chest tracker
-			configs.put("Chest", server.config.getFloat("body.chestDistance", 0.35f));
+			configs.load(server.config, SkeletonConfigValue.CHEST);
 		} else {
 			// Otherwise, make sure it's not used
-			configs.remove("Chest");
-			staticConfigs.put("Chest", server.config.getFloat("body.chestDistance", 0.35f));
+			configs.remove(SkeletonConfigValue.CHEST);
+			staticConfigs.load(server.config, SkeletonConfigValue.CHEST);
 		}
-		if(server.config.getBoolean("autobone.forceHipTracker", false) || (frame != null && TrackerUtils.findTrackerForBodyPosition(frame, TrackerPosition.HIP) != null && TrackerUtils.findTrackerForBodyPosition(frame, TrackerPosition.WAIST) != null) || (TrackerUtils.findTrackerForBodyPosition(server.getAllTrackers(), TrackerPosition.HIP) != null && TrackerUtils.findTrackerForBodyPosition(server.getAllTrackers(), TrackerPosition.WAIST) != null)) {
+		if(server.config.getBoolean("autobone.forceHipTracker", false) || (frame != null && frame.get(TrackerPosition.HIP) != null && frame.get(TrackerPosition.WAIST) != null) || (trackers.get(TrackerPosition.HIP) != null && trackers.get(TrackerPosition.WAIST) != null)) {
 			// If force enabled or has a hip tracker and waist tracker
-			configs.put("Waist", server.config.getFloat("body.waistDistance", 0.1f));
+			configs.load(server.config, SkeletonConfigValue.WAIST);
 		} else {
 			// Otherwise, make sure it's not used
-			configs.remove("Waist");
-			staticConfigs.put("Waist", server.config.getFloat("body.waistDistance", 0.1f));
+			configs.remove(SkeletonConfigValue.WAIST);
+			staticConfigs.load(server.config, SkeletonConfigValue.WAIST);
 		}
 		
 		// Load leg configs
-		staticConfigs.put("Hips width", server.config.getFloat("body.hipsWidth", HumanSkeletonWithLegs.HIPS_WIDTH_DEFAULT));
-		configs.put("Legs length", server.config.getFloat("body.legsLength", 0.84f));
-		configs.put("Knee height", server.config.getFloat("body.kneeHeight", 0.42f));
+		staticConfigs.load(server.config, SkeletonConfigValue.HIPS_WIDTH);
+		configs.load(server.config, SkeletonConfigValue.LEGS_LENGTH);
+		configs.load(server.config, SkeletonConfigValue.KNEE_HEIGHT);
+	}
+	
+	/**
+	 * Loads the autobone.* settings from the server config into the fields
+	 */
+	public void loadConfig() {
+		minDataDistance = server.config.getInt("autobone.minimumDataDistance", minDataDistance);
+		maxDataDistance = server.config.getInt("autobone.maximumDataDistance", maxDataDistance);
+		
+		numEpochs = server.config.getInt("autobone.epochCount", numEpochs);
+		threadCount = server.config.getInt("autobone.threadCount", threadCount);
+		parallelBatchSize = server.config.getInt("autobone.parallelBatchSize", parallelBatchSize);
+		
+		initialAdjustRate = server.config.getFloat("autobone.adjustRate", initialAdjustRate);
+		adjustRateDecay = server.config.getFloat("autobone.adjustRateDecay", adjustRateDecay);
+		
+		try {
+			optimizer = AutoBoneOptimizer.create(server.config.getString("autobone.optimizer", "probe"), server.config.getFloat("autobone.learningRate", -1f));
+		} catch(IllegalArgumentException e) {
+			LogManager.log.warning("[AutoBone] " + e.getMessage() + ", probing bone lengths instead");
+			optimizer = null;
+		}
+		miniBatchSize = server.config.getInt("autobone.miniBatchSize", miniBatchSize);
+		gradientStep = server.config.getFloat("autobone.gradientStep", gradientStep);
+		
+		slideErrorFactor = server.config.getFloat("autobone.slideErrorFactor", slideErrorFactor);
+		offsetErrorFactor = server.config.getFloat("autobone.offsetErrorFactor", offsetErrorFactor);
+		proportionErrorFactor = server.config.getFloat("autobone.proportionErrorFactor", proportionErrorFactor);
+		heightErrorFactor = server.config.getFloat("autobone.heightErrorFactor", heightErrorFactor);
+		positionErrorFactor = server.config.getFloat("autobone.positionErrorFactor", positionErrorFactor);
+		positionOffsetErrorFactor = server.config.getFloat("autobone.positionOffsetErrorFactor", positionOffsetErrorFactor);
 	}
 	
 	@ThreadSafe
@@ -135,7 +222,11 @@ public class AutoBone {
 			return false;
 		}
 		
-		configs.forEach(skeleton::setSkeletonConfig);
+		for(SkeletonConfigValue config : SkeletonConfigValue.values) {
+			if(configs.has(config)) {
+				skeleton.setSkeletonConfig(config, configs.get(config));
+			}
+		}
 		
 		server.saveConfig();
 		
@@ -143,23 +234,9 @@ public class AutoBone {
 		return true;
 	}
 	
-	private void setConfig(String name, String path) {
-		Float value = configs.get(name);
-		if(value != null) {
-			server.config.setProperty(path, value);
-		}
-	}
-	
 	// This doesn't require a skeleton, therefore can be used if skeleton is null
 	public void saveConfigs() {
-		setConfig("Head", "body.headShift");
-		setConfig("Neck", "body.neckLength");
-		setConfig("Waist", "body.waistDistance");
-		setConfig("Chest", "body.chestDistance");
-		setConfig("Torso", "body.torsoLength");
-		setConfig("Hips width", "body.hipsWidth");
-		setConfig("Legs length", "body.legsLength");
-		setConfig("Knee height", "body.kneeHeight");
+		configs.save(server.config);
 		
 		server.saveConfig();
 	}
@@ -169,40 +246,30 @@ public class AutoBone {
 		return configVal != null ? configVal : staticConfigs.get(config);
 	}
 	
-	public Float getConfig(String config, Map<String, Float> configs, Map<String, Float> configsAlt) {
+	public float getConfig(SkeletonConfigValue config, SkeletonConfigStore configs, SkeletonConfigStore configsAlt) {
 		if(configs == null) {
 			throw new NullPointerException("Argument \"configs\" must not be null");
 		}
 		
-		Float configVal = configs.get(config);
-		return configVal != null || configsAlt == null ? configVal : configsAlt.get(config);
+		return configs.has(config) || configsAlt == null ? configs.get(config) : configsAlt.get(config);
 	}
 	
-	public float getHeight(Map<String, Float> configs) {
+	public float getHeight(SkeletonConfigStore configs) {
 		return getHeight(configs, null);
 	}
 	
-	public float getHeight(Map<String, Float> configs, Map<String, Float> configsAlt) {
+	public float getHeight(SkeletonConfigStore configs, SkeletonConfigStore configsAlt) {
 		float height = 0f;
 		
-		for(String heightConfig : heightConfigs) {
-			Float length = getConfig(heightConfig, configs, configsAlt);
-			if(length != null) {
-				height += length;
-			}
+		for(int i = 0; i < heightConfigs.size(); ++i) {
+			height += getConfig(heightConfigs.get(i), configs, configsAlt);
 		}
 		
 		return height;
 	}
 	
-	public float getLengthSum(Map<String, Float> configs) {
-		float length = 0f;
-		
-		for(float boneLength : configs.values()) {
-			length += boneLength;
-		}
-		
-		return length;
+	public float getLengthSum(SkeletonConfigStore configs) {
+		return configs.sum();
 	}
 	
 	public float getMaxHmdHeight(PoseFrames frames) {
@@ -237,21 +304,44 @@ public class AutoBone {
 	}
 	
 	public float processFrames(PoseFrames frames, boolean calcInitError, float targetHeight, Consumer<Epoch> epochCallback) {
+		return processFrames(frames, null, calcInitError, targetHeight, epochCallback);
+	}
+	
+	/**
+	 * @param basis precomputed bone vectors of the frames, so frames that are
+	 * processed many times only compute them once. If null they're computed
+	 * when {@link #useFrameBasis} is set.
+	 */
+	public float processFrames(PoseFrames frames, FrameBasis basis, boolean calcInitError, float targetHeight, Consumer<Epoch> epochCallback) {
+		// Every frame is read many times, columns are much faster to read from
+		frames = frames.toColumnar();
+		
 		final int frameCount = frames.getMaxFrameCount();
+		final long processStart = System.nanoTime();
 		
-		final SimpleSkeleton skeleton1 = new SimpleSkeleton(configs, staticConfigs);
-		final TrackerFrame[] trackerBuffer1 = new TrackerFrame[frames.getTrackerCount()];
+		final FramePair pair = new FramePair(frames.getTrackerCount());
 		
-		frames.getFrames(0, trackerBuffer1);
-		reloadConfigValues(trackerBuffer1); // Reload configs and detect chest tracker from the first frame
+		frames.getFrames(0, pair.trackerBuffer1, pair.trackerIndex1);
+		reloadConfigValues(pair.trackerIndex1); // Reload configs and detect chest tracker from the first frame
 		
-		final SimpleSkeleton skeleton2 = new SimpleSkeleton(configs, staticConfigs);
-		final TrackerFrame[] trackerBuffer2 = new TrackerFrame[frames.getTrackerCount()];
+		pair.setSkeletons(configs, staticConfigs);
+		
+		if(optimizer != null) {
+			optimizer.reset();
+		}
+		
+		if(basis != null) {
+			frameBasis = basis;
+		} else if(useFrameBasis) {
+			long basisStart = System.nanoTime();
+			frameBasis = new FrameBasis(frames);
+			LogManager.log.info("[AutoBone] Precomputed bone vectors for " + frameCount + " frames in " + ((System.nanoTime() - basisStart) / 1000000L) + " ms");
+		}
 		
 		// If target height isn't specified, auto-detect
 		if(targetHeight < 0f) {
 			if(skeleton != null) {
-				targetHeight = getHeight(skeleton.getSkeletonConfig());
+				targetHeight = getHeight(skeleton.getSkeletonConfigStore());
 				LogManager.log.warning("[AutoBone] Target height loaded from skeleton (Make sure you reset before running!): " + targetHeight);
 			} else {
 				float hmdHeight = getMaxHmdHeight(frames);
@@ -266,110 +356,507 @@ public class AutoBone {
 			}
 		}
 		
-		for(int epoch = calcInitError ? -1 : 0; epoch < numEpochs; epoch++) {
-			float sumError = 0f;
-			int errorCount = 0;
-			
-			float adjustRate = epoch >= 0 ? (float) (initialAdjustRate / Math.pow(adjustRateDecay, epoch)) : 0f;
-			
-			for(int cursorOffset = minDataDistance; cursorOffset <= maxDataDistance && cursorOffset < frameCount; cursorOffset++) {
-				for(int frameCursor = 0; frameCursor < frameCount - cursorOffset; frameCursor += cursorIncrement) {
-					frames.getFrames(frameCursor, trackerBuffer1);
-					frames.getFrames(frameCursor + cursorOffset, trackerBuffer2);
-					
-					skeleton1.setSkeletonConfigs(configs);
-					skeleton2.setSkeletonConfigs(configs);
-					
-					skeleton1.setPoseFromFrame(trackerBuffer1);
-					skeleton2.setPoseFromFrame(trackerBuffer2);
-					
-					float totalLength = getLengthSum(configs);
-					float curHeight = getHeight(configs, staticConfigs);
-					float errorDeriv = getErrorDeriv(trackerBuffer1, trackerBuffer2, skeleton1, skeleton2, targetHeight - curHeight);
-					float error = errorFunc(errorDeriv);
+		ForkJoinPool pool = null;
+		FastList<Worker> workers = null;
+		if(threadCount > 1) {
+			pool = new ForkJoinPool(threadCount);
+			workers = new FastList<Worker>(threadCount);
+			for(int i = 0; i < threadCount; ++i) {
+				Worker worker = new Worker(new FramePair(frames.getTrackerCount()));
+				worker.pair.setSkeletons(configs, staticConfigs);
+				workers.add(worker);
+			}
+		}
+		
+		try {
+			for(int epoch = calcInitError ? -1 : 0; epoch < numEpochs; epoch++) {
+				long epochStart = System.nanoTime();
+				float sumError = 0f;
+				int errorCount = 0;
+				
+				float adjustRate = epoch >= 0 ? (float) (initialAdjustRate / Math.pow(adjustRateDecay, epoch)) : 0f;
+				float rateScale = epoch >= 0 ? (float) (1.0 / Math.pow(adjustRateDecay, epoch)) : 0f;
+				// Skip adjustment if the epoch is before starting (for logging only)
+				SkeletonConfigStore newConfigs = epoch >= 0 ? configs : null;
+				boolean gradientMode = optimizer != null && newConfigs != null;
+				int batchCount = 0;
+				Arrays.fill(batchGradient, 0f);
+				
+				for(int cursorOffset = minDataDistance; cursorOffset <= maxDataDistance && cursorOffset < frameCount; cursorOffset++) {
+					int frameLimit = frameCount - cursorOffset;
 					
-					// In case of fire
-					if(Float.isNaN(error) || Float.isInfinite(error)) {
-						// Extinguish
-						LogManager.log.warning("[AutoBone] Error value is invalid, resetting variables to recover");
-						reloadConfigValues(trackerBuffer1);
-						
-						// Reset error sum values
-						sumError = 0f;
-						errorCount = 0;
-						
-						// Continue on new data
+					if(pool != null) {
+						int batchLength = (gradientMode ? miniBatchSize : parallelBatchSize * workers.size()) * cursorIncrement;
+						for(int batchStart = 0; batchStart < frameLimit; batchStart += batchLength) {
+							int batchEnd = Math.min(batchStart + batchLength, frameLimit);
+							if(!processBatch(pool, workers, frames, cursorOffset, batchStart, batchEnd, targetHeight, adjustRate, rateScale, newConfigs != null)) {
+								LogManager.log.warning("[AutoBone] Error value is invalid, resetting variables to recover");
+								// Reload from the frame the first invalid worker stopped at
+								for(int i = 0; i < workers.size(); ++i) {
+									if(workers.get(i).invalid) {
+										reloadConfigValues(workers.get(i).pair.trackerIndex1);
+										break;
+									}
+								}
+								
+								// Reset error sum values
+								sumError = 0f;
+								errorCount = 0;
+								
+								// Continue on new data
+								continue;
+							}
+							
+							// Merge in worker order so the sums don't depend on scheduling
+							for(int i = 0; i < workers.size(); ++i) {
+								sumError += workers.get(i).sumError;
+								errorCount += workers.get(i).errorCount;
+							}
+						}
 						continue;
 					}
 					
-					// Store the error count for logging purposes
-					sumError += errorDeriv;
-					errorCount++;
-					
-					float adjustVal = error * adjustRate;
-					
-					for(Entry<String, Float> entry : configs.entrySet()) {
-						// Skip adjustment if the epoch is before starting (for logging only)
-						if(epoch < 0) {
-							break;
+					for(int frameCursor = 0; frameCursor < frameLimit; frameCursor += cursorIncrement) {
+						float errorDeriv;
+						if(gradientMode) {
+							errorDeriv = addFramePairGradient(frames, frameCursor, cursorOffset, pair, configs, targetHeight, batchGradient);
+						} else {
+							errorDeriv = processFramePair(frames, frameCursor, cursorOffset, pair, configs, targetHeight, adjustRate, newConfigs);
 						}
 						
-						float originalLength = entry.getValue();
-						
-						// Try positive and negative adjustments
-						boolean isHeightVar = heightConfigs.contains(entry.getKey());
-						float minError = errorDeriv;
-						float finalNewLength = -1f;
-						for(int i = 0; i < 2; i++) {
-							// Scale by the ratio for smooth adjustment and more stable results
-							float curAdjustVal = ((i == 0 ? adjustVal : -adjustVal) * originalLength) / totalLength;
-							float newLength = originalLength + curAdjustVal;
-							
-							// No small or negative numbers!!! Bad algorithm!
-							if(newLength < 0.01f) {
-								continue;
-							}
+						// In case of fire
+						if(Float.isNaN(errorDeriv) || Float.isInfinite(errorDeriv)) {
+							// Extinguish
+							LogManager.log.warning("[AutoBone] Error value is invalid, resetting variables to recover");
+							reloadConfigValues(pair.trackerIndex1);
 							
-							updateSkeletonBoneLength(skeleton1, skeleton2, entry.getKey(), newLength);
+							// Reset error sum values
+							sumError = 0f;
+							errorCount = 0;
 							
-							float newHeight = isHeightVar ? curHeight + curAdjustVal : curHeight;
-							float newErrorDeriv = getErrorDeriv(trackerBuffer1, trackerBuffer2, skeleton1, skeleton2, targetHeight - newHeight);
+							// Drop the partial mini-batch
+							batchCount = 0;
+							Arrays.fill(batchGradient, 0f);
 							
-							if(newErrorDeriv < minError) {
-								minError = newErrorDeriv;
-								finalNewLength = newLength;
-							}
+							// Continue on new data
+							continue;
 						}
 						
-						if(finalNewLength > 0f) {
-							entry.setValue(finalNewLength);
-						}
+						// Store the error count for logging purposes
+						sumError += errorDeriv;
+						errorCount++;
 						
-						// Reset the length to minimize bias in other variables, it's applied later
-						updateSkeletonBoneLength(skeleton1, skeleton2, entry.getKey(), originalLength);
+						if(gradientMode && ++batchCount >= miniBatchSize) {
+							applyGradient(batchGradient, batchCount, rateScale);
+							batchCount = 0;
+						}
 					}
 				}
+				
+				// Apply what's left of the last mini-batch
+				if(batchCount > 0) {
+					applyGradient(batchGradient, batchCount, rateScale);
+				}
+				
+				// Calculate average error over the epoch
+				float avgError = errorCount > 0 ? sumError / errorCount : -1f;
+				if(logProgress) {
+					LogManager.log.info("[AutoBone] Epoch " + (epoch + 1) + " average error: " + avgError + " (" + ((System.nanoTime() - epochStart) / 1000000L) + " ms)");
+				}
+				
+				if(epochCallback != null) {
+					epochCallback.accept(new Epoch(epoch + 1, avgError));
+				}
 			}
-			
-			// Calculate average error over the epoch
-			float avgError = errorCount > 0 ? sumError / errorCount : -1f;
-			LogManager.log.info("[AutoBone] Epoch " + (epoch + 1) + " average error: " + avgError);
-			
-			if(epochCallback != null) {
-				epochCallback.accept(new Epoch(epoch + 1, avgError));
+		} finally {
+			frameBasis = null;
+			if(pool != null) {
+				pool.shutdown();
 			}
 		}
 		
 		float finalHeight = getHeight(configs, staticConfigs);
-		LogManager.log.info("[AutoBone] Target height: " + targetHeight + " New height: " + finalHeight);
+		if(logProgress) {
+			LogManager.log.info("[AutoBone] Processed frames in " + ((System.nanoTime() - processStart) / 1000000L) + " ms using " + (pool != null ? threadCount + " threads" : "1 thread"));
+			LogManager.log.info("[AutoBone] Target height: " + targetHeight + " New height: " + finalHeight);
+		}
 		
 		return Math.abs(finalHeight - targetHeight);
 	}
 	
+	/**
+	 * Poses both skeletons from a pair of frames and tries adjusting every bone
+	 * in {@code configs} in both directions, writing the lengths that reduce
+	 * the error to {@code newConfigs}. {@code newConfigs} may be the same
+	 * store as {@code configs}.
+	 * @param newConfigs where to write adjusted lengths, or null to only
+	 * calculate the error
+	 * @return the error of the pair before any adjustment, NaN or infinity if
+	 * it was invalid and nothing was adjusted
+	 */
+	protected float processFramePair(PoseFrames frames, int frameCursor, int cursorOffset, FramePair pair, SkeletonConfigStore configs, float targetHeight, float adjustRate, SkeletonConfigStore newConfigs) {
+		final int frame1 = frameCursor;
+		final int frame2 = frameCursor + cursorOffset;
+		
+		setFramePair(frames, frame1, frame2, pair, configs);
+		
+		float totalLength = getLengthSum(configs);
+		float curHeight = getHeight(configs, staticConfigs);
+		float errorDeriv = getErrorDeriv(pair, frame1, frame2, targetHeight - curHeight);
+		float error = errorFunc(errorDeriv);
+		
+		if(Float.isNaN(error) || Float.isInfinite(error)) {
+			return Float.NaN;
+		}
+		
+		if(newConfigs == null) {
+			return errorDeriv;
+		}
+		
+		float adjustVal = error * adjustRate;
+		
+		for(SkeletonConfigValue config : SkeletonConfigValue.values) {
+			if(!configs.has(config)) {
+				continue;
+			}
+			
+			float originalLength = configs.get(config);
+			
+			// Try positive and negative adjustments
+			boolean isHeightVar = heightConfigs.contains(config);
+			float minError = errorDeriv;
+			float finalNewLength = -1f;
+			for(int i = 0; i < 2; i++) {
+				// Scale by the ratio for smooth adjustment and more stable results
+				float curAdjustVal = ((i == 0 ? adjustVal : -adjustVal) * originalLength) / totalLength;
+				float newLength = originalLength + curAdjustVal;
+				
+				// No small or negative numbers!!! Bad algorithm!
+				if(newLength < 0.01f) {
+					continue;
+				}
+				
+				updateBoneLength(pair, config, newLength);
+				
+				float newHeight = isHeightVar ? curHeight + curAdjustVal : curHeight;
+				float newErrorDeriv = getErrorDeriv(pair, frame1, frame2, targetHeight - newHeight);
+				
+				if(newErrorDeriv < minError) {
+					minError = newErrorDeriv;
+					finalNewLength = newLength;
+				}
+			}
+			
+			if(finalNewLength > 0f) {
+				newConfigs.set(config, finalNewLength);
+			}
+			
+			// Reset the length to minimize bias in other variables, it's applied later
+			updateBoneLength(pair, config, originalLength);
+		}
+		
+		return errorDeriv;
+	}
+	
+	/**
+	 * Adds the gradient of the error function of a pair of frames with respect
+	 * to every bone in {@code configs} to {@code gradient}, estimated with
+	 * forward differences of {@link #gradientStep}
+	 * @return the error of the pair, NaN or infinity if it was invalid and
+	 * nothing was added
+	 */
+	protected float addFramePairGradient(PoseFrames frames, int frameCursor, int cursorOffset, FramePair pair, SkeletonConfigStore configs, float targetHeight, float[] gradient) {
+		final int frame1 = frameCursor;
+		final int frame2 = frameCursor + cursorOffset;
+		
+		setFramePair(frames, frame1, frame2, pair, configs);
+		
+		float curHeight = getHeight(configs, staticConfigs);
+		float errorDeriv = getErrorDeriv(pair, frame1, frame2, targetHeight - curHeight);
+		float error = errorFunc(errorDeriv);
+		
+		if(Float.isNaN(error) || Float.isInfinite(error)) {
+			return Float.NaN;
+		}
+		
+		for(SkeletonConfigValue config : SkeletonConfigValue.values) {
+			if(!configs.has(config)) {
+				continue;
+			}
+			
+			float originalLength = configs.get(config);
+			float newHeight = heightConfigs.contains(config) ? curHeight + gradientStep : curHeight;
+			
+			updateBoneLength(pair, config, originalLength + gradientStep);
+			float newError = errorFunc(getErrorDeriv(pair, frame1, frame2, targetHeight - newHeight));
+			updateBoneLength(pair, config, originalLength);
+			
+			gradient[config.ordinal()] += (newError - error) / gradientStep;
+		}
+		
+		return errorDeriv;
+	}
+	
+	/**
+	 * Loads a pair of frames and sets up {@code pair} to evaluate them with
+	 * the lengths in {@code configs}
+	 */
+	protected void setFramePair(PoseFrames frames, int frame1, int frame2, FramePair pair, SkeletonConfigStore configs) {
+		frames.getFrames(frame1, pair.trackerBuffer1, pair.trackerIndex1);
+		frames.getFrames(frame2, pair.trackerBuffer2, pair.trackerIndex2);
+		
+		if(frameBasis != null) {
+			pair.setLengths(configs, staticConfigs);
+		} else {
+			pair.skeleton1.setSkeletonConfigs(configs);
+			pair.skeleton2.setSkeletonConfigs(configs);
+			
+			pair.skeleton1.setPoseFromFrame(pair.trackerIndex1);
+			pair.skeleton2.setPoseFromFrame(pair.trackerIndex2);
+		}
+	}
+	
+	/**
+	 * Takes one optimizer step on {@link #configs} with the mean of a summed
+	 * gradient, and clears the gradient
+	 */
+	protected void applyGradient(float[] gradient, int count, float rateScale) {
+		for(SkeletonConfigValue config : SkeletonConfigValue.values) {
+			int i = config.ordinal();
+			stepMask[i] = configs.has(config);
+			stepLengths[i] = stepMask[i] ? configs.get(config) : 0f;
+			gradient[i] /= count;
+		}
+		
+		optimizer.step(stepLengths, gradient, stepMask, rateScale);
+		
+		for(SkeletonConfigValue config : SkeletonConfigValue.values) {
+			if(stepMask[config.ordinal()]) {
+				// No small or negative numbers
+				configs.set(config, Math.max(stepLengths[config.ordinal()], 0.01f));
+			}
+		}
+		Arrays.fill(gradient, 0f);
+	}
+	
+	/**
+	 * Calculates the average error of all frame pairs with the current config
+	 * values, without adjusting them
+	 * @return the average error, -1 if there were no valid pairs
+	 */
+	public float getAverageError(PoseFrames frames, float targetHeight) {
+		final int frameCount = frames.getMaxFrameCount();
+		FramePair pair = new FramePair(frames.getTrackerCount());
+		pair.setSkeletons(configs, staticConfigs);
+		
+		float sumError = 0f;
+		int errorCount = 0;
+		for(int cursorOffset = minDataDistance; cursorOffset <= maxDataDistance && cursorOffset < frameCount; cursorOffset++) {
+			for(int frameCursor = 0; frameCursor < frameCount - cursorOffset; frameCursor += cursorIncrement) {
+				float errorDeriv = processFramePair(frames, frameCursor, cursorOffset, pair, configs, targetHeight, 0f, null);
+				if(!Float.isNaN(errorDeriv) && !Float.isInfinite(errorDeriv)) {
+					sumError += errorDeriv;
+					errorCount++;
+				}
+			}
+		}
+		return errorCount > 0 ? sumError / errorCount : -1f;
+	}
+	
+	/**
+	 * Splits the frame pairs starting between {@code batchStart} and
+	 * {@code batchEnd} into one contiguous range per worker. Every pair is
+	 * probed from the same {@link #batchConfigs} and proposes a change to each
+	 * bone like the sequential mode would make, and the sum of the proposals
+	 * of the whole batch is applied to {@link #configs} as one step. Each
+	 * proposal is scaled down by the batch size, so the step is as long as one
+	 * sequential step in the direction most pairs agree on.
+	 * With an {@link #optimizer} their gradients are summed and one step is
+	 * taken instead.
+	 * @return false if any pair had an invalid error, in which case nothing
+	 * was applied
+	 */
+	protected boolean processBatch(ForkJoinPool pool, FastList<Worker> workers, PoseFrames frames, int cursorOffset, int batchStart, int batchEnd, float targetHeight, float adjustRate, float rateScale, boolean adjust) {
+		batchConfigs.clear();
+		batchConfigs.setAll(configs);
+		
+		int pairCount = (batchEnd - batchStart + cursorIncrement - 1) / cursorIncrement;
+		int pairsPerWorker = (pairCount + workers.size() - 1) / workers.size();
+		// Every proposal is a fraction of the batch's step
+		float pairAdjustRate = adjustRate / pairCount;
+		for(int i = 0; i < workers.size(); ++i) {
+			int start = batchStart + i * pairsPerWorker * cursorIncrement;
+			int end = Math.min(start + pairsPerWorker * cursorIncrement, batchEnd);
+			workers.get(i).prepare(frames, cursorOffset, start, end, targetHeight, pairAdjustRate, adjust);
+		}
+		pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(workers)));
+		
+		for(int i = 0; i < workers.size(); ++i) {
+			if(workers.get(i).invalid) {
+				return false;
+			}
+		}
+		
+		if(adjust && optimizer != null) {
+			// Merge in worker order so the sums don't depend on scheduling
+			int count = 0;
+			for(int i = 0; i < workers.size(); ++i) {
+				Worker worker = workers.get(i);
+				count += worker.errorCount;
+				for(int j = 0; j < batchGradient.length; ++j) {
+					batchGradient[j] += worker.gradient[j];
+				}
+			}
+			if(count > 0) {
+				applyGradient(batchGradient, count, rateScale);
+			}
+			return true;
+		}
+		
+		for(SkeletonConfigValue config : SkeletonConfigValue.values) {
+			if(!batchConfigs.has(config)) {
+				continue;
+			}
+			
+			// Merge in worker order so the sums don't depend on scheduling
+			float change = 0f;
+			for(int i = 0; i < workers.size(); ++i) {
+				change += workers.get(i).lengthChanges[config.ordinal()];
+			}
+			if(change != 0f) {
+				configs.set(config, Math.max(batchConfigs.get(config) + change, 0.01f));
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Buffers and skeletons needed to evaluate a pair of frames
+	 */
+	protected static class FramePair {
+		
+		public SimpleSkeleton skeleton1;
+		public SimpleSkeleton skeleton2;
+		public final TrackerFrame[] trackerBuffer1;
+		public final TrackerFrame[] trackerBuffer2;
+		public final TrackerPositionIndex<TrackerFrame> trackerIndex1 = new TrackerPositionIndex<TrackerFrame>();
+		public final TrackerPositionIndex<TrackerFrame> trackerIndex2 = new TrackerPositionIndex<TrackerFrame>();
+		
+		// Used with the frame basis instead of the skeletons
+		public final float[] lengths = new float[SkeletonConfigValue.values.length];
+		public final Vector3f leftAnkle1 = new Vector3f();
+		public final Vector3f rightAnkle1 = new Vector3f();
+		public final Vector3f leftAnkle2 = new Vector3f();
+		public final Vector3f rightAnkle2 = new Vector3f();
+		public final Vector3f nodePosition1 = new Vector3f();
+		public final Vector3f nodePosition2 = new Vector3f();
+		
+		public FramePair(int trackerCount) {
+			trackerBuffer1 = new TrackerFrame[trackerCount];
+			trackerBuffer2 = new TrackerFrame[trackerCount];
+		}
+		
+		public void setSkeletons(SkeletonConfigStore configs, SkeletonConfigStore staticConfigs) {
+			skeleton1 = new SimpleSkeleton(configs, staticConfigs);
+			skeleton2 = new SimpleSkeleton(configs, staticConfigs);
+		}
+		
+		/**
+		 * Fills {@link #lengths} the same way the skeletons get their values
+		 */
+		public void setLengths(SkeletonConfigStore configs, SkeletonConfigStore staticConfigs) {
+			for(SkeletonConfigValue config : SkeletonConfigValue.values) {
+				lengths[config.ordinal()] = configs.get(config, staticConfigs.get(config, config.defaultValue));
+			}
+		}
+	}
+	
+	/**
+	 * Processes a range of frame pairs of a batch, each one from
+	 * {@link AutoBone#batchConfigs}, and sums the changes they propose
+	 */
+	protected class Worker extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		public final FramePair pair;
+		public final SkeletonConfigStore workerConfigs = new SkeletonConfigStore();
+		public final float[] lengthChanges = new float[SkeletonConfigValue.values.length];
+		public final float[] gradient = new float[SkeletonConfigValue.values.length];
+		public float sumError;
+		public int errorCount;
+		public boolean invalid;
+		
+		private PoseFrames frames;
+		private int cursorOffset;
+		private int start;
+		private int end;
+		private float targetHeight;
+		private float adjustRate;
+		private boolean adjust;
+		
+		public Worker(FramePair pair) {
+			this.pair = pair;
+		}
+		
+		public void prepare(PoseFrames frames, int cursorOffset, int start, int end, float targetHeight, float adjustRate, boolean adjust) {
+			this.frames = frames;
+			this.cursorOffset = cursorOffset;
+			this.start = start;
+			this.end = end;
+			this.targetHeight = targetHeight;
+			this.adjustRate = adjustRate;
+			this.adjust = adjust;
+			sumError = 0f;
+			errorCount = 0;
+			invalid = false;
+			Arrays.fill(lengthChanges, 0f);
+			Arrays.fill(gradient, 0f);
+			reinitialize();
+		}
+		
+		@Override
+		protected void compute() {
+			workerConfigs.clear();
+			workerConfigs.setAll(batchConfigs);
+			for(int frameCursor = start; frameCursor < end; frameCursor += cursorIncrement) {
+				float errorDeriv;
+				if(adjust && optimizer != null) {
+					errorDeriv = addFramePairGradient(frames, frameCursor, cursorOffset, pair, batchConfigs, targetHeight, gradient);
+				} else {
+					errorDeriv = processFramePair(frames, frameCursor, cursorOffset, pair, batchConfigs, targetHeight, adjustRate, adjust ? workerConfigs : null);
+				}
+				if(Float.isNaN(errorDeriv) || Float.isInfinite(errorDeriv)) {
+					invalid = true;
+					return;
+				}
+				
+				sumError += errorDeriv;
+				errorCount++;
+				
+				if(adjust && optimizer == null) {
+					// Take the proposal and start the next pair from the batch's values again
+					for(SkeletonConfigValue config : SkeletonConfigValue.values) {
+						if(workerConfigs.has(config)) {
+							float original = batchConfigs.get(config);
+							lengthChanges[config.ordinal()] += workerConfigs.get(config) - original;
+							workerConfigs.set(config, original);
+						}
+					}
+				}
+			}
+		}
+	}
+	
 	// The change in position of the ankle over time
 	protected float getSlideErrorDeriv(SimpleSkeleton skeleton1, SimpleSkeleton skeleton2) {
-		float slideLeft = skeleton1.getNodePosition(TrackerPosition.LEFT_ANKLE).distance(skeleton2.getNodePosition(TrackerPosition.LEFT_ANKLE));
-		float slideRight = skeleton1.getNodePosition(TrackerPosition.RIGHT_ANKLE).distance(skeleton2.getNodePosition(TrackerPosition.RIGHT_ANKLE));
+		return getSlideErrorDeriv(skeleton1.getNodePosition(TrackerPosition.LEFT_ANKLE), skeleton1.getNodePosition(TrackerPosition.RIGHT_ANKLE), skeleton2.getNodePosition(TrackerPosition.LEFT_ANKLE), skeleton2.getNodePosition(TrackerPosition.RIGHT_ANKLE));
+	}
+	
+	protected float getSlideErrorDeriv(Vector3f leftAnkle1, Vector3f rightAnkle1, Vector3f leftAnkle2, Vector3f rightAnkle2) {
+		float slideLeft = leftAnkle1.distance(leftAnkle2);
+		float slideRight = rightAnkle1.distance(rightAnkle2);
 		
 		// Divide by 4 to halve and average, it's halved because you want to approach a midpoint, not the other point
 		return (slideLeft + slideRight) / 4f;
@@ -377,11 +864,15 @@ public class AutoBone {
 	
 	// The offset between both feet at one instant and over time
 	protected float getOffsetErrorDeriv(SimpleSkeleton skeleton1, SimpleSkeleton skeleton2) {
-		float skeleton1Left = skeleton1.getNodePosition(TrackerPosition.LEFT_ANKLE).getY();
-		float skeleton1Right = skeleton1.getNodePosition(TrackerPosition.RIGHT_ANKLE).getY();
+		return getOffsetErrorDeriv(skeleton1.getNodePosition(TrackerPosition.LEFT_ANKLE), skeleton1.getNodePosition(TrackerPosition.RIGHT_ANKLE), skeleton2.getNodePosition(TrackerPosition.LEFT_ANKLE), skeleton2.getNodePosition(TrackerPosition.RIGHT_ANKLE));
+	}
+	
+	protected float getOffsetErrorDeriv(Vector3f leftAnkle1, Vector3f rightAnkle1, Vector3f leftAnkle2, Vector3f rightAnkle2) {
+		float skeleton1Left = leftAnkle1.getY();
+		float skeleton1Right = rightAnkle1.getY();
 		
-		float skeleton2Left = skeleton2.getNodePosition(TrackerPosition.LEFT_ANKLE).getY();
-		float skeleton2Right = skeleton2.getNodePosition(TrackerPosition.RIGHT_ANKLE).getY();
+		float skeleton2Left = leftAnkle2.getY();
+		float skeleton2Right = rightAnkle2.getY();
 		
 		float dist1 = Math.abs(skeleton1Left - skeleton1Right);
 		float dist2 = Math.abs(skeleton2Left - skeleton2Right);
@@ -398,15 +889,13 @@ public class AutoBone {
 	
 	// The distance from average human proportions
 	protected float getProportionErrorDeriv(SimpleSkeleton skeleton) {
-		Float neckLength = skeleton.getSkeletonConfig("Neck");
-		Float chestLength = skeleton.getSkeletonConfig("Chest");
-		Float torsoLength = skeleton.getSkeletonConfig("Torso");
-		Float legsLength = skeleton.getSkeletonConfig("Legs length");
-		Float kneeHeight = skeleton.getSkeletonConfig("Knee height");
-		
-		float chestTorso = chestLength != null && torsoLength != null ? Math.abs((chestLength / torsoLength) - chestTorsoRatio) : 0f;
-		float legBody = legsLength != null && torsoLength != null && neckLength != null ? Math.abs((legsLength / (torsoLength + neckLength)) - legBodyRatio) : 0f;
-		float kneeLeg = kneeHeight != null && legsLength != null ? Math.abs((kneeHeight / legsLength) - kneeLegRatio) : 0f;
+		return getProportionErrorDeriv(skeleton.getSkeletonConfig(SkeletonConfigValue.NECK), skeleton.getSkeletonConfig(SkeletonConfigValue.CHEST), skeleton.getSkeletonConfig(SkeletonConfigValue.TORSO), skeleton.getSkeletonConfig(SkeletonConfigValue.LEGS_LENGTH), skeleton.getSkeletonConfig(SkeletonConfigValue.KNEE_HEIGHT));
+	}
+	
+	protected float getProportionErrorDeriv(float neckLength, float chestLength, float torsoLength, float legsLength, float kneeHeight) {
+		float chestTorso = Math.abs((chestLength / torsoLength) - chestTorsoRatio);
+		float legBody = Math.abs((legsLength / (torsoLength + neckLength)) - legBodyRatio);
+		float kneeLeg = Math.abs((kneeHeight / legsLength) - kneeLegRatio);
 		
 		if(legBody <= legBodyRatioRange) {
 			legBody = 0f;
@@ -427,7 +916,7 @@ public class AutoBone {
 				continue;
 			}
 			
-			Vector3f nodePos = skeleton.getNodePosition(trackerFrame.designation.designation);
+			Vector3f nodePos = skeleton.getNodePosition(trackerFrame.getBodyPosition().designation);
 			if(nodePos != null) {
 				offset += Math.abs(nodePos.distance(trackerFrame.position));
 				offsetCount++;
@@ -447,17 +936,17 @@ public class AutoBone {
 				continue;
 			}
 			
-			TrackerFrame trackerFrame2 = TrackerUtils.findTrackerForBodyPosition(frame2, trackerFrame1.designation);
+			TrackerFrame trackerFrame2 = TrackerUtils.findTrackerForBodyPosition(frame2, trackerFrame1.getBodyPosition());
 			if(trackerFrame2 == null || !trackerFrame2.hasData(TrackerFrameData.POSITION)) {
 				continue;
 			}
 			
-			Vector3f nodePos1 = skeleton1.getNodePosition(trackerFrame1.designation);
+			Vector3f nodePos1 = skeleton1.getNodePosition(trackerFrame1.getBodyPosition());
 			if(nodePos1 == null) {
 				continue;
 			}
 			
-			Vector3f nodePos2 = skeleton2.getNodePosition(trackerFrame2.designation);
+			Vector3f nodePos2 = skeleton2.getNodePosition(trackerFrame2.getBodyPosition());
 			if(nodePos2 == null) {
 				continue;
 			}
@@ -511,12 +1000,129 @@ public class AutoBone {
 		return sumWeight > 0f ? totalError / sumWeight : 0f;
 	}
 	
+	// The distance of any points to the corresponding absolute position, using the frame basis
+	protected float getPositionErrorDeriv(TrackerFrame[] frame, int frameIndex, float[] lengths, Vector3f nodePos) {
+		float offset = 0f;
+		int offsetCount = 0;
+		
+		for(TrackerFrame trackerFrame : frame) {
+			if(trackerFrame == null || !trackerFrame.hasData(TrackerFrameData.POSITION)) {
+				continue;
+			}
+			
+			// Nodes are looked up by designation, which only matches the HMD node's name
+			if(trackerFrame.getBodyPosition() != TrackerPosition.HMD) {
+				continue;
+			}
+			
+			frameBasis.getNodePosition(frameIndex, trackerFrame.getBodyPosition(), lengths, nodePos);
+			offset += Math.abs(nodePos.distance(trackerFrame.position));
+			offsetCount++;
+		}
+		
+		return offsetCount > 0 ? offset / offsetCount : 0f;
+	}
+	
+	// The difference between offset of absolute position and the corresponding point over time, using the frame basis
+	protected float getPositionOffsetErrorDeriv(TrackerFrame[] frame1, TrackerFrame[] frame2, int frameIndex1, int frameIndex2, float[] lengths, Vector3f nodePos1, Vector3f nodePos2) {
+		float offset = 0f;
+		int offsetCount = 0;
+		
+		for(TrackerFrame trackerFrame1 : frame1) {
+			if(trackerFrame1 == null || !trackerFrame1.hasData(TrackerFrameData.POSITION)) {
+				continue;
+			}
+			
+			TrackerFrame trackerFrame2 = TrackerUtils.findTrackerForBodyPosition(frame2, trackerFrame1.getBodyPosition());
+			if(trackerFrame2 == null || !trackerFrame2.hasData(TrackerFrameData.POSITION)) {
+				continue;
+			}
+			
+			if(frameBasis.getNodePosition(frameIndex1, trackerFrame1.getBodyPosition(), lengths, nodePos1) == null) {
+				continue;
+			}
+			
+			if(frameBasis.getNodePosition(frameIndex2, trackerFrame2.getBodyPosition(), lengths, nodePos2) == null) {
+				continue;
+			}
+			
+			float dist1 = Math.abs(nodePos1.distance(trackerFrame1.position));
+			float dist2 = Math.abs(nodePos2.distance(trackerFrame2.position));
+			
+			offset += Math.abs(dist2 - dist1);
+			offsetCount++;
+		}
+		
+		return offsetCount > 0 ? offset / offsetCount : 0f;
+	}
+	
+	/**
+	 * Calculates the error of a pair of frames from its skeletons, or from the
+	 * frame basis and {@link FramePair#lengths} if it's being used
+	 */
+	protected float getErrorDeriv(FramePair pair, int frame1, int frame2, float heightChange) {
+		if(frameBasis == null) {
+			return getErrorDeriv(pair.trackerBuffer1, pair.trackerBuffer2, pair.skeleton1, pair.skeleton2, heightChange);
+		}
+		
+		final float[] lengths = pair.lengths;
+		float totalError = 0f;
+		float sumWeight = 0f;
+		
+		if(slideErrorFactor > 0f || offsetErrorFactor > 0f) {
+			frameBasis.getNodePosition(frame1, TrackerPosition.LEFT_ANKLE, lengths, pair.leftAnkle1);
+			frameBasis.getNodePosition(frame1, TrackerPosition.RIGHT_ANKLE, lengths, pair.rightAnkle1);
+			frameBasis.getNodePosition(frame2, TrackerPosition.LEFT_ANKLE, lengths, pair.leftAnkle2);
+			frameBasis.getNodePosition(frame2, TrackerPosition.RIGHT_ANKLE, lengths, pair.rightAnkle2);
+		}
+		
+		if(slideErrorFactor > 0f) {
+			totalError += getSlideErrorDeriv(pair.leftAnkle1, pair.rightAnkle1, pair.leftAnkle2, pair.rightAnkle2) * slideErrorFactor;
+			sumWeight += slideErrorFactor;
+		}
+		
+		if(offsetErrorFactor > 0f) {
+			totalError += getOffsetErrorDeriv(pair.leftAnkle1, pair.rightAnkle1, pair.leftAnkle2, pair.rightAnkle2) * offsetErrorFactor;
+			sumWeight += offsetErrorFactor;
+		}
+		
+		if(proportionErrorFactor > 0f) {
+			totalError += getProportionErrorDeriv(lengths[SkeletonConfigValue.NECK.ordinal()], lengths[SkeletonConfigValue.CHEST.ordinal()], lengths[SkeletonConfigValue.TORSO.ordinal()], lengths[SkeletonConfigValue.LEGS_LENGTH.ordinal()], lengths[SkeletonConfigValue.KNEE_HEIGHT.ordinal()]) * proportionErrorFactor;
+			sumWeight += proportionErrorFactor;
+		}
+		
+		if(heightErrorFactor > 0f) {
+			totalError += Math.abs(heightChange) * heightErrorFactor;
+			sumWeight += heightErrorFactor;
+		}
+		
+		if(positionErrorFactor > 0f) {
+			totalError += (getPositionErrorDeriv(pair.trackerBuffer1, frame1, lengths, pair.nodePosition1) + getPositionErrorDeriv(pair.trackerBuffer2, frame2, lengths, pair.nodePosition2) / 2f) * positionErrorFactor;
+			sumWeight += positionErrorFactor;
+		}
+		
+		if(positionOffsetErrorFactor > 0f) {
+			totalError += getPositionOffsetErrorDeriv(pair.trackerBuffer1, pair.trackerBuffer2, frame1, frame2, lengths, pair.nodePosition1, pair.nodePosition2) * positionOffsetErrorFactor;
+			sumWeight += positionOffsetErrorFactor;
+		}
+		
+		return sumWeight > 0f ? totalError / sumWeight : 0f;
+	}
+	
 	// Mean square error function
 	protected static float errorFunc(float errorDeriv) {
 		return 0.5f * (errorDeriv * errorDeriv);
 	}
 	
-	protected void updateSkeletonBoneLength(SimpleSkeleton skeleton1, SimpleSkeleton skeleton2, String joint, float newLength) {
+	protected void updateBoneLength(FramePair pair, SkeletonConfigValue joint, float newLength) {
+		if(frameBasis != null) {
+			pair.lengths[joint.ordinal()] = newLength;
+		} else {
+			updateSkeletonBoneLength(pair.skeleton1, pair.skeleton2, joint, newLength);
+		}
+	}
+	
+	protected void updateSkeletonBoneLength(SimpleSkeleton skeleton1, SimpleSkeleton skeleton2, SkeletonConfigValue joint, float newLength) {
 		skeleton1.setSkeletonConfig(joint, newLength, true);
 		skeleton2.setSkeletonConfig(joint, newLength, true);
 	}
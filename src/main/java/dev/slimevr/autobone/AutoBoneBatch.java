@@ -0,0 +1,420 @@
+package dev.slimevr.autobone;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import dev.slimevr.poserecorder.PoseFrameIO;
+import dev.slimevr.poserecorder.PoseFrames;
+import io.eiren.util.collections.FastList;
+import io.eiren.util.logging.LogManager;
+import io.eiren.vr.VRServer;
+import io.eiren.vr.processor.SkeletonConfigValue;
+
+/**
+ * Runs AutoBone on many recordings without the GUI, for example on a build
+ * server. Takes directories, .pfr files or glob patterns of recordings and
+ * processes them concurrently, as many at a time as there are cores and
+ * memory for. Settings and starting lengths are read from vrconfig.yml in
+ * the working directory, like the server does.
+ * <p>Writes results.csv with a row per recording, epochs.csv with the error
+ * of every epoch and results.json with both to the output directory.
+ */
+public class AutoBoneBatch {
+	
+	// Only a quarter of the heap is left for everything else
+	private static final double HEAP_FRACTION = 0.75d;
+	
+	public static class Epoch {
+		
+		public final int epoch;
+		public final float error;
+		// Since processing started
+		public final long timeNs;
+		
+		public Epoch(int epoch, float error, long timeNs) {
+			this.epoch = epoch;
+			this.error = error;
+			this.timeNs = timeNs;
+		}
+	}
+	
+	public static class Result {
+		
+		public final File file;
+		public final FastList<Epoch> epochs = new FastList<Epoch>();
+		public final float[] lengths = new float[SkeletonConfigValue.values.length];
+		public int frameCount;
+		public int trackerCount;
+		public float targetHeight;
+		public float heightError = Float.NaN;
+		public long loadNs;
+		public long processNs;
+		// Set if the recording failed
+		public String error;
+		
+		public Result(File file) {
+			this.file = file;
+		}
+		
+		public float getInitialError() {
+			return epochs.isEmpty() ? Float.NaN : epochs.get(0).error;
+		}
+		
+		public float getFinalError() {
+			return epochs.isEmpty() ? Float.NaN : epochs.get(epochs.size() - 1).error;
+		}
+	}
+	
+	private final VRServer server;
+	private final int threads;
+	
+	/**
+	 * @param server only used for its config, it doesn't need to be started
+	 * @param threads how many recordings to process at a time
+	 */
+	public AutoBoneBatch(VRServer server, int threads) {
+		if(threads < 1) {
+			throw new IllegalArgumentException("threads must at least have a value of 1");
+		}
+		this.server = server;
+		this.threads = threads;
+	}
+	
+	/**
+	 * @return how many recordings fit in the heap at a time, using at most
+	 * {@code maxThreads}
+	 */
+	public static int getThreadLimit(int maxThreads, long bytesPerRecording) {
+		long memoryLimit = (long) (Runtime.getRuntime().maxMemory() * HEAP_FRACTION) / Math.max(1L, bytesPerRecording);
+		return (int) Math.max(1L, Math.min(maxThreads, memoryLimit));
+	}
+	
+	/**
+	 * Finds recordings in a directory, a single file or the files matching a
+	 * glob pattern like {@code recordings/**.pfr}
+	 * @return the recordings sorted by path
+	 */
+	public static List<File> findRecordings(String path) throws IOException {
+		FastList<File> files = new FastList<File>();
+		File file = new File(path);
+		if(file.isDirectory()) {
+			File[] children = file.listFiles();
+			if(children != null) {
+				for(File child : children) {
+					if(child.isFile() && child.getName().toLowerCase().endsWith(".pfr")) {
+						files.add(child);
+					}
+				}
+			}
+		} else if(file.isFile()) {
+			files.add(file);
+		} else {
+			// Walk from the last directory before the first wildcard
+			Path pattern = Paths.get(path);
+			Path base = pattern.getRoot();
+			for(Path part : pattern) {
+				if(part.toString().matches(".*[*?\\[{].*")) {
+					break;
+				}
+				base = base != null ? base.resolve(part) : part;
+			}
+			if(base == null) {
+				base = Paths.get("");
+			}
+			if(Files.isDirectory(base)) {
+				PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + path);
+				try(Stream<Path> paths = Files.walk(base)) {
+					paths.filter(p -> Files.isRegularFile(p) && matcher.matches(p)).forEach(p -> files.add(p.toFile()));
+				}
+			}
+		}
+		Collections.sort(files);
+		return files;
+	}
+	
+	/**
+	 * Processes the recordings, at most {@link #threads} at a time
+	 * @return the results in the same order as the files
+	 */
+	public List<Result> run(List<File> files) throws InterruptedException {
+		int cores = Runtime.getRuntime().availableProcessors();
+		// Cores left over from the recordings are used inside each recording
+		int innerThreads = Math.max(1, cores / Math.min(threads, Math.max(1, files.size())));
+		
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			FastList<Future<Result>> futures = new FastList<Future<Result>>(files.size());
+			for(File file : files) {
+				futures.add(executor.submit(() -> process(file, innerThreads)));
+			}
+			
+			FastList<Result> results = new FastList<Result>(files.size());
+			for(int i = 0; i < futures.size(); ++i) {
+				try {
+					results.add(futures.get(i).get());
+				} catch(ExecutionException e) {
+					Result result = new Result(files.get(i));
+					result.error = String.valueOf(e.getCause());
+					results.add(result);
+				}
+			}
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	private Result process(File file, int innerThreads) {
+		Result result = new Result(file);
+		long loadStart = System.nanoTime();
+		PoseFrames frames = PoseFrameIO.readFromFile(file);
+		result.loadNs = System.nanoTime() - loadStart;
+		if(frames == null) {
+			result.error = "Unable to read the recording";
+			LogManager.log.severe("[AutoBoneBatch] " + file.getPath() + ": " + result.error);
+			return result;
+		}
+		result.frameCount = frames.getMaxFrameCount();
+		result.trackerCount = frames.getTrackerCount();
+		
+		// AutoBone keeps its state in fields, so each recording has its own
+		AutoBone autoBone = new AutoBone(server, false);
+		autoBone.loadConfig();
+		autoBone.threadCount = Math.min(autoBone.threadCount, innerThreads);
+		
+		boolean calcInitError = server.config.getBoolean("autobone.calculateInitialError", true);
+		float targetHeight = server.config.getFloat("autobone.manualTargetHeight", -1f);
+		result.targetHeight = targetHeight >= 0f ? targetHeight : autoBone.getMaxHmdHeight(frames);
+		
+		long processStart = System.nanoTime();
+		try {
+			result.heightError = autoBone.processFrames(frames, calcInitError, result.targetHeight, (epoch) -> {
+				result.epochs.add(new Epoch(epoch.epoch, epoch.epochError, System.nanoTime() - processStart));
+			});
+		} catch(RuntimeException e) {
+			result.error = String.valueOf(e);
+			LogManager.log.severe("[AutoBoneBatch] " + file.getPath() + ": processing failed", e);
+		}
+		result.processNs = System.nanoTime() - processStart;
+		
+		for(SkeletonConfigValue config : SkeletonConfigValue.values) {
+			Float length = autoBone.getConfig(config.stringVal);
+			result.lengths[config.ordinal()] = length != null ? length : Float.NaN;
+		}
+		return result;
+	}
+	
+	public static void writeCsv(List<Result> results, File resultsFile, File epochsFile) throws IOException {
+		try(PrintWriter out = new PrintWriter(resultsFile, StandardCharsets.UTF_8.name())) {
+			StringBuilder header = new StringBuilder("recording,frames,trackers,target_height,initial_error,final_error,height_error,load_ms,process_ms");
+			for(SkeletonConfigValue config : SkeletonConfigValue.values) {
+				header.append(',').append(csvString(config.stringVal));
+			}
+			out.println(header.append(",error"));
+			
+			for(Result result : results) {
+				StringBuilder row = new StringBuilder(csvString(result.file.getPath()));
+				row.append(',').append(result.frameCount);
+				row.append(',').append(result.trackerCount);
+				row.append(',').append(csvNumber(result.targetHeight));
+				row.append(',').append(csvNumber(result.getInitialError()));
+				row.append(',').append(csvNumber(result.getFinalError()));
+				row.append(',').append(csvNumber(result.heightError));
+				row.append(',').append(result.loadNs / 1000000L);
+				row.append(',').append(result.processNs / 1000000L);
+				for(float length : result.lengths) {
+					row.append(',').append(csvNumber(length));
+				}
+				row.append(',').append(result.error != null ? csvString(result.error) : "");
+				out.println(row);
+			}
+		}
+		
+		try(PrintWriter out = new PrintWriter(epochsFile, StandardCharsets.UTF_8.name())) {
+			out.println("recording,epoch,error,time_ms");
+			for(Result result : results) {
+				String name = csvString(result.file.getPath());
+				for(Epoch epoch : result.epochs) {
+					out.println(name + "," + epoch.epoch + "," + csvNumber(epoch.error) + "," + (epoch.timeNs / 1000000L));
+				}
+			}
+		}
+	}
+	
+	public static void writeJson(List<Result> results, File file) throws IOException {
+		try(PrintWriter out = new PrintWriter(file, StandardCharsets.UTF_8.name())) {
+			out.println("[");
+			for(int i = 0; i < results.size(); ++i) {
+				Result result = results.get(i);
+				StringBuilder json = new StringBuilder("  {");
+				json.append("\"recording\": ").append(jsonString(result.file.getPath()));
+				json.append(", \"frames\": ").append(result.frameCount);
+				json.append(", \"trackers\": ").append(result.trackerCount);
+				json.append(", \"targetHeight\": ").append(jsonNumber(result.targetHeight));
+				json.append(", \"initialError\": ").append(jsonNumber(result.getInitialError()));
+				json.append(", \"finalError\": ").append(jsonNumber(result.getFinalError()));
+				json.append(", \"heightError\": ").append(jsonNumber(result.heightError));
+				json.append(", \"loadMs\": ").append(result.loadNs / 1000000L);
+				json.append(", \"processMs\": ").append(result.processNs / 1000000L);
+				json.append(", \"lengths\": {");
+				boolean first = true;
+				for(SkeletonConfigValue config : SkeletonConfigValue.values) {
+					float length = result.lengths[config.ordinal()];
+					if(Float.isNaN(length)) {
+						continue;
+					}
+					json.append(first ? "" : ", ").append(jsonString(config.stringVal)).append(": ").append(length);
+					first = false;
+				}
+				json.append("}, \"epochs\": [");
+				for(int j = 0; j < result.epochs.size(); ++j) {
+					Epoch epoch = result.epochs.get(j);
+					json.append(j > 0 ? ", " : "").append("{\"epoch\": ").append(epoch.epoch).append(", \"error\": ").append(jsonNumber(epoch.error)).append(", \"timeMs\": ").append(epoch.timeNs / 1000000L).append('}');
+				}
+				json.append("], \"error\": ").append(result.error != null ? jsonString(result.error) : "null");
+				out.println(json.append(i < results.size() - 1 ? "}," : "}"));
+			}
+			out.println("]");
+		}
+	}
+	
+	static String csvNumber(float value) {
+		return Float.isNaN(value) || Float.isInfinite(value) ? "" : Float.toString(value);
+	}
+	
+	static String csvString(String value) {
+		if(value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+			return value;
+		}
+		return "\"" + value.replace("\"", "\"\"") + "\"";
+	}
+	
+	private static String jsonNumber(float value) {
+		return Float.isNaN(value) || Float.isInfinite(value) ? "null" : Float.toString(value);
+	}
+	
+	private static String jsonString(String value) {
+		StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+		for(int i = 0; i < value.length(); ++i) {
+			char c = value.charAt(i);
+			if(c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			} else if(c < 0x20) {
+				json.append(String.format("\\u%04x", (int) c));
+			} else {
+				json.append(c);
+			}
+		}
+		return json.append('"').toString();
+	}
+	
+	private static void printUsage() {
+		System.err.println("Usage: AutoBoneBatch [--threads <count>] [--memory <MB per recording>] [--output <directory>] [--format csv|json|both] <directory|recording.pfr|glob>...");
+		System.exit(1);
+	}
+	
+	public static void main(String[] args) {
+		int maxThreads = Runtime.getRuntime().availableProcessors();
+		long memoryPerRecording = 256L;
+		File outputDir = new File("AutoBoneResults");
+		String format = "both";
+		int i = 0;
+		try {
+			for(; i < args.length && args[i].startsWith("--"); i++) {
+				if(i + 1 >= args.length) {
+					printUsage();
+				}
+				if(args[i].equals("--threads")) {
+					maxThreads = Integer.parseInt(args[++i]);
+				} else if(args[i].equals("--memory")) {
+					memoryPerRecording = Long.parseLong(args[++i]);
+				} else if(args[i].equals("--output")) {
+					outputDir = new File(args[++i]);
+				} else if(args[i].equals("--format")) {
+					format = args[++i];
+				} else {
+					printUsage();
+				}
+			}
+		} catch(NumberFormatException e) {
+			printUsage();
+		}
+		if(i >= args.length || maxThreads < 1 || memoryPerRecording < 1 || !(format.equals("csv") || format.equals("json") || format.equals("both"))) {
+			printUsage();
+		}
+		
+		FastList<File> files = new FastList<File>();
+		for(; i < args.length; i++) {
+			try {
+				List<File> found = findRecordings(args[i]);
+				if(found.isEmpty()) {
+					System.err.println(args[i] + ": no recordings found");
+				}
+				files.addAll(found);
+			} catch(IOException e) {
+				System.err.println(args[i] + ": " + e.getMessage());
+			}
+		}
+		if(files.isEmpty()) {
+			System.exit(1);
+		}
+		if(!outputDir.isDirectory() && !outputDir.mkdirs()) {
+			System.err.println(outputDir + ": unable to create the output directory");
+			System.exit(1);
+		}
+		
+		int threads = getThreadLimit(Math.min(maxThreads, files.size()), memoryPerRecording * 1024L * 1024L);
+		System.out.println("Processing " + files.size() + " recordings, " + threads + " at a time");
+		
+		// The server is only used for its config and is never started
+		AutoBoneBatch batch = new AutoBoneBatch(new VRServer(), threads);
+		long start = System.nanoTime();
+		List<Result> results;
+		try {
+			results = batch.run(files);
+		} catch(InterruptedException e) {
+			System.exit(1);
+			return;
+		}
+		
+		int failed = 0;
+		for(Result result : results) {
+			if(result.error != null) {
+				failed++;
+				System.out.println(result.file + ": failed, " + result.error);
+			} else {
+				System.out.println(result.file + ": " + result.frameCount + " frames, error " + result.getInitialError() + " -> " + result.getFinalError() + ", height error " + result.heightError + ", " + (result.processNs / 1000000L) + " ms");
+			}
+		}
+		
+		try {
+			if(!format.equals("json")) {
+				writeCsv(results, new File(outputDir, "results.csv"), new File(outputDir, "epochs.csv"));
+			}
+			if(!format.equals("csv")) {
+				writeJson(results, new File(outputDir, "results.json"));
+			}
+		} catch(IOException e) {
+			System.err.println(outputDir + ": unable to write the results, " + e.getMessage());
+			System.exit(1);
+		}
+		
+		System.out.println("Done in " + ((System.nanoTime() - start) / 1000000L) + " ms, " + failed + " failed, results in " + outputDir);
+		// The server has threads that keep running
+		System.exit(failed > 0 ? 1 : 0);
+	}
+}
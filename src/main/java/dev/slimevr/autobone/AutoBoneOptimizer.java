@@ -0,0 +1,48 @@
+package dev.slimevr.autobone;
+
+/**
+ * Update rule for the gradient mode of {@link AutoBone}. Lengths and
+ * gradients are indexed by {@link io.eiren.vr.processor.SkeletonConfigValue#ordinal()},
+ * implementations keep any per-bone state between steps.
+ */
+public interface AutoBoneOptimizer {
+	
+	/**
+	 * Clears all state, called before processing a recording
+	 */
+	void reset();
+	
+	/**
+	 * @param lengths current lengths, updated in place
+	 * @param gradient mean gradient of the error function over a mini-batch
+	 * @param mask which lengths are being optimized, others must not change
+	 * @param rateScale multiplier for the learning rate, decays over epochs
+	 */
+	void step(float[] lengths, float[] gradient, boolean[] mask, float rateScale);
+	
+	/**
+	 * @param name "sgd", "momentum" or "adam", "probe" or null to probe each
+	 * bone in both directions instead
+	 * @param learningRate the learning rate, negative to use the optimizer's
+	 * default
+	 * @return the optimizer, or null for probing
+	 * @throws IllegalArgumentException if the name is not known
+	 */
+	static AutoBoneOptimizer create(String name, float learningRate) {
+		if(name == null)
+			return null;
+		switch(name.trim().toLowerCase()) {
+		case "":
+		case "probe":
+			return null;
+		case "sgd":
+			return new MomentumOptimizer(learningRate >= 0f ? learningRate : MomentumOptimizer.DEFAULT_LEARNING_RATE, 0f);
+		case "momentum":
+			return new MomentumOptimizer(learningRate >= 0f ? learningRate : MomentumOptimizer.DEFAULT_LEARNING_RATE, MomentumOptimizer.DEFAULT_MOMENTUM);
+		case "adam":
+			return new AdamOptimizer(learningRate >= 0f ? learningRate : AdamOptimizer.DEFAULT_LEARNING_RATE);
+		default:
+			throw new IllegalArgumentException("Unknown optimizer \"" + name + "\"");
+		}
+	}
+}
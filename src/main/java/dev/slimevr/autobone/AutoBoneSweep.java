@@ -0,0 +1,662 @@
+package dev.slimevr.autobone;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import dev.slimevr.poserecorder.PoseFrameIO;
+import dev.slimevr.poserecorder.PoseFrames;
+import dev.slimevr.poserecorder.TrackerFrameColumns;
+import dev.slimevr.poserecorder.TrackerFrameSource;
+import io.eiren.util.collections.FastList;
+import io.eiren.util.logging.LogManager;
+import io.eiren.vr.VRServer;
+import io.eiren.vr.processor.SkeletonConfigValue;
+
+/**
+ * Searches for the AutoBone settings that find known bone lengths best.
+ * Every combination of a grid of parameter values, or random samples of
+ * parameter ranges, is run on every recording in parallel. Recordings are
+ * loaded into memory and their bone vectors are precomputed once, then
+ * shared by all runs.
+ * <p>Known lengths are read from a properties file with the keys of
+ * vrconfig.yml, like {@code body.legsLength=0.9}, next to the recording with
+ * the .lengths extension or given with --truth for every recording. Results
+ * are ranked by the mean difference between the adjusted lengths and the
+ * known lengths.
+ */
+public class AutoBoneSweep {
+	
+	public enum Parameter {
+		
+		MINIMUM_DATA_DISTANCE("minimumDataDistance", true) {
+			@Override
+			public void apply(AutoBone autoBone, double value) {
+				autoBone.minDataDistance = (int) Math.round(value);
+			}
+		},
+		MAXIMUM_DATA_DISTANCE("maximumDataDistance", true) {
+			@Override
+			public void apply(AutoBone autoBone, double value) {
+				autoBone.maxDataDistance = (int) Math.round(value);
+			}
+		},
+		EPOCH_COUNT("epochCount", true) {
+			@Override
+			public void apply(AutoBone autoBone, double value) {
+				autoBone.numEpochs = (int) Math.round(value);
+			}
+		},
+		ADJUST_RATE("adjustRate", false) {
+			@Override
+			public void apply(AutoBone autoBone, double value) {
+				autoBone.initialAdjustRate = (float) value;
+			}
+		},
+		ADJUST_RATE_DECAY("adjustRateDecay", false) {
+			@Override
+			public void apply(AutoBone autoBone, double value) {
+				autoBone.adjustRateDecay = (float) value;
+			}
+		},
+		MINI_BATCH_SIZE("miniBatchSize", true) {
+			@Override
+			public void apply(AutoBone autoBone, double value) {
+				autoBone.miniBatchSize = (int) Math.round(value);
+			}
+		},
+		GRADIENT_STEP("gradientStep", false) {
+			@Override
+			public void apply(AutoBone autoBone, double value) {
+				autoBone.gradientStep = (float) value;
+			}
+		},
+		SLIDE_ERROR_FACTOR("slideErrorFactor", false) {
+			@Override
+			public void apply(AutoBone autoBone, double value) {
+				autoBone.slideErrorFactor = (float) value;
+			}
+		},
+		OFFSET_ERROR_FACTOR("offsetErrorFactor", false) {
+			@Override
+			public void apply(AutoBone autoBone, double value) {
+				autoBone.offsetErrorFactor = (float) value;
+			}
+		},
+		PROPORTION_ERROR_FACTOR("proportionErrorFactor", false) {
+			@Override
+			public void apply(AutoBone autoBone, double value) {
+				autoBone.proportionErrorFactor = (float) value;
+			}
+		},
+		HEIGHT_ERROR_FACTOR("heightErrorFactor", false) {
+			@Override
+			public void apply(AutoBone autoBone, double value) {
+				autoBone.heightErrorFactor = (float) value;
+			}
+		},
+		POSITION_ERROR_FACTOR("positionErrorFactor", false) {
+			@Override
+			public void apply(AutoBone autoBone, double value) {
+				autoBone.positionErrorFactor = (float) value;
+			}
+		},
+		POSITION_OFFSET_ERROR_FACTOR("positionOffsetErrorFactor", false) {
+			@Override
+			public void apply(AutoBone autoBone, double value) {
+				autoBone.positionOffsetErrorFactor = (float) value;
+			}
+		},
+		;
+		
+		public static final Parameter[] values = values();
+		
+		/**
+		 * Name of the setting in vrconfig.yml, without "autobone."
+		 */
+		public final String name;
+		public final boolean integer;
+		
+		private Parameter(String name, boolean integer) {
+			this.name = name;
+			this.integer = integer;
+		}
+		
+		public abstract void apply(AutoBone autoBone, double value);
+		
+		public static Parameter getByName(String name) {
+			for(Parameter parameter : values) {
+				if(parameter.name.equalsIgnoreCase(name)) {
+					return parameter;
+				}
+			}
+			return null;
+		}
+	}
+	
+	/**
+	 * Values of a parameter to search
+	 */
+	public static class Range {
+		
+		public final Parameter parameter;
+		// Values to pick from, null if any value from min to max can be picked
+		public final double[] values;
+		public final double min;
+		public final double max;
+		
+		public Range(Parameter parameter, double[] values) {
+			this.parameter = parameter;
+			this.values = values;
+			this.min = Double.NaN;
+			this.max = Double.NaN;
+		}
+		
+		public Range(Parameter parameter, double min, double max) {
+			this.parameter = parameter;
+			this.values = null;
+			this.min = min;
+			this.max = max;
+		}
+		
+		/**
+		 * Parses "name=a,b,c" for a list of values, "name=min:max:steps" for
+		 * evenly spaced values from min to max or "name=min:max" for any value
+		 * from min to max, which only random searches can use
+		 * @throws IllegalArgumentException if the range is not valid
+		 */
+		public static Range parse(String spec) {
+			int split = spec.indexOf('=');
+			Parameter parameter = split > 0 ? Parameter.getByName(spec.substring(0, split).trim()) : null;
+			if(parameter == null) {
+				throw new IllegalArgumentException("Unknown parameter in \"" + spec + "\"");
+			}
+			String value = spec.substring(split + 1);
+			try {
+				if(value.indexOf(':') < 0) {
+					String[] parts = value.split(",");
+					double[] values = new double[parts.length];
+					for(int i = 0; i < parts.length; ++i) {
+						values[i] = Double.parseDouble(parts[i].trim());
+					}
+					return new Range(parameter, values);
+				}
+				String[] parts = value.split(":");
+				if(parts.length < 2 || parts.length > 3) {
+					throw new IllegalArgumentException("Expected min:max or min:max:steps in \"" + spec + "\"");
+				}
+				double min = Double.parseDouble(parts[0].trim());
+				double max = Double.parseDouble(parts[1].trim());
+				if(parts.length == 2) {
+					return new Range(parameter, min, max);
+				}
+				int steps = Integer.parseInt(parts[2].trim());
+				if(steps < 1) {
+					throw new IllegalArgumentException("Steps must at least have a value of 1 in \"" + spec + "\"");
+				}
+				double[] values = new double[steps];
+				for(int i = 0; i < steps; ++i) {
+					values[i] = steps > 1 ? min + (max - min) * i / (steps - 1) : min;
+				}
+				return new Range(parameter, values);
+			} catch(NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid number in \"" + spec + "\"");
+			}
+		}
+		
+		public double sample(Random random) {
+			double value = values != null ? values[random.nextInt(values.length)] : min + (max - min) * random.nextDouble();
+			return parameter.integer ? Math.round(value) : value;
+		}
+	}
+	
+	/**
+	 * A recording loaded into memory with its bone vectors and known lengths
+	 */
+	public static class Recording {
+		
+		public final File file;
+		public final PoseFrames frames;
+		public final FrameBasis basis;
+		// Indexed by SkeletonConfigValue ordinal, NaN where unknown
+		public final float[] knownLengths;
+		public final float targetHeight;
+		
+		public Recording(File file, PoseFrames frames, FrameBasis basis, float[] knownLengths, float targetHeight) {
+			this.file = file;
+			this.frames = frames;
+			this.basis = basis;
+			this.knownLengths = knownLengths;
+			this.targetHeight = targetHeight;
+		}
+	}
+	
+	public static class Result {
+		
+		// Indexed like the ranges of the sweep
+		public final double[] values;
+		// Mean length difference of each recording
+		public final float[] errors;
+		public final float[] heightErrors;
+		public final long[] timesNs;
+		
+		public Result(double[] values, int recordingCount) {
+			this.values = values;
+			this.errors = new float[recordingCount];
+			this.heightErrors = new float[recordingCount];
+			this.timesNs = new long[recordingCount];
+		}
+		
+		/**
+		 * @return the mean length difference over all recordings, NaN if any
+		 * recording failed
+		 */
+		public float getError() {
+			return mean(errors);
+		}
+		
+		public float getHeightError() {
+			return mean(heightErrors);
+		}
+		
+		public long getTimeNs() {
+			long sum = 0L;
+			for(long time : timesNs) {
+				sum += time;
+			}
+			return sum;
+		}
+		
+		private static float mean(float[] values) {
+			float sum = 0f;
+			for(float value : values) {
+				sum += value;
+			}
+			return values.length > 0 ? sum / values.length : Float.NaN;
+		}
+	}
+	
+	private final VRServer server;
+	private final int threads;
+	// AutoBone keeps its state in fields, so each thread has its own
+	private final ThreadLocal<AutoBone> autoBones;
+	
+	/**
+	 * @param server only used for its config, it doesn't need to be started.
+	 * Parameters that aren't swept keep their values from the config.
+	 * @param threads how many runs to do at a time
+	 */
+	public AutoBoneSweep(VRServer server, int threads) {
+		if(threads < 1) {
+			throw new IllegalArgumentException("threads must at least have a value of 1");
+		}
+		this.server = server;
+		this.threads = threads;
+		this.autoBones = ThreadLocal.withInitial(() -> {
+			AutoBone autoBone = new AutoBone(server, false);
+			autoBone.loadConfig();
+			// Runs are already done in parallel
+			autoBone.threadCount = 1;
+			autoBone.logProgress = false;
+			return autoBone;
+		});
+	}
+	
+	/**
+	 * Reads known lengths from a properties file with the keys of vrconfig.yml
+	 * @return lengths indexed by SkeletonConfigValue ordinal, NaN where unknown
+	 */
+	public static float[] readKnownLengths(File file) throws IOException {
+		Properties properties = new Properties();
+		try(InputStream in = new FileInputStream(file)) {
+			properties.load(in);
+		}
+		float[] lengths = new float[SkeletonConfigValue.values.length];
+		for(SkeletonConfigValue config : SkeletonConfigValue.values) {
+			String value = properties.getProperty(config.configKey);
+			try {
+				lengths[config.ordinal()] = value != null ? Float.parseFloat(value.trim()) : Float.NaN;
+			} catch(NumberFormatException e) {
+				throw new IOException(file + ": invalid length for " + config.configKey);
+			}
+		}
+		return lengths;
+	}
+	
+	/**
+	 * Loads a recording into memory and precomputes its bone vectors. Known
+	 * lengths are read from the .lengths file next to it, or from
+	 * {@code defaultLengths} if there is none.
+	 * @return the recording, or null if it can't be used
+	 */
+	public Recording loadRecording(File file, float[] defaultLengths) throws IOException {
+		float[] knownLengths = defaultLengths;
+		String name = file.getName();
+		File lengthsFile = new File(file.getParentFile(), (name.toLowerCase().endsWith(".pfr") ? name.substring(0, name.length() - 4) : name) + ".lengths");
+		if(lengthsFile.isFile()) {
+			knownLengths = readKnownLengths(lengthsFile);
+		}
+		if(knownLengths == null) {
+			LogManager.log.warning("[AutoBoneSweep] " + file.getPath() + ": no known lengths, skipping");
+			return null;
+		}
+		
+		PoseFrames frames = PoseFrameIO.readFromFile(file);
+		if(frames == null) {
+			throw new IOException(file.getPath() + ": unable to read the recording");
+		}
+		// Copied even if they're mapped or compressed, every run reads all frames many times
+		FastList<TrackerFrameColumns> columns = new FastList<TrackerFrameColumns>(frames.getTrackerCount());
+		for(int i = 0; i < frames.getTrackerCount(); ++i) {
+			TrackerFrameSource tracker = frames.getTrackerFrames(i);
+			columns.add(tracker != null ? TrackerFrameColumns.fromTracker(tracker) : null);
+		}
+		frames = PoseFrames.fromColumns(columns);
+		
+		// The known height is the target if it's known, like a manual target height
+		AutoBone autoBone = autoBones.get();
+		float targetHeight = 0f;
+		for(int i = 0; i < autoBone.heightConfigs.size(); ++i) {
+			targetHeight += knownLengths[autoBone.heightConfigs.get(i).ordinal()];
+		}
+		if(Float.isNaN(targetHeight)) {
+			targetHeight = autoBone.getMaxHmdHeight(frames);
+		}
+		
+		return new Recording(file, frames, new FrameBasis(frames), knownLengths, targetHeight);
+	}
+	
+	/**
+	 * Loads recordings in parallel, see {@link #loadRecording(File, float[])}
+	 */
+	public List<Recording> loadRecordings(List<File> files, float[] defaultLengths) throws InterruptedException, IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			FastList<Future<Recording>> futures = new FastList<Future<Recording>>(files.size());
+			for(File file : files) {
+				futures.add(executor.submit(() -> loadRecording(file, defaultLengths)));
+			}
+			FastList<Recording> recordings = new FastList<Recording>(files.size());
+			for(Future<Recording> future : futures) {
+				Recording recording = getResult(future);
+				if(recording != null) {
+					recordings.add(recording);
+				}
+			}
+			return recordings;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Every combination of the values of the ranges
+	 * @throws IllegalArgumentException if a range has no list of values
+	 */
+	public static List<double[]> createGrid(List<Range> ranges) {
+		long count = 1L;
+		for(Range range : ranges) {
+			if(range.values == null) {
+				throw new IllegalArgumentException("A grid needs steps for " + range.parameter.name + ", use min:max:steps");
+			}
+			count *= range.values.length;
+			if(count > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("The grid is too large");
+			}
+		}
+		
+		FastList<double[]> grid = new FastList<double[]>((int) count);
+		for(int i = 0; i < count; ++i) {
+			double[] values = new double[ranges.size()];
+			int index = i;
+			for(int j = ranges.size() - 1; j >= 0; --j) {
+				Range range = ranges.get(j);
+				values[j] = range.values[index % range.values.length];
+				index /= range.values.length;
+			}
+			grid.add(values);
+		}
+		return grid;
+	}
+	
+	public static List<double[]> createRandom(List<Range> ranges, int count, long seed) {
+		Random random = new Random(seed);
+		FastList<double[]> candidates = new FastList<double[]>(count);
+		for(int i = 0; i < count; ++i) {
+			double[] values = new double[ranges.size()];
+			for(int j = 0; j < ranges.size(); ++j) {
+				values[j] = ranges.get(j).sample(random);
+			}
+			candidates.add(values);
+		}
+		return candidates;
+	}
+	
+	/**
+	 * Runs every candidate on every recording, at most {@link #threads} runs
+	 * at a time
+	 * @param candidates values indexed like the ranges
+	 * @return the results ranked by error, best first
+	 */
+	public List<Result> run(List<Range> ranges, List<double[]> candidates, List<Recording> recordings) throws InterruptedException, IOException {
+		FastList<Result> results = new FastList<Result>(candidates.size());
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			FastList<Future<?>> futures = new FastList<Future<?>>(candidates.size() * recordings.size());
+			for(double[] values : candidates) {
+				Result result = new Result(values, recordings.size());
+				results.add(result);
+				for(int i = 0; i < recordings.size(); ++i) {
+					int index = i;
+					futures.add(executor.submit(() -> evaluate(ranges, result, index, recordings.get(index))));
+				}
+			}
+			for(Future<?> future : futures) {
+				getResult(future);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		
+		// Failed runs have NaN errors and go last
+		results.sort((a, b) -> Float.compare(a.getError(), b.getError()));
+		return results;
+	}
+	
+	private void evaluate(List<Range> ranges, Result result, int index, Recording recording) {
+		AutoBone autoBone = autoBones.get();
+		// Every candidate sets every swept parameter, so nothing is left from the last run
+		for(int i = 0; i < ranges.size(); ++i) {
+			ranges.get(i).parameter.apply(autoBone, result.values[i]);
+		}
+		
+		long start = System.nanoTime();
+		float heightError;
+		try {
+			heightError = autoBone.processFrames(recording.frames, recording.basis, false, recording.targetHeight, null);
+		} catch(RuntimeException e) {
+			LogManager.log.warning("[AutoBoneSweep] " + recording.file.getPath() + ": run failed with " + Arrays.toString(result.values), e);
+			heightError = Float.NaN;
+		}
+		result.timesNs[index] = System.nanoTime() - start;
+		result.heightErrors[index] = heightError;
+		
+		float sum = 0f;
+		int count = 0;
+		for(SkeletonConfigValue config : SkeletonConfigValue.values) {
+			float known = recording.knownLengths[config.ordinal()];
+			if(autoBone.configs.has(config) && !Float.isNaN(known)) {
+				sum += Math.abs(autoBone.configs.get(config) - known);
+				count++;
+			}
+		}
+		result.errors[index] = count > 0 && !Float.isNaN(heightError) ? sum / count : Float.NaN;
+	}
+	
+	private static <T> T getResult(Future<T> future) throws InterruptedException, IOException {
+		try {
+			return future.get();
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+	
+	public static void writeCsv(List<Range> ranges, List<Recording> recordings, List<Result> results, File file) throws IOException {
+		try(PrintWriter out = new PrintWriter(file, StandardCharsets.UTF_8.name())) {
+			StringBuilder header = new StringBuilder("rank,error,height_error,time_ms");
+			for(Range range : ranges) {
+				header.append(',').append(range.parameter.name);
+			}
+			for(Recording recording : recordings) {
+				header.append(',').append(AutoBoneBatch.csvString(recording.file.getPath()));
+			}
+			out.println(header);
+			
+			for(int i = 0; i < results.size(); ++i) {
+				Result result = results.get(i);
+				StringBuilder row = new StringBuilder().append(i + 1);
+				row.append(',').append(AutoBoneBatch.csvNumber(result.getError()));
+				row.append(',').append(AutoBoneBatch.csvNumber(result.getHeightError()));
+				row.append(',').append(result.getTimeNs() / 1000000L);
+				for(int j = 0; j < ranges.size(); ++j) {
+					row.append(',').append(formatValue(ranges.get(j).parameter, result.values[j]));
+				}
+				for(float error : result.errors) {
+					row.append(',').append(AutoBoneBatch.csvNumber(error));
+				}
+				out.println(row);
+			}
+		}
+	}
+	
+	private static String formatValue(Parameter parameter, double value) {
+		return parameter.integer ? Long.toString(Math.round(value)) : Double.toString(value);
+	}
+	
+	private static void printUsage() {
+		StringBuilder parameters = new StringBuilder();
+		for(Parameter parameter : Parameter.values) {
+			parameters.append(parameters.length() > 0 ? ", " : "").append(parameter.name);
+		}
+		System.err.println("Usage: AutoBoneSweep [--threads <count>] [--random <count>] [--seed <seed>] [--truth <lengths file>] [--output <file.csv>] [--top <count>] --param <name>=<a,b,c|min:max:steps|min:max>... <directory|recording.pfr|glob>...");
+		System.err.println("Parameters: " + parameters);
+		System.exit(1);
+	}
+	
+	public static void main(String[] args) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		int randomCount = 0;
+		long seed = System.nanoTime();
+		File truthFile = null;
+		File output = new File("AutoBoneSweep.csv");
+		int top = 10;
+		FastList<Range> ranges = new FastList<Range>();
+		int i = 0;
+		try {
+			for(; i < args.length && args[i].startsWith("--"); i++) {
+				if(i + 1 >= args.length) {
+					printUsage();
+				}
+				if(args[i].equals("--threads")) {
+					threads = Integer.parseInt(args[++i]);
+				} else if(args[i].equals("--random")) {
+					randomCount = Integer.parseInt(args[++i]);
+				} else if(args[i].equals("--seed")) {
+					seed = Long.parseLong(args[++i]);
+				} else if(args[i].equals("--truth")) {
+					truthFile = new File(args[++i]);
+				} else if(args[i].equals("--output")) {
+					output = new File(args[++i]);
+				} else if(args[i].equals("--top")) {
+					top = Integer.parseInt(args[++i]);
+				} else if(args[i].equals("--param")) {
+					ranges.add(Range.parse(args[++i]));
+				} else {
+					printUsage();
+				}
+			}
+		} catch(IllegalArgumentException e) {
+			// Also catches number format exceptions
+			System.err.println(e.getMessage());
+			printUsage();
+		}
+		if(i >= args.length || ranges.isEmpty() || threads < 1 || randomCount < 0) {
+			printUsage();
+		}
+		
+		List<double[]> candidates = null;
+		try {
+			candidates = randomCount > 0 ? createRandom(ranges, randomCount, seed) : createGrid(ranges);
+		} catch(IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+		
+		FastList<File> files = new FastList<File>();
+		float[] defaultLengths = null;
+		try {
+			for(; i < args.length; i++) {
+				List<File> found = AutoBoneBatch.findRecordings(args[i]);
+				if(found.isEmpty()) {
+					System.err.println(args[i] + ": no recordings found");
+				}
+				files.addAll(found);
+			}
+			if(truthFile != null) {
+				defaultLengths = readKnownLengths(truthFile);
+			}
+		} catch(IOException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+		
+		// The server is only used for its config and is never started
+		AutoBoneSweep sweep = new AutoBoneSweep(new VRServer(), threads);
+		try {
+			long loadStart = System.nanoTime();
+			List<Recording> recordings = sweep.loadRecordings(files, defaultLengths);
+			if(recordings.isEmpty()) {
+				System.err.println("No recordings with known lengths");
+				System.exit(1);
+			}
+			System.out.println("Loaded " + recordings.size() + " recordings in " + ((System.nanoTime() - loadStart) / 1000000L) + " ms, running " + candidates.size() + " candidates on " + threads + " threads");
+			
+			long start = System.nanoTime();
+			List<Result> results = sweep.run(ranges, candidates, recordings);
+			System.out.println("Done in " + ((System.nanoTime() - start) / 1000000L) + " ms (seed " + seed + ")");
+			
+			for(int j = 0; j < Math.min(top, results.size()); ++j) {
+				Result result = results.get(j);
+				StringBuilder line = new StringBuilder().append(j + 1).append(". error ").append(result.getError()).append(", height error ").append(result.getHeightError()).append(':');
+				for(int k = 0; k < ranges.size(); ++k) {
+					line.append(' ').append(ranges.get(k).parameter.name).append('=').append(formatValue(ranges.get(k).parameter, result.values[k]));
+				}
+				System.out.println(line);
+			}
+			
+			writeCsv(ranges, recordings, results, output);
+			System.out.println("Results in " + output);
+		} catch(IOException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		} catch(InterruptedException e) {
+			System.exit(1);
+		}
+		// The server has threads that keep running
+		System.exit(0);
+	}
+}
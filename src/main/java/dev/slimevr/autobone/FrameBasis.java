@@ -0,0 +1,168 @@
+package dev.slimevr.autobone;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+
+import dev.slimevr.poserecorder.PoseFrames;
+import dev.slimevr.poserecorder.TrackerFrame;
+import io.eiren.vr.processor.SkeletonConfigValue;
+import io.eiren.vr.processor.TransformNode;
+import io.eiren.vr.trackers.TrackerPosition;
+import io.eiren.vr.trackers.TrackerPositionIndex;
+
+/**
+ * Rotated unit bone vectors of every frame of a recording.
+ * <p>{@link SimpleSkeleton} nodes use global rotations, so with the rotations
+ * of a frame fixed, every node position is the HMD position plus a sum of
+ * bone lengths times these vectors. Node positions for any bone lengths can
+ * then be calculated with a few multiply-adds per bone instead of posing and
+ * updating a whole skeleton.
+ * <p>Immutable after construction and safe to read from multiple threads.
+ */
+public class FrameBasis {
+
+	private static final int HMD_POSITION = 0;
+	private static final int HEAD_FORWARD = 3;
+	private static final int HEAD_DOWN = 6;
+	private static final int NECK_DOWN = 9;
+	private static final int CHEST_DOWN = 12;
+	private static final int WAIST_DOWN = 15;
+	private static final int HIP_RIGHT = 18;
+	private static final int LEFT_HIP_DOWN = 21;
+	private static final int RIGHT_HIP_DOWN = 24;
+	private static final int LEFT_KNEE_DOWN = 27;
+	private static final int RIGHT_KNEE_DOWN = 30;
+	private static final int STRIDE = 33;
+
+	private static final Vector3f DOWN = new Vector3f(0, -1, 0);
+
+	private static final int HEAD = SkeletonConfigValue.HEAD.ordinal();
+	private static final int NECK = SkeletonConfigValue.NECK.ordinal();
+	private static final int TORSO = SkeletonConfigValue.TORSO.ordinal();
+	private static final int CHEST = SkeletonConfigValue.CHEST.ordinal();
+	private static final int WAIST = SkeletonConfigValue.WAIST.ordinal();
+	private static final int HIPS_WIDTH = SkeletonConfigValue.HIPS_WIDTH.ordinal();
+	private static final int LEGS_LENGTH = SkeletonConfigValue.LEGS_LENGTH.ordinal();
+	private static final int KNEE_HEIGHT = SkeletonConfigValue.KNEE_HEIGHT.ordinal();
+
+	private final float[] basis;
+	private final int frameCount;
+
+	/**
+	 * Poses a skeleton from every frame in order, like
+	 * {@link SimpleSkeleton#setPoseFromFrame(TrackerPositionIndex)} would, and
+	 * stores the resulting bone directions. Nodes without a tracker keep the
+	 * rotation of the previous frame.
+	 */
+	public FrameBasis(PoseFrames frames) {
+		this.frameCount = frames.getMaxFrameCount();
+		this.basis = new float[frameCount * STRIDE];
+
+		SimpleSkeleton skeleton = new SimpleSkeleton();
+		TrackerFrame[] trackerBuffer = new TrackerFrame[frames.getTrackerCount()];
+		TrackerPositionIndex<TrackerFrame> trackerIndex = new TrackerPositionIndex<TrackerFrame>();
+		Vector3f vec = new Vector3f();
+
+		for(int frame = 0; frame < frameCount; ++frame) {
+			frames.getFrames(frame, trackerBuffer, trackerIndex);
+			skeleton.setPoseFromFrame(trackerIndex);
+
+			int offset = frame * STRIDE;
+			put(offset + HMD_POSITION, skeleton.getNode("HMD").worldTransform.getTranslation());
+			put(offset + HEAD_FORWARD, rotate(skeleton.getNode("HMD"), Vector3f.UNIT_Z, vec));
+			put(offset + HEAD_DOWN, rotate(skeleton.getNode("Head"), DOWN, vec));
+			put(offset + NECK_DOWN, rotate(skeleton.getNode("Neck"), DOWN, vec));
+			put(offset + CHEST_DOWN, rotate(skeleton.getNode("Chest"), DOWN, vec));
+			put(offset + WAIST_DOWN, rotate(skeleton.getNode("Waist"), DOWN, vec));
+			put(offset + HIP_RIGHT, rotate(skeleton.getNode("Hip"), Vector3f.UNIT_X, vec));
+			put(offset + LEFT_HIP_DOWN, rotate(skeleton.getNode("Left-Hip"), DOWN, vec));
+			put(offset + RIGHT_HIP_DOWN, rotate(skeleton.getNode("Right-Hip"), DOWN, vec));
+			put(offset + LEFT_KNEE_DOWN, rotate(skeleton.getNode("Left-Knee"), DOWN, vec));
+			put(offset + RIGHT_KNEE_DOWN, rotate(skeleton.getNode("Right-Knee"), DOWN, vec));
+		}
+	}
+
+	private static Vector3f rotate(TransformNode node, Vector3f direction, Vector3f store) {
+		Quaternion rotation = node.worldTransform.getRotation();
+		return rotation.mult(direction, store);
+	}
+
+	private void put(int offset, Vector3f vec) {
+		basis[offset] = vec.x;
+		basis[offset + 1] = vec.y;
+		basis[offset + 2] = vec.z;
+	}
+
+	private void add(int offset, float length, Vector3f store) {
+		store.x += basis[offset] * length;
+		store.y += basis[offset + 1] * length;
+		store.z += basis[offset + 2] * length;
+	}
+
+	public int getFrameCount() {
+		return frameCount;
+	}
+
+	/**
+	 * Calculates the position of the same node as
+	 * {@link SimpleSkeleton#getNodePosition(TrackerPosition)}
+	 * @param lengths bone lengths indexed by {@link SkeletonConfigValue#ordinal()}
+	 * @return store, or null if there's no node for the position
+	 */
+	public Vector3f getNodePosition(int frame, TrackerPosition position, float[] lengths, Vector3f store) {
+		if(position == null) {
+			return null;
+		}
+
+		switch(position) {
+		case HMD:
+			return getTorsoPosition(frame, 0, lengths, store);
+		case CHEST:
+			return getTorsoPosition(frame, 3, lengths, store);
+		case WAIST:
+			return getTorsoPosition(frame, 4, lengths, store);
+		case HIP:
+			return getTorsoPosition(frame, 5, lengths, store);
+		case LEFT_LEG:
+			return getLegPosition(frame, true, false, lengths, store);
+		case RIGHT_LEG:
+			return getLegPosition(frame, false, false, lengths, store);
+		case LEFT_ANKLE:
+			return getLegPosition(frame, true, true, lengths, store);
+		case RIGHT_ANKLE:
+			return getLegPosition(frame, false, true, lengths, store);
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * @param depth number of bones to follow from the HMD, 0 for the HMD
+	 * itself up to 5 for the hip
+	 */
+	private Vector3f getTorsoPosition(int frame, int depth, float[] lengths, Vector3f store) {
+		int offset = frame * STRIDE;
+		store.set(basis[offset + HMD_POSITION], basis[offset + HMD_POSITION + 1], basis[offset + HMD_POSITION + 2]);
+		if(depth > 0)
+			add(offset + HEAD_FORWARD, lengths[HEAD], store);
+		if(depth > 1)
+			add(offset + HEAD_DOWN, lengths[NECK], store);
+		if(depth > 2)
+			add(offset + NECK_DOWN, lengths[CHEST], store);
+		if(depth > 3)
+			add(offset + CHEST_DOWN, lengths[TORSO] - lengths[CHEST] - lengths[WAIST], store);
+		if(depth > 4)
+			add(offset + WAIST_DOWN, lengths[WAIST], store);
+		return store;
+	}
+
+	private Vector3f getLegPosition(int frame, boolean left, boolean ankle, float[] lengths, Vector3f store) {
+		int offset = frame * STRIDE;
+		getTorsoPosition(frame, 5, lengths, store);
+		add(offset + HIP_RIGHT, left ? -lengths[HIPS_WIDTH] / 2f : lengths[HIPS_WIDTH] / 2f, store);
+		add(offset + (left ? LEFT_HIP_DOWN : RIGHT_HIP_DOWN), lengths[LEGS_LENGTH] - lengths[KNEE_HEIGHT], store);
+		if(ankle)
+			add(offset + (left ? LEFT_KNEE_DOWN : RIGHT_KNEE_DOWN), lengths[KNEE_HEIGHT], store);
+		return store;
+	}
+}
@@ -0,0 +1,43 @@
+package dev.slimevr.autobone;
+
+import java.util.Arrays;
+
+import io.eiren.vr.processor.SkeletonConfigValue;
+
+/**
+ * Gradient descent with classical momentum. With a momentum of 0 this is
+ * plain gradient descent.
+ */
+public class MomentumOptimizer implements AutoBoneOptimizer {
+	
+	public static final float DEFAULT_LEARNING_RATE = 0.05f;
+	public static final float DEFAULT_MOMENTUM = 0.9f;
+	
+	public final float learningRate;
+	public final float momentum;
+	
+	private final float[] velocity = new float[SkeletonConfigValue.values.length];
+	
+	public MomentumOptimizer(float learningRate, float momentum) {
+		if(momentum < 0f || momentum >= 1f)
+			throw new IllegalArgumentException("Momentum must be between 0 and 1: " + momentum);
+		this.learningRate = learningRate;
+		this.momentum = momentum;
+	}
+	
+	@Override
+	public void reset() {
+		Arrays.fill(velocity, 0f);
+	}
+	
+	@Override
+	public void step(float[] lengths, float[] gradient, boolean[] mask, float rateScale) {
+		float rate = learningRate * rateScale;
+		for(int i = 0; i < velocity.length; ++i) {
+			if(!mask[i])
+				continue;
+			velocity[i] = momentum * velocity[i] - rate * gradient[i];
+			lengths[i] += velocity[i];
+		}
+	}
+}
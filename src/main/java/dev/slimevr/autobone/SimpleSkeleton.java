@@ -10,9 +10,11 @@ import dev.slimevr.poserecorder.TrackerFrame;
 import dev.slimevr.poserecorder.TrackerFrameData;
 import io.eiren.vr.processor.HumanSkeletonWithLegs;
 import io.eiren.vr.processor.HumanSkeletonWithWaist;
+import io.eiren.vr.processor.SkeletonConfigStore;
+import io.eiren.vr.processor.SkeletonConfigValue;
 import io.eiren.vr.processor.TransformNode;
 import io.eiren.vr.trackers.TrackerPosition;
-import io.eiren.vr.trackers.TrackerUtils;
+import io.eiren.vr.trackers.TrackerPositionIndex;
 import io.eiren.yaml.YamlFile;
 
 public class SimpleSkeleton {
@@ -72,6 +74,8 @@ public class SimpleSkeleton {
 	private Quaternion rotBuf1 = new Quaternion();
 	private Quaternion rotBuf2 = new Quaternion();
 	
+	private final TrackerPositionIndex<TrackerFrame> frameIndex = new TrackerPositionIndex<TrackerFrame>();
+	
 	public SimpleSkeleton() {
 		// Assemble skeleton to hip
 		hmdNode.attachChild(headNode);
@@ -130,9 +134,30 @@ public class SimpleSkeleton {
 		this(configs, null);
 	}
 	
+	public SimpleSkeleton(SkeletonConfigStore configs, SkeletonConfigStore altConfigs) {
+		// Initialize
+		this();
+		
+		// Set configs
+		if(altConfigs != null) {
+			// Set alts first, so if there's any overlap it doesn't affect the values
+			setSkeletonConfigs(altConfigs);
+		}
+		setSkeletonConfigs(configs);
+	}
+	
+	public SimpleSkeleton(SkeletonConfigStore configs) {
+		this(configs, null);
+	}
+	
 	public void setPoseFromFrame(TrackerFrame[] frame) {
+		frameIndex.rebuild(frame);
+		setPoseFromFrame(frameIndex);
+	}
+	
+	public void setPoseFromFrame(TrackerPositionIndex<TrackerFrame> frame) {
 		
-		TrackerFrame hmd = TrackerUtils.findTrackerForBodyPosition(frame, TrackerPosition.HMD);
+		TrackerFrame hmd = frame.get(TrackerPosition.HMD);
 		
 		if(hmd != null) {
 			if(hmd.hasData(TrackerFrameData.ROTATION)) {
@@ -144,25 +169,25 @@ public class SimpleSkeleton {
 				hmdNode.localTransform.setTranslation(hmd.position);
 			}
 		}
-		TrackerFrame chest = TrackerUtils.findTrackerForBodyPosition(frame, TrackerPosition.CHEST, TrackerPosition.WAIST, TrackerPosition.HIP);
+		TrackerFrame chest = frame.get(TrackerPosition.CHEST, TrackerPosition.WAIST, TrackerPosition.HIP);
 		setRotation(chest, neckNode);
 		
-		TrackerFrame waist = TrackerUtils.findTrackerForBodyPosition(frame, TrackerPosition.WAIST, TrackerPosition.CHEST, TrackerPosition.HIP);
+		TrackerFrame waist = frame.get(TrackerPosition.WAIST, TrackerPosition.CHEST, TrackerPosition.HIP);
 		setRotation(waist, chestNode);
 		
-		TrackerFrame leftLeg = TrackerUtils.findTrackerForBodyPosition(frame, TrackerPosition.LEFT_LEG);
-		TrackerFrame rightLeg = TrackerUtils.findTrackerForBodyPosition(frame, TrackerPosition.RIGHT_LEG);
+		TrackerFrame leftLeg = frame.get(TrackerPosition.LEFT_LEG);
+		TrackerFrame rightLeg = frame.get(TrackerPosition.RIGHT_LEG);
 		
-		TrackerFrame hip = TrackerUtils.findTrackerForBodyPosition(frame, TrackerPosition.HIP, TrackerPosition.WAIST, TrackerPosition.CHEST);
+		TrackerFrame hip = frame.get(TrackerPosition.HIP, TrackerPosition.WAIST, TrackerPosition.CHEST);
 		averagePelvis(hip, leftLeg, rightLeg);
 		
 		setRotation(leftLeg, leftHipNode);
 		setRotation(rightLeg, rightHipNode);
 		
-		TrackerFrame leftAnkle = TrackerUtils.findTrackerForBodyPosition(frame, TrackerPosition.LEFT_ANKLE);
+		TrackerFrame leftAnkle = frame.get(TrackerPosition.LEFT_ANKLE);
 		setRotation(leftAnkle, rightKneeNode);
 		
-		TrackerFrame rightAnkle = TrackerUtils.findTrackerForBodyPosition(frame, TrackerPosition.RIGHT_ANKLE);
+		TrackerFrame rightAnkle = frame.get(TrackerPosition.RIGHT_ANKLE);
 		setRotation(rightAnkle, leftKneeNode);
 		
 		updatePose();
@@ -205,34 +230,53 @@ public class SimpleSkeleton {
 		configs.forEach(this::setSkeletonConfig);
 	}
 	
+	public void setSkeletonConfigs(SkeletonConfigStore configs) {
+		for(SkeletonConfigValue config : SkeletonConfigValue.values) {
+			if(configs.has(config)) {
+				setSkeletonConfig(config, configs.get(config), false);
+			}
+		}
+	}
+	
 	public void setSkeletonConfig(String joint, float newLength) {
 		setSkeletonConfig(joint, newLength, false);
 	}
 	
 	public void setSkeletonConfig(String joint, float newLength, boolean updatePose) {
-		switch(joint) {
-		case "Head":
+		SkeletonConfigValue config = SkeletonConfigValue.getByStringValue(joint);
+		if(config != null) {
+			setSkeletonConfig(config, newLength, updatePose);
+		}
+	}
+	
+	public void setSkeletonConfig(SkeletonConfigValue config, float newLength) {
+		setSkeletonConfig(config, newLength, false);
+	}
+	
+	public void setSkeletonConfig(SkeletonConfigValue config, float newLength, boolean updatePose) {
+		switch(config) {
+		case HEAD:
 			headShift = newLength;
 			headNode.localTransform.setTranslation(0, 0, headShift);
 			if(updatePose) {
 				headNode.update();
 			}
 			break;
-		case "Neck":
+		case NECK:
 			neckLength = newLength;
 			neckNode.localTransform.setTranslation(0, -neckLength, 0);
 			if(updatePose) {
 				neckNode.update();
 			}
 			break;
-		case "Torso":
+		case TORSO:
 			torsoLength = newLength;
 			waistNode.localTransform.setTranslation(0, (chestDistance - torsoLength + waistDistance), 0);
 			if(updatePose) {
 				hipNode.update();
 			}
 			break;
-		case "Chest":
+		case CHEST:
 			chestDistance = newLength;
 			chestNode.localTransform.setTranslation(0, -chestDistance, 0);
 			waistNode.localTransform.setTranslation(0, (chestDistance - torsoLength + waistDistance), 0);
@@ -240,7 +284,7 @@ public class SimpleSkeleton {
 				chestNode.update();
 			}
 			break;
-		case "Waist":
+		case WAIST:
 			waistDistance = newLength;
 			waistNode.localTransform.setTranslation(0, (chestDistance - torsoLength + waistDistance), 0);
 			hipNode.localTransform.setTranslation(0, -waistDistance, 0);
@@ -248,7 +292,7 @@ public class SimpleSkeleton {
 				waistNode.update();
 			}
 			break;	
-		case "Hips width":
+		case HIPS_WIDTH:
 			hipsWidth = newLength;
 			leftHipNode.localTransform.setTranslation(-hipsWidth / 2, 0, 0);
 			rightHipNode.localTransform.setTranslation(hipsWidth / 2, 0, 0);
@@ -257,7 +301,7 @@ public class SimpleSkeleton {
 				rightHipNode.update();
 			}
 			break;
-		case "Knee height":
+		case KNEE_HEIGHT:
 			kneeHeight = newLength;
 			leftAnkleNode.localTransform.setTranslation(0, -kneeHeight, 0);
 			rightAnkleNode.localTransform.setTranslation(0, -kneeHeight, 0);
@@ -268,7 +312,7 @@ public class SimpleSkeleton {
 				rightKneeNode.update();
 			}
 			break;
-		case "Legs length":
+		case LEGS_LENGTH:
 			legsLength = newLength;
 			leftKneeNode.localTransform.setTranslation(0, -(legsLength - kneeHeight), 0);
 			rightKneeNode.localTransform.setTranslation(0, -(legsLength - kneeHeight), 0);
@@ -277,30 +321,53 @@ public class SimpleSkeleton {
 				rightKneeNode.update();
 			}
 			break;
+		default:
+			break;
 		}
 	}
 	
 	public Float getSkeletonConfig(String joint) {
-		switch(joint) {
-		case "Head":
+		SkeletonConfigValue config = SkeletonConfigValue.getByStringValue(joint);
+		return config != null && hasSkeletonConfig(config) ? getSkeletonConfig(config) : null;
+	}
+	
+	public boolean hasSkeletonConfig(SkeletonConfigValue config) {
+		switch(config) {
+		case HEAD:
+		case NECK:
+		case TORSO:
+		case WAIST:
+		case CHEST:
+		case HIPS_WIDTH:
+		case KNEE_HEIGHT:
+		case LEGS_LENGTH:
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	public float getSkeletonConfig(SkeletonConfigValue config) {
+		switch(config) {
+		case HEAD:
 			return headShift;
-		case "Neck":
+		case NECK:
 			return neckLength;
-		case "Torso":
+		case TORSO:
 			return torsoLength;	
-		case "Waist":
+		case WAIST:
 			return waistDistance;
-		case "Chest":
+		case CHEST:
 			return chestDistance;
-		case "Hips width":
+		case HIPS_WIDTH:
 			return hipsWidth;
-		case "Knee height":
+		case KNEE_HEIGHT:
 			return kneeHeight;
-		case "Legs length":
+		case LEGS_LENGTH:
 			return legsLength;
+		default:
+			return 0f;
 		}
-		
-		return null;
 	}
 	
 	public void updatePose() {
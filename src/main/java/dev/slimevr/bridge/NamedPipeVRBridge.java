@@ -13,6 +13,8 @@ import com.sun.jna.platform.win32.WinNT.HANDLE;
 import com.sun.jna.ptr.IntByReference;
 
 import dev.slimevr.bridge.Pipe.PipeState;
+import dev.slimevr.tracing.LatencyStage;
+import dev.slimevr.tracing.LatencyTracer;
 import io.eiren.util.collections.FastList;
 import io.eiren.util.logging.LogManager;
 import io.eiren.vr.VRServer;
@@ -45,6 +47,7 @@ public class NamedPipeVRBridge extends Thread implements Bridge {
 	
 	private final HMDTracker internalHMDTracker = new HMDTracker("itnernal://HMD");
 	private final AtomicBoolean newHMDData = new AtomicBoolean(false);
+	private final LatencyStage latencyStage = LatencyTracer.ENABLED ? LatencyTracer.getBridgeStage("Named pipe") : null;
 	
 	public NamedPipeVRBridge(HMDTracker hmd, List<? extends Tracker> shareTrackers, VRServer server) {
 		super("Named Pipe VR Bridge");
@@ -99,6 +102,8 @@ public class NamedPipeVRBridge extends Thread implements Bridge {
 				it.position.set(vBuffer2);
 			if(t.getRotation(qBuffer2))
 				it.rotation.set(qBuffer2);
+			if(LatencyTracer.ENABLED)
+				latencyStage.record(t.getSampleTime());
 		}
 	}
 	
@@ -16,6 +16,8 @@ import dev.slimevr.bridge.ProtobufMessages.ProtobufMessage;
 import dev.slimevr.bridge.ProtobufMessages.TrackerAdded;
 import dev.slimevr.bridge.ProtobufMessages.TrackerStatus;
 import dev.slimevr.bridge.ProtobufMessages.UserAction;
+import dev.slimevr.tracing.LatencyStage;
+import dev.slimevr.tracing.LatencyTracer;
 import io.eiren.util.ann.Synchronize;
 import io.eiren.util.ann.ThreadSafe;
 import io.eiren.util.ann.VRServerThread;
@@ -48,14 +50,37 @@ public abstract class ProtobufBridge<T extends VRTracker> implements Bridge {
 	private T hmdTracker;
 	private final HMDTracker hmd;
 	protected final String bridgeName;
+	private final LatencyStage latencyStage;
 	
 	public ProtobufBridge(String bridgeName, HMDTracker hmd) {
 		this.bridgeName = bridgeName;
 		this.hmd = hmd;
+		this.latencyStage = LatencyTracer.ENABLED ? LatencyTracer.getBridgeStage(bridgeName) : null;
 	}
 
 	@BridgeThread
 	protected abstract boolean sendMessageReal(ProtobufMessage message);
+	
+	@ThreadSafe
+	public String getBridgeName() {
+		return bridgeName;
+	}
+	
+	/**
+	 * @return the number of received messages waiting for the server thread
+	 */
+	@ThreadSafe
+	public int getInputQueueSize() {
+		return inputQueue.size();
+	}
+	
+	/**
+	 * @return the number of messages waiting to be sent
+	 */
+	@ThreadSafe
+	public int getOutputQueueSize() {
+		return outputQueue.size();
+	}
 
 	@BridgeThread
 	protected void messageRecieved(ProtobufMessage message) {
@@ -105,6 +130,8 @@ public abstract class ProtobufBridge<T extends VRTracker> implements Bridge {
 			return;
 		for(int i = 0; i < sharedTrackers.size(); ++i) {
 			writeTrackerUpdate(sharedTrackers.get(i));
+			if(LatencyTracer.ENABLED)
+				latencyStage.record(sharedTrackers.get(i).getSampleTime());
 		}
 	}
 
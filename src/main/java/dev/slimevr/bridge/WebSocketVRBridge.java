@@ -17,6 +17,8 @@ import org.json.JSONObject;
 import com.jme3.math.Quaternion;
 import com.jme3.math.Vector3f;
 
+import dev.slimevr.tracing.LatencyStage;
+import dev.slimevr.tracing.LatencyTracer;
 import io.eiren.util.collections.FastList;
 import io.eiren.util.logging.LogManager;
 import io.eiren.vr.Main;
@@ -38,6 +40,7 @@ public class WebSocketVRBridge extends WebSocketServer implements Bridge {
 	
 	private final HMDTracker internalHMDTracker = new HMDTracker("itnernal://HMD");
 	private final AtomicBoolean newHMDData = new AtomicBoolean(false);
+	private final LatencyStage latencyStage = LatencyTracer.ENABLED ? LatencyTracer.getBridgeStage("WebSocket") : null;
 	
 	public WebSocketVRBridge(HMDTracker hmd, List<? extends ShareableTracker> shareTrackers, VRServer server) {
 		super(new InetSocketAddress(21110), Collections.<Draft>singletonList(new Draft_6455()));
@@ -71,6 +74,8 @@ public class WebSocketVRBridge extends WebSocketServer implements Bridge {
 				it.position.set(vBuffer);
 			if(t.getRotation(qBuffer))
 				it.rotation.set(qBuffer);
+			if(LatencyTracer.ENABLED)
+				latencyStage.record(t.getSampleTime());
 		}
 	}
 
@@ -160,6 +165,22 @@ public class WebSocketVRBridge extends WebSocketServer implements Bridge {
 		case "calibrate":
 			Main.vrServer.resetTrackersYaw();
 			break;
+		case "latency_dump":
+			String dump = LatencyTracer.dump();
+			LogManager.log.info("[WebSocket] Latency:\n" + dump);
+			JSONObject message = new JSONObject();
+			message.put("type", "latency");
+			message.put("dump", dump);
+			conn.send(message.toString());
+			break;
+		case "profiler_dump":
+			String profile = Main.vrServer.getTickProfiler().getProfile().dump();
+			LogManager.log.info("[WebSocket] Tick profile:\n" + profile);
+			JSONObject profileMessage = new JSONObject();
+			profileMessage.put("type", "profiler");
+			profileMessage.put("dump", profile);
+			conn.send(profileMessage.toString());
+			break;
 		}
 	}
 
@@ -0,0 +1,100 @@
+package dev.slimevr.filtering;
+
+import java.io.File;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+
+import dev.slimevr.poserecorder.PoseFrameIO;
+import dev.slimevr.poserecorder.PoseFrameTracker;
+import dev.slimevr.poserecorder.PoseFrames;
+import dev.slimevr.poserecorder.TrackerFrame;
+import dev.slimevr.poserecorder.TrackerFrameData;
+import io.eiren.util.StringUtils;
+
+/**
+ * Offline evaluation of a filter config over a .pfr recording. For every
+ * tracker prints the jitter before and after filtering, and how far the
+ * filtered rotation deviates from the recorded one on average, which is
+ * mostly lag.
+ * <p>Jitter is the mean change in rotation between consecutive frame
+ * deltas, so steady motion doesn't count as jitter.
+ * <p>Usage: {@code FilterEvaluation <recording.pfr> <frame interval ms> <filters>}
+ */
+public class FilterEvaluation {
+	
+	public static void main(String[] args) {
+		if(args.length < 3) {
+			System.err.println("Usage: FilterEvaluation <recording.pfr> <frame interval ms> <filters>");
+			System.exit(1);
+			return;
+		}
+		PoseFrames frames = PoseFrameIO.readFromFile(new File(args[0]));
+		if(frames == null) {
+			System.err.println("Unable to read recording " + args[0]);
+			System.exit(1);
+			return;
+		}
+		long interval = (long) (Float.parseFloat(args[1]) * 1000000L);
+		for(PoseFrameTracker tracker : frames.getTrackers()) {
+			RotationFilterChain filter = RotationFilters.parse(args[2]);
+			if(filter == null) {
+				System.err.println("No filters given");
+				System.exit(1);
+				return;
+			}
+			evaluate(tracker, filter, interval);
+		}
+	}
+	
+	public static void evaluate(PoseFrameTracker tracker, RotationFilter filter, long interval) {
+		Quaternion raw = new Quaternion();
+		Quaternion filtered = new Quaternion();
+		JitterMeter rawJitter = new JitterMeter();
+		JitterMeter filteredJitter = new JitterMeter();
+		float sumDeviation = 0f;
+		int count = 0;
+		for(int i = 0; i < tracker.getFrameCount(); ++i) {
+			TrackerFrame frame = tracker.safeGetFrame(i);
+			if(frame == null || !frame.hasData(TrackerFrameData.ROTATION))
+				continue;
+			raw.set(frame.rotation);
+			filtered.set(raw);
+			filter.filter(filtered, i * interval);
+			rawJitter.add(raw);
+			filteredJitter.add(filtered);
+			sumDeviation += RotationFilters.angleBetween(raw, filtered);
+			count++;
+		}
+		if(count == 0)
+			return;
+		System.out.println(tracker.name + " (" + count + " frames): jitter "
+				+ StringUtils.prettyNumber(rawJitter.getMean() * FastMath.RAD_TO_DEG, 3) + "° -> "
+				+ StringUtils.prettyNumber(filteredJitter.getMean() * FastMath.RAD_TO_DEG, 3) + "°, mean deviation "
+				+ StringUtils.prettyNumber(sumDeviation / count * FastMath.RAD_TO_DEG, 3) + "°");
+	}
+	
+	private static class JitterMeter {
+		
+		private final Quaternion previous = new Quaternion();
+		private final Quaternion delta = new Quaternion();
+		private final Quaternion previousDelta = new Quaternion();
+		private int samples = 0;
+		private float sum = 0f;
+		
+		public void add(Quaternion rotation) {
+			if(samples > 0) {
+				delta.set(previous).inverseLocal().multLocal(rotation);
+				if(samples > 1)
+					sum += RotationFilters.angleBetween(delta, previousDelta);
+				previousDelta.set(delta);
+			}
+			previous.set(rotation);
+			samples++;
+		}
+		
+		public float getMean() {
+			return samples > 2 ? sum / (samples - 2) : 0f;
+		}
+	}
+}
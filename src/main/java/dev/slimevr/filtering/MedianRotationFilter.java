@@ -0,0 +1,67 @@
+package dev.slimevr.filtering;
+
+import com.jme3.math.Quaternion;
+
+/**
+ * Outputs the component-wise median of the last N samples, which removes
+ * single sample spikes without smoothing out steady motion. Samples are
+ * flipped to the same hemisphere as the newest one before comparing.
+ * <p>The window is at least 3 samples, the median of 2 is their average and
+ * would only halve a spike.
+ */
+public class MedianRotationFilter implements RotationFilter {
+	
+	public static final int MIN_SIZE = 3;
+	
+	private final float[][] samples;
+	private final float[] sorted;
+	private int head = 0;
+	private int count = 0;
+	
+	public MedianRotationFilter(int size) {
+		if(size < MIN_SIZE)
+			throw new IllegalArgumentException("Median rotation filter needs at least " + MIN_SIZE + " samples to remove spikes, got " + size);
+		this.samples = new float[size][4];
+		this.sorted = new float[size];
+	}
+	
+	@Override
+	public void filter(Quaternion rotation, long time) {
+		float[] sample = samples[head];
+		sample[0] = rotation.getX();
+		sample[1] = rotation.getY();
+		sample[2] = rotation.getZ();
+		sample[3] = rotation.getW();
+		int newest = head;
+		head = (head + 1) % samples.length;
+		if(count < samples.length)
+			count++;
+		if(count < MIN_SIZE)
+			return;
+		rotation.set(median(newest, 0), median(newest, 1), median(newest, 2), median(newest, 3));
+		rotation.normalizeLocal();
+	}
+	
+	private float median(int newest, int component) {
+		float[] reference = samples[newest];
+		for(int i = 0; i < count; ++i) {
+			float[] s = samples[i];
+			float dot = s[0] * reference[0] + s[1] * reference[1] + s[2] * reference[2] + s[3] * reference[3];
+			float v = dot < 0 ? -s[component] : s[component];
+			// Insertion sort, the window is small
+			int j = i - 1;
+			while(j >= 0 && sorted[j] > v) {
+				sorted[j + 1] = sorted[j];
+				j--;
+			}
+			sorted[j + 1] = v;
+		}
+		return (count & 1) == 1 ? sorted[count / 2] : (sorted[count / 2 - 1] + sorted[count / 2]) * 0.5f;
+	}
+	
+	@Override
+	public void reset() {
+		head = 0;
+		count = 0;
+	}
+}
@@ -0,0 +1,61 @@
+package dev.slimevr.filtering;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+
+/**
+ * One Euro filter (Casiez et al. 2012) on the rotation as a whole: a low-pass
+ * slerp whose cutoff frequency rises with the angular speed, so slow motion
+ * is smoothed heavily while fast motion has little lag.
+ */
+public class OneEuroRotationFilter implements RotationFilter {
+	
+	private final Quaternion state = new Quaternion();
+	private final float minCutoff;
+	private final float beta;
+	private final float derivativeCutoff;
+	private float speed = 0f;
+	private long lastTime = -1;
+	
+	/**
+	 * @param minCutoff cutoff frequency at rest, in Hz
+	 * @param beta how much the cutoff rises per radian per second of speed
+	 * @param derivativeCutoff cutoff frequency for the speed estimate, in Hz
+	 */
+	public OneEuroRotationFilter(float minCutoff, float beta, float derivativeCutoff) {
+		if(minCutoff <= 0f || derivativeCutoff <= 0f || beta < 0f)
+			throw new IllegalArgumentException("Invalid One Euro parameters: " + minCutoff + ", " + beta + ", " + derivativeCutoff);
+		this.minCutoff = minCutoff;
+		this.beta = beta;
+		this.derivativeCutoff = derivativeCutoff;
+	}
+	
+	@Override
+	public void filter(Quaternion rotation, long time) {
+		if(lastTime < 0 || time <= lastTime) {
+			state.set(rotation);
+			speed = 0f;
+			lastTime = time;
+			return;
+		}
+		float dt = (time - lastTime) / 1e9f;
+		lastTime = time;
+		
+		float rawSpeed = RotationFilters.angleBetween(state, rotation) / dt;
+		speed += (rawSpeed - speed) * smoothingFactor(dt, derivativeCutoff);
+		
+		RotationFilters.slerpShortest(state, rotation, smoothingFactor(dt, minCutoff + beta * speed));
+		rotation.set(state);
+	}
+	
+	private static float smoothingFactor(float dt, float cutoff) {
+		float tau = 1f / (FastMath.TWO_PI * cutoff);
+		return 1f / (1f + tau / dt);
+	}
+	
+	@Override
+	public void reset() {
+		lastTime = -1;
+		speed = 0f;
+	}
+}
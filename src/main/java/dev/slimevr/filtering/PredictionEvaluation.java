@@ -0,0 +1,84 @@
+package dev.slimevr.filtering;
+
+import java.io.File;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+
+import dev.slimevr.poserecorder.PoseFrameIO;
+import dev.slimevr.poserecorder.PoseFrameTracker;
+import dev.slimevr.poserecorder.PoseFrames;
+import dev.slimevr.poserecorder.TrackerFrame;
+import dev.slimevr.poserecorder.TrackerFrameData;
+import io.eiren.util.StringUtils;
+import io.eiren.vr.trackers.RotationPredictor;
+
+/**
+ * Offline evaluation of {@link RotationPredictor} over a .pfr recording.
+ * Replays every tracker's rotations with the server ticking each
+ * millisecond in between, and for every horizon prints the prediction
+ * error next to the error of not predicting at all.
+ * <p>Frames use the recorded timestamps when the recording has them, and
+ * a frame that repeats the previous rotation is not treated as a new sample.
+ * <p>Usage: {@code PredictionEvaluation <recording.pfr> <frame interval ms> [horizons ms, comma separated]}
+ */
+public class PredictionEvaluation {
+
+	private static final long TICK_INTERVAL = 1000000L;
+	private static final String DEFAULT_HORIZONS = "5,10,20,30,50";
+
+	public static void main(String[] args) {
+		if(args.length < 2) {
+			System.err.println("Usage: PredictionEvaluation <recording.pfr> <frame interval ms> [horizons ms, comma separated]");
+			System.exit(1);
+			return;
+		}
+		PoseFrames frames = PoseFrameIO.readFromFile(new File(args[0]));
+		if(frames == null) {
+			System.err.println("Unable to read recording " + args[0]);
+			System.exit(1);
+			return;
+		}
+		long interval = (long) (Float.parseFloat(args[1]) * 1000000L);
+		String[] horizons = (args.length > 2 ? args[2] : DEFAULT_HORIZONS).split(",");
+		for(PoseFrameTracker tracker : frames.getTrackers()) {
+			for(String horizon : horizons)
+				evaluate(frames, tracker, (long) (Float.parseFloat(horizon.trim()) * 1000000L), interval);
+		}
+	}
+
+	public static RotationPredictor.ErrorSnapshot evaluate(PoseFrames frames, PoseFrameTracker tracker, long horizon, long interval) {
+		RotationPredictor predictor = new RotationPredictor();
+		Quaternion previous = new Quaternion();
+		Quaternion predicted = new Quaternion();
+		long tickTime = 0;
+		boolean hasPrevious = false;
+		for(int i = 0; i < tracker.getFrameCount(); ++i) {
+			TrackerFrame frame = tracker.safeGetFrame(i);
+			if(frame == null || !frame.hasData(TrackerFrameData.ROTATION))
+				continue;
+			if(hasPrevious && frame.rotation.equals(previous))
+				continue;
+			long time = frames.hasFrameTimes() && frames.getFrameTime(i) >= 0 ? frames.getFrameTime(i) : i * interval;
+			// Ticks that ran since the last sample, predicting from it
+			if(predictor.hasSample()) {
+				for(; tickTime < time; tickTime += TICK_INTERVAL)
+					predictor.predict(tickTime, horizon, predicted);
+			} else {
+				tickTime = time;
+			}
+			predictor.addSample(frame.rotation, time);
+			previous.set(frame.rotation);
+			hasPrevious = true;
+		}
+		RotationPredictor.ErrorSnapshot errors = predictor.getErrorStats().snapshot();
+		if(errors.count > 0) {
+			System.out.println(tracker.name + " at " + StringUtils.prettyNumber(horizon / 1000000f, 1) + " ms (" + errors.count + " samples): mean "
+					+ StringUtils.prettyNumber(errors.meanError * FastMath.RAD_TO_DEG, 3) + "°, rms "
+					+ StringUtils.prettyNumber(errors.rmsError * FastMath.RAD_TO_DEG, 3) + "°, max "
+					+ StringUtils.prettyNumber(errors.maxError * FastMath.RAD_TO_DEG, 3) + "°, without prediction "
+					+ StringUtils.prettyNumber(errors.meanBaselineError * FastMath.RAD_TO_DEG, 3) + "°");
+		}
+		return errors;
+	}
+}
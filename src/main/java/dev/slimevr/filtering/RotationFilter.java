@@ -0,0 +1,21 @@
+package dev.slimevr.filtering;
+
+import com.jme3.math.Quaternion;
+
+/**
+ * Smoothing filter for a stream of rotation samples. Implementations keep
+ * their state between calls and must not allocate while filtering.
+ */
+public interface RotationFilter {
+	
+	/**
+	 * Filters the sample in place
+	 * @param time sample time in nanoseconds, on any monotonic clock
+	 */
+	public void filter(Quaternion rotation, long time);
+	
+	/**
+	 * Forgets all previous samples
+	 */
+	public void reset();
+}
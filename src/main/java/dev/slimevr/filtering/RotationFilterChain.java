@@ -0,0 +1,31 @@
+package dev.slimevr.filtering;
+
+import com.jme3.math.Quaternion;
+
+/**
+ * Applies several filters in order
+ */
+public class RotationFilterChain implements RotationFilter {
+	
+	private final RotationFilter[] filters;
+	
+	public RotationFilterChain(RotationFilter... filters) {
+		this.filters = filters;
+	}
+	
+	@Override
+	public void filter(Quaternion rotation, long time) {
+		for(int i = 0; i < filters.length; ++i)
+			filters[i].filter(rotation, time);
+	}
+	
+	@Override
+	public void reset() {
+		for(int i = 0; i < filters.length; ++i)
+			filters[i].reset();
+	}
+	
+	public int size() {
+		return filters.length;
+	}
+}
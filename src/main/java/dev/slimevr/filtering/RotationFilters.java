@@ -0,0 +1,79 @@
+package dev.slimevr.filtering;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+
+import io.eiren.util.collections.FastList;
+
+/**
+ * Builds filter chains from their config string and holds shared math.
+ * <p>The config string is a comma separated list of filters applied in
+ * order, each one a name followed by colon separated parameters:
+ * <ul>
+ * <li>{@code median:<samples>}, at least 3 samples</li>
+ * <li>{@code oneeuro:<min cutoff Hz>:<beta>:<derivative cutoff Hz>}</li>
+ * <li>{@code slerp:<time constant ms>}</li>
+ * </ul>
+ * For example {@code "median:3, oneeuro:1.0:0.5:1.0"}.
+ */
+public final class RotationFilters {
+	
+	private RotationFilters() {
+		// Do not allow instantiating
+	}
+	
+	/**
+	 * @return the filter chain, or null if the config is empty
+	 * @throws IllegalArgumentException if the config can't be parsed
+	 */
+	public static RotationFilterChain parse(String config) {
+		if(config == null || config.trim().isEmpty())
+			return null;
+		FastList<RotationFilter> filters = new FastList<>();
+		for(String filterConfig : config.split(",")) {
+			String[] parts = filterConfig.trim().split(":");
+			try {
+				switch(parts[0].toLowerCase()) {
+				case "median":
+					checkParams(parts, 1);
+					filters.add(new MedianRotationFilter(Integer.parseInt(parts[1])));
+					break;
+				case "oneeuro":
+					checkParams(parts, 3);
+					filters.add(new OneEuroRotationFilter(Float.parseFloat(parts[1]), Float.parseFloat(parts[2]), Float.parseFloat(parts[3])));
+					break;
+				case "slerp":
+					checkParams(parts, 1);
+					filters.add(new SlerpRotationFilter(Float.parseFloat(parts[1])));
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown rotation filter: " + parts[0]);
+				}
+			} catch(NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid rotation filter parameters: " + filterConfig.trim(), e);
+			}
+		}
+		return new RotationFilterChain(filters.toArray(new RotationFilter[0]));
+	}
+	
+	private static void checkParams(String[] parts, int count) {
+		if(parts.length != count + 1)
+			throw new IllegalArgumentException("Rotation filter " + parts[0] + " takes " + count + " parameters, got " + (parts.length - 1));
+	}
+	
+	/**
+	 * Slerps {@code state} towards {@code target} along the shortest path
+	 */
+	public static void slerpShortest(Quaternion state, Quaternion target, float amount) {
+		if(state.dot(target) < 0f)
+			state.negateLocal();
+		state.slerp(target, amount);
+	}
+	
+	/**
+	 * @return angle between two rotations in radians
+	 */
+	public static float angleBetween(Quaternion q1, Quaternion q2) {
+		return 2f * FastMath.acos(Math.min(1f, Math.abs(q1.dot(q2))));
+	}
+}
@@ -0,0 +1,42 @@
+package dev.slimevr.filtering;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+
+/**
+ * Exponential smoothing, slerps the output towards every new sample by an
+ * amount that depends on the time since the previous sample, so the result
+ * doesn't change with the tracker's sample rate.
+ */
+public class SlerpRotationFilter implements RotationFilter {
+	
+	private final Quaternion state = new Quaternion();
+	private final float timeConstant;
+	private long lastTime = -1;
+	
+	/**
+	 * @param timeConstant smoothing time constant in milliseconds
+	 */
+	public SlerpRotationFilter(float timeConstant) {
+		if(timeConstant <= 0f)
+			throw new IllegalArgumentException("Time constant must be positive: " + timeConstant);
+		this.timeConstant = timeConstant * 1e6f;
+	}
+	
+	@Override
+	public void filter(Quaternion rotation, long time) {
+		if(lastTime >= 0 && time > lastTime) {
+			float amount = 1f - FastMath.exp(-(time - lastTime) / timeConstant);
+			RotationFilters.slerpShortest(state, rotation, amount);
+			rotation.set(state);
+		} else {
+			state.set(rotation);
+		}
+		lastTime = time;
+	}
+	
+	@Override
+	public void reset() {
+		lastTime = -1;
+	}
+}
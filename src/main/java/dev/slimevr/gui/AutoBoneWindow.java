@@ -10,7 +10,6 @@ import javax.swing.border.EmptyBorder;
 import java.awt.event.MouseEvent;
 import java.io.File;
 import java.util.List;
-import java.util.Map.Entry;
 import java.util.concurrent.Future;
 
 import io.eiren.util.StringUtils;
@@ -18,6 +17,7 @@ import io.eiren.util.ann.AWTThread;
 import io.eiren.util.collections.FastList;
 import io.eiren.util.logging.LogManager;
 import io.eiren.vr.VRServer;
+import io.eiren.vr.processor.SkeletonConfigValue;
 
 import javax.swing.event.MouseInputAdapter;
 
@@ -27,6 +27,7 @@ import dev.slimevr.autobone.AutoBone;
 import dev.slimevr.gui.swing.EJBox;
 import dev.slimevr.poserecorder.PoseFrames;
 import dev.slimevr.poserecorder.PoseFrameIO;
+import dev.slimevr.poserecorder.PoseFrameResampler;
 import dev.slimevr.poserecorder.PoseRecorder;
 
 public class AutoBoneWindow extends JFrame {
@@ -69,35 +70,51 @@ public class AutoBoneWindow extends JFrame {
 	private String getLengthsString() {
 		boolean first = true;
 		StringBuilder configInfo = new StringBuilder("");
-		for(Entry<String, Float> entry : autoBone.configs.entrySet()) {
+		for(SkeletonConfigValue config : SkeletonConfigValue.values) {
+			if(!autoBone.configs.has(config)) {
+				continue;
+			}
+			
 			if(!first) {
 				configInfo.append(", ");
 			} else {
 				first = false;
 			}
 			
-			configInfo.append(entry.getKey() + ": " + StringUtils.prettyNumber(entry.getValue() * 100f, 2));
+			configInfo.append(config.stringVal + ": " + StringUtils.prettyNumber(autoBone.configs.get(config) * 100f, 2));
 		}
 		
 		return configInfo.toString();
 	}
 	
+	private File getNextRecordingFile() {
+		if(!saveDir.isDirectory() && !saveDir.mkdirs()) {
+			LogManager.log.severe("[AutoBone] Failed to create the recording directory \"" + saveDir.getPath() + "\".");
+			return null;
+		}
+		
+		File saveRecording;
+		int recordingIndex = 1;
+		do {
+			saveRecording = new File(saveDir, "ABRecording" + recordingIndex++ + ".pfr");
+		} while(saveRecording.exists());
+		return saveRecording;
+	}
+	
 	private void saveRecording(PoseFrames frames) {
-		if(saveDir.isDirectory() || saveDir.mkdirs()) {
-			File saveRecording;
-			int recordingIndex = 1;
-			do {
-				saveRecording = new File(saveDir, "ABRecording" + recordingIndex++ + ".pfr");
-			} while(saveRecording.exists());
+		File saveRecording = getNextRecordingFile();
+		if(saveRecording != null) {
+			if(server.config.getBoolean("autobone.resampleRecordings", false)) {
+				// Save frames at exactly the sample rate instead of when they were captured
+				frames = PoseFrameResampler.resample(frames, server.config.getLong("autobone.sampleRateMs", 20L) * 1000000L);
+			}
 			
 			LogManager.log.info("[AutoBone] Exporting frames to \"" + saveRecording.getPath() + "\"...");
-			if(PoseFrameIO.writeToFile(saveRecording, frames)) {
+			if(PoseFrameIO.writeToFile(saveRecording, frames, server.config.getBoolean("autobone.compressRecordings", false))) {
 				LogManager.log.info("[AutoBone] Done exporting! Recording can be found at \"" + saveRecording.getPath() + "\".");
 			} else {
 				LogManager.log.severe("[AutoBone] Failed to export the recording to \"" + saveRecording.getPath() + "\".");
 			}
-		} else {
-			LogManager.log.severe("[AutoBone] Failed to create the recording directory \"" + saveDir.getPath() + "\".");
 		}
 	}
 	
@@ -125,20 +142,7 @@ public class AutoBoneWindow extends JFrame {
 	}
 	
 	private float processFrames(PoseFrames frames) {
-		autoBone.minDataDistance = server.config.getInt("autobone.minimumDataDistance", autoBone.minDataDistance);
-		autoBone.maxDataDistance = server.config.getInt("autobone.maximumDataDistance", autoBone.maxDataDistance);
-		
-		autoBone.numEpochs = server.config.getInt("autobone.epochCount", autoBone.numEpochs);
-		
-		autoBone.initialAdjustRate = server.config.getFloat("autobone.adjustRate", autoBone.initialAdjustRate);
-		autoBone.adjustRateDecay = server.config.getFloat("autobone.adjustRateDecay", autoBone.adjustRateDecay);
-		
-		autoBone.slideErrorFactor = server.config.getFloat("autobone.slideErrorFactor", autoBone.slideErrorFactor);
-		autoBone.offsetErrorFactor = server.config.getFloat("autobone.offsetErrorFactor", autoBone.offsetErrorFactor);
-		autoBone.proportionErrorFactor = server.config.getFloat("autobone.proportionErrorFactor", autoBone.proportionErrorFactor);
-		autoBone.heightErrorFactor = server.config.getFloat("autobone.heightErrorFactor", autoBone.heightErrorFactor);
-		autoBone.positionErrorFactor = server.config.getFloat("autobone.positionErrorFactor", autoBone.positionErrorFactor);
-		autoBone.positionOffsetErrorFactor = server.config.getFloat("autobone.positionOffsetErrorFactor", autoBone.positionOffsetErrorFactor);
+		autoBone.loadConfig();
 		
 		boolean calcInitError = server.config.getBoolean("autobone.calculateInitialError", true);
 		float targetHeight = server.config.getFloat("autobone.manualTargetHeight", -1f);
@@ -172,14 +176,19 @@ public class AutoBoneWindow extends JFrame {
 												// 1000 samples at 20 ms per sample is 20 seconds
 												int sampleCount = server.config.getInt("autobone.sampleCount", 1000);
 												long sampleRate = server.config.getLong("autobone.sampleRateMs", 20L);
-												Future<PoseFrames> framesFuture = poseRecorder.startFrameRecording(sampleCount, sampleRate);
+												// Streaming writes frames to disk while recording, so the recording is already saved
+												boolean streamRecording = server.config.getBoolean("autobone.streamRecordings", false);
+												File streamFile = streamRecording ? getNextRecordingFile() : null;
+												Future<PoseFrames> framesFuture = streamFile != null ? poseRecorder.startStreamingRecording(streamFile, sampleCount, sampleRate) : poseRecorder.startFrameRecording(sampleCount, sampleRate);
 												PoseFrames frames = framesFuture.get();
 												LogManager.log.info("[AutoBone] Done recording!");
 												
 												saveRecordingButton.setEnabled(true);
 												adjustButton.setEnabled(true);
 												
-												if(server.config.getBoolean("autobone.saveRecordings", false)) {
+												if(streamFile != null) {
+													LogManager.log.info("[AutoBone] Recording can be found at \"" + streamFile.getPath() + "\".");
+												} else if(server.config.getBoolean("autobone.saveRecordings", false)) {
 													setText("Saving...");
 													saveRecording(frames);
 												}
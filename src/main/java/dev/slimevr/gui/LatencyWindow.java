@@ -0,0 +1,111 @@
+package dev.slimevr.gui;
+
+import java.awt.Container;
+import java.awt.Font;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import javax.swing.BoxLayout;
+import javax.swing.JButton;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.Timer;
+import javax.swing.WindowConstants;
+import javax.swing.event.MouseInputAdapter;
+
+import dev.slimevr.gui.swing.EJBox;
+import dev.slimevr.tracing.LatencyTracer;
+import io.eiren.util.ann.AWTThread;
+import io.eiren.util.logging.LogManager;
+
+/**
+ * Shows the latency of every traced stage, see {@link LatencyTracer}
+ */
+public class LatencyWindow extends JFrame {
+	
+	private static final int REFRESH_INTERVAL_MS = 1000;
+	
+	private final Timer refreshTimer;
+	private JTextArea table;
+	private JLabel status;
+	
+	public LatencyWindow(VRServerGUI gui) {
+		super("Latency");
+		getContentPane().setLayout(new BoxLayout(getContentPane(), BoxLayout.PAGE_AXIS));
+		refreshTimer = new Timer(REFRESH_INTERVAL_MS, e -> refresh());
+		
+		build();
+	}
+	
+	@AWTThread
+	private void build() {
+		Container pane = getContentPane();
+		
+		pane.add(new EJBox(BoxLayout.PAGE_AXIS) {{
+			add(new JScrollPane(table = new JTextArea(8, 96)));
+			table.setEditable(false);
+			table.setFont(new Font(Font.MONOSPACED, Font.PLAIN, table.getFont().getSize()));
+			add(new EJBox(BoxLayout.LINE_AXIS) {{
+				add(new JButton("Reset") {{
+					addMouseListener(new MouseInputAdapter() {
+						@Override
+						public void mouseClicked(MouseEvent e) {
+							LatencyTracer.reset();
+							refresh();
+						}
+					});
+				}});
+				add(new JButton("Save") {{
+					addMouseListener(new MouseInputAdapter() {
+						@Override
+						public void mouseClicked(MouseEvent e) {
+							save();
+						}
+					});
+				}});
+				add(status = new JLabel(""));
+			}});
+		}});
+		refresh();
+		refreshTimer.start();
+		
+		// Pack and display
+		pack();
+		setLocationRelativeTo(null);
+		setVisible(true);
+		setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+		addWindowListener(new AbstractWindowListener() {
+			@Override
+			public void windowClosed(WindowEvent e) {
+				refreshTimer.stop();
+			}
+		});
+	}
+	
+	@AWTThread
+	private void refresh() {
+		table.setText(LatencyTracer.dump());
+	}
+	
+	@AWTThread
+	private void save() {
+		File file = new File("Latency" + System.currentTimeMillis() + ".txt");
+		try(Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+			writer.write(LatencyTracer.dump());
+			writer.write(System.lineSeparator());
+			status.setText("Saved to " + file.getPath());
+			LogManager.log.info("[Latency] Saved to \"" + file.getPath() + "\"");
+		} catch(IOException e) {
+			status.setText("Failed to save: " + e.getMessage());
+			LogManager.log.severe("[Latency] Failed to save to \"" + file.getPath() + "\"", e);
+		}
+	}
+}
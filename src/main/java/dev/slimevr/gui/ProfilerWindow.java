@@ -0,0 +1,111 @@
+package dev.slimevr.gui;
+
+import java.awt.Container;
+import java.awt.Font;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import javax.swing.BoxLayout;
+import javax.swing.JButton;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.Timer;
+import javax.swing.WindowConstants;
+import javax.swing.event.MouseInputAdapter;
+
+import dev.slimevr.gui.swing.EJBox;
+import dev.slimevr.tracing.TickProfile;
+import dev.slimevr.tracing.TickProfiler;
+import io.eiren.util.ann.AWTThread;
+import io.eiren.util.logging.LogManager;
+
+/**
+ * Shows where the server ticks spend their time, see {@link TickProfiler}
+ */
+public class ProfilerWindow extends JFrame {
+	
+	private static final int REFRESH_INTERVAL_MS = 1000;
+	
+	private final TickProfiler profiler;
+	private final Timer refreshTimer;
+	private TickProfile shownProfile = null;
+	private JTextArea table;
+	private JLabel status;
+	
+	public ProfilerWindow(VRServerGUI gui) {
+		super("Tick profiler");
+		this.profiler = gui.server.getTickProfiler();
+		getContentPane().setLayout(new BoxLayout(getContentPane(), BoxLayout.PAGE_AXIS));
+		refreshTimer = new Timer(REFRESH_INTERVAL_MS, e -> refresh());
+		
+		build();
+	}
+	
+	@AWTThread
+	private void build() {
+		Container pane = getContentPane();
+		
+		pane.add(new EJBox(BoxLayout.PAGE_AXIS) {{
+			add(new JLabel("Updated every " + TickProfiler.WINDOW_NS / 1000000000L + " seconds, times in ms"));
+			add(new JScrollPane(table = new JTextArea(30, 100)));
+			table.setEditable(false);
+			table.setFont(new Font(Font.MONOSPACED, Font.PLAIN, table.getFont().getSize()));
+			add(new EJBox(BoxLayout.LINE_AXIS) {{
+				add(new JButton("Save") {{
+					addMouseListener(new MouseInputAdapter() {
+						@Override
+						public void mouseClicked(MouseEvent e) {
+							save();
+						}
+					});
+				}});
+				add(status = new JLabel(""));
+			}});
+		}});
+		refresh();
+		refreshTimer.start();
+		
+		// Pack and display
+		pack();
+		setLocationRelativeTo(null);
+		setVisible(true);
+		setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+		addWindowListener(new AbstractWindowListener() {
+			@Override
+			public void windowClosed(WindowEvent e) {
+				refreshTimer.stop();
+			}
+		});
+	}
+	
+	@AWTThread
+	private void refresh() {
+		TickProfile profile = profiler.getProfile();
+		// Only changes when a window is over, keep the scroll position in between
+		if(profile == shownProfile)
+			return;
+		shownProfile = profile;
+		table.setText(profile.dump());
+	}
+	
+	@AWTThread
+	private void save() {
+		File file = new File("TickProfile" + System.currentTimeMillis() + ".txt");
+		try(Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+			writer.write(profiler.getProfile().dump());
+			status.setText("Saved to " + file.getPath());
+			LogManager.log.info("[Profiler] Saved to \"" + file.getPath() + "\"");
+		} catch(IOException e) {
+			status.setText("Failed to save: " + e.getMessage());
+			LogManager.log.severe("[Profiler] Failed to save to \"" + file.getPath() + "\"", e);
+		}
+	}
+}
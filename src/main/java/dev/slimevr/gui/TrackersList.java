@@ -24,6 +24,7 @@ import io.eiren.util.ann.AWTThread;
 import io.eiren.util.ann.ThreadSafe;
 import io.eiren.util.collections.FastList;
 import io.eiren.vr.VRServer;
+import io.eiren.vr.trackers.PredictedTracker;
 import io.eiren.vr.trackers.ReferenceAdjustedTracker;
 import io.eiren.vr.trackers.ComputedTracker;
 import io.eiren.vr.trackers.HMDTracker;
@@ -75,6 +76,8 @@ public class TrackersList extends EJBoxNoStretch {
 			Tracker t = tr.t;
 			if(t instanceof ReferenceAdjustedTracker)
 				t = ((ReferenceAdjustedTracker<?>) t).getTracker();
+			if(t instanceof PredictedTracker)
+				t = ((PredictedTracker<?>) t).getTracker();
 			if(currentClass != t.getClass()) {
 				currentClass = t.getClass();
 				if(line != null)
@@ -159,6 +162,8 @@ public class TrackersList extends EJBoxNoStretch {
 			Tracker realTracker = t;
 			if(t instanceof ReferenceAdjustedTracker)
 				realTracker = ((ReferenceAdjustedTracker<? extends Tracker>) t).getTracker();
+			if(realTracker instanceof PredictedTracker)
+				realTracker = ((PredictedTracker<?>) realTracker).getTracker();
 			removeAll();
 			JLabel nameLabel;
 			add(nameLabel = new JLabel(t.getDescriptiveName()), s(c(0, row, 2, GridBagConstraints.FIRST_LINE_START), 4, 1));
@@ -279,6 +284,8 @@ public class TrackersList extends EJBoxNoStretch {
 			Tracker realTracker = t;
 			if(t instanceof ReferenceAdjustedTracker)
 				realTracker = ((ReferenceAdjustedTracker<? extends Tracker>) t).getTracker();
+			if(realTracker instanceof PredictedTracker)
+				realTracker = ((PredictedTracker<?>) realTracker).getTracker();
 			t.getRotation(q);
 			t.getPosition(v);
 			q.toAngles(angles);
@@ -342,6 +349,8 @@ public class TrackersList extends EJBoxNoStretch {
 	private static int getTrackerSort(Tracker t) {
 		if(t instanceof ReferenceAdjustedTracker)
 			t = ((ReferenceAdjustedTracker<?>) t).getTracker();
+		if(t instanceof PredictedTracker)
+			t = ((PredictedTracker<?>) t).getTracker();
 		if(t instanceof IMUTracker)
 			return 0;
 		if(t instanceof HMDTracker)
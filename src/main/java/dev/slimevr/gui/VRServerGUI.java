@@ -182,6 +182,26 @@ public class VRServerGUI extends JFrame {
 				});
 			}});
 			add(Box.createHorizontalStrut(10));
+			add(new JButton("Latency") {{
+				addMouseListener(new MouseInputAdapter() {
+					@SuppressWarnings("unused")
+					@Override
+					public void mouseClicked(MouseEvent e) {
+						new LatencyWindow(VRServerGUI.this);
+					}
+				});
+			}});
+			add(Box.createHorizontalStrut(10));
+			add(new JButton("Profiler") {{
+				addMouseListener(new MouseInputAdapter() {
+					@SuppressWarnings("unused")
+					@Override
+					public void mouseClicked(MouseEvent e) {
+						new ProfilerWindow(VRServerGUI.this);
+					}
+				});
+			}});
+			add(Box.createHorizontalStrut(10));
 		}});
 		
 		pane.add(new EJBox(LINE_AXIS) {{
@@ -278,8 +298,8 @@ public class VRServerGUI extends JFrame {
 		
 		refresh();
 		
-		server.addOnTick(trackersList::updateTrackers);
-		server.addOnTick(skeletonList::updateBones);
+		server.addOnTick("Trackers list", trackersList::updateTrackers);
+		server.addOnTick("Skeleton list", skeletonList::updateBones);
 	}
 	
 	// For now only changes font size, but should change fixed components size in the future too
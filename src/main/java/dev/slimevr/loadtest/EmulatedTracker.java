@@ -0,0 +1,263 @@
+package dev.slimevr.loadtest;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.DatagramChannel;
+
+import com.jme3.math.Quaternion;
+
+/**
+ * Emulates the UDP protocol of a SlimeVR firmware board with one or more
+ * sensors. Handshakes and sensor info are resent until the server answers,
+ * then the board streams rotations and reports its battery.
+ * <p>Updates and sends happen on the generator thread, responses are
+ * handled on the receive thread.
+ */
+final class EmulatedTracker {
+	
+	static final int PACKET_HEARTBEAT = 1;
+	static final int PACKET_HANDSHAKE = 3;
+	static final int PACKET_PING_PONG = 10;
+	static final int PACKET_BATTERY_VOLTAGE = 12;
+	static final int PACKET_SENSOR_INFO = 15;
+	static final int PACKET_ROTATION_DATA = 17;
+	static final int DATA_TYPE_NORMAL = 1;
+	// Rotations carry their send time after the calibration info, the server ignores it
+	static final int ROTATION_SEND_TIME_OFFSET = 31;
+	
+	private static final long RETRY_INTERVAL_NS = 500000000L;
+	private static final long BATTERY_INTERVAL_NS = 1000000000L;
+	private static final int BOARD_TYPE = 2;
+	private static final int IMU_TYPE = 4;
+	private static final int FIRMWARE_BUILD = 8;
+	private static final byte[] FIRMWARE_VERSION = {'l', 'o', 'a', 'd', 't', 'e', 's', 't'};
+	
+	final int index;
+	final DatagramChannel channel;
+	private final SocketAddress server;
+	private final int sensorCount;
+	private final long rotationIntervalNs;
+	
+	// Written by the generator thread only
+	long nextUpdateNs;
+	private final ByteBuffer sendBuffer = ByteBuffer.allocate(128).order(ByteOrder.BIG_ENDIAN);
+	private final Quaternion rotation = new Quaternion();
+	private long packetNumber = 0;
+	private long nextHandshakeNs;
+	private long nextSensorInfoNs;
+	private long nextRotationNs;
+	private long nextBatteryNs;
+	private boolean streaming = false;
+	private long rotationsSent = 0;
+	private long lateRotations = 0;
+	
+	// Written by the receive thread only
+	private final ByteBuffer responseBuffer = ByteBuffer.allocate(16).order(ByteOrder.BIG_ENDIAN);
+	private volatile boolean connected = false;
+	// Bit per sensor the server acknowledged
+	private volatile long sensorsAcknowledged = 0;
+	private volatile long pingsAnswered = 0;
+	
+	/**
+	 * @param address the local address, the server tells boards apart by
+	 * their address so every emulated board needs its own
+	 * @param startNs when to send the first handshake, spreads the boards'
+	 * packets over the rotation interval
+	 */
+	EmulatedTracker(int index, InetAddress address, SocketAddress server, int sensorCount, float rotationRate, long startNs) throws IOException {
+		this.index = index;
+		this.server = server;
+		this.sensorCount = sensorCount;
+		this.rotationIntervalNs = (long) (1000000000d / rotationRate);
+		this.nextHandshakeNs = startNs;
+		this.channel = DatagramChannel.open();
+		try {
+			channel.bind(new InetSocketAddress(address, 0));
+			channel.configureBlocking(false);
+		} catch(IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Sends whatever is due
+	 * @return when the next update is due
+	 */
+	long update(long nowNs) throws IOException {
+		if(!connected) {
+			if(nowNs - nextHandshakeNs >= 0) {
+				sendHandshake();
+				nextHandshakeNs = nowNs + RETRY_INTERVAL_NS;
+			}
+			return nextHandshakeNs;
+		}
+		if(!streaming) {
+			streaming = true;
+			nextSensorInfoNs = nowNs;
+			nextRotationNs = nowNs;
+			nextBatteryNs = nowNs;
+		}
+		
+		long acknowledged = sensorsAcknowledged;
+		if(acknowledged != (1L << sensorCount) - 1 && nowNs - nextSensorInfoNs >= 0) {
+			for(int i = 0; i < sensorCount; i++) {
+				if((acknowledged & (1L << i)) == 0) {
+					sendSensorInfo(i);
+				}
+			}
+			nextSensorInfoNs = nowNs + RETRY_INTERVAL_NS;
+		}
+		
+		if(nowNs - nextRotationNs >= 0) {
+			// The server sets up the first sensor with the handshake, others after their info
+			for(int i = 0; i < sensorCount; i++) {
+				if(i == 0 || (acknowledged & (1L << i)) != 0) {
+					sendRotation(i, nowNs);
+				}
+			}
+			nextRotationNs += rotationIntervalNs;
+			// Can't keep up, skip the missed samples instead of bursting them
+			if(nowNs - nextRotationNs >= 0) {
+				lateRotations += (nowNs - nextRotationNs) / rotationIntervalNs + 1;
+				nextRotationNs = nowNs + rotationIntervalNs;
+			}
+		}
+		
+		if(nowNs - nextBatteryNs >= 0) {
+			sendBattery();
+			nextBatteryNs = nowNs + BATTERY_INTERVAL_NS;
+		}
+		
+		long next = nextRotationNs;
+		if(nextBatteryNs - next < 0)
+			next = nextBatteryNs;
+		if(acknowledged != (1L << sensorCount) - 1 && nextSensorInfoNs - next < 0)
+			next = nextSensorInfoNs;
+		return next;
+	}
+	
+	private void sendHandshake() throws IOException {
+		ByteBuffer bb = begin(PACKET_HANDSHAKE);
+		bb.putInt(BOARD_TYPE);
+		bb.putInt(IMU_TYPE);
+		bb.putInt(0); // MCU type
+		bb.putInt(0).putInt(0).putInt(0); // IMU info
+		bb.putInt(FIRMWARE_BUILD);
+		bb.put((byte) FIRMWARE_VERSION.length).put(FIRMWARE_VERSION);
+		// MAC address made from the index, so every board gets its own name
+		bb.put((byte) 0x02).put((byte) 0x5E).putInt(index);
+		bb.put((byte) 0);
+		send(bb);
+	}
+	
+	private void sendSensorInfo(int sensorId) throws IOException {
+		ByteBuffer bb = begin(PACKET_SENSOR_INFO);
+		bb.put((byte) sensorId);
+		bb.put((byte) 1); // Sensor working
+		send(bb);
+	}
+	
+	private void sendRotation(int sensorId, long nowNs) throws IOException {
+		// Slowly turning around, each board at its own pace
+		float time = (nowNs % 60000000000L) / 1000000000f;
+		rotation.fromAngles(0.2f, time * (0.5f + index % 7 * 0.1f) + sensorId, 0.1f);
+		
+		ByteBuffer bb = begin(PACKET_ROTATION_DATA);
+		bb.put((byte) sensorId);
+		bb.put((byte) DATA_TYPE_NORMAL);
+		bb.putFloat(rotation.getX()).putFloat(rotation.getY()).putFloat(rotation.getZ()).putFloat(rotation.getW());
+		bb.put((byte) 3); // Calibration info
+		bb.putLong(System.nanoTime());
+		send(bb);
+		rotationsSent++;
+	}
+	
+	private void sendBattery() throws IOException {
+		ByteBuffer bb = begin(PACKET_BATTERY_VOLTAGE);
+		bb.putFloat(3.7f + (index % 10) * 0.05f);
+		send(bb);
+	}
+	
+	private ByteBuffer begin(int packetId) {
+		ByteBuffer bb = sendBuffer;
+		bb.clear();
+		bb.putInt(packetId);
+		bb.putLong(packetNumber++);
+		return bb;
+	}
+	
+	private void send(ByteBuffer bb) throws IOException {
+		bb.flip();
+		channel.send(bb, server);
+	}
+	
+	/**
+	 * Handles a packet from the server, on the receive thread
+	 */
+	void handleResponse(ByteBuffer bb) throws IOException {
+		if(bb.remaining() < 4)
+			return;
+		// The handshake response is a single byte followed by text
+		if(bb.get(0) == PACKET_HANDSHAKE) {
+			connected = true;
+			return;
+		}
+		switch(bb.getInt()) {
+		case PACKET_PING_PONG:
+			if(bb.remaining() < 4)
+				break;
+			ByteBuffer response = responseBuffer;
+			response.clear();
+			response.putInt(PACKET_PING_PONG);
+			response.putInt(bb.getInt());
+			response.flip();
+			channel.send(response, server);
+			pingsAnswered++;
+			break;
+		case PACKET_SENSOR_INFO:
+			if(bb.remaining() < 2)
+				break;
+			int sensorId = bb.get() & 0xFF;
+			if(sensorId < sensorCount && bb.get() == 1) {
+				sensorsAcknowledged |= 1L << sensorId;
+			}
+			break;
+		case PACKET_HEARTBEAT:
+		default:
+			break;
+		}
+	}
+	
+	boolean isConnected() {
+		return connected;
+	}
+	
+	/**
+	 * @return the number of rotation packets sent, read by the generator
+	 * thread only
+	 */
+	long getRotationsSent() {
+		return rotationsSent;
+	}
+	
+	/**
+	 * @return the number of rotation samples skipped because the generator
+	 * fell behind
+	 */
+	long getLateRotations() {
+		return lateRotations;
+	}
+	
+	long getPingsAnswered() {
+		return pingsAnswered;
+	}
+	
+	void close() throws IOException {
+		channel.close();
+	}
+}
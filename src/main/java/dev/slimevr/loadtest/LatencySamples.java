@@ -0,0 +1,38 @@
+package dev.slimevr.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Collects latencies recorded by one thread until another drains them
+ */
+final class LatencySamples {
+	
+	private long[] samples = new long[4096];
+	private int count = 0;
+	
+	synchronized void record(long latencyNs) {
+		if(count == samples.length) {
+			samples = Arrays.copyOf(samples, count * 2);
+		}
+		samples[count++] = latencyNs;
+	}
+	
+	/**
+	 * @return the latencies recorded since the last call, sorted
+	 */
+	synchronized long[] drain() {
+		long[] drained = Arrays.copyOf(samples, count);
+		count = 0;
+		Arrays.sort(drained);
+		return drained;
+	}
+	
+	/**
+	 * @param sorted sorted latencies, not empty
+	 * @param percentile between 0 and 100
+	 */
+	static long percentile(long[] sorted, double percentile) {
+		int index = (int) Math.ceil(percentile / 100d * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+	}
+}
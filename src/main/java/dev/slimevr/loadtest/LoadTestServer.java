@@ -0,0 +1,62 @@
+package dev.slimevr.loadtest;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.eiren.vr.trackers.TrackersUDPServer;
+
+/**
+ * The tracker server, measuring how long rotation packets of emulated
+ * trackers take from being sent to being decoded. Emulated trackers append
+ * their send time to rotation packets, so the server has to run in the
+ * same process. Packet numbers are real, so the server counts lost packets
+ * like for any board.
+ * <p>Only the UDP side is measured, nothing ticks the trackers it creates.
+ */
+final class LoadTestServer extends TrackersUDPServer {
+	
+	private final LatencySamples latencies = new LatencySamples();
+	private final AtomicInteger trackerCount;
+	private volatile long rotationsReceived = 0;
+	
+	private LoadTestServer(int port, AtomicInteger trackerCount) {
+		super(port, "Load test UDP server", tracker -> trackerCount.incrementAndGet());
+		this.trackerCount = trackerCount;
+	}
+	
+	LoadTestServer(int port) {
+		this(port, new AtomicInteger());
+	}
+	
+	@Override
+	protected void processPacket(DatagramPacket recieve, ByteBuffer bb) throws IOException {
+		boolean rotation = recieve.getLength() >= EmulatedTracker.ROTATION_SEND_TIME_OFFSET + 8 && bb.getInt(0) == EmulatedTracker.PACKET_ROTATION_DATA;
+		long sentNs = rotation ? bb.getLong(EmulatedTracker.ROTATION_SEND_TIME_OFFSET) : 0L;
+		super.processPacket(recieve, bb);
+		if(rotation) {
+			latencies.record(System.nanoTime() - sentNs);
+			// Only written by the server thread
+			rotationsReceived++;
+		}
+	}
+	
+	/**
+	 * @return the latencies recorded since the last call, sorted
+	 */
+	long[] drainLatencies() {
+		return latencies.drain();
+	}
+	
+	long getRotationsReceived() {
+		return rotationsReceived;
+	}
+	
+	/**
+	 * @return the number of trackers the server added, one per sensor
+	 */
+	int getTrackerCount() {
+		return trackerCount.get();
+	}
+}
@@ -0,0 +1,64 @@
+package dev.slimevr.loadtest;
+
+import java.util.Arrays;
+import java.util.List;
+
+import io.eiren.util.ann.VRServerThread;
+import io.eiren.vr.VRServer;
+import io.eiren.vr.trackers.Tracker;
+
+/**
+ * Runs on every tick of a {@link VRServer} and records how long each
+ * tracker's newest rotation waited from being received to the tick that
+ * picks it up. The skeleton and the bridges run later in the same tick,
+ * their share is in the latency trace and the tick profile. Every rotation
+ * is counted once, rotations replaced before a tick aren't.
+ * <p>Needs latency tracing, the server only stamps rotations with their
+ * receive time when it's enabled.
+ */
+final class TickLatencyProbe implements Runnable {
+	
+	private final VRServer server;
+	private final LatencySamples latencies = new LatencySamples();
+	// Sample time last recorded for every tracker, in the server's tracker order
+	private long[] lastSampleTimes = new long[64];
+	private volatile int trackerCount = 0;
+	
+	TickLatencyProbe(VRServer server) {
+		this.server = server;
+	}
+	
+	@Override
+	@VRServerThread
+	public void run() {
+		long now = System.nanoTime();
+		// Trackers are only ever appended, so indices stay the same
+		List<Tracker> trackers = server.getAllTrackers();
+		if(trackers.size() > lastSampleTimes.length) {
+			lastSampleTimes = Arrays.copyOf(lastSampleTimes, Math.max(trackers.size(), lastSampleTimes.length * 2));
+		}
+		for(int i = 0; i < trackers.size(); ++i) {
+			long sampleTime = trackers.get(i).getSampleTime();
+			if(sampleTime != 0L && sampleTime != lastSampleTimes[i]) {
+				lastSampleTimes[i] = sampleTime;
+				latencies.record(now - sampleTime);
+			}
+		}
+		trackerCount = trackers.size();
+	}
+	
+	/**
+	 * @return the latencies recorded since the last call, sorted
+	 */
+	long[] drainLatencies() {
+		return latencies.drain();
+	}
+	
+	/**
+	 * @return every tracker of the server on the last tick, including the
+	 * headset and the computed ones
+	 */
+	int getTrackerCount() {
+		return trackerCount;
+	}
+}
@@ -0,0 +1,387 @@
+package dev.slimevr.loadtest;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.LockSupport;
+
+import dev.slimevr.tracing.LatencyTracer;
+import io.eiren.util.collections.FastList;
+import io.eiren.vr.VRServer;
+import io.eiren.vr.trackers.TrackersUDPServer;
+
+/**
+ * Emulates many SlimeVR trackers over UDP on localhost to find how many a
+ * server can handle. Every emulated board handshakes, reports its sensors,
+ * streams rotations at a fixed rate, answers pings and reports its battery.
+ * <p>By default only the tracker UDP server runs in this process, so the
+ * time from sending a rotation to the server decoding it and the packets
+ * that never arrived are reported every second. Ticks, the skeleton and the
+ * bridges aren't part of it. With --vrserver a whole {@link VRServer} runs
+ * in this process instead, reading vrconfig.yml and opening the bridges
+ * like the real server, and the time from receiving a rotation to the tick
+ * that uses it is reported along with the tick times. With --external a
+ * server that is already running is loaded, and only the sending side is
+ * reported.
+ * <p>The server tells boards apart by their address, so each board sends
+ * from its own address in 127.0.0.0/8, which needs the whole loopback range
+ * to be usable (Linux and Windows).
+ */
+public class TrackerLoadGenerator {
+	
+	public static final int DEFAULT_PORT = 6969;
+	private static final long REPORT_INTERVAL_NS = 1000000000L;
+	private static final int MAX_SENSORS = 8;
+	
+	/**
+	 * Where the emulated trackers send to
+	 */
+	public enum ServerMode {
+		/**
+		 * Only the tracker UDP server, in this process
+		 */
+		UDP,
+		/**
+		 * A whole server in this process, always on {@link #DEFAULT_PORT}
+		 */
+		VRSERVER,
+		/**
+		 * A server that is already running
+		 */
+		EXTERNAL
+	}
+	
+	private final FastList<EmulatedTracker> trackers = new FastList<>();
+	private final LoadTestServer server;
+	private final VRServer vrServer;
+	private final TickLatencyProbe tickProbe;
+	private final Selector selector;
+	private final int sensorCount;
+	private final float rotationRate;
+	
+	private long lastSent = 0;
+	private long lastReceived = 0;
+	private long worstP99 = 0;
+	private long worstLatency = 0;
+	
+	/**
+	 * @param mode {@link ServerMode#VRSERVER} needs latency tracing enabled
+	 */
+	public TrackerLoadGenerator(int trackerCount, int sensorCount, float rotationRate, int port, ServerMode mode) throws IOException {
+		if(mode == ServerMode.VRSERVER) {
+			if(port != DEFAULT_PORT) {
+				throw new IllegalArgumentException("The server always listens on port " + DEFAULT_PORT);
+			}
+			if(!LatencyTracer.ENABLED) {
+				throw new IllegalStateException("Latency tracing must be enabled with -Dslimevr.latencyTracing=true");
+			}
+		}
+		this.sensorCount = sensorCount;
+		this.rotationRate = rotationRate;
+		this.server = mode == ServerMode.UDP ? new LoadTestServer(port) : null;
+		if(mode == ServerMode.VRSERVER) {
+			vrServer = new VRServer();
+			tickProbe = new TickLatencyProbe(vrServer);
+			vrServer.addOnTick("Load test latency", tickProbe);
+		} else {
+			vrServer = null;
+			tickProbe = null;
+		}
+		this.selector = Selector.open();
+		
+		InetSocketAddress serverAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+		long intervalNs = (long) (1000000000d / rotationRate);
+		// Give the server time to open its socket, then spread the boards over an interval
+		long startNs = System.nanoTime() + 100000000L;
+		try {
+			for(int i = 0; i < trackerCount; ++i) {
+				InetAddress address = getLoopbackAddress(i);
+				EmulatedTracker tracker;
+				try {
+					tracker = new EmulatedTracker(i, address, serverAddress, sensorCount, rotationRate, startNs + intervalNs * i / trackerCount);
+				} catch(IOException e) {
+					throw new IOException("Can't send from " + address.getHostAddress() + ", is the loopback range usable? " + e.getMessage(), e);
+				}
+				trackers.add(tracker);
+				tracker.channel.register(selector, SelectionKey.OP_READ, tracker);
+			}
+		} catch(IOException e) {
+			close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * @return 127.0.x.y for the tracker, skipping the network and broadcast
+	 * addresses of every /24
+	 */
+	private static InetAddress getLoopbackAddress(int index) throws UnknownHostException {
+		int x = index / 254;
+		int y = index % 254 + 1;
+		if(x > 255) {
+			throw new IllegalArgumentException("Too many trackers");
+		}
+		return InetAddress.getByAddress(new byte[] {127, 0, (byte) x, (byte) y});
+	}
+	
+	/**
+	 * Emulates the trackers until the duration is over or the thread is
+	 * interrupted, printing a report every second
+	 * @param durationNs how long to run, 0 to run until interrupted
+	 */
+	public void run(long durationNs) throws IOException {
+		if(server != null) {
+			server.setDaemon(true);
+			server.start();
+		}
+		if(vrServer != null) {
+			vrServer.setDaemon(true);
+			vrServer.start();
+		}
+		Thread receiver = new Thread(this::receive, "Load generator receiver");
+		receiver.setDaemon(true);
+		receiver.start();
+		
+		// Boards ordered by when they're next due
+		PriorityQueue<EmulatedTracker> queue = new PriorityQueue<>(Math.max(1, trackers.size()), (a, b) -> Long.signum(a.nextUpdateNs - b.nextUpdateNs));
+		long now = System.nanoTime();
+		for(int i = 0; i < trackers.size(); ++i) {
+			EmulatedTracker tracker = trackers.get(i);
+			tracker.nextUpdateNs = now;
+			queue.add(tracker);
+		}
+		
+		long start = now;
+		long nextReport = now + REPORT_INTERVAL_NS;
+		try {
+			while(!Thread.currentThread().isInterrupted() && (durationNs <= 0 || now - start < durationNs)) {
+				EmulatedTracker tracker;
+				while((tracker = queue.peek()) != null && now - tracker.nextUpdateNs >= 0) {
+					queue.poll();
+					tracker.nextUpdateNs = tracker.update(now);
+					queue.add(tracker);
+				}
+				if(now - nextReport >= 0) {
+					report((now - start) / 1000000000L);
+					nextReport += REPORT_INTERVAL_NS;
+				}
+				
+				long next = nextReport;
+				if(tracker != null && tracker.nextUpdateNs - next < 0)
+					next = tracker.nextUpdateNs;
+				LockSupport.parkNanos(next - now);
+				now = System.nanoTime();
+			}
+		} finally {
+			receiver.interrupt();
+		}
+		
+		// Let the server decode what's still in flight
+		LockSupport.parkNanos(200000000L);
+		printSummary((System.nanoTime() - start) / 1000000000d);
+	}
+	
+	private void receive() {
+		ByteBuffer buffer = ByteBuffer.allocate(512).order(ByteOrder.BIG_ENDIAN);
+		try {
+			while(!Thread.currentThread().isInterrupted()) {
+				selector.select(250);
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while(keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					DatagramChannel channel = (DatagramChannel) key.channel();
+					EmulatedTracker tracker = (EmulatedTracker) key.attachment();
+					while(true) {
+						buffer.clear();
+						if(channel.receive(buffer) == null)
+							break;
+						buffer.flip();
+						tracker.handleResponse(buffer);
+					}
+				}
+			}
+		} catch(IOException e) {
+			if(selector.isOpen()) {
+				System.err.println("[LoadGenerator] Receiving failed: " + e.getMessage());
+			}
+		}
+	}
+	
+	private long getRotationsSent() {
+		long sent = 0;
+		for(int i = 0; i < trackers.size(); ++i)
+			sent += trackers.get(i).getRotationsSent();
+		return sent;
+	}
+	
+	private void report(long seconds) {
+		int connected = 0;
+		long late = 0;
+		long pings = 0;
+		for(int i = 0; i < trackers.size(); ++i) {
+			EmulatedTracker tracker = trackers.get(i);
+			if(tracker.isConnected())
+				connected++;
+			late += tracker.getLateRotations();
+			pings += tracker.getPingsAnswered();
+		}
+		long sent = getRotationsSent();
+		StringBuilder line = new StringBuilder();
+		line.append("[LoadGenerator] ").append(seconds).append("s: ").append(connected).append('/').append(trackers.size()).append(" boards connected");
+		line.append(", ").append(sent - lastSent).append(" rotations sent");
+		if(isInProcess()) {
+			long received = getRotationsReceived();
+			long intervalSent = sent - lastSent;
+			long intervalReceived = received - lastReceived;
+			line.append(", ").append(intervalReceived).append(" received");
+			line.append(", ").append(server != null ? server.getTrackerCount() : tickProbe.getTrackerCount()).append(" server trackers");
+			line.append(", lost ").append(formatPercent(intervalSent - intervalReceived, intervalSent));
+			long[] latencies = server != null ? server.drainLatencies() : tickProbe.drainLatencies();
+			if(latencies.length > 0) {
+				long p99 = LatencySamples.percentile(latencies, 99d);
+				long max = latencies[latencies.length - 1];
+				worstP99 = Math.max(worstP99, p99);
+				worstLatency = Math.max(worstLatency, max);
+				line.append(", latency p50 ").append(formatMs(LatencySamples.percentile(latencies, 50d)));
+				line.append(" p99 ").append(formatMs(p99));
+				line.append(" max ").append(formatMs(max));
+			}
+			lastReceived = received;
+		}
+		line.append(", ").append(late).append(" late, ").append(pings).append(" pings answered");
+		lastSent = sent;
+		System.out.println(line);
+	}
+	
+	private boolean isInProcess() {
+		return server != null || vrServer != null;
+	}
+	
+	/**
+	 * @return rotations the server in this process decoded since it started
+	 */
+	private long getRotationsReceived() {
+		return server != null ? server.getRotationsReceived() : LatencyTracer.DECODE.histogram.getCount();
+	}
+	
+	private void printSummary(double seconds) {
+		long sent = getRotationsSent();
+		System.out.println("[LoadGenerator] " + trackers.size() + " boards, " + sent + " rotations sent in " + String.format("%.1f", seconds) + "s (" + Math.round(sent / seconds) + "/s, target " + Math.round(trackers.size() * sensorCount * rotationRate) + "/s)");
+		if(isInProcess()) {
+			long received = getRotationsReceived();
+			String measured = server != null ? "from sending to decoding" : "from receiving to the tick";
+			System.out.println("[LoadGenerator] " + received + " received, lost " + formatPercent(sent - received, sent) + ", worst p99 latency " + formatMs(worstP99) + ", worst latency " + formatMs(worstLatency) + " " + measured);
+			// What the server's own packet loss metric counted from the packet numbers
+			long packetsReceived = 0;
+			long packetsLost = 0;
+			List<TrackersUDPServer.BoardStats> boards = server != null ? server.getBoardStats() : vrServer.getTrackersServer().getBoardStats();
+			for(TrackersUDPServer.BoardStats board : boards) {
+				packetsReceived += board.packetsReceived;
+				packetsLost += board.packetsLost;
+			}
+			System.out.println("[LoadGenerator] Server counted " + packetsReceived + " packets received and " + packetsLost + " lost by packet number");
+		}
+		if(vrServer != null) {
+			System.out.println(LatencyTracer.dump());
+			System.out.println(vrServer.getTickProfiler().getProfile().dump());
+		}
+	}
+	
+	private static String formatPercent(long part, long total) {
+		return String.format("%.2f%%", total > 0 ? Math.max(0L, part) * 100d / total : 0d);
+	}
+	
+	private static String formatMs(long ns) {
+		return String.format("%.3f ms", ns / 1000000d);
+	}
+	
+	public void close() throws IOException {
+		selector.close();
+		for(int i = 0; i < trackers.size(); ++i)
+			trackers.get(i).close();
+	}
+	
+	private static void printUsage() {
+		System.err.println("Usage: TrackerLoadGenerator [--trackers <count>] [--sensors <per board>] [--rate <rotations/s>] [--duration <seconds, 0 to run until stopped>] [--port <port>] [--vrserver | --external]");
+		System.exit(1);
+	}
+	
+	public static void main(String[] args) {
+		int trackerCount = 10;
+		int sensorCount = 1;
+		float rate = 100f;
+		long duration = 30;
+		int port = DEFAULT_PORT;
+		ServerMode mode = ServerMode.UDP;
+		try {
+			for(int i = 0; i < args.length; i++) {
+				if(args[i].equals("--external") || args[i].equals("--vrserver")) {
+					if(mode != ServerMode.UDP) {
+						printUsage();
+					}
+					mode = args[i].equals("--external") ? ServerMode.EXTERNAL : ServerMode.VRSERVER;
+					continue;
+				}
+				if(i + 1 >= args.length) {
+					printUsage();
+				}
+				if(args[i].equals("--trackers")) {
+					trackerCount = Integer.parseInt(args[++i]);
+				} else if(args[i].equals("--sensors")) {
+					sensorCount = Integer.parseInt(args[++i]);
+				} else if(args[i].equals("--rate")) {
+					rate = Float.parseFloat(args[++i]);
+				} else if(args[i].equals("--duration")) {
+					duration = Long.parseLong(args[++i]);
+				} else if(args[i].equals("--port")) {
+					port = Integer.parseInt(args[++i]);
+				} else {
+					printUsage();
+				}
+			}
+		} catch(NumberFormatException e) {
+			System.err.println(e.getMessage());
+			printUsage();
+		}
+		if(trackerCount < 1 || trackerCount > 256 * 254 || sensorCount < 1 || sensorCount > MAX_SENSORS || !(rate > 0f) || duration < 0 || port < 1 || port > 65535) {
+			printUsage();
+		}
+		if(mode == ServerMode.VRSERVER) {
+			if(port != DEFAULT_PORT) {
+				System.err.println("[LoadGenerator] --vrserver always uses port " + DEFAULT_PORT);
+				printUsage();
+			}
+			// Before anything reads it, the server only stamps rotations with their receive time when tracing
+			System.setProperty("slimevr.latencyTracing", "true");
+		}
+		
+		String target = mode == ServerMode.EXTERNAL ? "the server" : mode == ServerMode.VRSERVER ? "an in-process VRServer" : "an in-process tracker UDP server";
+		System.out.println("[LoadGenerator] Emulating " + trackerCount + " boards with " + sensorCount + " sensors at " + rate + " rotations/s against " + target + " on port " + port);
+		TrackerLoadGenerator generator = null;
+		try {
+			generator = new TrackerLoadGenerator(trackerCount, sensorCount, rate, port, mode);
+			generator.run(duration * 1000000000L);
+		} catch(IOException e) {
+			System.err.println("[LoadGenerator] " + e.getMessage());
+			System.exit(1);
+		} finally {
+			if(generator != null) {
+				try {
+					generator.close();
+				} catch(IOException e) {
+				}
+			}
+		}
+		System.exit(0);
+	}
+}
@@ -0,0 +1,308 @@
+package dev.slimevr.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import dev.slimevr.bridge.Bridge;
+import dev.slimevr.bridge.ProtobufBridge;
+import dev.slimevr.tracing.LatencyHistogram;
+import dev.slimevr.tracing.LatencyStage;
+import dev.slimevr.tracing.LatencyTracer;
+import dev.slimevr.tracing.TickProfile;
+import dev.slimevr.tracing.TickProfile.SectionStats;
+import io.eiren.util.ann.ThreadSafe;
+import io.eiren.util.collections.FastList;
+import io.eiren.util.logging.LogManager;
+import io.eiren.vr.VRServer;
+import io.eiren.vr.trackers.IMUTracker;
+import io.eiren.vr.trackers.PredictedTracker;
+import io.eiren.vr.trackers.ReferenceAdjustedTracker;
+import io.eiren.vr.trackers.Tracker;
+import io.eiren.vr.trackers.TrackerWithBattery;
+import io.eiren.vr.trackers.TrackerWithTPS;
+import io.eiren.vr.trackers.TrackersUDPServer.BoardStats;
+
+/**
+ * Serves the server's metrics over HTTP in the Prometheus text format at
+ * /metrics. Nothing is measured for the endpoint, the metrics are read from
+ * what the server already keeps: tracker rates and batteries, packet
+ * counters, the tick profile and the JVM's own beans.
+ * <p>A collector thread renders them once a second, scrapes get the last
+ * rendering and never touch the server's threads.
+ * <p>Enabled with {@code metrics.enabled: true} in the config, listens on
+ * {@code metrics.address} and {@code metrics.port}.
+ */
+public class MetricsExporter {
+	
+	public static final String DEFAULT_ADDRESS = "127.0.0.1";
+	// Next to the bridge (21110) and the pose stream (21111)
+	public static final int DEFAULT_PORT = 21112;
+	private static final long COLLECT_INTERVAL_MS = 1000;
+	private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+	
+	private final VRServer server;
+	private final HttpServer httpServer;
+	private final Timer timer = new Timer("Metrics collector", true);
+	private volatile byte[] metrics = new byte[0];
+	
+	public MetricsExporter(VRServer server, InetSocketAddress address) throws IOException {
+		this.server = server;
+		this.httpServer = HttpServer.create(address, 0);
+		httpServer.createContext("/metrics", this::handle);
+	}
+	
+	/**
+	 * @return an exporter on the address and port of the config
+	 */
+	public static MetricsExporter fromConfig(VRServer server) throws IOException {
+		String address = server.config.getString("metrics.address", DEFAULT_ADDRESS);
+		int port = server.config.getInt("metrics.port", DEFAULT_PORT);
+		return new MetricsExporter(server, new InetSocketAddress(address, port));
+	}
+	
+	public void start() {
+		collect();
+		timer.scheduleAtFixedRate(new TimerTask() {
+			@Override
+			public void run() {
+				collect();
+			}
+		}, COLLECT_INTERVAL_MS, COLLECT_INTERVAL_MS);
+		httpServer.start();
+		LogManager.log.info("[Metrics] Serving metrics on http://" + httpServer.getAddress().getHostString() + ":" + httpServer.getAddress().getPort() + "/metrics");
+	}
+	
+	public void stop() {
+		httpServer.stop(0);
+		timer.cancel();
+	}
+	
+	public int getPort() {
+		return httpServer.getAddress().getPort();
+	}
+	
+	/**
+	 * @return the last rendered metrics
+	 */
+	@ThreadSafe
+	public String getMetrics() {
+		return new String(metrics, StandardCharsets.UTF_8);
+	}
+	
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			String method = exchange.getRequestMethod();
+			if(!method.equals("GET") && !method.equals("HEAD")) {
+				exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+			byte[] body = metrics;
+			exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+			if(method.equals("HEAD")) {
+				exchange.sendResponseHeaders(200, -1);
+				return;
+			}
+			exchange.sendResponseHeaders(200, body.length);
+			try(OutputStream os = exchange.getResponseBody()) {
+				os.write(body);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+	
+	private void collect() {
+		try {
+			MetricsWriter writer = new MetricsWriter();
+			writeTrackers(writer);
+			writeBoards(writer);
+			writeTicks(writer);
+			writeLatency(writer);
+			writeQueues(writer);
+			writeJvm(writer);
+			metrics = writer.toString().getBytes(StandardCharsets.UTF_8);
+		} catch(Throwable e) {
+			// An exception would stop the timer, keep serving the last metrics
+			LogManager.log.severe("[Metrics] Collecting metrics failed", e);
+		}
+	}
+	
+	private static Tracker getRealTracker(Tracker tracker) {
+		if(tracker instanceof ReferenceAdjustedTracker)
+			tracker = ((ReferenceAdjustedTracker<?>) tracker).getTracker();
+		if(tracker instanceof PredictedTracker)
+			tracker = ((PredictedTracker<?>) tracker).getTracker();
+		return tracker;
+	}
+	
+	private void writeTrackers(MetricsWriter writer) {
+		List<Tracker> trackers = server.getAllTrackers();
+		writer.metric("slimevr_tracker_tps", "gauge", "Data updates per second received from the tracker");
+		for(int i = 0; i < trackers.size(); ++i) {
+			Tracker real = getRealTracker(trackers.get(i));
+			if(real instanceof TrackerWithTPS) {
+				float tps = ((TrackerWithTPS) real).getTPS();
+				if(tps >= 0)
+					writer.sample("slimevr_tracker_tps", tps, "tracker", real.getName());
+			}
+		}
+		writer.metric("slimevr_tracker_ping_seconds", "gauge", "Round trip time to the tracker");
+		for(int i = 0; i < trackers.size(); ++i) {
+			Tracker real = getRealTracker(trackers.get(i));
+			if(real instanceof IMUTracker && ((IMUTracker) real).ping >= 0)
+				writer.sample("slimevr_tracker_ping_seconds", ((IMUTracker) real).ping / 1000d, "tracker", real.getName());
+		}
+		writer.metric("slimevr_tracker_battery_volts", "gauge", "Battery voltage reported by the tracker");
+		for(int i = 0; i < trackers.size(); ++i) {
+			Tracker real = getRealTracker(trackers.get(i));
+			// Only reported for the first sensor of a board
+			if(real instanceof TrackerWithBattery && ((TrackerWithBattery) real).getBatteryVoltage() > 0)
+				writer.sample("slimevr_tracker_battery_volts", ((TrackerWithBattery) real).getBatteryVoltage(), "tracker", real.getName());
+		}
+		writer.metric("slimevr_tracker_battery_level", "gauge", "Battery level estimated from the voltage, between 0 and 1");
+		for(int i = 0; i < trackers.size(); ++i) {
+			Tracker real = getRealTracker(trackers.get(i));
+			if(real instanceof TrackerWithBattery && ((TrackerWithBattery) real).getBatteryVoltage() > 0)
+				writer.sample("slimevr_tracker_battery_level", ((TrackerWithBattery) real).getBatteryLevel(), "tracker", real.getName());
+		}
+		writePredictionErrors(writer, trackers);
+	}
+	
+	private static PredictedTracker<?> getPredictedTracker(Tracker tracker) {
+		if(tracker instanceof ReferenceAdjustedTracker)
+			tracker = ((ReferenceAdjustedTracker<?>) tracker).getTracker();
+		return tracker instanceof PredictedTracker ? (PredictedTracker<?>) tracker : null;
+	}
+	
+	private void writePredictionErrors(MetricsWriter writer, List<Tracker> trackers) {
+		// Only trackers that predicted and had their predictions checked
+		List<PredictedTracker<?>> predicted = new FastList<>();
+		for(int i = 0; i < trackers.size(); ++i) {
+			PredictedTracker<?> tracker = getPredictedTracker(trackers.get(i));
+			if(tracker != null && tracker.getPredictionErrorStats().count > 0)
+				predicted.add(tracker);
+		}
+		writer.metric("slimevr_tracker_prediction_error_samples_total", "counter", "Predicted rotations compared to the sample that arrived at their time");
+		for(int i = 0; i < predicted.size(); ++i)
+			writer.sample("slimevr_tracker_prediction_error_samples_total", predicted.get(i).getPredictionErrorStats().count, "tracker", predicted.get(i).getTracker().getName());
+		writer.metric("slimevr_tracker_prediction_error_mean_radians", "gauge", "Mean angle between the predicted and the later received rotations");
+		for(int i = 0; i < predicted.size(); ++i)
+			writer.sample("slimevr_tracker_prediction_error_mean_radians", predicted.get(i).getPredictionErrorStats().meanError, "tracker", predicted.get(i).getTracker().getName());
+		writer.metric("slimevr_tracker_prediction_error_rms_radians", "gauge", "Root mean square angle between the predicted and the later received rotations");
+		for(int i = 0; i < predicted.size(); ++i)
+			writer.sample("slimevr_tracker_prediction_error_rms_radians", predicted.get(i).getPredictionErrorStats().rmsError, "tracker", predicted.get(i).getTracker().getName());
+		writer.metric("slimevr_tracker_prediction_error_max_radians", "gauge", "Largest angle between a predicted and the later received rotation");
+		for(int i = 0; i < predicted.size(); ++i)
+			writer.sample("slimevr_tracker_prediction_error_max_radians", predicted.get(i).getPredictionErrorStats().maxError, "tracker", predicted.get(i).getTracker().getName());
+		writer.metric("slimevr_tracker_prediction_error_baseline_mean_radians", "gauge", "Mean error the same outputs would have had without prediction");
+		for(int i = 0; i < predicted.size(); ++i)
+			writer.sample("slimevr_tracker_prediction_error_baseline_mean_radians", predicted.get(i).getPredictionErrorStats().meanBaselineError, "tracker", predicted.get(i).getTracker().getName());
+	}
+	
+	private void writeBoards(MetricsWriter writer) {
+		List<BoardStats> boards = server.getTrackersServer().getBoardStats();
+		writer.metric("slimevr_board_packets_received_total", "counter", "UDP packets received from the board");
+		for(int i = 0; i < boards.size(); ++i)
+			writer.sample("slimevr_board_packets_received_total", boards.get(i).packetsReceived, "board", boards.get(i).name);
+		writer.metric("slimevr_board_packets_lost_total", "counter", "UDP packets of the board that never arrived, by their packet numbers");
+		for(int i = 0; i < boards.size(); ++i)
+			writer.sample("slimevr_board_packets_lost_total", boards.get(i).packetsLost, "board", boards.get(i).name);
+	}
+	
+	private void writeTicks(MetricsWriter writer) {
+		TickProfile profile = server.getTickProfiler().getProfile();
+		writer.metric("slimevr_tick_budget_seconds", "gauge", "Ticks taking longer are counted as over the budget");
+		writer.sample("slimevr_tick_budget_seconds", profile.budgetNs / 1000000000d);
+		writer.metric("slimevr_ticks_over_budget_total", "counter", "Server ticks that took longer than the budget");
+		writer.sample("slimevr_ticks_over_budget_total", profile.totalOverBudgetTicks);
+		writer.metric("slimevr_tick_rate", "gauge", "Server ticks per second over the last profiling window");
+		writer.sample("slimevr_tick_rate", profile.getTickRate());
+		if(profile.tick == null)
+			return;
+		writer.metric("slimevr_tick_duration_seconds", "gauge", "Time a server tick spent working over the last profiling window");
+		writeQuantiles(writer, "slimevr_tick_duration_seconds", profile.tick);
+		writer.metric("slimevr_tick_interval_seconds", "gauge", "Time from one server tick to the next over the last profiling window");
+		writeQuantiles(writer, "slimevr_tick_interval_seconds", profile.interval);
+		writer.metric("slimevr_tick_stage_seconds", "gauge", "Time a stage, callback or bridge took per tick over the last profiling window");
+		for(SectionStats stage : profile.stages)
+			writeQuantiles(writer, "slimevr_tick_stage_seconds", stage, "stage", stage.name);
+		for(SectionStats section : profile.sections)
+			writeQuantiles(writer, "slimevr_tick_stage_seconds", section, "stage", section.name);
+	}
+	
+	private static void writeQuantiles(MetricsWriter writer, String name, SectionStats stats, String... labels) {
+		writeQuantile(writer, name, "0.5", stats.p50Ns, labels);
+		writeQuantile(writer, name, "0.9", stats.p90Ns, labels);
+		writeQuantile(writer, name, "0.99", stats.p99Ns, labels);
+		writeQuantile(writer, name, "1", stats.maxNs, labels);
+	}
+	
+	private static void writeQuantile(MetricsWriter writer, String name, String quantile, long valueNs, String... labels) {
+		String[] allLabels = new String[labels.length + 2];
+		System.arraycopy(labels, 0, allLabels, 0, labels.length);
+		allLabels[labels.length] = "quantile";
+		allLabels[labels.length + 1] = quantile;
+		writer.sample(name, valueNs / 1000000000d, allLabels);
+	}
+	
+	private void writeLatency(MetricsWriter writer) {
+		if(!LatencyTracer.ENABLED)
+			return;
+		List<LatencyStage> stages = LatencyTracer.getStages();
+		writer.metric("slimevr_latency_seconds", "gauge", "Time since the tracker data was received when it passed the stage");
+		for(LatencyStage stage : stages) {
+			LatencyHistogram histogram = stage.histogram;
+			writeQuantile(writer, "slimevr_latency_seconds", "0.5", histogram.getValueAtPercentile(50d), "stage", stage.name);
+			writeQuantile(writer, "slimevr_latency_seconds", "0.99", histogram.getValueAtPercentile(99d), "stage", stage.name);
+			writeQuantile(writer, "slimevr_latency_seconds", "1", histogram.getMax(), "stage", stage.name);
+		}
+		writer.metric("slimevr_latency_samples_total", "counter", "Samples that passed the stage");
+		for(LatencyStage stage : stages)
+			writer.sample("slimevr_latency_samples_total", stage.histogram.getCount(), "stage", stage.name);
+	}
+	
+	private void writeQueues(MetricsWriter writer) {
+		writer.metric("slimevr_server_task_queue_depth", "gauge", "Tasks waiting for the next server tick");
+		writer.sample("slimevr_server_task_queue_depth", server.getTaskQueueSize());
+		List<Bridge> bridges = server.getBridges();
+		writer.metric("slimevr_bridge_queue_depth", "gauge", "Messages waiting in the bridge's queues");
+		for(int i = 0; i < bridges.size(); ++i) {
+			if(bridges.get(i) instanceof ProtobufBridge) {
+				ProtobufBridge<?> bridge = (ProtobufBridge<?>) bridges.get(i);
+				writer.sample("slimevr_bridge_queue_depth", bridge.getInputQueueSize(), "bridge", bridge.getBridgeName(), "direction", "input");
+				writer.sample("slimevr_bridge_queue_depth", bridge.getOutputQueueSize(), "bridge", bridge.getBridgeName(), "direction", "output");
+			}
+		}
+	}
+	
+	private void writeJvm(MetricsWriter writer) {
+		List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+		writer.metric("slimevr_jvm_gc_collections_total", "counter", "Garbage collections run by the collector");
+		for(GarbageCollectorMXBean collector : collectors) {
+			if(collector.getCollectionCount() >= 0)
+				writer.sample("slimevr_jvm_gc_collections_total", collector.getCollectionCount(), "gc", collector.getName());
+		}
+		writer.metric("slimevr_jvm_gc_collection_seconds_total", "counter", "Time spent in garbage collections by the collector");
+		for(GarbageCollectorMXBean collector : collectors) {
+			if(collector.getCollectionTime() >= 0)
+				writer.sample("slimevr_jvm_gc_collection_seconds_total", collector.getCollectionTime() / 1000d, "gc", collector.getName());
+		}
+		MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+		writer.metric("slimevr_jvm_heap_used_bytes", "gauge", "Used heap memory");
+		writer.sample("slimevr_jvm_heap_used_bytes", heap.getUsed());
+		writer.metric("slimevr_jvm_heap_committed_bytes", "gauge", "Heap memory committed by the JVM");
+		writer.sample("slimevr_jvm_heap_committed_bytes", heap.getCommitted());
+	}
+}
@@ -0,0 +1,83 @@
+package dev.slimevr.metrics;
+
+/**
+ * Writes metrics in the Prometheus text exposition format, version 0.0.4
+ */
+final class MetricsWriter {
+	
+	private final StringBuilder sb = new StringBuilder(4096);
+	
+	/**
+	 * Starts a metric, its samples must follow before the next one starts
+	 * @param type counter, gauge or summary
+	 */
+	MetricsWriter metric(String name, String type, String help) {
+		sb.append("# HELP ").append(name).append(' ');
+		for(int i = 0; i < help.length(); ++i) {
+			char c = help.charAt(i);
+			if(c == '\\')
+				sb.append("\\\\");
+			else if(c == '\n')
+				sb.append("\\n");
+			else
+				sb.append(c);
+		}
+		sb.append('\n');
+		sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+		return this;
+	}
+	
+	MetricsWriter sample(String name, double value) {
+		sb.append(name);
+		return value(value);
+	}
+	
+	/**
+	 * @param labels label names and values, alternating
+	 */
+	MetricsWriter sample(String name, double value, String... labels) {
+		sb.append(name).append('{');
+		for(int i = 0; i + 1 < labels.length; i += 2) {
+			if(i > 0)
+				sb.append(',');
+			sb.append(labels[i]).append("=\"");
+			appendLabelValue(labels[i + 1]);
+			sb.append('"');
+		}
+		sb.append('}');
+		return value(value);
+	}
+	
+	private MetricsWriter value(double value) {
+		sb.append(' ');
+		if(Double.isNaN(value))
+			sb.append("NaN");
+		else if(Double.isInfinite(value))
+			sb.append(value > 0 ? "+Inf" : "-Inf");
+		else if(value == (long) value)
+			sb.append((long) value);
+		else
+			sb.append(value);
+		sb.append('\n');
+		return this;
+	}
+	
+	private void appendLabelValue(String value) {
+		for(int i = 0; i < value.length(); ++i) {
+			char c = value.charAt(i);
+			if(c == '\\')
+				sb.append("\\\\");
+			else if(c == '"')
+				sb.append("\\\"");
+			else if(c == '\n')
+				sb.append("\\n");
+			else
+				sb.append(c);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return sb.toString();
+	}
+}
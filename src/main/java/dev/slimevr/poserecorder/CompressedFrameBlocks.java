@@ -0,0 +1,123 @@
+package dev.slimevr.poserecorder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import io.eiren.util.collections.FastList;
+import io.eiren.vr.trackers.TrackerPosition;
+
+/**
+ * The blocks of a compressed version 2 recording, see {@link PoseFrameCodec}.
+ * Blocks are decoded when a frame in them is first read and a few decoded
+ * blocks are cached, so reading frames in order only decodes each block
+ * once and the whole recording is never decoded at the same time.
+ * <p>Safe to read from multiple threads, a block may be decoded twice if
+ * two threads read it at the same time.
+ */
+final class CompressedFrameBlocks {
+
+	// Block header: frame count, size before deflating, deflated size
+	static final int BLOCK_HEADER_SIZE = 12;
+	// Enough for reading pairs of frames a few blocks apart on a few threads
+	private static final int CACHE_SLOTS = 8;
+
+	private static final class DecodedBlock {
+
+		final int index;
+		final TrackerFrameColumns[] trackers;
+
+		DecodedBlock(int index, TrackerFrameColumns[] trackers) {
+			this.index = index;
+			this.trackers = trackers;
+		}
+	}
+
+	private final ByteBuffer buffer;
+	private final String[] names;
+	private final int[] frameCounts;
+	private final TrackerPosition[][] designationTables;
+	// Where each block starts in the buffer
+	private final int[] blockOffsets;
+	private final AtomicReferenceArray<DecodedBlock> cache = new AtomicReferenceArray<DecodedBlock>(CACHE_SLOTS);
+
+	/**
+	 * Finds the blocks in the buffer without decoding them
+	 * @param buffer the blocks, starting at position 0
+	 */
+	CompressedFrameBlocks(ByteBuffer buffer, String[] names, int[] frameCounts, TrackerPosition[][] designationTables) throws IOException {
+		this.buffer = buffer;
+		this.names = names;
+		this.frameCounts = frameCounts;
+		this.designationTables = designationTables;
+
+		int maxFrameCount = 0;
+		for(int frameCount : frameCounts) {
+			maxFrameCount = Math.max(maxFrameCount, frameCount);
+		}
+		int blockCount = (maxFrameCount + PoseFrameCodec.BLOCK_FRAMES - 1) / PoseFrameCodec.BLOCK_FRAMES;
+		blockOffsets = new int[blockCount];
+		int offset = 0;
+		for(int i = 0; i < blockCount; i++) {
+			if(offset + BLOCK_HEADER_SIZE > buffer.limit()) {
+				throw new IOException("Frame block " + i + " is truncated");
+			}
+			int frameCount = buffer.getInt(offset);
+			int rawSize = buffer.getInt(offset + 4);
+			int compressedSize = buffer.getInt(offset + 8);
+			if(frameCount < 0 || frameCount > PoseFrameCodec.BLOCK_FRAMES || !PoseFrameCodec.isValidSize(compressedSize, rawSize)) {
+				throw new IOException("Frame block " + i + " is corrupted");
+			}
+			if(compressedSize > buffer.limit() - offset - BLOCK_HEADER_SIZE) {
+				throw new IOException("Frame block " + i + " is truncated");
+			}
+			blockOffsets[i] = offset;
+			offset += BLOCK_HEADER_SIZE + compressedSize;
+		}
+	}
+
+	/**
+	 * Creates a source for each tracker, reading from these blocks
+	 */
+	public FastList<CompressedTrackerFrames> createTrackers() {
+		FastList<CompressedTrackerFrames> trackers = new FastList<CompressedTrackerFrames>(names.length);
+		for(int i = 0; i < names.length; i++) {
+			trackers.add(new CompressedTrackerFrames(this, i, names[i], frameCounts[i]));
+		}
+		return trackers;
+	}
+
+	/**
+	 * Gets the decoded frames of a tracker in the block with the frame
+	 */
+	TrackerFrameColumns getBlockFrames(int tracker, int frame) {
+		int index = frame / PoseFrameCodec.BLOCK_FRAMES;
+		int slot = index % CACHE_SLOTS;
+		DecodedBlock block = cache.get(slot);
+		if(block == null || block.index != index) {
+			block = new DecodedBlock(index, decodeBlock(index));
+			cache.set(slot, block);
+		}
+		return block.trackers[tracker];
+	}
+
+	private TrackerFrameColumns[] decodeBlock(int index) {
+		int offset = blockOffsets[index];
+		int frameCount = buffer.getInt(offset);
+		int rawSize = buffer.getInt(offset + 4);
+		int compressedSize = buffer.getInt(offset + 8);
+
+		// Duplicated for its own position, the buffer is shared between threads
+		ByteBuffer compressedBuffer = buffer.duplicate();
+		compressedBuffer.position(offset + BLOCK_HEADER_SIZE);
+		byte[] compressed = new byte[compressedSize];
+		compressedBuffer.get(compressed);
+
+		try {
+			return PoseFrameCodec.decodeBlock(compressed, compressedSize, rawSize, index * PoseFrameCodec.BLOCK_FRAMES, frameCount, names, frameCounts, designationTables);
+		} catch(IOException e) {
+			// Frames are read through TrackerFrameSource, which can't throw checked exceptions
+			throw new IllegalStateException("Unable to decode frame block " + index, e);
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package dev.slimevr.poserecorder;
+
+/**
+ * Frames of one tracker read from a compressed version 2 recording, see
+ * {@link PoseFrameCodec}. The block with a frame is decoded when the frame
+ * is read, and shared with the other trackers of the recording.
+ * <p>Safe to read from multiple threads as long as each thread uses its
+ * own views.
+ */
+public final class CompressedTrackerFrames implements TrackerFrameSource {
+
+	private final CompressedFrameBlocks blocks;
+	private final int trackerIndex;
+	private final String name;
+	private final int frameCount;
+
+	CompressedTrackerFrames(CompressedFrameBlocks blocks, int trackerIndex, String name, int frameCount) {
+		this.blocks = blocks;
+		this.trackerIndex = trackerIndex;
+		this.name = name != null ? name : "";
+		this.frameCount = frameCount;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public int getFrameCount() {
+		return frameCount;
+	}
+
+	@Override
+	public TrackerFrame getFrame(int index, TrackerFrame view) {
+		if(index < 0 || index >= frameCount) {
+			return null;
+		}
+		return blocks.getBlockFrames(trackerIndex, index).getFrame(index % PoseFrameCodec.BLOCK_FRAMES, view);
+	}
+}
@@ -0,0 +1,148 @@
+package dev.slimevr.poserecorder;
+
+import java.util.Map;
+
+/**
+ * Schedules frames on a fixed grid of {@link System#nanoTime()} slots, one
+ * every interval from the first frame. Slots that pass without a frame are
+ * skipped instead of moving the grid, so frames don't drift.
+ * <p>Keeps statistics of how late frames are captured compared to their
+ * slot, which is how much the frame timing jitters.
+ */
+public class FrameScheduler {
+
+	public static final String METADATA_INTERVAL = "timing.interval_ns";
+	public static final String METADATA_FRAMES = "timing.frames";
+	public static final String METADATA_MISSED_FRAMES = "timing.missed_frames";
+	public static final String METADATA_JITTER_MEAN = "timing.jitter_mean_ns";
+	public static final String METADATA_JITTER_STD_DEV = "timing.jitter_std_dev_ns";
+	public static final String METADATA_JITTER_MAX = "timing.jitter_max_ns";
+
+	private long intervalNs;
+	private boolean started = false;
+	private long startTimeNs;
+	private long nextFrameTimeNs;
+	// The first slot that was due on the last poll
+	private long slotTimeNs;
+
+	private long frames;
+	private long missedFrames;
+	private double jitterSum;
+	private double jitterSquaredSum;
+	private long maxJitterNs;
+
+	public FrameScheduler(long intervalNs) {
+		setInterval(intervalNs);
+	}
+
+	public void setInterval(long intervalNs) {
+		if(intervalNs < 1) {
+			throw new IllegalArgumentException("intervalNs must at least have a value of 1");
+		}
+		this.intervalNs = intervalNs;
+	}
+
+	public long getInterval() {
+		return intervalNs;
+	}
+
+	/**
+	 * Starts a new grid at the next poll and clears the statistics
+	 */
+	public void reset() {
+		started = false;
+		frames = 0;
+		missedFrames = 0;
+		jitterSum = 0d;
+		jitterSquaredSum = 0d;
+		maxJitterNs = 0;
+	}
+
+	/**
+	 * Checks whether a frame is due, the first poll after a reset always is
+	 * @param nowNs the current {@link System#nanoTime()}
+	 * @return the number of slots that passed since the last frame, 0 if no
+	 * frame is due yet. More than 1 means the frames of the earlier slots were
+	 * missed.
+	 */
+	public int poll(long nowNs) {
+		if(!started) {
+			started = true;
+			startTimeNs = nowNs;
+			nextFrameTimeNs = nowNs;
+		}
+		if(nowNs - nextFrameTimeNs < 0) {
+			return 0;
+		}
+
+		long slots = (nowNs - nextFrameTimeNs) / intervalNs + 1;
+		slotTimeNs = nextFrameTimeNs;
+		nextFrameTimeNs += slots * intervalNs;
+
+		// Jitter is measured against the latest slot, the frame is captured for it
+		long jitterNs = nowNs - (nextFrameTimeNs - intervalNs);
+		frames++;
+		missedFrames += slots - 1;
+		jitterSum += jitterNs;
+		jitterSquaredSum += (double) jitterNs * jitterNs;
+		maxJitterNs = Math.max(maxJitterNs, jitterNs);
+
+		return (int) Math.min(slots, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @return the time of the first slot that was due on the last poll, in
+	 * nanoseconds since the first frame
+	 */
+	public long getSlotTime() {
+		return slotTimeNs - startTimeNs;
+	}
+
+	/**
+	 * @return nanoseconds since the first frame
+	 */
+	public long getTime(long nowNs) {
+		return started ? nowNs - startTimeNs : 0L;
+	}
+
+	public long getFrames() {
+		return frames;
+	}
+
+	public long getMissedFrames() {
+		return missedFrames;
+	}
+
+	public double getMeanJitter() {
+		return frames > 0 ? jitterSum / frames : 0d;
+	}
+
+	public double getJitterStdDev() {
+		if(frames == 0) {
+			return 0d;
+		}
+		double mean = jitterSum / frames;
+		return Math.sqrt(Math.max(0d, jitterSquaredSum / frames - mean * mean));
+	}
+
+	public long getMaxJitter() {
+		return maxJitterNs;
+	}
+
+	/**
+	 * Adds the interval and statistics to recording metadata
+	 */
+	public void putMetadata(Map<String, String> metadata) {
+		metadata.put(METADATA_INTERVAL, Long.toString(intervalNs));
+		metadata.put(METADATA_FRAMES, Long.toString(frames));
+		metadata.put(METADATA_MISSED_FRAMES, Long.toString(missedFrames));
+		metadata.put(METADATA_JITTER_MEAN, Long.toString(Math.round(getMeanJitter())));
+		metadata.put(METADATA_JITTER_STD_DEV, Long.toString(Math.round(getJitterStdDev())));
+		metadata.put(METADATA_JITTER_MAX, Long.toString(maxJitterNs));
+	}
+
+	@Override
+	public String toString() {
+		return frames + " frames, " + missedFrames + " missed, jitter mean " + String.format("%.3f", getMeanJitter() / 1e6) + " ms, std dev " + String.format("%.3f", getJitterStdDev() / 1e6) + " ms, max " + String.format("%.3f", maxJitterNs / 1e6) + " ms";
+	}
+}
@@ -0,0 +1,70 @@
+package dev.slimevr.poserecorder;
+
+import java.nio.ByteBuffer;
+
+import io.eiren.vr.trackers.TrackerPosition;
+
+/**
+ * Frames of one tracker read in place from a memory-mapped version 2
+ * recording, see {@link PoseFrameIO}.
+ * <p>Only absolute reads are used on the buffer, so it's safe to read from
+ * multiple threads as long as each thread uses its own views.
+ */
+public final class MappedTrackerFrames implements TrackerFrameSource {
+	
+	private final String name;
+	private final int frameCount;
+	private final TrackerPosition[] designations;
+	private final ByteBuffer buffer;
+	private final int offset;
+	private final int stride;
+	
+	/**
+	 * @param offset where the first record of this tracker is in the buffer
+	 * @param stride bytes from one record of this tracker to the next
+	 */
+	public MappedTrackerFrames(String name, int frameCount, TrackerPosition[] designations, ByteBuffer buffer, int offset, int stride) {
+		this.name = name != null ? name : "";
+		this.frameCount = frameCount;
+		this.designations = designations;
+		this.buffer = buffer;
+		this.offset = offset;
+		this.stride = stride;
+	}
+	
+	@Override
+	public String getName() {
+		return name;
+	}
+	
+	@Override
+	public int getFrameCount() {
+		return frameCount;
+	}
+	
+	@Override
+	public TrackerFrame getFrame(int index, TrackerFrame view) {
+		if(index < 0 || index >= frameCount) {
+			return null;
+		}
+		int offset = this.offset + index * stride;
+		int dataFlags = buffer.get(offset) & 0xFF;
+		if((dataFlags & PoseFrameIO.V2_PRESENT) == 0) {
+			return null;
+		}
+		dataFlags &= ~PoseFrameIO.V2_PRESENT;
+		if(TrackerFrameData.ROTATION.check(dataFlags)) {
+			view.rotation.set(buffer.getFloat(offset + 4), buffer.getFloat(offset + 8), buffer.getFloat(offset + 12), buffer.getFloat(offset + 16));
+		}
+		if(TrackerFrameData.POSITION.check(dataFlags)) {
+			view.position.set(buffer.getFloat(offset + 20), buffer.getFloat(offset + 24), buffer.getFloat(offset + 28));
+		}
+		int designationIndex = buffer.get(offset + 1) & 0xFF;
+		TrackerPosition designation = designationIndex < designations.length ? designations[designationIndex] : null;
+		if(designation == null) {
+			dataFlags &= ~TrackerFrameData.DESIGNATION.flag;
+		}
+		view.setView(designation, dataFlags);
+		return view;
+	}
+}
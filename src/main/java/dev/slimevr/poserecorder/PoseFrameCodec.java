@@ -0,0 +1,349 @@
+package dev.slimevr.poserecorder;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import io.eiren.vr.trackers.TrackerPosition;
+
+/**
+ * Encodes blocks of frames for compressed version 2 recordings, see
+ * {@link PoseFrameIO#V2_LAYOUT_COMPRESSED}.
+ * <p>Each block holds {@link #BLOCK_FRAMES} frames of all trackers and can
+ * be decoded on its own. Per tracker, the block stores the flags and
+ * designation indices of its frames, then the rotations and positions
+ * quantized to integers and stored as the difference to the previous frame
+ * of the same tracker that has one, as zig-zag variable length integers.
+ * The block is then deflated, the quantized differences of consecutive
+ * frames are small and repeat a lot.
+ * <p>Quantization is lossy: rotations keep a precision of
+ * 1 / {@link #ROTATION_SCALE} per component and positions of
+ * 1 / {@link #POSITION_SCALE} meters.
+ */
+public final class PoseFrameCodec {
+
+	public static final int BLOCK_FRAMES = 256;
+	public static final float ROTATION_SCALE = 1 << 16;
+	public static final float POSITION_SCALE = 10000f;
+	/**
+	 * Deflate can't compress data to less than about a thousandth of its size
+	 */
+	private static final long MAX_DEFLATE_RATIO = 1032;
+
+	private PoseFrameCodec() {
+		// Do not allow instantiating
+	}
+
+	/**
+	 * A growing byte array with the variable length integer encoding
+	 */
+	static final class BlockBuffer {
+
+		byte[] bytes;
+		int size = 0;
+
+		BlockBuffer(int capacity) {
+			bytes = new byte[capacity];
+		}
+
+		void clear() {
+			size = 0;
+		}
+
+		void ensureCapacity(int capacity) {
+			if(capacity > bytes.length) {
+				byte[] newBytes = new byte[Math.max(capacity, bytes.length * 2)];
+				System.arraycopy(bytes, 0, newBytes, 0, size);
+				bytes = newBytes;
+			}
+		}
+
+		void writeByte(int value) {
+			ensureCapacity(size + 1);
+			bytes[size++] = (byte) value;
+		}
+
+		void writeVarInt(int value) {
+			ensureCapacity(size + 5);
+			// Zig-zag, so small negative values are small too
+			int zigZag = (value << 1) ^ (value >> 31);
+			while((zigZag & ~0x7F) != 0) {
+				bytes[size++] = (byte) ((zigZag & 0x7F) | 0x80);
+				zigZag >>>= 7;
+			}
+			bytes[size++] = (byte) zigZag;
+		}
+
+		void writeVarLong(long value) {
+			ensureCapacity(size + 10);
+			long zigZag = (value << 1) ^ (value >> 63);
+			while((zigZag & ~0x7FL) != 0) {
+				bytes[size++] = (byte) ((zigZag & 0x7F) | 0x80);
+				zigZag >>>= 7;
+			}
+			bytes[size++] = (byte) zigZag;
+		}
+	}
+
+	/**
+	 * Reads what {@link BlockBuffer} wrote
+	 */
+	private static final class BlockReader {
+
+		final byte[] bytes;
+		int pos = 0;
+
+		BlockReader(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		int readUnsignedByte() {
+			return bytes[pos++] & 0xFF;
+		}
+
+		int readVarInt() {
+			int zigZag = 0;
+			int shift = 0;
+			int b;
+			do {
+				b = bytes[pos++];
+				zigZag |= (b & 0x7F) << shift;
+				shift += 7;
+			} while((b & 0x80) != 0);
+			return (zigZag >>> 1) ^ -(zigZag & 1);
+		}
+
+		long readVarLong() {
+			long zigZag = 0;
+			int shift = 0;
+			int b;
+			do {
+				b = bytes[pos++];
+				zigZag |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while((b & 0x80) != 0);
+			return (zigZag >>> 1) ^ -(zigZag & 1);
+		}
+	}
+
+	private static int quantize(float value, float scale) {
+		return Math.round(value * scale);
+	}
+
+	private static void deflate(Deflater deflater, BlockBuffer raw, BlockBuffer compressed) {
+		deflater.reset();
+		deflater.setInput(raw.bytes, 0, raw.size);
+		deflater.finish();
+		compressed.clear();
+		while(!deflater.finished()) {
+			compressed.ensureCapacity(compressed.size + 4096);
+			compressed.size += deflater.deflate(compressed.bytes, compressed.size, compressed.bytes.length - compressed.size);
+		}
+	}
+
+	/**
+	 * Checks that the stored sizes of deflated data are possible, so a
+	 * corrupted size isn't allocated
+	 */
+	static boolean isValidSize(int compressedSize, int rawSize) {
+		return compressedSize >= 0 && rawSize >= 0 && rawSize <= compressedSize * MAX_DEFLATE_RATIO;
+	}
+
+	private static byte[] inflate(byte[] compressed, int compressedSize, int rawSize, String description) throws IOException {
+		if(!isValidSize(compressedSize, rawSize) || compressedSize > compressed.length) {
+			throw new IOException("Corrupted " + description + ", invalid size");
+		}
+		byte[] raw = new byte[rawSize];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed, 0, compressedSize);
+			int read = 0;
+			while(read < rawSize && !inflater.finished()) {
+				int inflated = inflater.inflate(raw, read, rawSize - read);
+				if(inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				read += inflated;
+			}
+			if(read != rawSize) {
+				throw new IOException("Truncated " + description);
+			}
+			// Reads the end of the stream, so its checksum is verified
+			if(!inflater.finished() && (inflater.inflate(new byte[1]) != 0 || !inflater.finished())) {
+				throw new IOException("Corrupted " + description + ", it doesn't end after its size");
+			}
+		} catch(DataFormatException e) {
+			throw new IOException("Corrupted " + description, e);
+		} finally {
+			inflater.end();
+		}
+		return raw;
+	}
+
+	/**
+	 * Encodes and deflates the timestamps of all frames as differences to the
+	 * previous frame
+	 */
+	static void encodeFrameTimes(PoseFrames frames, int frameCount, Deflater deflater, BlockBuffer raw, BlockBuffer compressed) {
+		raw.clear();
+		long last = 0;
+		for(int i = 0; i < frameCount; i++) {
+			long time = frames.getFrameTime(i);
+			raw.writeVarLong(time - last);
+			last = time;
+		}
+		deflate(deflater, raw, compressed);
+	}
+
+	static long[] decodeFrameTimes(byte[] compressed, int rawSize, int frameCount) throws IOException {
+		BlockReader reader = new BlockReader(inflate(compressed, compressed.length, rawSize, "frame timestamps"));
+		long[] frameTimes = new long[frameCount];
+		long last = 0;
+		try {
+			for(int i = 0; i < frameCount; i++) {
+				last += reader.readVarLong();
+				frameTimes[i] = last;
+			}
+		} catch(ArrayIndexOutOfBoundsException e) {
+			throw new IOException("Corrupted frame timestamps", e);
+		}
+		return frameTimes;
+	}
+
+	/**
+	 * Encodes and deflates a block of frames
+	 * @param designationTables the designations of each tracker, see
+	 * {@link PoseFrameIO}
+	 * @param raw buffer for the encoded frames before deflating
+	 * @param compressed receives the deflated block
+	 */
+	static void encodeBlock(PoseFrames frames, int start, int count, TrackerPosition[][] designationTables, Deflater deflater, BlockBuffer raw, BlockBuffer compressed) {
+		raw.clear();
+		TrackerFrame view = TrackerFrame.createView();
+		for(int t = 0; t < frames.getTrackerCount(); t++) {
+			TrackerFrameSource tracker = frames.getTrackerFrames(t);
+			TrackerPosition[] designations = designationTables[t];
+
+			for(int i = start; i < start + count; i++) {
+				TrackerFrame frame = tracker != null ? tracker.getFrame(i, view) : null;
+				raw.writeByte(frame != null ? frame.getDataFlags() | PoseFrameIO.V2_PRESENT : 0);
+			}
+			for(int i = start; i < start + count; i++) {
+				TrackerFrame frame = tracker != null ? tracker.getFrame(i, view) : null;
+				raw.writeByte(frame != null ? PoseFrameIO.getDesignationIndex(designations, frame.getBodyPosition()) : PoseFrameIO.V2_NO_DESIGNATION);
+			}
+
+			int lastX = 0, lastY = 0, lastZ = 0, lastW = 0;
+			for(int i = start; i < start + count; i++) {
+				TrackerFrame frame = tracker != null ? tracker.getFrame(i, view) : null;
+				if(frame == null || !frame.hasData(TrackerFrameData.ROTATION)) {
+					continue;
+				}
+				int x = quantize(frame.rotation.getX(), ROTATION_SCALE);
+				int y = quantize(frame.rotation.getY(), ROTATION_SCALE);
+				int z = quantize(frame.rotation.getZ(), ROTATION_SCALE);
+				int w = quantize(frame.rotation.getW(), ROTATION_SCALE);
+				raw.writeVarInt(x - lastX);
+				raw.writeVarInt(y - lastY);
+				raw.writeVarInt(z - lastZ);
+				raw.writeVarInt(w - lastW);
+				lastX = x;
+				lastY = y;
+				lastZ = z;
+				lastW = w;
+			}
+
+			lastX = lastY = lastZ = 0;
+			for(int i = start; i < start + count; i++) {
+				TrackerFrame frame = tracker != null ? tracker.getFrame(i, view) : null;
+				if(frame == null || !frame.hasData(TrackerFrameData.POSITION)) {
+					continue;
+				}
+				int x = quantize(frame.position.getX(), POSITION_SCALE);
+				int y = quantize(frame.position.getY(), POSITION_SCALE);
+				int z = quantize(frame.position.getZ(), POSITION_SCALE);
+				raw.writeVarInt(x - lastX);
+				raw.writeVarInt(y - lastY);
+				raw.writeVarInt(z - lastZ);
+				lastX = x;
+				lastY = y;
+				lastZ = z;
+			}
+		}
+
+		deflate(deflater, raw, compressed);
+	}
+
+	/**
+	 * Inflates and decodes a block
+	 * @param rawSize size of the block before it was deflated
+	 * @param frameCounts frames of each tracker in the whole recording, frames
+	 * past them are left missing
+	 * @return the frames of each tracker in the block
+	 */
+	static TrackerFrameColumns[] decodeBlock(byte[] compressed, int compressedSize, int rawSize, int start, int count, String[] names, int[] frameCounts, TrackerPosition[][] designationTables) throws IOException {
+		if(count < 0 || count > BLOCK_FRAMES) {
+			throw new IOException("Corrupted frame block at frame " + start + ", invalid frame count " + count);
+		}
+		byte[] raw = inflate(compressed, compressedSize, rawSize, "frame block at frame " + start);
+
+		TrackerFrameColumns[] trackers = new TrackerFrameColumns[names.length];
+		int[] flags = new int[count];
+		BlockReader reader = new BlockReader(raw);
+		try {
+			for(int t = 0; t < trackers.length; t++) {
+				// Frames past the end of a shorter tracker are encoded as missing
+				int trackerCount = Math.max(0, Math.min(count, frameCounts[t] - start));
+				TrackerFrameColumns trackerFrames = new TrackerFrameColumns(names[t], trackerCount);
+				TrackerPosition[] designations = designationTables[t];
+
+				for(int i = 0; i < count; i++) {
+					flags[i] = reader.readUnsignedByte();
+				}
+				int designationsStart = reader.pos;
+				reader.pos += count;
+
+				int lastX = 0, lastY = 0, lastZ = 0, lastW = 0;
+				for(int i = 0; i < count; i++) {
+					if((flags[i] & PoseFrameIO.V2_PRESENT) == 0 || !TrackerFrameData.ROTATION.check(flags[i])) {
+						continue;
+					}
+					lastX += reader.readVarInt();
+					lastY += reader.readVarInt();
+					lastZ += reader.readVarInt();
+					lastW += reader.readVarInt();
+					if(i < trackerCount) {
+						trackerFrames.setRotation(i, lastX / ROTATION_SCALE, lastY / ROTATION_SCALE, lastZ / ROTATION_SCALE, lastW / ROTATION_SCALE);
+					}
+				}
+
+				lastX = lastY = lastZ = 0;
+				for(int i = 0; i < count; i++) {
+					if((flags[i] & PoseFrameIO.V2_PRESENT) == 0 || !TrackerFrameData.POSITION.check(flags[i])) {
+						continue;
+					}
+					lastX += reader.readVarInt();
+					lastY += reader.readVarInt();
+					lastZ += reader.readVarInt();
+					if(i < trackerCount) {
+						trackerFrames.setPosition(i, lastX / POSITION_SCALE, lastY / POSITION_SCALE, lastZ / POSITION_SCALE);
+					}
+				}
+
+				for(int i = 0; i < trackerCount; i++) {
+					if((flags[i] & PoseFrameIO.V2_PRESENT) == 0) {
+						continue;
+					}
+					int designation = raw[designationsStart + i] & 0xFF;
+					trackerFrames.setFlags(i, designation < designations.length ? designations[designation] : null, flags[i] & ~PoseFrameIO.V2_PRESENT);
+				}
+
+				trackers[t] = trackerFrames;
+			}
+		} catch(ArrayIndexOutOfBoundsException e) {
+			throw new IOException("Corrupted frame block at frame " + start, e);
+		}
+		return trackers;
+	}
+}
@@ -0,0 +1,65 @@
+package dev.slimevr.poserecorder;
+
+import java.io.File;
+
+/**
+ * Converts a .pfr recording of either version to the version 2 format, see
+ * {@link PoseFrameIO}. With --compress the frames are compressed, see
+ * {@link PoseFrameCodec}, and with --resample the frames are resampled to a
+ * frame every given milliseconds, see {@link PoseFrameResampler}.
+ */
+public class PoseFrameConverter {
+	
+	private static void printUsage() {
+		System.err.println("Usage: PoseFrameConverter [--compress] [--resample <interval ms>] <input.pfr> <output.pfr>");
+		System.exit(1);
+	}
+	
+	public static void main(String[] args) {
+		boolean compress = false;
+		double resampleIntervalMs = 0d;
+		int i = 0;
+		for(; i < args.length && args[i].startsWith("--"); i++) {
+			if(args[i].equals("--compress")) {
+				compress = true;
+			} else if(args[i].equals("--resample") && i + 1 < args.length) {
+				try {
+					resampleIntervalMs = Double.parseDouble(args[++i]);
+				} catch(NumberFormatException e) {
+					printUsage();
+				}
+			} else {
+				printUsage();
+			}
+		}
+		if(args.length - i != 2) {
+			printUsage();
+		}
+		
+		File input = new File(args[i]);
+		File output = new File(args[i + 1]);
+		if(input.getAbsoluteFile().equals(output.getAbsoluteFile())) {
+			System.err.println("Input and output must be different files");
+			System.exit(1);
+		}
+		
+		PoseFrames frames = PoseFrameIO.readFromFile(input);
+		if(frames == null) {
+			System.err.println(input + ": unable to read the recording");
+			System.exit(1);
+		}
+		if(resampleIntervalMs > 0d) {
+			if(!frames.hasFrameTimes()) {
+				System.err.println(input + ": frames have no timestamps and can't be resampled");
+				System.exit(1);
+			}
+			frames = PoseFrameResampler.resample(frames, Math.round(resampleIntervalMs * 1000000d));
+		}
+		
+		if(!PoseFrameIO.writeToFile(output, frames, compress)) {
+			System.err.println(input + ": conversion failed");
+			System.exit(1);
+		}
+		System.out.println(input + " -> " + output + " (" + input.length() + " -> " + output.length() + " bytes)");
+	}
+}
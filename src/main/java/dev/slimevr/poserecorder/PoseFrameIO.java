@@ -2,21 +2,85 @@ package dev.slimevr.poserecorder;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-
-import com.jme3.math.Quaternion;
-import com.jme3.math.Vector3f;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
 
 import io.eiren.util.collections.FastList;
 import io.eiren.util.logging.LogManager;
 import io.eiren.vr.trackers.TrackerPosition;
 
+/**
+ * Reads and writes .pfr recordings.
+ * <p>Version 1 has no header and stores every frame with its designation
+ * as a string. Version 2 starts with {@link #V2_MAGIC}, the version, the
+ * offset of the frame data, the layout and a table of the trackers with
+ * the designations each of them uses. Frames are fixed size records of
+ * {@link #V2_RECORD_SIZE} bytes, either grouped by tracker
+ * ({@link #V2_LAYOUT_TRACKERS}) or by frame ({@link #V2_LAYOUT_FRAMES}):
+ * <pre>
+ * byte  flags ({@link TrackerFrameData} flags | {@link #V2_PRESENT})
+ * byte  designation index in the tracker's table, 255 for none
+ * short reserved
+ * float rotation x, y, z, w
+ * float position x, y, z
+ * </pre>
+ * Version 2 files are memory-mapped when read from a file, so they open
+ * without reading the frames and any frame can be read by its index.
+ * <p>Frames grouped by frame can be appended to, see
+ * {@link PoseFrameStreamWriter}. Their frame count is taken from the file
+ * size when mapped, so a recording that was never closed is still
+ * readable.
+ * <p>Compressed recordings ({@link #V2_LAYOUT_COMPRESSED}) store blocks of
+ * frames encoded by {@link PoseFrameCodec} instead of records. Each block
+ * starts with its frame count, its size before deflating and its deflated
+ * size as ints. Blocks are decoded when their frames are read.
+ * <p>Flags in the high bits of the layout add optional parts. With
+ * {@link #V2_FLAG_METADATA} the tracker table is followed by a count and
+ * that many pairs of UTF keys and values. With {@link #V2_FLAG_FRAME_TIMES}
+ * each frame has a timestamp in nanoseconds since the first frame: as
+ * longs before the records padded to the record size when grouped by
+ * tracker, as a record of its own before the trackers of each frame when
+ * grouped by frame, and as one deflated block before the frame blocks
+ * when compressed.
+ */
 public final class PoseFrameIO {
 	
+	public static final int V2_MAGIC = 0x53565250; // "SVRP"
+	public static final int V2_VERSION = 2;
+	public static final int V2_RECORD_SIZE = 32;
+	// Set in the flags of a frame that exists, a missing frame reads as null
+	public static final int V2_PRESENT = 1 << 7;
+	public static final int V2_NO_DESIGNATION = 0xFF;
+	// All frames of the first tracker, then all frames of the next one
+	public static final int V2_LAYOUT_TRACKERS = 0;
+	// All trackers of the first frame, then all trackers of the next one
+	public static final int V2_LAYOUT_FRAMES = 1;
+	// Blocks of frames encoded by PoseFrameCodec
+	public static final int V2_LAYOUT_COMPRESSED = 2;
+	public static final int V2_LAYOUT_MASK = 0xFF;
+	// Set in the layout when the tracker table is followed by metadata
+	public static final int V2_FLAG_METADATA = 1 << 8;
+	// Set in the layout when frames have timestamps
+	public static final int V2_FLAG_FRAME_TIMES = 1 << 9;
+	// Magic number, version, data offset and layout
+	private static final int V2_FIXED_HEADER_SIZE = 20;
+	
+	private static final byte[] EMPTY_RECORD = new byte[V2_RECORD_SIZE];
+	
 	private PoseFrameIO() {
 		// Do not allow instantiating
 	}
@@ -25,12 +89,14 @@ public final class PoseFrameIO {
 		try {
 			if(frames != null) {
 				outputStream.writeInt(frames.getTrackerCount());
-				for(PoseFrameTracker tracker : frames.getTrackers()) {
+				TrackerFrame view = TrackerFrame.createView();
+				for(int t = 0; t < frames.getTrackerCount(); t++) {
+					TrackerFrameSource tracker = frames.getTrackerFrames(t);
 					
-					outputStream.writeUTF(tracker.name);
+					outputStream.writeUTF(tracker.getName());
 					outputStream.writeInt(tracker.getFrameCount());
 					for(int i = 0; i < tracker.getFrameCount(); i++) {
-						TrackerFrame trackerFrame = tracker.safeGetFrame(i);
+						TrackerFrame trackerFrame = tracker.getFrame(i, view);
 						if(trackerFrame == null) {
 							outputStream.writeInt(0);
 							continue;
@@ -39,7 +105,7 @@ public final class PoseFrameIO {
 						outputStream.writeInt(trackerFrame.getDataFlags());
 						
 						if(trackerFrame.hasData(TrackerFrameData.DESIGNATION)) {
-							outputStream.writeUTF(trackerFrame.designation.designation);
+							outputStream.writeUTF(trackerFrame.getBodyPosition().designation);
 						}
 						
 						if(trackerFrame.hasData(TrackerFrameData.ROTATION)) {
@@ -67,9 +133,238 @@ public final class PoseFrameIO {
 		return true;
 	}
 	
+	/**
+	 * Builds a version 2 header, padded to the start of the frame data
+	 * @param designationTables the designations each tracker uses, frames
+	 * refer to them by index
+	 * @param metadata added with {@link #V2_FLAG_METADATA} if not empty
+	 * @param minDataOffset pads the header to at least this size, so it can
+	 * be rewritten later with more metadata. Must be a multiple of the
+	 * record size.
+	 */
+	static byte[] createHeaderV2(int layout, String[] names, int[] frameCounts, TrackerPosition[][] designationTables, Map<String, String> metadata, int minDataOffset) throws IOException {
+		ByteArrayOutputStream tableBytes = new ByteArrayOutputStream();
+		DataOutputStream table = new DataOutputStream(tableBytes);
+		table.writeInt(names.length);
+		for(int i = 0; i < names.length; i++) {
+			table.writeUTF(names[i]);
+			table.writeInt(frameCounts[i]);
+			table.writeByte(designationTables[i].length);
+			for(TrackerPosition designation : designationTables[i]) {
+				table.writeUTF(designation.designation);
+			}
+		}
+		if(metadata != null && !metadata.isEmpty()) {
+			layout |= V2_FLAG_METADATA;
+			table.writeInt(metadata.size());
+			for(Map.Entry<String, String> entry : metadata.entrySet()) {
+				table.writeUTF(entry.getKey());
+				table.writeUTF(entry.getValue());
+			}
+		}
+		table.flush();
+		
+		// Align records to their size
+		int dataOffset = Math.max(alignToRecord(V2_FIXED_HEADER_SIZE + tableBytes.size()), minDataOffset);
+		
+		ByteArrayOutputStream headerBytes = new ByteArrayOutputStream(dataOffset);
+		DataOutputStream header = new DataOutputStream(headerBytes);
+		header.writeInt(V2_MAGIC);
+		header.writeInt(V2_VERSION);
+		header.writeLong(dataOffset);
+		header.writeInt(layout);
+		tableBytes.writeTo(header);
+		header.write(new byte[dataOffset - V2_FIXED_HEADER_SIZE - tableBytes.size()]);
+		header.flush();
+		return headerBytes.toByteArray();
+	}
+	
+	private static int alignToRecord(int size) {
+		return (size + V2_RECORD_SIZE - 1) / V2_RECORD_SIZE * V2_RECORD_SIZE;
+	}
+	
+	/**
+	 * The tracker table of a version 2 header for frames being written
+	 */
+	private static class TableV2 {
+		
+		final PoseFrames frames;
+		final String[] names;
+		final int[] frameCounts;
+		final TrackerPosition[][] designationTables;
+		
+		TableV2(PoseFrames frames) {
+			this.frames = frames;
+			int trackerCount = frames != null ? frames.getTrackerCount() : 0;
+			TrackerFrame view = TrackerFrame.createView();
+			
+			names = new String[trackerCount];
+			frameCounts = new int[trackerCount];
+			designationTables = new TrackerPosition[trackerCount][];
+			for(int t = 0; t < trackerCount; t++) {
+				TrackerFrameSource tracker = frames.getTrackerFrames(t);
+				FastList<TrackerPosition> designations = new FastList<TrackerPosition>(1);
+				for(int i = 0; i < tracker.getFrameCount(); i++) {
+					TrackerFrame trackerFrame = tracker.getFrame(i, view);
+					if(trackerFrame != null && trackerFrame.getBodyPosition() != null && !designations.contains(trackerFrame.getBodyPosition())) {
+						designations.add(trackerFrame.getBodyPosition());
+					}
+				}
+				names[t] = tracker.getName();
+				frameCounts[t] = tracker.getFrameCount();
+				designationTables[t] = designations.toArray(new TrackerPosition[designations.size()]);
+			}
+		}
+		
+		boolean hasFrameTimes() {
+			return frames != null && frames.hasFrameTimes();
+		}
+		
+		byte[] createHeader(int layout) throws IOException {
+			return createHeaderV2(hasFrameTimes() ? layout | V2_FLAG_FRAME_TIMES : layout, names, frameCounts, designationTables, frames != null ? frames.getMetadata() : null, 0);
+		}
+	}
+	
+	// Writes the timestamp of every frame as longs, padded to the record size
+	private static void writeFrameTimes(DataOutputStream outputStream, PoseFrames frames, int frameCount) throws IOException {
+		for(int i = 0; i < frameCount; i++) {
+			outputStream.writeLong(frames.getFrameTime(i));
+		}
+		int size = frameCount * 8;
+		outputStream.write(new byte[alignToRecord(size) - size]);
+	}
+	
+	private static int getMaxFrameCount(int[] frameCounts) {
+		int maxFrameCount = 0;
+		for(int frameCount : frameCounts) {
+			maxFrameCount = Math.max(maxFrameCount, frameCount);
+		}
+		return maxFrameCount;
+	}
+	
+	/**
+	 * @return the index of the designation in the table, or
+	 * {@link #V2_NO_DESIGNATION}
+	 */
+	static int getDesignationIndex(TrackerPosition[] designations, TrackerPosition designation) {
+		for(int i = 0; i < designations.length; i++) {
+			if(designations[i] == designation) {
+				return i;
+			}
+		}
+		return V2_NO_DESIGNATION;
+	}
+	
+	/**
+	 * Writes frames in the version 2 format, grouped by tracker
+	 */
+	public static boolean writeFramesV2(DataOutputStream outputStream, PoseFrames frames) {
+		try {
+			int trackerCount = frames != null ? frames.getTrackerCount() : 0;
+			TrackerFrame view = TrackerFrame.createView();
+			
+			TableV2 table = new TableV2(frames);
+			TrackerPosition[][] designationTables = table.designationTables;
+			outputStream.write(table.createHeader(V2_LAYOUT_TRACKERS));
+			if(table.hasFrameTimes()) {
+				writeFrameTimes(outputStream, frames, getMaxFrameCount(table.frameCounts));
+			}
+			
+			for(int t = 0; t < trackerCount; t++) {
+				TrackerFrameSource tracker = frames.getTrackerFrames(t);
+				TrackerPosition[] designations = designationTables[t];
+				for(int i = 0; i < tracker.getFrameCount(); i++) {
+					TrackerFrame trackerFrame = tracker.getFrame(i, view);
+					if(trackerFrame == null) {
+						outputStream.write(EMPTY_RECORD);
+						continue;
+					}
+					
+					int dataFlags = trackerFrame.getDataFlags();
+					outputStream.writeByte(dataFlags | V2_PRESENT);
+					outputStream.writeByte(getDesignationIndex(designations, trackerFrame.getBodyPosition()));
+					outputStream.writeShort(0);
+					
+					if(TrackerFrameData.ROTATION.check(dataFlags)) {
+						outputStream.writeFloat(trackerFrame.rotation.getX());
+						outputStream.writeFloat(trackerFrame.rotation.getY());
+						outputStream.writeFloat(trackerFrame.rotation.getZ());
+						outputStream.writeFloat(trackerFrame.rotation.getW());
+					} else {
+						outputStream.write(EMPTY_RECORD, 0, 16);
+					}
+					
+					if(TrackerFrameData.POSITION.check(dataFlags)) {
+						outputStream.writeFloat(trackerFrame.position.getX());
+						outputStream.writeFloat(trackerFrame.position.getY());
+						outputStream.writeFloat(trackerFrame.position.getZ());
+					} else {
+						outputStream.write(EMPTY_RECORD, 0, 12);
+					}
+				}
+			}
+		} catch(Exception e) {
+			LogManager.log.severe("Error writing frame to stream", e);
+			return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Writes frames in the compressed version 2 format, see
+	 * {@link PoseFrameCodec}
+	 */
+	public static boolean writeFramesCompressed(DataOutputStream outputStream, PoseFrames frames) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			TableV2 table = new TableV2(frames);
+			outputStream.write(table.createHeader(V2_LAYOUT_COMPRESSED));
+			
+			int frameCount = frames != null ? frames.getMaxFrameCount() : 0;
+			PoseFrameCodec.BlockBuffer raw = new PoseFrameCodec.BlockBuffer(4096);
+			PoseFrameCodec.BlockBuffer compressed = new PoseFrameCodec.BlockBuffer(4096);
+			if(table.hasFrameTimes()) {
+				PoseFrameCodec.encodeFrameTimes(frames, frameCount, deflater, raw, compressed);
+				outputStream.writeInt(raw.size);
+				outputStream.writeInt(compressed.size);
+				outputStream.write(compressed.bytes, 0, compressed.size);
+			}
+			for(int start = 0; start < frameCount; start += PoseFrameCodec.BLOCK_FRAMES) {
+				int count = Math.min(PoseFrameCodec.BLOCK_FRAMES, frameCount - start);
+				PoseFrameCodec.encodeBlock(frames, start, count, table.designationTables, deflater, raw, compressed);
+				outputStream.writeInt(count);
+				outputStream.writeInt(raw.size);
+				outputStream.writeInt(compressed.size);
+				outputStream.write(compressed.bytes, 0, compressed.size);
+			}
+		} catch(Exception e) {
+			LogManager.log.severe("Error writing frame to stream", e);
+			return false;
+		} finally {
+			deflater.end();
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Writes frames to a file in the version 2 format
+	 */
 	public static boolean writeToFile(File file, PoseFrames frames) {
+		return writeToFile(file, frames, false);
+	}
+	
+	/**
+	 * Writes frames to a file in the version 2 format
+	 * @param compress whether to compress the frames, see
+	 * {@link PoseFrameCodec}
+	 */
+	public static boolean writeToFile(File file, PoseFrames frames, boolean compress) {
 		try(DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
-			writeFrames(outputStream, frames);
+			if(!(compress ? writeFramesCompressed(outputStream, frames) : writeFramesV2(outputStream, frames))) {
+				return false;
+			}
 		} catch(Exception e) {
 			LogManager.log.severe("Error writing frames to file", e);
 			return false;
@@ -78,16 +373,43 @@ public final class PoseFrameIO {
 		return true;
 	}
 	
+	/**
+	 * Converts a version 1 recording to version 2, the files must not be the
+	 * same
+	 */
+	public static boolean convertToV2(File v1File, File v2File) {
+		return convertToV2(v1File, v2File, false);
+	}
+	
+	/**
+	 * Converts a recording of either version to version 2, optionally
+	 * compressed. The files must not be the same.
+	 */
+	public static boolean convertToV2(File inputFile, File v2File, boolean compress) {
+		PoseFrames frames = readFromFile(inputFile);
+		if(frames == null) {
+			return false;
+		}
+		return writeToFile(v2File, frames, compress);
+	}
+	
+	/**
+	 * Reads frames of either version into memory
+	 */
 	public static PoseFrames readFrames(DataInputStream inputStream) {
 		try {
 			
 			int trackerCount = inputStream.readInt();
-			FastList<PoseFrameTracker> trackers = new FastList<PoseFrameTracker>(trackerCount);
+			if(trackerCount == V2_MAGIC) {
+				return readFramesV2(inputStream);
+			}
+			
+			FastList<TrackerFrameColumns> trackers = new FastList<TrackerFrameColumns>(trackerCount);
 			for(int i = 0; i < trackerCount; i++) {
 				
 				String name = inputStream.readUTF();
 				int trackerFrameCount = inputStream.readInt();
-				FastList<TrackerFrame> trackerFrames = new FastList<TrackerFrame>(trackerFrameCount);
+				TrackerFrameColumns trackerFrames = new TrackerFrameColumns(name, trackerFrameCount);
 				for(int j = 0; j < trackerFrameCount; j++) {
 					int dataFlags = inputStream.readInt();
 					
@@ -96,30 +418,29 @@ public final class PoseFrameIO {
 						designation = TrackerPosition.getByDesignation(inputStream.readUTF());
 					}
 					
-					Quaternion rotation = null;
 					if(TrackerFrameData.ROTATION.check(dataFlags)) {
 						float quatX = inputStream.readFloat();
 						float quatY = inputStream.readFloat();
 						float quatZ = inputStream.readFloat();
 						float quatW = inputStream.readFloat();
-						rotation = new Quaternion(quatX, quatY, quatZ, quatW);
+						trackerFrames.setRotation(j, quatX, quatY, quatZ, quatW);
 					}
 					
-					Vector3f position = null;
 					if(TrackerFrameData.POSITION.check(dataFlags)) {
 						float posX = inputStream.readFloat();
 						float posY = inputStream.readFloat();
 						float posZ = inputStream.readFloat();
-						position = new Vector3f(posX, posY, posZ);
+						trackerFrames.setPosition(j, posX, posY, posZ);
 					}
 					
-					trackerFrames.add(new TrackerFrame(designation, rotation, position));
+					trackerFrames.setFlags(j, designation, dataFlags);
 				}
 				
-				trackers.add(new PoseFrameTracker(name, trackerFrames));
+				trackers.add(trackerFrames);
 			}
 			
-			return new PoseFrames(trackers);
+			// Read straight into columns, recordings are only read after loading
+			return PoseFrames.fromColumns(trackers);
 		} catch(Exception e) {
 			LogManager.log.severe("Error reading frame from stream", e);
 		}
@@ -127,9 +448,277 @@ public final class PoseFrameIO {
 		return null;
 	}
 	
+	/**
+	 * The parts of a version 2 header needed to read the frames
+	 */
+	private static class HeaderV2 {
+		
+		long dataOffset;
+		int layout;
+		boolean hasFrameTimes;
+		String[] names;
+		int[] frameCounts;
+		TrackerPosition[][] designationTables;
+		Map<String, String> metadata = new LinkedHashMap<String, String>();
+		
+		int getMaxFrameCount() {
+			return PoseFrameIO.getMaxFrameCount(frameCounts);
+		}
+		
+		// Creates the frames and adds the metadata and timestamps
+		PoseFrames createFrames(FastList<? extends TrackerFrameSource> trackers, long[] frameTimes) {
+			PoseFrames frames = PoseFrames.fromColumns(trackers);
+			frames.getMetadata().putAll(metadata);
+			frames.setFrameTimes(frameTimes);
+			return frames;
+		}
+	}
+	
+	// Reads the version 2 header after the magic number, leaving the stream at the frames
+	private static HeaderV2 readHeaderV2(DataInputStream inputStream) throws IOException {
+		int version = inputStream.readInt();
+		if(version != V2_VERSION) {
+			throw new IOException("Unsupported recording version " + version);
+		}
+		HeaderV2 result = new HeaderV2();
+		result.dataOffset = inputStream.readLong();
+		if(result.dataOffset < V2_FIXED_HEADER_SIZE || result.dataOffset > Integer.MAX_VALUE) {
+			throw new IOException("Invalid frame data offset " + result.dataOffset);
+		}
+		int layout = inputStream.readInt();
+		result.layout = layout & V2_LAYOUT_MASK;
+		result.hasFrameTimes = (layout & V2_FLAG_FRAME_TIMES) != 0;
+		if(result.layout != V2_LAYOUT_TRACKERS && result.layout != V2_LAYOUT_FRAMES && result.layout != V2_LAYOUT_COMPRESSED) {
+			throw new IOException("Unsupported frame layout " + result.layout);
+		}
+		
+		// Read the table with its padding so the stream ends up at the frames
+		byte[] tableBytes = new byte[(int) result.dataOffset - V2_FIXED_HEADER_SIZE];
+		inputStream.readFully(tableBytes);
+		DataInputStream table = new DataInputStream(new ByteArrayInputStream(tableBytes));
+		
+		int trackerCount = table.readInt();
+		result.names = new String[trackerCount];
+		result.frameCounts = new int[trackerCount];
+		result.designationTables = new TrackerPosition[trackerCount][];
+		for(int i = 0; i < trackerCount; i++) {
+			result.names[i] = table.readUTF();
+			result.frameCounts[i] = table.readInt();
+			TrackerPosition[] designations = new TrackerPosition[table.readUnsignedByte()];
+			for(int j = 0; j < designations.length; j++) {
+				designations[j] = TrackerPosition.getByDesignation(table.readUTF());
+			}
+			result.designationTables[i] = designations;
+		}
+		if((layout & V2_FLAG_METADATA) != 0) {
+			int entryCount = table.readInt();
+			for(int i = 0; i < entryCount; i++) {
+				result.metadata.put(table.readUTF(), table.readUTF());
+			}
+		}
+		
+		return result;
+	}
+	
+	// Reads one record into columns
+	private static void readRecordV2(DataInputStream inputStream, TrackerFrameColumns trackerFrames, int index, TrackerPosition[] designations) throws IOException {
+		int dataFlags = inputStream.readUnsignedByte();
+		int designation = inputStream.readUnsignedByte();
+		inputStream.readShort();
+		float quatX = inputStream.readFloat();
+		float quatY = inputStream.readFloat();
+		float quatZ = inputStream.readFloat();
+		float quatW = inputStream.readFloat();
+		float posX = inputStream.readFloat();
+		float posY = inputStream.readFloat();
+		float posZ = inputStream.readFloat();
+		
+		if((dataFlags & V2_PRESENT) == 0) {
+			return;
+		}
+		dataFlags &= ~V2_PRESENT;
+		
+		if(TrackerFrameData.ROTATION.check(dataFlags)) {
+			trackerFrames.setRotation(index, quatX, quatY, quatZ, quatW);
+		}
+		
+		if(TrackerFrameData.POSITION.check(dataFlags)) {
+			trackerFrames.setPosition(index, posX, posY, posZ);
+		}
+		
+		trackerFrames.setFlags(index, designation < designations.length ? designations[designation] : null, dataFlags);
+	}
+	
+	// Reads the timestamps written by writeFrameTimes
+	private static long[] readFrameTimes(DataInputStream inputStream, int frameCount) throws IOException {
+		long[] frameTimes = new long[frameCount];
+		for(int i = 0; i < frameCount; i++) {
+			frameTimes[i] = inputStream.readLong();
+		}
+		int size = frameCount * 8;
+		inputStream.readFully(new byte[alignToRecord(size) - size]);
+		return frameTimes;
+	}
+	
+	/**
+	 * Reads compressed frame data, only the timestamps are decoded
+	 * @param data the frame data, starting at position 0
+	 */
+	private static PoseFrames readCompressedV2(HeaderV2 header, ByteBuffer data) throws IOException {
+		long[] frameTimes = null;
+		if(header.hasFrameTimes) {
+			if(data.limit() < 8 || !PoseFrameCodec.isValidSize(data.getInt(4), data.getInt(0)) || data.getInt(4) > data.limit() - 8) {
+				throw new IOException("Frame timestamps are corrupted or truncated");
+			}
+			int rawSize = data.getInt(0);
+			byte[] compressed = new byte[data.getInt(4)];
+			data.position(8);
+			data.get(compressed);
+			frameTimes = PoseFrameCodec.decodeFrameTimes(compressed, rawSize, header.getMaxFrameCount());
+			data = data.slice();
+		}
+		return header.createFrames(new CompressedFrameBlocks(data, header.names, header.frameCounts, header.designationTables).createTrackers(), frameTimes);
+	}
+	
+	/**
+	 * Reads the rest of a version 2 stream after the magic number into
+	 * memory. Frame counts are taken from the header, so frames grouped by
+	 * frame must have been closed properly to be read from a stream.
+	 */
+	private static PoseFrames readFramesV2(DataInputStream inputStream) throws IOException {
+		HeaderV2 header = readHeaderV2(inputStream);
+		
+		if(header.layout == V2_LAYOUT_COMPRESSED) {
+			// Keep the blocks compressed in memory, they're decoded when read
+			ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while((read = inputStream.read(buffer)) != -1) {
+				blocks.write(buffer, 0, read);
+			}
+			return readCompressedV2(header, ByteBuffer.wrap(blocks.toByteArray()));
+		}
+		
+		FastList<TrackerFrameColumns> trackers = new FastList<TrackerFrameColumns>(header.names.length);
+		for(int i = 0; i < header.names.length; i++) {
+			trackers.add(new TrackerFrameColumns(header.names[i], header.frameCounts[i]));
+		}
+		
+		long[] frameTimes = null;
+		if(header.layout == V2_LAYOUT_FRAMES) {
+			int frameCount = header.getMaxFrameCount();
+			frameTimes = header.hasFrameTimes ? new long[frameCount] : null;
+			for(int j = 0; j < frameCount; j++) {
+				if(frameTimes != null) {
+					frameTimes[j] = inputStream.readLong();
+					inputStream.readFully(new byte[V2_RECORD_SIZE - 8]);
+				}
+				for(int i = 0; i < trackers.size(); i++) {
+					readRecordV2(inputStream, trackers.get(i), j, header.designationTables[i]);
+				}
+			}
+		} else {
+			if(header.hasFrameTimes) {
+				frameTimes = readFrameTimes(inputStream, header.getMaxFrameCount());
+			}
+			for(int i = 0; i < trackers.size(); i++) {
+				TrackerFrameColumns trackerFrames = trackers.get(i);
+				for(int j = 0; j < trackerFrames.getFrameCount(); j++) {
+					readRecordV2(inputStream, trackerFrames, j, header.designationTables[i]);
+				}
+			}
+		}
+		
+		return header.createFrames(trackers, frameTimes);
+	}
+	
+	public static boolean isV2File(File file) throws IOException {
+		try(DataInputStream inputStream = new DataInputStream(new FileInputStream(file))) {
+			return file.length() >= 4 && inputStream.readInt() == V2_MAGIC;
+		}
+	}
+	
+	/**
+	 * Maps the frames of a version 2 file into memory. Only the header is
+	 * read, frames are read from the file when they are accessed.
+	 */
+	public static PoseFrames mapFile(File file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			DataInputStream inputStream = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+			if(inputStream.readInt() != V2_MAGIC) {
+				throw new IOException("Not a version 2 recording");
+			}
+			
+			HeaderV2 header = readHeaderV2(inputStream);
+			int trackerCount = header.names.length;
+			
+			if(header.layout == V2_LAYOUT_COMPRESSED) {
+				long size = channel.size() - header.dataOffset;
+				if(size > Integer.MAX_VALUE) {
+					throw new IOException("Compressed recordings are limited to 2 GB");
+				}
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, header.dataOffset, size);
+				return readCompressedV2(header, buffer);
+			}
+			
+			FastList<MappedTrackerFrames> trackers = new FastList<MappedTrackerFrames>(trackerCount);
+			long[] frameTimes = null;
+			if(header.layout == V2_LAYOUT_FRAMES) {
+				// Frames may still be being appended, or the recording was never closed
+				int timeRecords = header.hasFrameTimes ? 1 : 0;
+				long frameSize = (long) (trackerCount + timeRecords) * V2_RECORD_SIZE;
+				long frameCount = frameSize > 0 ? (channel.size() - header.dataOffset) / frameSize : 0;
+				long size = frameCount * frameSize;
+				if(size > Integer.MAX_VALUE) {
+					throw new IOException("Recordings grouped by frame are limited to 2 GB");
+				}
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, header.dataOffset, size);
+				if(header.hasFrameTimes) {
+					frameTimes = new long[(int) frameCount];
+					for(int j = 0; j < frameTimes.length; j++) {
+						frameTimes[j] = buffer.getLong(j * (int) frameSize);
+					}
+				}
+				for(int i = 0; i < trackerCount; i++) {
+					trackers.add(new MappedTrackerFrames(header.names[i], (int) frameCount, header.designationTables[i], buffer, (i + timeRecords) * V2_RECORD_SIZE, (int) frameSize));
+				}
+			} else {
+				long offset = header.dataOffset;
+				if(header.hasFrameTimes) {
+					int frameCount = header.getMaxFrameCount();
+					frameTimes = readFrameTimes(inputStream, frameCount);
+					offset += alignToRecord(frameCount * 8);
+				}
+				for(int i = 0; i < trackerCount; i++) {
+					long size = (long) header.frameCounts[i] * V2_RECORD_SIZE;
+					if(size > Integer.MAX_VALUE || offset + size > channel.size()) {
+						throw new IOException("Frames of tracker " + header.names[i] + " are truncated or too large");
+					}
+					// Each tracker is mapped separately, a single mapping is limited to 2 GB
+					MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+					trackers.add(new MappedTrackerFrames(header.names[i], header.frameCounts[i], header.designationTables[i], buffer, 0, V2_RECORD_SIZE));
+					offset += size;
+				}
+			}
+			
+			// Mappings stay valid after the channel is closed
+			return header.createFrames(trackers, frameTimes);
+		}
+	}
+	
+	/**
+	 * Reads a recording of either version. Version 2 files are mapped into
+	 * memory instead of being read.
+	 */
 	public static PoseFrames readFromFile(File file) {
 		try {
-			return readFrames(new DataInputStream(new BufferedInputStream(new FileInputStream(file))));
+			if(isV2File(file)) {
+				return mapFile(file);
+			}
+			
+			try(DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+				return readFrames(inputStream);
+			}
 		} catch(Exception e) {
 			LogManager.log.severe("Error reading frame from file", e);
 		}
@@ -0,0 +1,104 @@
+package dev.slimevr.poserecorder;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+
+import io.eiren.util.collections.FastList;
+
+/**
+ * Resamples recorded frames to an exact frame rate using their timestamps.
+ * Frames are captured whenever the server loop gets to them, so they are a
+ * little late and some may be missed. Each resampled frame is interpolated
+ * between the two recorded frames around its time, rotations with slerp and
+ * positions linearly.
+ */
+public final class PoseFrameResampler {
+
+	public static final String METADATA_RESAMPLED_INTERVAL = "resample.interval_ns";
+
+	private PoseFrameResampler() {
+		// Do not allow instantiating
+	}
+
+	/**
+	 * @param intervalNs the time between resampled frames
+	 * @return columnar frames with a frame every interval, or the frames as
+	 * they are if they have no timestamps
+	 */
+	public static PoseFrames resample(PoseFrames frames, long intervalNs) {
+		if(intervalNs < 1) {
+			throw new IllegalArgumentException("intervalNs must at least have a value of 1");
+		}
+		if(!frames.hasFrameTimes()) {
+			return frames;
+		}
+
+		FastList<TrackerFrameColumns> trackers = new FastList<TrackerFrameColumns>(frames.getTrackerCount());
+		for(int t = 0; t < frames.getTrackerCount(); t++) {
+			TrackerFrameSource tracker = frames.getTrackerFrames(t);
+			trackers.add(tracker != null ? resampleTracker(frames, tracker, intervalNs) : null);
+		}
+
+		PoseFrames result = PoseFrames.fromColumns(trackers);
+		int frameCount = result.getMaxFrameCount();
+		long[] frameTimes = new long[frameCount];
+		for(int i = 0; i < frameCount; i++) {
+			frameTimes[i] = i * intervalNs;
+		}
+		result.setFrameTimes(frameTimes);
+		result.getMetadata().putAll(frames.getMetadata());
+		result.getMetadata().put(METADATA_RESAMPLED_INTERVAL, Long.toString(intervalNs));
+		return result;
+	}
+
+	private static TrackerFrameColumns resampleTracker(PoseFrames frames, TrackerFrameSource tracker, long intervalNs) {
+		int frameCount = tracker.getFrameCount();
+		if(frameCount == 0) {
+			return new TrackerFrameColumns(tracker.getName(), 0);
+		}
+		long lastTime = frames.getFrameTime(frameCount - 1);
+		TrackerFrameColumns columns = new TrackerFrameColumns(tracker.getName(), (int) (lastTime / intervalNs) + 1);
+
+		TrackerFrame view = TrackerFrame.createView();
+		TrackerFrame nextView = TrackerFrame.createView();
+		Quaternion rotation = new Quaternion();
+		Vector3f position = new Vector3f();
+
+		int frame = 0;
+		for(int i = 0; i < columns.getFrameCount(); i++) {
+			long time = i * intervalNs;
+			// Find the recorded frames before and after the time
+			while(frame < frameCount - 1 && frames.getFrameTime(frame + 1) <= time) {
+				frame++;
+			}
+			int nextFrame = Math.min(frame + 1, frameCount - 1);
+			long frameTime = frames.getFrameTime(frame);
+			long nextFrameTime = frames.getFrameTime(nextFrame);
+			float factor = nextFrameTime > frameTime ? Math.min(1f, Math.max(0f, (time - frameTime) / (float) (nextFrameTime - frameTime))) : 0f;
+
+			TrackerFrame before = tracker.getFrame(frame, view);
+			TrackerFrame after = tracker.getFrame(nextFrame, nextView);
+			// Missing frames and anything that can't be interpolated come from the nearest frame
+			TrackerFrame nearest = (factor < 0.5f && before != null) || after == null ? before : after;
+			if(nearest == null) {
+				continue;
+			}
+
+			int dataFlags = nearest.getDataFlags();
+			if(before != null && after != null && before.hasData(TrackerFrameData.ROTATION) && after.hasData(TrackerFrameData.ROTATION)) {
+				rotation.slerp(before.rotation, after.rotation, factor);
+				dataFlags |= TrackerFrameData.ROTATION.flag;
+			} else if(nearest.hasData(TrackerFrameData.ROTATION)) {
+				rotation.set(nearest.rotation);
+			}
+			if(before != null && after != null && before.hasData(TrackerFrameData.POSITION) && after.hasData(TrackerFrameData.POSITION)) {
+				position.interpolateLocal(before.position, after.position, factor);
+				dataFlags |= TrackerFrameData.POSITION.flag;
+			} else if(nearest.hasData(TrackerFrameData.POSITION)) {
+				position.set(nearest.position);
+			}
+			columns.setFrame(i, nearest.getBodyPosition(), dataFlags, rotation, position);
+		}
+		return columns;
+	}
+}
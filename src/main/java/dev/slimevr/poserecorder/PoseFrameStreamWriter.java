@@ -0,0 +1,308 @@
+package dev.slimevr.poserecorder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+
+import io.eiren.util.ann.ThreadSafe;
+import io.eiren.util.ann.VRServerThread;
+import io.eiren.util.logging.LogManager;
+import io.eiren.vr.trackers.Tracker;
+import io.eiren.vr.trackers.TrackerPosition;
+import io.eiren.vr.trackers.TrackerStatus;
+
+/**
+ * Appends frames of a set of trackers to a version 2 recording grouped by
+ * frame, see {@link PoseFrameIO}.
+ * <p>Frames are encoded on the calling thread into a bounded ring buffer
+ * and written by a background thread, so adding a frame never waits for
+ * the disk and memory use doesn't grow with the recording. If the disk
+ * falls behind and the ring buffer is full, frames are dropped and counted.
+ * The file is flushed periodically, everything up to the last flush stays
+ * readable if the server crashes. If writing fails, no more frames are
+ * accepted and {@link #getFailure()} tells why.
+ * <p>Every frame has a timestamp. Space is left in the header for the
+ * metadata given when closing, such as the frame timing statistics.
+ */
+public class PoseFrameStreamWriter implements Runnable {
+
+	public static final int DEFAULT_CAPACITY = 512;
+	public static final long DEFAULT_FLUSH_INTERVAL = 1000L;
+	// Frames dropped because the ring buffer was full, see getDroppedFrames()
+	public static final String METADATA_DROPPED_FRAMES = "recording.dropped_frames";
+	private static final long POLL_INTERVAL = 10L;
+	// Room left in the header for metadata added when closing
+	private static final int METADATA_RESERVE = 1024;
+	private static final int LAYOUT = PoseFrameIO.V2_LAYOUT_FRAMES | PoseFrameIO.V2_FLAG_FRAME_TIMES;
+
+	public final File file;
+	private final Tracker[] trackers;
+	private final String[] names;
+	private final TrackerPosition[][] designationTables;
+	private final FileChannel channel;
+	private final int frameSize;
+	private final int capacity;
+	private final ByteBuffer ring;
+	private final long flushInterval;
+	private final int dataOffset;
+	private final CompletableFuture<File> finished = new CompletableFuture<File>();
+
+	// Frames added by the producer and written by the writer thread
+	private volatile long addedFrames = 0;
+	private volatile long writtenFrames = 0;
+	private volatile long droppedFrames = 0;
+	private volatile boolean closed = false;
+	private volatile Throwable failure = null;
+	private volatile Map<String, String> metadata = null;
+
+	private final Quaternion tmpRotation = new Quaternion();
+	private final Vector3f tmpPosition = new Vector3f();
+
+	public PoseFrameStreamWriter(File file, List<Tracker> trackers) throws IOException {
+		this(file, trackers, DEFAULT_CAPACITY, DEFAULT_FLUSH_INTERVAL);
+	}
+
+	/**
+	 * Creates the file, overwriting it if it exists, and starts the writer
+	 * thread
+	 * @param capacity how many frames can be waiting to be written
+	 * @param flushInterval how often written frames are forced to the disk,
+	 * in milliseconds
+	 */
+	public PoseFrameStreamWriter(File file, List<Tracker> trackers, int capacity, long flushInterval) throws IOException {
+		if(capacity < 1) {
+			throw new IllegalArgumentException("capacity must at least have a value of 1");
+		}
+		this.file = file;
+		this.trackers = trackers.toArray(new Tracker[trackers.size()]);
+		this.capacity = capacity;
+		this.flushInterval = flushInterval;
+		// The timestamp has a record of its own before the trackers
+		this.frameSize = (this.trackers.length + 1) * PoseFrameIO.V2_RECORD_SIZE;
+		this.ring = ByteBuffer.allocateDirect(capacity * frameSize);
+
+		// Designations are stored by ordinal, trackers can change them while recording
+		names = new String[this.trackers.length];
+		designationTables = new TrackerPosition[this.trackers.length][];
+		for(int i = 0; i < this.trackers.length; i++) {
+			names[i] = this.trackers[i].getName();
+			designationTables[i] = TrackerPosition.values;
+		}
+
+		int[] frameCounts = new int[this.trackers.length];
+		int headerSize = PoseFrameIO.createHeaderV2(LAYOUT, names, frameCounts, designationTables, null, 0).length;
+		dataOffset = headerSize + METADATA_RESERVE;
+
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		try {
+			ByteBuffer header = ByteBuffer.wrap(PoseFrameIO.createHeaderV2(LAYOUT, names, frameCounts, designationTables, null, dataOffset));
+			while(header.hasRemaining()) {
+				channel.write(header);
+			}
+		} catch(IOException e) {
+			channel.close();
+			throw e;
+		}
+
+		Thread thread = new Thread(this, "Pose recording writer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Copies the current state of every tracker into the next frame. Must not
+	 * be called concurrently with itself or {@link #close()}.
+	 * @param timeNs the timestamp of the frame, in nanoseconds since the first
+	 * frame
+	 * @return false if the frame was dropped, or the writer is closed or
+	 * failed
+	 */
+	@VRServerThread
+	public boolean addFrame(long timeNs) {
+		if(closed || finished.isDone()) {
+			return false;
+		}
+		long index = addedFrames;
+		if(index - writtenFrames >= capacity) {
+			droppedFrames++;
+			return false;
+		}
+		int offset = (int) (index % capacity) * frameSize;
+		ring.putLong(offset, timeNs);
+		for(int i = 8; i < PoseFrameIO.V2_RECORD_SIZE; i += 8) {
+			ring.putLong(offset + i, 0L);
+		}
+		for(int i = 0; i < trackers.length; i++) {
+			encode(trackers[i], offset + (i + 1) * PoseFrameIO.V2_RECORD_SIZE);
+		}
+		// Publishes the frame to the writer thread
+		addedFrames = index + 1;
+		return true;
+	}
+
+	// Same rules as TrackerFrame.fromTracker
+	private void encode(Tracker tracker, int offset) {
+		TrackerStatus status = tracker.getStatus();
+		TrackerPosition designation = tracker.getBodyPosition();
+		boolean hasRotation = tracker.hasRotation();
+		boolean hasPosition = tracker.hasPosition();
+
+		int dataFlags = 0;
+		if((status == TrackerStatus.OK || status == TrackerStatus.BUSY || status == TrackerStatus.OCCLUDED) && (designation != null || hasRotation || hasPosition)) {
+			dataFlags = PoseFrameIO.V2_PRESENT;
+			if(designation != null) {
+				dataFlags |= TrackerFrameData.DESIGNATION.flag;
+			}
+			if(hasRotation && tracker.getRotation(tmpRotation)) {
+				dataFlags |= TrackerFrameData.ROTATION.flag;
+			}
+			if(hasPosition && tracker.getPosition(tmpPosition)) {
+				dataFlags |= TrackerFrameData.POSITION.flag;
+			}
+		}
+
+		ring.put(offset, (byte) dataFlags);
+		ring.put(offset + 1, (byte) (designation != null ? designation.ordinal() : PoseFrameIO.V2_NO_DESIGNATION));
+		ring.putShort(offset + 2, (short) 0);
+		if(TrackerFrameData.ROTATION.check(dataFlags)) {
+			ring.putFloat(offset + 4, tmpRotation.getX());
+			ring.putFloat(offset + 8, tmpRotation.getY());
+			ring.putFloat(offset + 12, tmpRotation.getZ());
+			ring.putFloat(offset + 16, tmpRotation.getW());
+		} else {
+			ring.putLong(offset + 4, 0L);
+			ring.putLong(offset + 12, 0L);
+		}
+		if(TrackerFrameData.POSITION.check(dataFlags)) {
+			ring.putFloat(offset + 20, tmpPosition.getX());
+			ring.putFloat(offset + 24, tmpPosition.getY());
+			ring.putFloat(offset + 28, tmpPosition.getZ());
+		} else {
+			ring.putInt(offset + 20, 0);
+			ring.putLong(offset + 24, 0L);
+		}
+	}
+
+	@Override
+	public void run() {
+		ByteBuffer chunk = ring.duplicate();
+		Exception failure = null;
+		try {
+			long lastFlush = System.currentTimeMillis();
+			while(true) {
+				// Read before draining, so frames added before closing are written
+				boolean done = closed;
+				long added = addedFrames;
+				long written = writtenFrames;
+				while(written < added) {
+					int slot = (int) (written % capacity);
+					int count = (int) Math.min(added - written, capacity - slot);
+					chunk.limit((slot + count) * frameSize).position(slot * frameSize);
+					while(chunk.hasRemaining()) {
+						channel.write(chunk);
+					}
+					written += count;
+					// Frees the slots for the producer
+					writtenFrames = written;
+				}
+				if(done) {
+					break;
+				}
+				long now = System.currentTimeMillis();
+				if(now - lastFlush >= flushInterval) {
+					channel.force(false);
+					lastFlush = now;
+				}
+				Thread.sleep(POLL_INTERVAL);
+			}
+
+			// Store the frame count for readers that can't use the file size
+			int[] frameCounts = new int[trackers.length];
+			for(int i = 0; i < frameCounts.length; i++) {
+				frameCounts[i] = (int) Math.min(writtenFrames, Integer.MAX_VALUE);
+			}
+			byte[] headerBytes = PoseFrameIO.createHeaderV2(LAYOUT, names, frameCounts, designationTables, metadata, dataOffset);
+			if(headerBytes.length > dataOffset) {
+				LogManager.log.warning("[PoseFrameStreamWriter] Metadata doesn't fit in the header of \"" + file.getPath() + "\", it's left out");
+				headerBytes = PoseFrameIO.createHeaderV2(LAYOUT, names, frameCounts, designationTables, null, dataOffset);
+			}
+			ByteBuffer header = ByteBuffer.wrap(headerBytes);
+			long position = 0;
+			while(header.hasRemaining()) {
+				position += channel.write(header, position);
+			}
+			channel.force(true);
+		} catch(Exception e) {
+			failure = e;
+		}
+		// The file is only done once it's closed
+		try {
+			channel.close();
+		} catch(IOException e) {
+			if(failure == null) {
+				failure = e;
+			} else {
+				failure.addSuppressed(e);
+			}
+		}
+		if(failure != null) {
+			LogManager.log.severe("[PoseFrameStreamWriter] Error writing frames to \"" + file.getPath() + "\"", failure);
+			this.failure = failure;
+			finished.completeExceptionally(failure);
+		} else {
+			finished.complete(file);
+		}
+	}
+
+	/**
+	 * Stops accepting frames. Frames already added are still written.
+	 * @return completes with the file once everything is written and closed
+	 */
+	public CompletableFuture<File> close() {
+		return close(null);
+	}
+
+	/**
+	 * Stops accepting frames, and adds the metadata to the header when
+	 * rewriting it with the frame counts
+	 */
+	public CompletableFuture<File> close(Map<String, String> metadata) {
+		if(!closed) {
+			// Set before closing, the writer thread reads it after seeing closed
+			this.metadata = metadata;
+			closed = true;
+		}
+		return finished;
+	}
+
+	@ThreadSafe
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * @return why writing failed, or null if it hasn't
+	 */
+	@ThreadSafe
+	public Throwable getFailure() {
+		return failure;
+	}
+
+	@ThreadSafe
+	public long getWrittenFrames() {
+		return writtenFrames;
+	}
+
+	@ThreadSafe
+	public long getDroppedFrames() {
+		return droppedFrames;
+	}
+}
@@ -11,7 +11,7 @@ import io.eiren.vr.trackers.TrackerConfig;
 import io.eiren.vr.trackers.TrackerPosition;
 import io.eiren.vr.trackers.TrackerStatus;
 
-public class PoseFrameTracker implements Tracker, Iterable<TrackerFrame> {
+public class PoseFrameTracker implements Tracker, TrackerFrameSource, Iterable<TrackerFrame> {
 	
 	public final String name;
 	
@@ -128,6 +128,11 @@ public class PoseFrameTracker implements Tracker, Iterable<TrackerFrame> {
 		return safeGetFrame(frameCursor);
 	}
 	
+	@Override
+	public TrackerFrame getFrame(int index, TrackerFrame view) {
+		return index >= 0 && index < frames.size() ? frames.get(index) : null;
+	}
+	
 	//#region Tracker Interface Implementation
 	@Override
 	public boolean getRotation(Quaternion store) {
@@ -196,7 +201,7 @@ public class PoseFrameTracker implements Tracker, Iterable<TrackerFrame> {
 	@Override
 	public TrackerPosition getBodyPosition() {
 		TrackerFrame frame = safeGetFrame();
-		return frame == null ? null : frame.designation;
+		return frame == null ? null : frame.getBodyPosition();
 	}
 	
 	@Override
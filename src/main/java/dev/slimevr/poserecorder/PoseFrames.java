@@ -1,29 +1,135 @@
 package dev.slimevr.poserecorder;
 
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 import io.eiren.util.collections.FastList;
 import io.eiren.vr.trackers.Tracker;
+import io.eiren.vr.trackers.TrackerPositionIndex;
 
+/**
+ * Recorded frames of a set of trackers. Either backed by a list of
+ * {@link PoseFrameTracker} that can be recorded into, or by read-only
+ * sources such as {@link TrackerFrameColumns}, see {@link #toColumnar()}.
+ * <p>Columnar frames are returned as views: the frames put into a buffer
+ * are overwritten when the same buffer is filled again, so they must not be
+ * kept after that.
+ * <p>Frames can have timestamps, in nanoseconds since the first frame, and
+ * the recording can have metadata such as its frame timing statistics.
+ */
 public final class PoseFrames implements Iterable<TrackerFrame[]> {
 	
 	private final FastList<PoseFrameTracker> trackers;
+	private final FastList<? extends TrackerFrameSource> columns;
+	// Nanoseconds since the first frame, null if frames have no timestamps
+	private long[] frameTimes = null;
+	private int frameTimeCount = 0;
+	private final Map<String, String> metadata = new LinkedHashMap<String, String>();
 	
 	public PoseFrames(FastList<PoseFrameTracker> trackers) {
+		this(trackers, null);
+	}
+	
+	private PoseFrames(FastList<PoseFrameTracker> trackers, FastList<? extends TrackerFrameSource> columns) {
 		this.trackers = trackers;
+		this.columns = columns;
 	}
 	
 	public PoseFrames(int initialCapacity) {
-		this.trackers = new FastList<PoseFrameTracker>(initialCapacity);
+		this(new FastList<PoseFrameTracker>(initialCapacity), null);
 	}
 	
 	public PoseFrames() {
 		this(5);
 	}
 	
+	/**
+	 * Creates read-only frames from sources filled by the caller
+	 */
+	public static PoseFrames fromColumns(FastList<? extends TrackerFrameSource> columns) {
+		return new PoseFrames(null, columns);
+	}
+	
+	public boolean isColumnar() {
+		return columns != null;
+	}
+	
+	/**
+	 * Copies all frames into columns, this takes a fraction of the memory and
+	 * is faster to read from
+	 * @return columnar frames, or this if they are already read-only sources
+	 */
+	public PoseFrames toColumnar() {
+		if(columns != null) {
+			return this;
+		}
+		FastList<TrackerFrameColumns> newColumns = new FastList<TrackerFrameColumns>(trackers.size());
+		for(int i = 0; i < trackers.size(); i++) {
+			PoseFrameTracker tracker = trackers.get(i);
+			newColumns.add(tracker != null ? TrackerFrameColumns.fromTracker(tracker) : null);
+		}
+		PoseFrames result = fromColumns(newColumns);
+		if(frameTimes != null) {
+			result.setFrameTimes(Arrays.copyOf(frameTimes, frameTimeCount));
+		}
+		result.metadata.putAll(metadata);
+		return result;
+	}
+	
+	public boolean hasFrameTimes() {
+		return frameTimes != null;
+	}
+	
+	/**
+	 * @return nanoseconds since the first frame, or -1 if the frame has no
+	 * timestamp
+	 */
+	public long getFrameTime(int frameIndex) {
+		return frameTimes != null && frameIndex >= 0 && frameIndex < frameTimeCount ? frameTimes[frameIndex] : -1L;
+	}
+	
+	/**
+	 * Sets the timestamp of a frame, frames are expected to get timestamps in
+	 * order
+	 */
+	public void setFrameTime(int frameIndex, long timeNs) {
+		if(frameTimes == null) {
+			frameTimes = new long[Math.max(16, frameIndex + 1)];
+		} else if(frameIndex >= frameTimes.length) {
+			frameTimes = Arrays.copyOf(frameTimes, Math.max(frameIndex + 1, frameTimes.length * 2));
+		}
+		frameTimes[frameIndex] = timeNs;
+		frameTimeCount = Math.max(frameTimeCount, frameIndex + 1);
+	}
+	
+	/**
+	 * Replaces all timestamps, the array is used as is
+	 */
+	void setFrameTimes(long[] frameTimes) {
+		this.frameTimes = frameTimes;
+		this.frameTimeCount = frameTimes != null ? frameTimes.length : 0;
+	}
+	
+	/**
+	 * Recording metadata, such as the frame timing statistics from
+	 * {@link FrameScheduler}
+	 */
+	public Map<String, String> getMetadata() {
+		return metadata;
+	}
+	
+	private void checkWritable() {
+		if(columns != null) {
+			throw new UnsupportedOperationException("Columnar PoseFrames are read-only");
+		}
+	}
+	
 	public PoseFrameTracker addTracker(PoseFrameTracker tracker) {
+		checkWritable();
 		trackers.add(tracker);
 		return tracker;
 	}
@@ -37,33 +143,63 @@ public final class PoseFrames implements Iterable<TrackerFrame[]> {
 	}
 	
 	public PoseFrameTracker removeTracker(int index) {
+		checkWritable();
 		return trackers.remove(index);
 	}
 	
 	public PoseFrameTracker removeTracker(PoseFrameTracker tracker) {
+		checkWritable();
 		trackers.remove(tracker);
 		return tracker;
 	}
 	
 	public void clearTrackers() {
+		checkWritable();
 		trackers.clear();
 	}
 	
 	public void fakeClearTrackers() {
+		checkWritable();
 		trackers.fakeClear();
 	}
 	
 	public int getTrackerCount() {
-		return trackers.size();
+		return columns != null ? columns.size() : trackers.size();
 	}
 	
+	/**
+	 * Columnar frames are copied into new trackers on every call, use
+	 * {@link #getTrackerFrames(int)} to read them without copying
+	 */
 	public List<PoseFrameTracker> getTrackers() {
+		if(columns != null) {
+			FastList<PoseFrameTracker> copies = new FastList<PoseFrameTracker>(columns.size());
+			for(int i = 0; i < columns.size(); i++) {
+				TrackerFrameSource tracker = columns.get(i);
+				copies.add(tracker != null ? tracker.toTracker() : null);
+			}
+			return copies;
+		}
 		return trackers;
 	}
 	
+	public TrackerFrameSource getTrackerFrames(int index) {
+		return columns != null ? columns.get(index) : trackers.get(index);
+	}
+	
 	public int getMaxFrameCount() {
 		int maxFrames = 0;
 		
+		if(columns != null) {
+			for(int i = 0; i < columns.size(); i++) {
+				TrackerFrameSource tracker = columns.get(i);
+				if(tracker != null && tracker.getFrameCount() > maxFrames) {
+					maxFrames = tracker.getFrameCount();
+				}
+			}
+			return maxFrames;
+		}
+		
 		for(int i = 0; i < trackers.size(); i++) {
 			PoseFrameTracker tracker = trackers.get(i);
 			if(tracker != null && tracker.getFrameCount() > maxFrames) {
@@ -74,7 +210,25 @@ public final class PoseFrames implements Iterable<TrackerFrame[]> {
 		return maxFrames;
 	}
 	
+	/**
+	 * Gets the frame of one tracker, reusing {@code view} if the frames are
+	 * columnar and it's a view
+	 */
+	private TrackerFrame getFrame(int trackerIndex, int frameIndex, TrackerFrame view) {
+		TrackerFrameSource tracker = columns.get(trackerIndex);
+		if(tracker == null) {
+			return null;
+		}
+		return tracker.getFrame(frameIndex, view != null && view.isView() ? view : TrackerFrame.createView());
+	}
+	
 	public int getFrames(int frameIndex, TrackerFrame[] buffer) {
+		if(columns != null) {
+			for(int i = 0; i < columns.size(); i++) {
+				buffer[i] = getFrame(i, frameIndex, buffer[i]);
+			}
+			return columns.size();
+		}
 		for(int i = 0; i < trackers.size(); i++) {
 			PoseFrameTracker tracker = trackers.get(i);
 			buffer[i] = tracker != null ? tracker.safeGetFrame(frameIndex) : null;
@@ -82,7 +236,36 @@ public final class PoseFrames implements Iterable<TrackerFrame[]> {
 		return trackers.size();
 	}
 	
+	/**
+	 * Fills the buffer like {@link #getFrames(int, TrackerFrame[])} while also
+	 * rebuilding the position index for the same frame in that single pass
+	 */
+	public int getFrames(int frameIndex, TrackerFrame[] buffer, TrackerPositionIndex<TrackerFrame> index) {
+		index.clear();
+		if(columns != null) {
+			for(int i = 0; i < columns.size(); i++) {
+				TrackerFrame frame = getFrame(i, frameIndex, buffer[i]);
+				buffer[i] = frame;
+				index.add(frame);
+			}
+			return columns.size();
+		}
+		for(int i = 0; i < trackers.size(); i++) {
+			PoseFrameTracker tracker = trackers.get(i);
+			TrackerFrame frame = tracker != null ? tracker.safeGetFrame(frameIndex) : null;
+			buffer[i] = frame;
+			index.add(frame);
+		}
+		return trackers.size();
+	}
+	
 	public int getFrames(int frameIndex, List<TrackerFrame> buffer) {
+		if(columns != null) {
+			for(int i = 0; i < columns.size(); i++) {
+				buffer.add(i, getFrame(i, frameIndex, null));
+			}
+			return columns.size();
+		}
 		for(int i = 0; i < trackers.size(); i++) {
 			PoseFrameTracker tracker = trackers.get(i);
 			buffer.add(i, tracker != null ? tracker.safeGetFrame(frameIndex) : null);
@@ -91,7 +274,7 @@ public final class PoseFrames implements Iterable<TrackerFrame[]> {
 	}
 	
 	public TrackerFrame[] getFrames(int frameIndex) {
-		TrackerFrame[] trackerFrames = new TrackerFrame[trackers.size()];
+		TrackerFrame[] trackerFrames = new TrackerFrame[getTrackerCount()];
 		getFrames(frameIndex, trackerFrames);
 		return trackerFrames;
 	}
@@ -115,6 +298,10 @@ public final class PoseFrames implements Iterable<TrackerFrame[]> {
 		
 		@Override
 		public boolean hasNext() {
+			if(columns != null) {
+				return cursor < poseFrame.getMaxFrameCount();
+			}
+			
 			if(trackers.isEmpty()) {
 				return false;
 			}
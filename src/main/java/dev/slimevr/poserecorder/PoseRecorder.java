@@ -1,6 +1,10 @@
 package dev.slimevr.poserecorder;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -19,17 +23,18 @@ public class PoseRecorder {
 
 	protected int numFrames = -1;
 	protected int frameCursor = 0;
-	protected long frameRecordingInterval = 60L;
-	protected long nextFrameTimeMs = -1L;
+	protected final FrameScheduler frameScheduler = new FrameScheduler(60000000L);
 
 	protected CompletableFuture<PoseFrames> currentRecording;
+	// Only set while streaming a recording to a file
+	protected PoseFrameStreamWriter streamWriter = null;
 
 	protected final VRServer server;
 	FastList<Pair<Tracker, PoseFrameTracker>> trackers = new FastList<Pair<Tracker, PoseFrameTracker>>();
 
 	public PoseRecorder(VRServer server) {
 		this.server = server;
-		server.addOnTick(this::onTick);
+		server.addOnTick("Pose recorder", this::onTick);
 	}
 
 	@VRServerThread
@@ -40,7 +45,7 @@ public class PoseRecorder {
 
 		PoseFrames poseFrame = this.poseFrame;
 		List<Pair<Tracker, PoseFrameTracker>> trackers = this.trackers;
-		if (poseFrame == null || trackers == null) {
+		if ((poseFrame == null && streamWriter == null) || trackers == null) {
 			return;
 		}
 
@@ -50,26 +55,34 @@ public class PoseRecorder {
 			return;
 		}
 		
-		long curTime = System.currentTimeMillis();
-		if (curTime < nextFrameTimeMs) {
-			return;
-		}
-
-		nextFrameTimeMs += frameRecordingInterval;
-
-		// To prevent duplicate frames, make sure the frame time is always in the future
-		if (nextFrameTimeMs <= curTime) {
-			nextFrameTimeMs = curTime + frameRecordingInterval;
-		}
+		long curTime = System.nanoTime();
 
 		// Make sure it's synchronized since this is the server thread interacting with
 		// an unknown outside thread controlling this class
 		synchronized (this) {
-			// A stopped recording will be accounted for by an empty "trackers" list
-			int cursor = frameCursor++;
-			for(Pair<Tracker, PoseFrameTracker> tracker : trackers) {
-				// Add a frame for each tracker
-				tracker.getRight().addFrame(cursor, tracker.getLeft());
+			// Frames are captured for fixed slots, missed slots are skipped
+			if(frameScheduler.poll(curTime) == 0) {
+				return;
+			}
+			long frameTime = frameScheduler.getTime(curTime);
+
+			if(streamWriter != null) {
+				// Hand the frame to the writer thread, a dropped frame isn't part of the recording
+				if(streamWriter.addFrame(frameTime)) {
+					frameCursor++;
+				} else if(streamWriter.getFailure() != null) {
+					// The writer stopped, no frame will ever be added again
+					failStreamingRecording(streamWriter.getFailure());
+					return;
+				}
+			} else if(poseFrame != null) {
+				// A stopped recording will be accounted for by an empty "trackers" list
+				int cursor = frameCursor++;
+				for(Pair<Tracker, PoseFrameTracker> tracker : trackers) {
+					// Add a frame for each tracker
+					tracker.getRight().addFrame(cursor, tracker.getLeft());
+				}
+				poseFrame.setFrameTime(cursor, frameTime);
 			}
 
 			// If done, send finished recording
@@ -119,8 +132,8 @@ public class PoseRecorder {
 		this.frameCursor = 0;
 		this.numFrames = numFrames;
 
-		frameRecordingInterval = intervalMs;
-		nextFrameTimeMs = -1L;
+		frameScheduler.setInterval(intervalMs * 1000000L);
+		frameScheduler.reset();
 
 		LogManager.log.info("[PoseRecorder] Recording " + numFrames + " samples at a " + intervalMs + " ms frame interval");
 
@@ -128,10 +141,109 @@ public class PoseRecorder {
 		return currentRecording;
 	}
 
+	public synchronized Future<PoseFrames> startStreamingRecording(File file, int numFrames, long intervalMs) throws IOException {
+		return startStreamingRecording(file, numFrames, intervalMs, server.getAllTrackers());
+	}
+
+	/**
+	 * Records frames straight to a version 2 .pfr file through a background
+	 * writer, so the recording length isn't limited by memory
+	 * @param numFrames frames to record, 0 or less to record until
+	 * {@link #stopFrameRecording()} is called
+	 * @return completes with the recorded file mapped into memory
+	 */
+	public synchronized Future<PoseFrames> startStreamingRecording(File file, int numFrames, long intervalMs, List<Tracker> trackers) throws IOException {
+		if(file == null) {
+			throw new IllegalArgumentException("file must not be null");
+		}
+		if(intervalMs < 1) {
+			throw new IllegalArgumentException("intervalMs must at least have a value of 1");
+		}
+		if(trackers == null) {
+			throw new IllegalArgumentException("trackers must not be null");
+		}
+		if(!isReadyToRecord()) {
+			throw new IllegalStateException("PoseRecorder isn't ready to record!");
+		}
+
+		FastList<Tracker> recordedTrackers = new FastList<Tracker>(trackers.size());
+		for(Tracker tracker : trackers) {
+			// Ignore null and computed trackers
+			if(tracker != null && !tracker.isComputed()) {
+				recordedTrackers.add(tracker);
+			}
+		}
+		if(recordedTrackers.isEmpty()) {
+			throw new IllegalArgumentException("trackers must have at least one non-computed entry");
+		}
+
+		cancelFrameRecording();
+
+		streamWriter = new PoseFrameStreamWriter(file, recordedTrackers);
+
+		this.frameCursor = 0;
+		this.numFrames = numFrames > 0 ? numFrames : Integer.MAX_VALUE;
+
+		frameScheduler.setInterval(intervalMs * 1000000L);
+		frameScheduler.reset();
+
+		LogManager.log.info("[PoseRecorder] Streaming " + (numFrames > 0 ? numFrames + " samples" : "samples") + " at a " + intervalMs + " ms frame interval to \"" + file.getPath() + "\"");
+
+		currentRecording = new CompletableFuture<PoseFrames>();
+		return currentRecording;
+	}
+
+	// Closes the stream writer, completing the recording once it's written if complete is true
+	private void closeStreamWriter(boolean complete) {
+		PoseFrameStreamWriter streamWriter = this.streamWriter;
+		if(streamWriter == null) {
+			return;
+		}
+		this.streamWriter = null;
+
+		CompletableFuture<PoseFrames> currentRecording = this.currentRecording;
+		Map<String, String> metadata = getTimingMetadata();
+		metadata.put(PoseFrameStreamWriter.METADATA_DROPPED_FRAMES, Long.toString(streamWriter.getDroppedFrames()));
+		streamWriter.close(metadata).whenComplete((file, error) -> {
+			if(streamWriter.getDroppedFrames() > 0) {
+				LogManager.log.warning("[PoseRecorder] Dropped " + streamWriter.getDroppedFrames() + " frames because writing fell behind");
+			}
+			if(!complete || currentRecording == null || currentRecording.isDone()) {
+				return;
+			}
+			if(error != null) {
+				currentRecording.completeExceptionally(error);
+				return;
+			}
+			PoseFrames frames = PoseFrameIO.readFromFile(file);
+			if(frames != null) {
+				currentRecording.complete(frames);
+			} else {
+				currentRecording.completeExceptionally(new IOException("Unable to read the recording from \"" + file.getPath() + "\""));
+			}
+		});
+	}
+
+	private Map<String, String> getTimingMetadata() {
+		Map<String, String> metadata = new LinkedHashMap<String, String>();
+		frameScheduler.putMetadata(metadata);
+		return metadata;
+	}
+
 	public synchronized void stopFrameRecording() {
+		if(numFrames > 0) {
+			LogManager.log.info("[PoseRecorder] Frame timing: " + frameScheduler);
+		}
+
+		if(streamWriter != null) {
+			// Completed by the writer once everything is written
+			closeStreamWriter(true);
+		}
+
 		CompletableFuture<PoseFrames> currentRecording = this.currentRecording;
-		if(currentRecording != null && !currentRecording.isDone()) {
+		if(poseFrame != null && currentRecording != null && !currentRecording.isDone()) {
 			// Stop the recording, returning the frames recorded
+			frameScheduler.putMetadata(poseFrame.getMetadata());
 			currentRecording.complete(poseFrame);
 		}
 
@@ -141,7 +253,26 @@ public class PoseRecorder {
 		poseFrame = null;
 	}
 
+	// Stops a streaming recording whose writer failed, the recording completes with the failure
+	private void failStreamingRecording(Throwable cause) {
+		LogManager.log.warning("[PoseRecorder] Stopped recording after " + frameCursor + " frames, writing the file failed");
+		closeStreamWriter(false);
+
+		CompletableFuture<PoseFrames> currentRecording = this.currentRecording;
+		if(currentRecording != null && !currentRecording.isDone()) {
+			currentRecording.completeExceptionally(cause);
+		}
+
+		numFrames = -1;
+		frameCursor = 0;
+		trackers.clear();
+		poseFrame = null;
+	}
+
 	public synchronized void cancelFrameRecording() {
+		// Frames written so far are kept in the file
+		closeStreamWriter(false);
+
 		CompletableFuture<PoseFrames> currentRecording = this.currentRecording;
 		if(currentRecording != null && !currentRecording.isDone()) {
 			// Cancel the current recording and return nothing
@@ -12,12 +12,16 @@ public final class TrackerFrame implements Tracker {
 	
 	private int dataFlags = 0;
 	
-	public final TrackerPosition designation;
+	// Not final only so views can be reused, read it with getBodyPosition()
+	private TrackerPosition designation;
 	public final Quaternion rotation;
 	public final Vector3f position;
-	private final int trackerId = Tracker.getNextLocalTrackerId();
+	private final boolean view;
+	// Allocated on first use, most frames are never asked for it
+	private int trackerId = -1;
 	
 	public TrackerFrame(TrackerPosition designation, Quaternion rotation, Vector3f position) {
+		this.view = false;
 		this.designation = designation;
 		if(designation != null) {
 			dataFlags |= TrackerFrameData.DESIGNATION.flag;
@@ -34,6 +38,41 @@ public final class TrackerFrame implements Tracker {
 		}
 	}
 	
+	/**
+	 * Creates a reusable frame that {@link TrackerFrameColumns} copies values
+	 * into. Its rotation and position are never null, {@link #hasData} tells
+	 * which of them are valid.
+	 */
+	static TrackerFrame createView() {
+		return new TrackerFrame();
+	}
+	
+	private TrackerFrame() {
+		this.view = true;
+		this.rotation = new Quaternion();
+		this.position = new Vector3f();
+	}
+	
+	/**
+	 * Sets the designation and flags of a view after its rotation and
+	 * position were written
+	 */
+	void setView(TrackerPosition designation, int dataFlags) {
+		if(!view) {
+			throw new IllegalStateException("TrackerFrame is not a view");
+		}
+		this.designation = designation;
+		this.dataFlags = dataFlags;
+	}
+	
+	/**
+	 * @return true if this frame is a view that is overwritten when the
+	 * buffer it was returned in is filled again
+	 */
+	public boolean isView() {
+		return view;
+	}
+	
 	public static TrackerFrame fromTracker(Tracker tracker) {
 		if(tracker == null) {
 			return null;
@@ -174,6 +213,9 @@ public final class TrackerFrame implements Tracker {
 
 	@Override
 	public int getTrackerId() {
+		if(this.trackerId < 0) {
+			this.trackerId = Tracker.getNextLocalTrackerId();
+		}
 		return this.trackerId;
 	}
 }
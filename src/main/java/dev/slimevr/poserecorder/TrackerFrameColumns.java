@@ -0,0 +1,125 @@
+package dev.slimevr.poserecorder;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+
+import io.eiren.vr.trackers.TrackerPosition;
+
+/**
+ * All frames of one recorded tracker stored as primitive arrays, instead of
+ * one {@link TrackerFrame} with its own rotation and position per frame.
+ * Frames are read by copying them into reusable views.
+ * <p>Immutable after being filled, and safe to read from multiple threads
+ * as long as each thread uses its own views.
+ */
+public final class TrackerFrameColumns implements TrackerFrameSource {
+
+	// Set in flags for frames that exist, a missing frame reads as null
+	private static final int PRESENT = 1 << 7;
+	private static final byte NO_DESIGNATION = -1;
+
+	public final String name;
+	private final int frameCount;
+	private final byte[] flags;
+	private final byte[] designations;
+	private final float[] rotations;
+	// Null if no frame has a position, which is the case for most trackers
+	private float[] positions;
+
+	public TrackerFrameColumns(String name, int frameCount) {
+		this.name = name != null ? name : "";
+		this.frameCount = frameCount;
+		this.flags = new byte[frameCount];
+		this.designations = new byte[frameCount];
+		this.rotations = new float[frameCount * 4];
+	}
+
+	public static TrackerFrameColumns fromTracker(TrackerFrameSource tracker) {
+		TrackerFrameColumns columns = new TrackerFrameColumns(tracker.getName(), tracker.getFrameCount());
+		TrackerFrame view = TrackerFrame.createView();
+		for(int i = 0; i < columns.frameCount; ++i) {
+			columns.setFrame(i, tracker.getFrame(i, view));
+		}
+		return columns;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public int getFrameCount() {
+		return frameCount;
+	}
+
+	public void setFrame(int index, TrackerFrame frame) {
+		if(frame == null) {
+			flags[index] = 0;
+			return;
+		}
+		setFrame(index, frame.getBodyPosition(), frame.getDataFlags(), frame.rotation, frame.position);
+	}
+
+	/**
+	 * @param dataFlags {@link TrackerFrameData} flags, rotation and position
+	 * are only read if their flag is set
+	 */
+	public void setFrame(int index, TrackerPosition designation, int dataFlags, Quaternion rotation, Vector3f position) {
+		if(TrackerFrameData.ROTATION.check(dataFlags)) {
+			setRotation(index, rotation.getX(), rotation.getY(), rotation.getZ(), rotation.getW());
+		}
+		if(TrackerFrameData.POSITION.check(dataFlags)) {
+			setPosition(index, position.getX(), position.getY(), position.getZ());
+		}
+		setFlags(index, designation, dataFlags);
+	}
+
+	public void setFlags(int index, TrackerPosition designation, int dataFlags) {
+		if(designation == null) {
+			dataFlags &= ~TrackerFrameData.DESIGNATION.flag;
+		}
+		designations[index] = designation != null ? (byte) designation.ordinal() : NO_DESIGNATION;
+		flags[index] = (byte) (dataFlags | PRESENT);
+	}
+
+	public void setRotation(int index, float x, float y, float z, float w) {
+		int offset = index * 4;
+		rotations[offset] = x;
+		rotations[offset + 1] = y;
+		rotations[offset + 2] = z;
+		rotations[offset + 3] = w;
+	}
+
+	public void setPosition(int index, float x, float y, float z) {
+		if(positions == null) {
+			positions = new float[frameCount * 3];
+		}
+		int offset = index * 3;
+		positions[offset] = x;
+		positions[offset + 1] = y;
+		positions[offset + 2] = z;
+	}
+
+	@Override
+	public TrackerFrame getFrame(int index, TrackerFrame view) {
+		if(index < 0 || index >= frameCount) {
+			return null;
+		}
+		int frameFlags = flags[index] & 0xFF;
+		if((frameFlags & PRESENT) == 0) {
+			return null;
+		}
+		if(TrackerFrameData.ROTATION.check(frameFlags)) {
+			int offset = index * 4;
+			view.rotation.set(rotations[offset], rotations[offset + 1], rotations[offset + 2], rotations[offset + 3]);
+		}
+		if(TrackerFrameData.POSITION.check(frameFlags)) {
+			int offset = index * 3;
+			view.position.set(positions[offset], positions[offset + 1], positions[offset + 2]);
+		}
+		byte designation = designations[index];
+		view.setView(designation != NO_DESIGNATION ? TrackerPosition.values[designation] : null, frameFlags & ~PRESENT);
+		return view;
+	}
+}
@@ -0,0 +1,39 @@
+package dev.slimevr.poserecorder;
+
+import io.eiren.util.collections.FastList;
+
+/**
+ * Read access to the recorded frames of one tracker, see {@link PoseFrames}
+ */
+public interface TrackerFrameSource {
+	
+	String getName();
+	
+	int getFrameCount();
+	
+	/**
+	 * Gets a frame, copying it into {@code view} if the frames are not stored
+	 * as objects
+	 * @param view a frame from {@link TrackerFrame#createView()}
+	 * @return the frame, or null if there's no frame at the index
+	 */
+	TrackerFrame getFrame(int index, TrackerFrame view);
+	
+	/**
+	 * Copies all frames into separate objects
+	 */
+	default PoseFrameTracker toTracker() {
+		int frameCount = getFrameCount();
+		FastList<TrackerFrame> frames = new FastList<TrackerFrame>(frameCount);
+		TrackerFrame view = TrackerFrame.createView();
+		for(int i = 0; i < frameCount; ++i) {
+			TrackerFrame frame = getFrame(i, view);
+			if(frame == null) {
+				frames.add(null);
+				continue;
+			}
+			frames.add(new TrackerFrame(frame.getBodyPosition(), frame.hasData(TrackerFrameData.ROTATION) ? frame.rotation.clone() : null, frame.hasData(TrackerFrameData.POSITION) ? frame.position.clone() : null));
+		}
+		return new PoseFrameTracker(getName(), frames);
+	}
+}
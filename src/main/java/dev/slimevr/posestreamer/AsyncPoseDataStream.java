@@ -0,0 +1,259 @@
+package dev.slimevr.posestreamer;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.eiren.util.ann.ThreadSafe;
+import io.eiren.util.ann.VRServerThread;
+import io.eiren.util.logging.LogManager;
+import io.eiren.vr.processor.HumanSkeleton;
+
+/**
+ * Writes the frames of another stream on a background thread. Frames are
+ * captured as a snapshot of numbers on the calling thread and put in a
+ * bounded queue, then formatted and written by the writer thread, so a slow
+ * disk doesn't stall the server. When the queue is full, frames are either
+ * dropped or the calling thread waits for room, see {@link OverflowPolicy}.
+ * <p>Snapshots are reused, capturing a frame doesn't allocate once every
+ * snapshot has grown to the size of a frame.
+ */
+public class AsyncPoseDataStream extends PoseDataStream implements Runnable {
+
+	public static final int DEFAULT_CAPACITY = 256;
+
+	public enum OverflowPolicy {
+		/**
+		 * Drop frames while the queue is full and count them
+		 */
+		DROP,
+		/**
+		 * Wait on the calling thread until there's room in the queue
+		 */
+		BLOCK,
+		;
+	}
+
+	public final PoseDataStream stream;
+	public final OverflowPolicy overflowPolicy;
+	public final int capacity;
+
+	// Snapshots ready to be filled and snapshots waiting to be written
+	private final ArrayBlockingQueue<PoseSnapshot> freeSnapshots;
+	private final ArrayBlockingQueue<PoseSnapshot> queuedSnapshots;
+	// Queued after the last frame to stop the writer thread
+	private final PoseSnapshot endOfFrames = new PoseSnapshot();
+
+	private volatile Thread thread = null;
+	private volatile IOException error = null;
+
+	private volatile long queuedFrames = 0;
+	private volatile long writtenFrames = 0;
+	private final AtomicLong droppedFrames = new AtomicLong();
+	private volatile int maxQueueDepth = 0;
+	private volatile long blockedTimeNs = 0;
+
+	public AsyncPoseDataStream(PoseDataStream stream) {
+		this(stream, DEFAULT_CAPACITY, OverflowPolicy.DROP);
+	}
+
+	/**
+	 * @param stream the stream to write to, it must support snapshots
+	 * @param capacity how many snapshots can be waiting to be written
+	 */
+	public AsyncPoseDataStream(PoseDataStream stream, int capacity, OverflowPolicy overflowPolicy) {
+		super(stream.outputStream);
+		if (!stream.supportsSnapshots()) {
+			throw new IllegalArgumentException(stream.getClass().getSimpleName() + " can't be written asynchronously");
+		}
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must at least have a value of 1");
+		}
+		this.stream = stream;
+		this.capacity = capacity;
+		this.overflowPolicy = overflowPolicy;
+
+		freeSnapshots = new ArrayBlockingQueue<PoseSnapshot>(capacity);
+		// One more for the end of the frames
+		queuedSnapshots = new ArrayBlockingQueue<PoseSnapshot>(capacity + 1);
+		for (int i = 0; i < capacity; i++) {
+			freeSnapshots.add(new PoseSnapshot());
+		}
+	}
+
+	@Override
+	public void writeHeader(HumanSkeleton skeleton, PoseStreamer streamer) throws IOException {
+		stream.writeHeader(skeleton, streamer);
+
+		if (thread == null) {
+			thread = new Thread(this, "Pose stream writer");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	@VRServerThread
+	@Override
+	void writeFrame(HumanSkeleton skeleton) throws IOException {
+		queueFrames(skeleton, null, 1);
+	}
+
+	@VRServerThread
+	@Override
+	void writeFrames(HumanSkeleton skeleton, float[] factors, int count) throws IOException {
+		queueFrames(skeleton, factors, count);
+	}
+
+	private void queueFrames(HumanSkeleton skeleton, float[] factors, int count) {
+		// Nothing is written after the writer thread stopped
+		if (thread == null || error != null) {
+			droppedFrames.addAndGet(count);
+			return;
+		}
+
+		PoseSnapshot snapshot = freeSnapshots.poll();
+		if (snapshot == null) {
+			if (overflowPolicy == OverflowPolicy.DROP) {
+				droppedFrames.addAndGet(count);
+				return;
+			}
+			long blockStart = System.nanoTime();
+			try {
+				snapshot = freeSnapshots.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				droppedFrames.addAndGet(count);
+				return;
+			} finally {
+				blockedTimeNs += System.nanoTime() - blockStart;
+			}
+		}
+
+		try {
+			stream.snapshotFrame(skeleton, snapshot);
+		} catch (RuntimeException e) {
+			freeSnapshots.add(snapshot);
+			throw e;
+		}
+		snapshot.setSlots(factors, count);
+		// Never full, there are only as many snapshots as the capacity
+		queuedSnapshots.add(snapshot);
+		queuedFrames += count;
+		maxQueueDepth = Math.max(maxQueueDepth, queuedSnapshots.size());
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (true) {
+				PoseSnapshot snapshot = queuedSnapshots.take();
+				if (snapshot == endOfFrames) {
+					return;
+				}
+
+				if (error == null) {
+					try {
+						stream.writeSnapshot(snapshot);
+						writtenFrames += snapshot.getFrameCount();
+					} catch (IOException | RuntimeException e) {
+						error = e instanceof IOException ? (IOException) e : new IOException(e);
+						droppedFrames.addAndGet(snapshot.getFrameCount());
+						LogManager.log.severe("[PoseStreamer] Exception while writing frames, dropping the rest", e);
+					}
+				} else {
+					// Keep taking frames so the capturing thread never waits on a failed writer
+					droppedFrames.addAndGet(snapshot.getFrameCount());
+				}
+				freeSnapshots.add(snapshot);
+			}
+		} catch (InterruptedException e) {
+			// Stopped
+		}
+	}
+
+	/**
+	 * Waits for every queued frame to be written and stops the writer thread
+	 */
+	private void finishWriting() throws IOException {
+		Thread thread = this.thread;
+		if (thread != null) {
+			queuedSnapshots.add(endOfFrames);
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				thread.interrupt();
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for frames to be written");
+			} finally {
+				this.thread = null;
+			}
+		}
+	}
+
+	/**
+	 * @throws IOException if writing any frame failed, the footer isn't
+	 * written then
+	 */
+	@Override
+	public void writeFooter(HumanSkeleton skeleton) throws IOException {
+		finishWriting();
+		IOException error = this.error;
+		if (error != null) {
+			throw new IOException("Writing frames failed", error);
+		}
+		stream.writeFooter(skeleton);
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			finishWriting();
+		} finally {
+			stream.close();
+			closed = true;
+			LogManager.log.info("[PoseStreamer] Frame writer: " + this);
+		}
+	}
+
+	/**
+	 * @return the number of snapshots waiting to be written
+	 */
+	@ThreadSafe
+	public int getQueueDepth() {
+		return queuedSnapshots.size();
+	}
+
+	@ThreadSafe
+	public int getMaxQueueDepth() {
+		return maxQueueDepth;
+	}
+
+	@ThreadSafe
+	public long getQueuedFrames() {
+		return queuedFrames;
+	}
+
+	@ThreadSafe
+	public long getWrittenFrames() {
+		return writtenFrames;
+	}
+
+	@ThreadSafe
+	public long getDroppedFrames() {
+		return droppedFrames.get();
+	}
+
+	/**
+	 * @return the total time the capturing thread waited for room in the
+	 * queue, with {@link OverflowPolicy#BLOCK}
+	 */
+	@ThreadSafe
+	public long getBlockedTime() {
+		return blockedTimeNs;
+	}
+
+	@Override
+	public String toString() {
+		return writtenFrames + " frames written, " + droppedFrames.get() + " dropped, queue depth " + getQueueDepth() + " (max " + maxQueueDepth + " of " + capacity + "), blocked " + String.format("%.3f", blockedTimeNs / 1e6) + " ms";
+	}
+}
@@ -10,7 +10,6 @@ import java.io.OutputStreamWriter;
 
 import com.jme3.math.FastMath;
 import com.jme3.math.Quaternion;
-import com.jme3.math.Transform;
 import com.jme3.math.Vector3f;
 
 import org.apache.commons.lang3.StringUtils;
@@ -21,8 +20,8 @@ import io.eiren.vr.processor.TransformNode;
 public class BVHFileStream extends PoseDataStream {
 
 	private static final int LONG_MAX_VALUE_DIGITS = Long.toString(Long.MAX_VALUE).length();
-	private static final float OFFSET_SCALE = 100f;
-	private static final float POSITION_SCALE = 100f;
+	static final float OFFSET_SCALE = 100f;
+	static final float POSITION_SCALE = 100f;
 
 	private long frameCount = 0;
 	private final BufferedWriter writer;
@@ -31,9 +30,20 @@ public class BVHFileStream extends PoseDataStream {
 
 	private float[] angleBuf = new float[3];
 	private Quaternion rotBuf = new Quaternion();
+	// Channels are formatted on the thread writing frames
+	private final FixedFloatFormatter formatter = new FixedFloatFormatter();
+
+	// Channel values of the current and last frame, for interpolating frames.
+	// The current frame is computed by the thread capturing frames and the
+	// last frame is kept by the thread writing them, which can differ.
+	private float[] frameChannels = new float[0];
+	private float[] lastFrameChannels = new float[0];
+	private float[] interpolatedChannels = new float[0];
+	private int channelCount = 0;
+	private int lastChannelCount = 0;
 
 	private HumanSkeleton wrappedSkeleton;
-	private TransformNodeWrapper rootNode;
+	private ChannelPlan plan;
 
 	public BVHFileStream(OutputStream outputStream) {
 		super(outputStream);
@@ -57,24 +67,17 @@ public class BVHFileStream extends PoseDataStream {
 		return bufferCount > 0 ? frameString + StringUtils.repeat(' ', bufferCount) : frameString;
 	}
 
-	private TransformNodeWrapper wrapSkeletonIfNew(HumanSkeleton skeleton) {
-		TransformNodeWrapper wrapper = rootNode;
+	private ChannelPlan getPlan(HumanSkeleton skeleton) {
+		ChannelPlan plan = this.plan;
 
-		// If the wrapped skeleton is missing or the skeleton is updated
-		if (wrapper == null || skeleton != wrappedSkeleton) {
-			wrapper = wrapSkeleton(skeleton);
+		// If the plan is missing or the pose processor published a new skeleton
+		if (plan == null || skeleton != wrappedSkeleton) {
+			plan = new ChannelPlan(wrapSkeletonNodes(skeleton.getRootNode()));
+			wrappedSkeleton = skeleton;
+			this.plan = plan;
 		}
 
-		return wrapper;
-	}
-
-	private TransformNodeWrapper wrapSkeleton(HumanSkeleton skeleton) {
-		TransformNodeWrapper wrapper = wrapSkeletonNodes(skeleton.getRootNode());
-
-		wrappedSkeleton = skeleton;
-		rootNode = wrapper;
-
-		return wrapper;
+		return plan;
 	}
 
 	protected TransformNodeWrapper wrapSkeletonNodes(TransformNode rootNode) {
@@ -138,7 +141,7 @@ public class BVHFileStream extends PoseDataStream {
 		}
 
 		writer.write("HIERARCHY\n");
-		writeNodeHierarchy(wrapSkeletonIfNew(skeleton));
+		writeNodeHierarchy(getPlan(skeleton).rootNode);
 
 		writer.write("MOTION\n");
 		writer.write("Frames: ");
@@ -154,11 +157,11 @@ public class BVHFileStream extends PoseDataStream {
 		writer.write(getBufferedFrameCount(frameCount) + "\n");
 
 		// Frame time in seconds
-		writer.write("Frame Time: " + (streamer.frameRecordingInterval / 1000d) + "\n");
+		writer.write("Frame Time: " + (streamer.getFrameIntervalNs() / 1000000000d) + "\n");
 	}
 
 	// Roughly based off code from https://github.com/TrackLab/ViRe/blob/50a987eff4db31036b2ebaeb5a28983cd473f267/Assets/Scripts/BVH/BVHRecorder.cs
-	private float[] quatToXyzAngles(Quaternion q, float[] angles) {
+	static float[] quatToXyzAngles(Quaternion q, float[] angles) {
 		if (angles == null) {
 			angles = new float[3];
 		} else if (angles.length != 3) {
@@ -188,70 +191,119 @@ public class BVHFileStream extends PoseDataStream {
 		return angles;
 	}
 
-	private void writeNodeHierarchyRotation(TransformNodeWrapper node, Quaternion inverseRootRot) throws IOException {
-		Transform transform = node.worldTransform;
+	// Computes the channel values of the current pose into frameChannels
+	private void computeFrameChannels(HumanSkeleton skeleton) {
+		if (skeleton == null) {
+			throw new NullPointerException("skeleton must not be null");
+		}
 
-		/*
-		if (node.hasReversedHierarchy()) {
-			for (TransformNodeWrapper childNode : node.children) {
-				// If the hierarchy is fully reversed, set the rotation for the upper bone
-				if (childNode.hasReversedHierarchy()) {
-					transform = childNode.worldTransform;
-					break;
-				}
-			}
+		ChannelPlan plan = getPlan(skeleton);
+		int rotatedCount = plan.getRotatedCount();
+
+		// Root position and 3 angles per rotated node
+		channelCount = 3 + rotatedCount * 3;
+		if (frameChannels.length < channelCount) {
+			frameChannels = new float[channelCount];
 		}
-		*/
 
-		rotBuf = transform.getRotation(rotBuf);
+		Vector3f rootPos = plan.rootNode.worldTransform.getTranslation();
+		frameChannels[0] = rootPos.getX() * POSITION_SCALE;
+		frameChannels[1] = rootPos.getY() * POSITION_SCALE;
+		frameChannels[2] = rootPos.getZ() * POSITION_SCALE;
+
+		int channel = 3;
+		for (int i = 0; i < rotatedCount; i++) {
+			// Roll (X), pitch (Y), yaw (Z) (intrinsic)
+			angleBuf = quatToXyzAngles(plan.computeLocalRotation(i, rotBuf), angleBuf);
 
-		// Adjust to local rotation
-		if (inverseRootRot != null) {
-			rotBuf = rotBuf.multLocal(inverseRootRot);
+			// Output in order of roll (Z), pitch (X), yaw (Y) (extrinsic)
+			frameChannels[channel++] = angleBuf[0] * FastMath.RAD_TO_DEG;
+			frameChannels[channel++] = angleBuf[1] * FastMath.RAD_TO_DEG;
+			frameChannels[channel++] = angleBuf[2] * FastMath.RAD_TO_DEG;
 		}
+	}
 
-		// Yaw (Z), roll (X), pitch (Y) (intrinsic)
-		// angleBuf = rotBuf.toAngles(angleBuf);
+	private void writeChannels(float[] channels, int count) throws IOException {
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				writer.write(' ');
+			}
+			formatter.write(writer, channels[i]);
+		}
 
-		// Roll (X), pitch (Y), yaw (Z) (intrinsic)
-		angleBuf = quatToXyzAngles(rotBuf.normalizeLocal(), angleBuf);
+		writer.newLine();
 
-		// Output in order of roll (Z), pitch (X), yaw (Y) (extrinsic)
-		writer.write(Float.toString(angleBuf[0] * FastMath.RAD_TO_DEG) + " " + Float.toString(angleBuf[1] * FastMath.RAD_TO_DEG) + " " + Float.toString(angleBuf[2] * FastMath.RAD_TO_DEG));
+		frameCount++;
+	}
 
-		// Get inverse rotation for child local rotations
-		if (!node.children.isEmpty()) {
-			Quaternion inverseRot = transform.getRotation().inverse();
-			for (TransformNodeWrapper childNode : node.children) {
-				if (childNode.children.isEmpty()) {
-					// If it's an end node, skip
-					continue;
+	/**
+	 * Writes a frame of the channels, or a frame for each slot interpolated
+	 * from the last frame, then keeps the channels for interpolating the next
+	 * frames. Interpolates positions linearly and each rotation angle along
+	 * the shorter way around, which is close to interpolating the rotation
+	 * when frames are close together.
+	 * @param factors interpolation factors of the slots, or null to write
+	 * the channels as they are
+	 */
+	private void writeChannelFrames(float[] channels, int count, float[] factors, int frames) throws IOException {
+		if (factors == null || lastChannelCount != count) {
+			// No last frame or the skeleton changed, nothing to interpolate from
+			for (int i = 0; i < frames; i++) {
+				writeChannels(channels, count);
+			}
+		} else {
+			if (interpolatedChannels.length < count) {
+				interpolatedChannels = new float[channels.length];
+			}
+			for (int i = 0; i < frames; i++) {
+				float factor = factors[i];
+				for (int c = 0; c < count; c++) {
+					float last = lastFrameChannels[c];
+					float delta = channels[c] - last;
+					// The first three channels are the root position, the rest are angles
+					if (c >= 3) {
+						delta -= 360f * Math.round(delta / 360f);
+					}
+					interpolatedChannels[c] = last + delta * factor;
 				}
-
-				// Add spacing
-				writer.write(" ");
-				writeNodeHierarchyRotation(childNode, inverseRot);
+				writeChannels(interpolatedChannels, count);
 			}
 		}
+
+		if (lastFrameChannels.length < count) {
+			lastFrameChannels = new float[channels.length];
+		}
+		System.arraycopy(channels, 0, lastFrameChannels, 0, count);
+		lastChannelCount = count;
 	}
 
 	@Override
 	public void writeFrame(HumanSkeleton skeleton) throws IOException {
-		if (skeleton == null) {
-			throw new NullPointerException("skeleton must not be null");
-		}
-
-		TransformNodeWrapper rootNode = wrapSkeletonIfNew(skeleton);
+		computeFrameChannels(skeleton);
+		writeChannelFrames(frameChannels, channelCount, null, 1);
+	}
 
-		Vector3f rootPos = rootNode.worldTransform.getTranslation();
+	@Override
+	void writeFrames(HumanSkeleton skeleton, float[] factors, int count) throws IOException {
+		computeFrameChannels(skeleton);
+		writeChannelFrames(frameChannels, channelCount, factors, count);
+	}
 
-		// Write root position
-		writer.write(Float.toString(rootPos.getX() * POSITION_SCALE) + " " + Float.toString(rootPos.getY() * POSITION_SCALE) + " " + Float.toString(rootPos.getZ() * POSITION_SCALE) + " ");
-		writeNodeHierarchyRotation(rootNode, null);
+	// Only the channels are computed from the skeleton, so they're all a snapshot needs
+	@Override
+	boolean supportsSnapshots() {
+		return true;
+	}
 
-		writer.newLine();
+	@Override
+	void snapshotFrame(HumanSkeleton skeleton, PoseSnapshot snapshot) {
+		computeFrameChannels(skeleton);
+		snapshot.setValues(frameChannels, channelCount);
+	}
 
-		frameCount++;
+	@Override
+	void writeSnapshot(PoseSnapshot snapshot) throws IOException {
+		writeChannelFrames(snapshot.values, snapshot.valueCount, snapshot.slotCount > 0 ? snapshot.factors : null, snapshot.getFrameCount());
 	}
 
 	@Override
@@ -0,0 +1,130 @@
+package dev.slimevr.posestreamer;
+
+import com.jme3.math.Quaternion;
+
+import io.eiren.util.collections.FastList;
+
+/**
+ * The joints of a wrapped hierarchy flattened once, in the order of the BVH
+ * hierarchy, so frames are computed in a single loop without walking the
+ * hierarchy. Joints without children are end sites, they have an offset
+ * but no rotation channels. End sites of joints with several children are
+ * left out, like {@link BVHFileStream} always did.
+ * <p>Keeps the inverse rotation of each joint for its children, so a plan
+ * is used by a single thread.
+ */
+final class ChannelPlan {
+
+	final TransformNodeWrapper rootNode;
+
+	// Every joint in order, children always follow their parent
+	final TransformNodeWrapper[] joints;
+	// Index of the parent joint, -1 for the root
+	final int[] parents;
+	final int[] levels;
+	final boolean[] endSites;
+
+	// Joints with rotation channels, in the order of their channels
+	final TransformNodeWrapper[] rotatedNodes;
+	// Index in rotatedNodes of the parent the rotation is relative to, -1 for the root
+	final int[] rotatedParents;
+	// Whether a rotated joint's inverse rotation is needed by its children
+	private final boolean[] hasRotatedChildren;
+	private final Quaternion[] inverseRotations;
+
+	ChannelPlan(TransformNodeWrapper rootNode) {
+		this.rootNode = rootNode;
+
+		FastList<TransformNodeWrapper> jointList = new FastList<>();
+		FastList<Integer> parentList = new FastList<>();
+		FastList<Integer> levelList = new FastList<>();
+		addJoints(rootNode, 0, -1, jointList, parentList, levelList);
+
+		int jointCount = jointList.size();
+		joints = jointList.toArray(new TransformNodeWrapper[jointCount]);
+		parents = new int[jointCount];
+		levels = new int[jointCount];
+		endSites = new boolean[jointCount];
+		int rotatedCount = 0;
+		for (int i = 0; i < jointCount; i++) {
+			parents[i] = parentList.get(i);
+			levels[i] = levelList.get(i);
+			endSites[i] = joints[i].children.isEmpty();
+			if (!endSites[i]) {
+				rotatedCount++;
+			}
+		}
+
+		rotatedNodes = new TransformNodeWrapper[rotatedCount];
+		rotatedParents = new int[rotatedCount];
+		hasRotatedChildren = new boolean[rotatedCount];
+		inverseRotations = new Quaternion[rotatedCount];
+		// Index in rotatedNodes of each joint
+		int[] rotatedIndices = new int[jointCount];
+		int rotated = 0;
+		for (int i = 0; i < jointCount; i++) {
+			if (endSites[i]) {
+				continue;
+			}
+			rotatedIndices[i] = rotated;
+			rotatedNodes[rotated] = joints[i];
+			inverseRotations[rotated] = new Quaternion();
+			if (parents[i] >= 0) {
+				int parent = rotatedIndices[parents[i]];
+				rotatedParents[rotated] = parent;
+				hasRotatedChildren[parent] = true;
+			} else {
+				rotatedParents[rotated] = -1;
+			}
+			rotated++;
+		}
+	}
+
+	// Same joints and order as BVHFileStream#writeNodeHierarchy
+	private static void addJoints(TransformNodeWrapper node, int level, int parentIndex, FastList<TransformNodeWrapper> joints, FastList<Integer> parents, FastList<Integer> levels) {
+		// Don't write end sites at populated nodes
+		if (node.children.isEmpty() && node.getParent() != null && node.getParent().children.size() > 1) {
+			return;
+		}
+
+		int index = joints.size();
+		joints.add(node);
+		parents.add(parentIndex);
+		levels.add(level);
+
+		for (TransformNodeWrapper childNode : node.children) {
+			addJoints(childNode, level + 1, index, joints, parents, levels);
+		}
+	}
+
+	int getJointCount() {
+		return joints.length;
+	}
+
+	int getRotatedCount() {
+		return rotatedNodes.length;
+	}
+
+	/**
+	 * Computes the rotation of a rotated joint relative to its parent,
+	 * normalized. Must be called for every rotated joint of a frame in
+	 * order, parents keep their inverse rotation for their children.
+	 */
+	Quaternion computeLocalRotation(int index, Quaternion result) {
+		Quaternion rotation = rotatedNodes[index].worldTransform.getRotation();
+		result.set(rotation);
+
+		// Adjust to local rotation
+		int parent = rotatedParents[index];
+		if (parent >= 0) {
+			result.multLocal(inverseRotations[parent]);
+		}
+
+		// Get inverse rotation for child local rotations
+		if (hasRotatedChildren[index]) {
+			inverseRotations[index].set(rotation).inverseLocal();
+		}
+
+		return result.normalizeLocal();
+	}
+}
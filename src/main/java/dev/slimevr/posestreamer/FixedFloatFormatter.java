@@ -0,0 +1,91 @@
+package dev.slimevr.posestreamer;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Formats floats with a fixed number of decimals into a reused char buffer,
+ * without allocating. Trailing zeros are dropped and whole numbers keep one
+ * decimal, so values read the same as {@link Float#toString(float)} up to
+ * the precision, just never in exponent notation.
+ * <p>Not thread safe, each thread needs its own formatter.
+ */
+final class FixedFloatFormatter {
+
+	// Finer than a float channel in degrees or centimeters can hold anyway
+	public static final int DEFAULT_DECIMALS = 6;
+	// Sign, up to 18 digits and the point, or Float.toString
+	private static final int BUFFER_SIZE = 32;
+	private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L};
+
+	private final int decimals;
+	private final long scale;
+	// Values this large or larger are formatted by Float.toString, they wouldn't fit in a long once scaled
+	private final double maxFixedValue;
+	private final char[] buffer = new char[BUFFER_SIZE];
+
+	FixedFloatFormatter() {
+		this(DEFAULT_DECIMALS);
+	}
+
+	FixedFloatFormatter(int decimals) {
+		if (decimals < 1 || decimals >= POWERS_OF_TEN.length) {
+			throw new IllegalArgumentException("decimals must be from 1 to " + (POWERS_OF_TEN.length - 1));
+		}
+		this.decimals = decimals;
+		this.scale = POWERS_OF_TEN[decimals];
+		this.maxFixedValue = 1e18 / scale;
+	}
+
+	/**
+	 * Formats a value into the buffer
+	 * @return the length of the value at the start of {@link #getBuffer()}
+	 */
+	int format(float value) {
+		double absValue = Math.abs((double) value);
+		if (!(absValue < maxFixedValue)) {
+			// NaN, infinity and huge values are rare enough to allocate
+			String string = Float.toString(value);
+			string.getChars(0, string.length(), buffer, 0);
+			return string.length();
+		}
+
+		long scaled = Math.round(absValue * scale);
+		long integer = scaled / scale;
+		long fraction = scaled % scale;
+
+		// Drop trailing zeros, keeping at least one decimal
+		int fractionDigits = decimals;
+		while (fractionDigits > 1 && fraction % 10L == 0L) {
+			fraction /= 10L;
+			fractionDigits--;
+		}
+
+		// Filled from the end, then moved to the start
+		int pos = BUFFER_SIZE;
+		for (int i = 0; i < fractionDigits; i++) {
+			buffer[--pos] = (char) ('0' + fraction % 10L);
+			fraction /= 10L;
+		}
+		buffer[--pos] = '.';
+		do {
+			buffer[--pos] = (char) ('0' + integer % 10L);
+			integer /= 10L;
+		} while (integer > 0L);
+		if (value < 0f && scaled != 0L) {
+			buffer[--pos] = '-';
+		}
+
+		int length = BUFFER_SIZE - pos;
+		System.arraycopy(buffer, pos, buffer, 0, length);
+		return length;
+	}
+
+	void write(Writer writer, float value) throws IOException {
+		writer.write(buffer, 0, format(value));
+	}
+
+	char[] getBuffer() {
+		return buffer;
+	}
+}
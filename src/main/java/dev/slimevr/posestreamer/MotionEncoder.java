@@ -0,0 +1,98 @@
+package dev.slimevr.posestreamer;
+
+import java.util.function.Function;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+
+import io.eiren.vr.processor.HumanSkeleton;
+import io.eiren.vr.processor.TransformNode;
+
+/**
+ * Computes the values of binary motion frames from a skeleton, see
+ * {@link MotionFileStream} for the format. Reuses its buffers, computing
+ * a frame doesn't allocate once the skeleton is wrapped and planned, see
+ * {@link ChannelPlan}.
+ */
+final class MotionEncoder {
+
+	private final Function<TransformNode, TransformNodeWrapper> wrapper;
+
+	private final Quaternion rotBuf = new Quaternion();
+
+	private float[] values = new float[0];
+	private int valueCount = 0;
+
+	private HumanSkeleton wrappedSkeleton;
+	private ChannelPlan plan;
+
+	/**
+	 * @param wrapper wraps the hierarchy to encode, see
+	 * {@link BVHFileStream#wrapSkeletonNodes(TransformNode)}
+	 */
+	MotionEncoder(Function<TransformNode, TransformNodeWrapper> wrapper) {
+		this.wrapper = wrapper;
+	}
+
+	private ChannelPlan getPlan(HumanSkeleton skeleton) {
+		ChannelPlan plan = this.plan;
+
+		// If the plan is missing or the pose processor published a new skeleton
+		if (plan == null || skeleton != wrappedSkeleton) {
+			plan = new ChannelPlan(wrapper.apply(skeleton.getRootNode()));
+			wrappedSkeleton = skeleton;
+			this.plan = plan;
+		}
+
+		return plan;
+	}
+
+	MotionHeader createHeader(HumanSkeleton skeleton, long frameIntervalNs) {
+		return MotionHeader.fromPlan(getPlan(skeleton), frameIntervalNs);
+	}
+
+	/**
+	 * Computes the values of the current pose, see {@link #getValues()}
+	 * @return the number of values
+	 */
+	int computeFrame(HumanSkeleton skeleton) {
+		if (skeleton == null) {
+			throw new NullPointerException("skeleton must not be null");
+		}
+
+		ChannelPlan plan = getPlan(skeleton);
+		int rotatedCount = plan.getRotatedCount();
+
+		// Root position and a rotation per rotated node
+		valueCount = 3 + rotatedCount * 4;
+		if (values.length < valueCount) {
+			values = new float[valueCount];
+		}
+
+		Vector3f rootPos = plan.rootNode.worldTransform.getTranslation();
+		values[0] = rootPos.getX();
+		values[1] = rootPos.getY();
+		values[2] = rootPos.getZ();
+
+		int value = 3;
+		for (int i = 0; i < rotatedCount; i++) {
+			Quaternion rotation = plan.computeLocalRotation(i, rotBuf);
+			values[value++] = rotation.getX();
+			values[value++] = rotation.getY();
+			values[value++] = rotation.getZ();
+			values[value++] = rotation.getW();
+		}
+		return valueCount;
+	}
+
+	/**
+	 * @return the values of the last computed frame, overwritten by the next
+	 */
+	float[] getValues() {
+		return values;
+	}
+
+	int getValueCount() {
+		return valueCount;
+	}
+}
@@ -0,0 +1,147 @@
+package dev.slimevr.posestreamer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Converts a binary motion stream written by {@link MotionFileStream} to
+ * BVH, with the same hierarchy and channels {@link BVHFileStream} would
+ * have written for the same frames.
+ */
+public class MotionFileConverter {
+
+	private final MotionHeader header;
+
+	private MotionFileConverter(MotionHeader header) {
+		this.header = header;
+	}
+
+	// Same as BVHFileStream#writeNodeHierarchy
+	private void writeJointHierarchy(Writer writer, int joint, int level) throws IOException {
+		String indentLevel = StringUtils.repeat("\t", level);
+		String nextIndentLevel = indentLevel + "\t";
+
+		if (header.endSites[joint]) {
+			writer.write(indentLevel + "End Site\n");
+		} else {
+			writer.write((level > 0 ? indentLevel + "JOINT " : "ROOT ") + header.names[joint] + "\n");
+		}
+		writer.write(indentLevel + "{\n");
+
+		writer.write(nextIndentLevel + "OFFSET " + Float.toString(header.offsets[joint * 3] * BVHFileStream.OFFSET_SCALE) + " " + Float.toString(header.offsets[joint * 3 + 1] * BVHFileStream.OFFSET_SCALE) + " " + Float.toString(header.offsets[joint * 3 + 2] * BVHFileStream.OFFSET_SCALE) + "\n");
+
+		if (!header.endSites[joint]) {
+			// Only give position for root
+			if (level > 0) {
+				writer.write(nextIndentLevel + "CHANNELS 3 Zrotation Xrotation Yrotation\n");
+			} else {
+				writer.write(nextIndentLevel + "CHANNELS 6 Xposition Yposition Zposition Zrotation Xrotation Yrotation\n");
+			}
+
+			// Joints are in depth first order, so children follow their parent
+			for (int child = joint + 1; child < header.names.length; child++) {
+				if (header.parents[child] == joint) {
+					writeJointHierarchy(writer, child, level + 1);
+				}
+			}
+		}
+
+		writer.write(indentLevel + "}\n");
+	}
+
+	private void writeFrames(DataInputStream input, BufferedWriter writer, long frameCount) throws IOException {
+		FixedFloatFormatter formatter = new FixedFloatFormatter();
+		ByteBuffer frame = ByteBuffer.allocate(header.frameStride * 4);
+		Quaternion rotation = new Quaternion();
+		float[] angles = new float[3];
+
+		for (long f = 0; f < frameCount; f++) {
+			input.readFully(frame.array());
+			frame.clear();
+
+			// Root position
+			for (int i = 0; i < 3; i++) {
+				if (i > 0) {
+					writer.write(' ');
+				}
+				formatter.write(writer, frame.getFloat() * BVHFileStream.POSITION_SCALE);
+			}
+
+			// Rotations, as roll (Z), pitch (X), yaw (Y) like BVHFileStream
+			for (int i = 3; i < header.frameStride; i += 4) {
+				rotation.set(frame.getFloat(), frame.getFloat(), frame.getFloat(), frame.getFloat());
+				BVHFileStream.quatToXyzAngles(rotation, angles);
+				for (int a = 0; a < 3; a++) {
+					writer.write(' ');
+					formatter.write(writer, angles[a] * FastMath.RAD_TO_DEG);
+				}
+			}
+
+			writer.newLine();
+		}
+	}
+
+	/**
+	 * Converts a motion stream to BVH
+	 * @return the number of frames written, frames cut off at the end of
+	 * a stream that wasn't closed are left out
+	 */
+	public static long convert(File input, File output) throws IOException {
+		try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(input), 65536)); BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output)), 65536)) {
+			MotionHeader header = MotionHeader.read(inputStream);
+			MotionFileConverter converter = new MotionFileConverter(header);
+			long frameCount = (input.length() - header.toByteArray().length) / (header.frameStride * 4L);
+
+			writer.write("HIERARCHY\n");
+			if (header.getJointCount() > 0) {
+				converter.writeJointHierarchy(writer, 0, 0);
+			}
+			writer.write("MOTION\n");
+			writer.write("Frames: " + frameCount + "\n");
+			// Frame time in seconds
+			writer.write("Frame Time: " + (header.frameIntervalNs / 1000000000d) + "\n");
+
+			converter.writeFrames(inputStream, writer, frameCount);
+			return frameCount;
+		}
+	}
+
+	private static void printUsage() {
+		System.err.println("Usage: MotionFileConverter <input> <output.bvh>");
+		System.exit(1);
+	}
+
+	public static void main(String[] args) {
+		if (args.length != 2) {
+			printUsage();
+		}
+
+		File input = new File(args[0]);
+		File output = new File(args[1]);
+		if (input.getAbsoluteFile().equals(output.getAbsoluteFile())) {
+			System.err.println("Input and output must be different files");
+			System.exit(1);
+		}
+
+		try {
+			long frameCount = convert(input, output);
+			System.out.println(input + " -> " + output + " (" + frameCount + " frames, " + input.length() + " -> " + output.length() + " bytes)");
+		} catch (IOException e) {
+			System.err.println(input + ": conversion failed: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,193 @@
+package dev.slimevr.posestreamer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import com.jme3.math.FastMath;
+
+import io.eiren.vr.processor.HumanSkeleton;
+import io.eiren.vr.processor.TransformNode;
+
+/**
+ * Writes a compact binary motion stream, much cheaper to produce than BVH
+ * text at high frame rates. Has the same joints as {@link BVHFileStream}
+ * and is turned into BVH afterwards by {@link MotionFileConverter}.
+ * <p>The header is {@link #MAGIC}, the version, the offset of the frame
+ * data as ints, the frame interval in nanoseconds as a long, the joint
+ * count as an int and a table of the joints in the order of the BVH
+ * hierarchy. Each joint has its name as UTF, the index of its parent as a
+ * short (-1 for the root), a byte of flags ({@link #FLAG_END_SITE}) and its
+ * offset from the parent in meters as 3 floats. Frames follow with a fixed stride: the root position in
+ * meters, then the rotation of each joint that isn't an end site relative
+ * to its parent as x, y, z, w, all floats.
+ * <p>There's no frame count, it's taken from the file size, so a stream
+ * that was never closed is still readable.
+ */
+public class MotionFileStream extends PoseDataStream {
+
+	public static final int MAGIC = 0x5356524D; // "SVRM"
+	public static final int VERSION = 1;
+	// Set on end sites, they have an offset but no rotation
+	public static final int FLAG_END_SITE = 1;
+	// Magic number, version, data offset and frame interval
+	static final int FIXED_HEADER_SIZE = 20;
+
+	private final DataOutputStream out;
+
+	private final MotionEncoder encoder = new MotionEncoder(this::wrapSkeletonNodes);
+
+	// Values of the last frame, for interpolating frames
+	private float[] lastFrameValues = new float[0];
+	private float[] interpolatedValues = new float[0];
+	private int lastValueCount = 0;
+	// Values per frame written in the header, -1 before it
+	private int frameStride = -1;
+	private ByteBuffer frameBuffer = ByteBuffer.allocate(0);
+
+	public MotionFileStream(OutputStream outputStream) {
+		super(outputStream);
+		out = new DataOutputStream(new BufferedOutputStream(outputStream, 4096));
+	}
+
+	public MotionFileStream(File file) throws FileNotFoundException {
+		super(file);
+		out = new DataOutputStream(new BufferedOutputStream(outputStream, 4096));
+	}
+
+	public MotionFileStream(String file) throws FileNotFoundException {
+		super(file);
+		out = new DataOutputStream(new BufferedOutputStream(outputStream, 4096));
+	}
+
+	/**
+	 * Wraps the hierarchy to write, see
+	 * {@link BVHFileStream#wrapSkeletonNodes(TransformNode)}
+	 */
+	protected TransformNodeWrapper wrapSkeletonNodes(TransformNode rootNode) {
+		return TransformNodeWrapper.wrapFullHierarchy(rootNode);
+	}
+
+	@Override
+	public void writeHeader(HumanSkeleton skeleton, PoseStreamer streamer) throws IOException {
+		if (skeleton == null) {
+			throw new NullPointerException("skeleton must not be null");
+		}
+		if (streamer == null) {
+			throw new NullPointerException("streamer must not be null");
+		}
+
+		MotionHeader header = encoder.createHeader(skeleton, streamer.getFrameIntervalNs());
+		header.write(out);
+		frameStride = header.frameStride;
+	}
+
+	private void writeValues(float[] values, int count) throws IOException {
+		int size = count * 4;
+		if (frameBuffer.capacity() < size) {
+			frameBuffer = ByteBuffer.allocate(size);
+		}
+		frameBuffer.clear();
+		for (int i = 0; i < count; i++) {
+			frameBuffer.putFloat(values[i]);
+		}
+		out.write(frameBuffer.array(), 0, size);
+	}
+
+	/**
+	 * Writes a frame of the values, or a frame for each slot interpolated
+	 * from the last frame, then keeps the values for interpolating the next
+	 * frames. Positions are interpolated linearly and rotations along the
+	 * shorter way around, normalized.
+	 * @param factors interpolation factors of the slots, or null to write
+	 * the values as they are
+	 */
+	private void writeValueFrames(float[] values, int count, float[] factors, int frames) throws IOException {
+		if (count != frameStride) {
+			throw new IOException("The skeleton changed since the header was written, expected " + frameStride + " values per frame but got " + count);
+		}
+
+		if (factors == null || lastValueCount != count) {
+			// No last frame, nothing to interpolate from
+			for (int i = 0; i < frames; i++) {
+				writeValues(values, count);
+			}
+		} else {
+			if (interpolatedValues.length < count) {
+				interpolatedValues = new float[values.length];
+			}
+			for (int i = 0; i < frames; i++) {
+				float factor = factors[i];
+				// Root position
+				for (int v = 0; v < 3; v++) {
+					interpolatedValues[v] = lastFrameValues[v] + (values[v] - lastFrameValues[v]) * factor;
+				}
+				// Rotations
+				for (int v = 3; v + 3 < count; v += 4) {
+					float dot = lastFrameValues[v] * values[v] + lastFrameValues[v + 1] * values[v + 1] + lastFrameValues[v + 2] * values[v + 2] + lastFrameValues[v + 3] * values[v + 3];
+					float sign = dot < 0f ? -1f : 1f;
+					float lengthSquared = 0f;
+					for (int c = v; c < v + 4; c++) {
+						float value = lastFrameValues[c] + (values[c] * sign - lastFrameValues[c]) * factor;
+						interpolatedValues[c] = value;
+						lengthSquared += value * value;
+					}
+					float invLength = lengthSquared > 0f ? FastMath.invSqrt(lengthSquared) : 1f;
+					for (int c = v; c < v + 4; c++) {
+						interpolatedValues[c] *= invLength;
+					}
+				}
+				writeValues(interpolatedValues, count);
+			}
+		}
+
+		if (lastFrameValues.length < count) {
+			lastFrameValues = new float[values.length];
+		}
+		System.arraycopy(values, 0, lastFrameValues, 0, count);
+		lastValueCount = count;
+	}
+
+	@Override
+	void writeFrame(HumanSkeleton skeleton) throws IOException {
+		encoder.computeFrame(skeleton);
+		writeValueFrames(encoder.getValues(), encoder.getValueCount(), null, 1);
+	}
+
+	@Override
+	void writeFrames(HumanSkeleton skeleton, float[] factors, int count) throws IOException {
+		encoder.computeFrame(skeleton);
+		writeValueFrames(encoder.getValues(), encoder.getValueCount(), factors, count);
+	}
+
+	@Override
+	boolean supportsSnapshots() {
+		return true;
+	}
+
+	@Override
+	void snapshotFrame(HumanSkeleton skeleton, PoseSnapshot snapshot) {
+		encoder.computeFrame(skeleton);
+		snapshot.setValues(encoder.getValues(), encoder.getValueCount());
+	}
+
+	@Override
+	void writeSnapshot(PoseSnapshot snapshot) throws IOException {
+		writeValueFrames(snapshot.values, snapshot.valueCount, snapshot.slotCount > 0 ? snapshot.factors : null, snapshot.getFrameCount());
+	}
+
+	@Override
+	public void writeFooter(HumanSkeleton skeleton) throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+		super.close();
+	}
+}
@@ -0,0 +1,140 @@
+package dev.slimevr.posestreamer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import com.jme3.math.Vector3f;
+
+/**
+ * The header of a binary motion stream, see {@link MotionFileStream} for
+ * the format. Joints are in the order of the BVH hierarchy written by
+ * {@link BVHFileStream}, so children always follow their parent.
+ */
+final class MotionHeader {
+
+	final String[] names;
+	final int[] parents;
+	final boolean[] endSites;
+	// Offsets from the parent in meters, 3 per joint
+	final float[] offsets;
+	final long frameIntervalNs;
+	// Floats per frame, the root position and a rotation per joint that isn't an end site
+	final int frameStride;
+
+	MotionHeader(String[] names, int[] parents, boolean[] endSites, float[] offsets, long frameIntervalNs) {
+		this.names = names;
+		this.parents = parents;
+		this.endSites = endSites;
+		this.offsets = offsets;
+		this.frameIntervalNs = frameIntervalNs;
+
+		int rotatedJointCount = 0;
+		for (boolean endSite : endSites) {
+			if (!endSite) {
+				rotatedJointCount++;
+			}
+		}
+		this.frameStride = 3 + rotatedJointCount * 4;
+	}
+
+	int getJointCount() {
+		return names.length;
+	}
+
+	/**
+	 * Builds the header of a planned hierarchy, with the same joints
+	 * {@link BVHFileStream} writes
+	 */
+	static MotionHeader fromPlan(ChannelPlan plan, long frameIntervalNs) {
+		int jointCount = plan.getJointCount();
+		String[] names = new String[jointCount];
+		float[] offsets = new float[jointCount * 3];
+		for (int i = 0; i < jointCount; i++) {
+			TransformNodeWrapper node = plan.joints[i];
+			names[i] = node.getName();
+
+			// Ignore the root offset and original root offset
+			if (plan.levels[i] > 0 && node.wrappedNode.getParent() != null) {
+				Vector3f offset = node.localTransform.getTranslation();
+				float reverseMultiplier = node.hasReversedHierarchy() ? -1 : 1;
+				offsets[i * 3] = offset.getX() * reverseMultiplier;
+				offsets[i * 3 + 1] = offset.getY() * reverseMultiplier;
+				offsets[i * 3 + 2] = offset.getZ() * reverseMultiplier;
+			}
+		}
+
+		return new MotionHeader(names, plan.parents.clone(), plan.endSites.clone(), offsets, frameIntervalNs);
+	}
+
+	void write(DataOutputStream out) throws IOException {
+		ByteArrayOutputStream tableBytes = new ByteArrayOutputStream();
+		DataOutputStream table = new DataOutputStream(tableBytes);
+		table.writeInt(names.length);
+		for (int i = 0; i < names.length; i++) {
+			table.writeUTF(names[i]);
+			table.writeShort(parents[i]);
+			table.writeByte(endSites[i] ? MotionFileStream.FLAG_END_SITE : 0);
+			table.writeFloat(offsets[i * 3]);
+			table.writeFloat(offsets[i * 3 + 1]);
+			table.writeFloat(offsets[i * 3 + 2]);
+		}
+		table.flush();
+
+		out.writeInt(MotionFileStream.MAGIC);
+		out.writeInt(MotionFileStream.VERSION);
+		out.writeInt(MotionFileStream.FIXED_HEADER_SIZE + tableBytes.size());
+		out.writeLong(frameIntervalNs);
+		tableBytes.writeTo(out);
+	}
+
+	byte[] toByteArray() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		write(out);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Reads a header, leaving the input at the start of the frames
+	 */
+	static MotionHeader read(DataInputStream input) throws IOException {
+		if (input.readInt() != MotionFileStream.MAGIC) {
+			throw new IOException("Not a motion stream");
+		}
+		int version = input.readInt();
+		if (version != MotionFileStream.VERSION) {
+			throw new IOException("Unsupported motion stream version " + version);
+		}
+		int dataOffset = input.readInt();
+		long frameIntervalNs = input.readLong();
+		if (dataOffset < MotionFileStream.FIXED_HEADER_SIZE + 4) {
+			throw new IOException("Invalid motion stream header size " + dataOffset);
+		}
+
+		byte[] tableBytes = new byte[dataOffset - MotionFileStream.FIXED_HEADER_SIZE];
+		input.readFully(tableBytes);
+		DataInputStream table = new DataInputStream(new ByteArrayInputStream(tableBytes));
+		int jointCount = table.readInt();
+		if (jointCount < 0 || jointCount > tableBytes.length) {
+			throw new IOException("Invalid motion stream joint count " + jointCount);
+		}
+		String[] names = new String[jointCount];
+		int[] parents = new int[jointCount];
+		boolean[] endSites = new boolean[jointCount];
+		float[] offsets = new float[jointCount * 3];
+		for (int i = 0; i < jointCount; i++) {
+			names[i] = table.readUTF();
+			parents[i] = table.readShort();
+			endSites[i] = (table.readByte() & MotionFileStream.FLAG_END_SITE) != 0;
+			offsets[i * 3] = table.readFloat();
+			offsets[i * 3 + 1] = table.readFloat();
+			offsets[i * 3 + 2] = table.readFloat();
+		}
+
+		return new MotionHeader(names, parents, endSites, offsets, frameIntervalNs);
+	}
+}
@@ -0,0 +1,295 @@
+package dev.slimevr.posestreamer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+/**
+ * Receives frames published by {@link NetworkPoseStream}, over TCP from
+ * the stream's port or over UDP on a multicast group or port. Run main to
+ * record a live stream to a motion file, which
+ * {@link MotionFileConverter} turns into BVH.
+ */
+public class NetworkPoseReceiver implements AutoCloseable {
+
+	// Large enough for a header packet of any skeleton
+	private static final int MAX_PACKET_SIZE = 65536;
+
+	private final Socket socket;
+	private final DataInputStream input;
+
+	private final MulticastSocket datagramSocket;
+	private final InetAddress group;
+	private DatagramPacket packet;
+	private ByteBuffer packetBuffer;
+
+	private MotionHeader header;
+	private byte[] frameBytes;
+	private ByteBuffer frameBuffer;
+	private int lastSequence;
+	private long frameTimeNs = -1L;
+	private long lostFrames = 0;
+
+	private NetworkPoseReceiver(Socket socket, MulticastSocket datagramSocket, InetAddress group) throws IOException {
+		this.socket = socket;
+		this.input = socket != null ? new DataInputStream(new BufferedInputStream(socket.getInputStream(), 4096)) : null;
+		this.datagramSocket = datagramSocket;
+		this.group = group;
+		if (datagramSocket != null) {
+			packetBuffer = ByteBuffer.allocate(MAX_PACKET_SIZE);
+			packet = new DatagramPacket(packetBuffer.array(), MAX_PACKET_SIZE);
+		}
+	}
+
+	/**
+	 * Subscribes to a stream over TCP and reads its header
+	 */
+	public static NetworkPoseReceiver connectTcp(String host, int port) throws IOException {
+		Socket socket = new Socket(host, port);
+		try {
+			NetworkPoseReceiver receiver = new NetworkPoseReceiver(socket, null, null);
+			receiver.setHeader(MotionHeader.read(receiver.input));
+			return receiver;
+		} catch (IOException e) {
+			socket.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Listens for UDP packets, joining the group if the address is a
+	 * multicast group. The header is known after the first header packet.
+	 * @param port the port to listen on, 0 for any free port, see
+	 * {@link #getLocalPort()}
+	 */
+	public static NetworkPoseReceiver listenUdp(InetAddress group, int port) throws IOException {
+		MulticastSocket socket = new MulticastSocket(port);
+		try {
+			if (group != null && group.isMulticastAddress()) {
+				socket.joinGroup(group);
+			} else {
+				group = null;
+			}
+			return new NetworkPoseReceiver(null, socket, group);
+		} catch (IOException e) {
+			socket.close();
+			throw e;
+		}
+	}
+
+	private void setHeader(MotionHeader header) {
+		this.header = header;
+		frameBytes = new byte[header.frameStride * 4];
+		frameBuffer = ByteBuffer.wrap(frameBytes);
+	}
+
+	/**
+	 * Reads the next frame, waiting for it. Over UDP, frames before the
+	 * first header packet are skipped.
+	 * @return false at the end of a TCP stream
+	 * @throws IOException if the stream failed or its skeleton changed
+	 */
+	public boolean readFrame() throws IOException {
+		if (input != null) {
+			try {
+				input.readFully(frameBytes);
+			} catch (EOFException e) {
+				return false;
+			}
+		} else {
+			receiveFramePacket();
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the values of the last frame read
+	 * @param values filled with the root position and the rotations, see
+	 * {@link MotionFileStream}, or null to create an array
+	 * @return the values
+	 */
+	public float[] getFrame(float[] values) {
+		if (values == null || values.length < header.frameStride) {
+			values = new float[header.frameStride];
+		}
+		frameBuffer.clear();
+		for (int i = 0; i < header.frameStride; i++) {
+			values[i] = frameBuffer.getFloat();
+		}
+		return values;
+	}
+
+	private void receiveFramePacket() throws IOException {
+		while (true) {
+			packet.setLength(MAX_PACKET_SIZE);
+			datagramSocket.receive(packet);
+			int length = packet.getLength();
+			if (length < NetworkPoseStream.PACKET_PREFIX_SIZE) {
+				continue;
+			}
+
+			packetBuffer.clear();
+			if (packetBuffer.getInt() != MotionFileStream.MAGIC) {
+				continue;
+			}
+			int type = packetBuffer.get();
+			int sequence = packetBuffer.getInt();
+			long timeNs = packetBuffer.getLong();
+
+			if (type == NetworkPoseStream.PACKET_HEADER) {
+				MotionHeader packetHeader = MotionHeader.read(new DataInputStream(new ByteArrayInputStream(packet.getData(), NetworkPoseStream.PACKET_PREFIX_SIZE, length - NetworkPoseStream.PACKET_PREFIX_SIZE)));
+				if (header == null) {
+					setHeader(packetHeader);
+					// Count lost frames from here
+					lastSequence = sequence - 1;
+				} else if (packetHeader.frameStride != header.frameStride) {
+					throw new IOException("The skeleton of the stream changed");
+				}
+			} else if (type == NetworkPoseStream.PACKET_FRAME && header != null && length == NetworkPoseStream.PACKET_PREFIX_SIZE + frameBytes.length) {
+				// Late packets are out of order, skip them
+				if (sequence - lastSequence <= 0) {
+					continue;
+				}
+				lostFrames += sequence - lastSequence - 1;
+				lastSequence = sequence;
+				frameTimeNs = timeNs;
+				System.arraycopy(packet.getData(), NetworkPoseStream.PACKET_PREFIX_SIZE, frameBytes, 0, frameBytes.length);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return the names of the joints, or null before a UDP header was
+	 * received
+	 */
+	public String[] getJointNames() {
+		return header != null ? header.names.clone() : null;
+	}
+
+	/**
+	 * @return the number of values in a frame, or -1 before a UDP header was
+	 * received
+	 */
+	public int getFrameStride() {
+		return header != null ? header.frameStride : -1;
+	}
+
+	/**
+	 * @return the time of the last UDP frame in nanoseconds since the first
+	 * frame of the stream, -1 over TCP
+	 */
+	public long getFrameTime() {
+		return frameTimeNs;
+	}
+
+	/**
+	 * @return the number of UDP frames that never arrived or arrived late
+	 */
+	public long getLostFrames() {
+		return lostFrames;
+	}
+
+	public int getLocalPort() {
+		return datagramSocket != null ? datagramSocket.getLocalPort() : socket.getLocalPort();
+	}
+
+	/**
+	 * Sets how long {@link #readFrame()} waits before throwing a
+	 * {@link java.net.SocketTimeoutException}, 0 to wait forever
+	 */
+	public void setTimeout(int timeoutMs) throws IOException {
+		if (datagramSocket != null) {
+			datagramSocket.setSoTimeout(timeoutMs);
+		} else {
+			socket.setSoTimeout(timeoutMs);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (socket != null) {
+			socket.close();
+		}
+		if (datagramSocket != null) {
+			try {
+				if (group != null) {
+					datagramSocket.leaveGroup(group);
+				}
+			} finally {
+				datagramSocket.close();
+			}
+		}
+	}
+
+	private static void printUsage() {
+		System.err.println("Usage: NetworkPoseReceiver (--tcp <host>:<port> | --udp <group or *>:<port>) <output>");
+		System.exit(1);
+	}
+
+	private static InetSocketAddress parseAddress(String address) {
+		int colon = address.lastIndexOf(':');
+		if (colon < 0) {
+			printUsage();
+		}
+		String host = address.substring(0, colon);
+		try {
+			int port = Integer.parseInt(address.substring(colon + 1));
+			return host.equals("*") ? new InetSocketAddress(port) : new InetSocketAddress(host, port);
+		} catch (IllegalArgumentException e) {
+			printUsage();
+			return null;
+		}
+	}
+
+	/**
+	 * Records a live stream to a motion file until the stream ends or the
+	 * program is stopped
+	 */
+	public static void main(String[] args) {
+		if (args.length != 3 || !(args[0].equals("--tcp") || args[0].equals("--udp"))) {
+			printUsage();
+		}
+		InetSocketAddress address = parseAddress(args[1]);
+		File output = new File(args[2]);
+
+		try (NetworkPoseReceiver receiver = args[0].equals("--tcp") ? connectTcp(address.getHostString(), address.getPort()) : listenUdp(address.getAddress(), address.getPort())) {
+			DataOutputStream out = null;
+			long frameCount = 0;
+			try {
+				while (receiver.readFrame()) {
+					// Over UDP the header is known once a frame arrives
+					if (out == null) {
+						out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output), 65536));
+						receiver.header.write(out);
+						System.out.println("Recording " + receiver.header.getJointCount() + " joints to " + output);
+					}
+					out.write(receiver.frameBytes);
+					// Keep the file readable if recording is stopped at any time
+					out.flush();
+					frameCount++;
+				}
+			} finally {
+				if (out != null) {
+					out.close();
+				}
+			}
+			System.out.println(frameCount + " frames recorded, " + receiver.getLostFrames() + " lost");
+		} catch (IOException e) {
+			System.err.println("Receiving failed: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+}
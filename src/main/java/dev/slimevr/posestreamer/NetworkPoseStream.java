@@ -0,0 +1,378 @@
+package dev.slimevr.posestreamer;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.eiren.util.ann.ThreadSafe;
+import io.eiren.util.ann.VRServerThread;
+import io.eiren.util.logging.LogManager;
+import io.eiren.vr.processor.HumanSkeleton;
+import io.eiren.vr.processor.TransformNode;
+
+/**
+ * Publishes frames live over the network, encoded like
+ * {@link MotionFileStream}, so another machine can render or record the
+ * skeleton without going through the bridges. See
+ * {@link NetworkPoseReceiver} for the receiving side.
+ * <p>Over TCP every subscriber that connects gets exactly the bytes of a
+ * motion file: the header, then frames. Each subscriber has its own bounded
+ * queue and writer thread, when a subscriber can't keep up its oldest
+ * queued frames are dropped, so a slow subscriber never stalls the server
+ * or the other subscribers.
+ * <p>Over UDP each frame is a packet sent to a multicast group or a single
+ * address. Packets start with {@link MotionFileStream#MAGIC}, a byte of
+ * type ({@link #PACKET_HEADER} or {@link #PACKET_FRAME}), the frame
+ * sequence number as an int and the time since the first frame in
+ * nanoseconds as a long. Header packets are followed by the motion header
+ * and are sent again every {@link #HEADER_INTERVAL_NS}, so receivers can
+ * join at any time. Frame packets are followed by the frame values.
+ */
+public class NetworkPoseStream extends PoseDataStream {
+
+	public static final int DEFAULT_PORT = 21111;
+	public static final String DEFAULT_MULTICAST_GROUP = "239.255.83.86";
+	public static final int DEFAULT_QUEUE_CAPACITY = 32;
+	public static final long HEADER_INTERVAL_NS = 1000000000L;
+
+	public static final int PACKET_HEADER = 0;
+	public static final int PACKET_FRAME = 1;
+	// Magic number, type, sequence number and time
+	static final int PACKET_PREFIX_SIZE = 17;
+
+	private final MotionEncoder encoder = new MotionEncoder(this::wrapSkeletonNodes);
+
+	// TCP
+	private final ServerSocket serverSocket;
+	private final int queueCapacity;
+	private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+	private Thread acceptThread;
+
+	// UDP
+	private final MulticastSocket datagramSocket;
+	private final InetSocketAddress target;
+	private DatagramPacket framePacket;
+	private DatagramPacket headerPacket;
+	private long lastHeaderTimeNs;
+
+	private byte[] headerBytes;
+	private int frameStride = -1;
+	// The prefix of a frame packet followed by the values, TCP frames are the values only
+	private ByteBuffer frameBuffer;
+	private int sequence = 0;
+	private long startTimeNs;
+
+	private final AtomicLong droppedFrames = new AtomicLong();
+
+	private NetworkPoseStream(ServerSocket serverSocket, int queueCapacity, MulticastSocket datagramSocket, InetSocketAddress target) {
+		super();
+		this.serverSocket = serverSocket;
+		this.queueCapacity = queueCapacity;
+		this.datagramSocket = datagramSocket;
+		this.target = target;
+	}
+
+	/**
+	 * Listens for TCP subscribers
+	 * @param bindAddress the address to listen on, null for any
+	 * @param port the port to listen on, 0 for any free port, see
+	 * {@link #getLocalPort()}
+	 * @param queueCapacity how many frames can be waiting to be sent to each
+	 * subscriber before the oldest are dropped
+	 */
+	public static NetworkPoseStream openTcp(InetAddress bindAddress, int port, int queueCapacity) throws IOException {
+		if (queueCapacity < 1) {
+			throw new IllegalArgumentException("queueCapacity must at least have a value of 1");
+		}
+		return new NetworkPoseStream(new ServerSocket(port, 8, bindAddress), queueCapacity, null, null);
+	}
+
+	public static NetworkPoseStream openTcp(int port) throws IOException {
+		return openTcp(null, port, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * Sends frames as UDP packets
+	 * @param target a multicast group or the address of a single receiver
+	 */
+	public static NetworkPoseStream openUdp(InetSocketAddress target) throws IOException {
+		if (target.isUnresolved()) {
+			throw new IOException("Unresolved address " + target);
+		}
+		return new NetworkPoseStream(null, 0, new MulticastSocket(), target);
+	}
+
+	/**
+	 * Wraps the hierarchy to send, see
+	 * {@link BVHFileStream#wrapSkeletonNodes(TransformNode)}
+	 */
+	protected TransformNodeWrapper wrapSkeletonNodes(TransformNode rootNode) {
+		return TransformNodeWrapper.wrapFullHierarchy(rootNode);
+	}
+
+	@Override
+	public void writeHeader(HumanSkeleton skeleton, PoseStreamer streamer) throws IOException {
+		if (streamer == null) {
+			throw new NullPointerException("streamer must not be null");
+		}
+		writeHeader(skeleton, streamer.getFrameIntervalNs());
+	}
+
+	void writeHeader(HumanSkeleton skeleton, long frameIntervalNs) throws IOException {
+		if (skeleton == null) {
+			throw new NullPointerException("skeleton must not be null");
+		}
+		if (headerBytes != null) {
+			throw new IllegalStateException("The header was already written");
+		}
+
+		MotionHeader header = encoder.createHeader(skeleton, frameIntervalNs);
+		headerBytes = header.toByteArray();
+		frameStride = header.frameStride;
+		frameBuffer = ByteBuffer.allocate(PACKET_PREFIX_SIZE + frameStride * 4);
+		startTimeNs = System.nanoTime();
+
+		if (datagramSocket != null) {
+			ByteBuffer headerPacketBuffer = ByteBuffer.allocate(PACKET_PREFIX_SIZE + headerBytes.length);
+			writePacketPrefix(headerPacketBuffer, PACKET_HEADER, 0L);
+			headerPacketBuffer.put(headerBytes);
+			headerPacket = new DatagramPacket(headerPacketBuffer.array(), headerPacketBuffer.capacity(), target);
+			framePacket = new DatagramPacket(frameBuffer.array(), frameBuffer.capacity(), target);
+			sendHeaderPacket(startTimeNs);
+		}
+
+		if (serverSocket != null) {
+			acceptThread = new Thread(this::acceptSubscribers, "Pose stream server");
+			acceptThread.setDaemon(true);
+			acceptThread.start();
+		}
+	}
+
+	private void writePacketPrefix(ByteBuffer buffer, int type, long timeNs) {
+		buffer.clear();
+		buffer.putInt(MotionFileStream.MAGIC);
+		buffer.put((byte) type);
+		buffer.putInt(sequence);
+		buffer.putLong(timeNs);
+	}
+
+	private void sendHeaderPacket(long now) throws IOException {
+		ByteBuffer headerPacketBuffer = ByteBuffer.wrap(headerPacket.getData());
+		writePacketPrefix(headerPacketBuffer, PACKET_HEADER, now - startTimeNs);
+		datagramSocket.send(headerPacket);
+		lastHeaderTimeNs = now;
+	}
+
+	@VRServerThread
+	@Override
+	void writeFrame(HumanSkeleton skeleton) throws IOException {
+		if (headerBytes == null) {
+			throw new IllegalStateException("The header must be written first");
+		}
+
+		int count = encoder.computeFrame(skeleton);
+		if (count != frameStride) {
+			throw new IOException("The skeleton changed since the header was written, expected " + frameStride + " values per frame but got " + count);
+		}
+
+		long now = System.nanoTime();
+		writePacketPrefix(frameBuffer, PACKET_FRAME, now - startTimeNs);
+		float[] values = encoder.getValues();
+		for (int i = 0; i < count; i++) {
+			frameBuffer.putFloat(values[i]);
+		}
+		sequence++;
+
+		for (Subscriber subscriber : subscribers) {
+			subscriber.offer(frameBuffer.array(), PACKET_PREFIX_SIZE);
+		}
+
+		if (datagramSocket != null) {
+			if (now - lastHeaderTimeNs >= HEADER_INTERVAL_NS) {
+				sendHeaderPacket(now);
+			}
+			datagramSocket.send(framePacket);
+		}
+	}
+
+	private void acceptSubscribers() {
+		while (!serverSocket.isClosed()) {
+			try {
+				Socket socket = serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				Subscriber subscriber = new Subscriber(socket, queueCapacity, frameStride * 4);
+				subscribers.add(subscriber);
+				subscriber.start();
+				LogManager.log.info("[PoseStreamer] Subscriber connected: " + socket.getRemoteSocketAddress());
+			} catch (SocketException e) {
+				// Closed
+			} catch (IOException e) {
+				LogManager.log.warning("[PoseStreamer] Failed to accept a subscriber", e);
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (serverSocket != null) {
+				serverSocket.close();
+				if (acceptThread != null) {
+					try {
+						acceptThread.join();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				for (Subscriber subscriber : subscribers) {
+					subscriber.finish();
+				}
+			}
+			if (datagramSocket != null) {
+				datagramSocket.close();
+			}
+		} finally {
+			super.close();
+		}
+	}
+
+	/**
+	 * @return the TCP port subscribers connect to, or -1 for UDP
+	 */
+	public int getLocalPort() {
+		return serverSocket != null ? serverSocket.getLocalPort() : -1;
+	}
+
+	@ThreadSafe
+	public int getSubscriberCount() {
+		return subscribers.size();
+	}
+
+	/**
+	 * @return the frames dropped for subscribers that couldn't keep up, in
+	 * total over every subscriber
+	 */
+	@ThreadSafe
+	public long getDroppedFrames() {
+		return droppedFrames.get();
+	}
+
+	/**
+	 * A TCP subscriber with its own queue of frames and writer thread
+	 */
+	private final class Subscriber implements Runnable {
+
+		private final Socket socket;
+		private final OutputStream out;
+		private final int frameSize;
+		// Frames ready to be filled and frames waiting to be sent
+		private final ArrayBlockingQueue<byte[]> freeFrames;
+		private final ArrayBlockingQueue<byte[]> queuedFrames;
+		// Queued after the last frame to stop the writer thread
+		private final byte[] endOfFrames = new byte[0];
+		private final Thread thread;
+
+		private volatile long sentFrames = 0;
+		private long dropped = 0;
+
+		Subscriber(Socket socket, int capacity, int frameSize) throws IOException {
+			this.socket = socket;
+			this.out = new BufferedOutputStream(socket.getOutputStream(), 4096);
+			this.frameSize = frameSize;
+			freeFrames = new ArrayBlockingQueue<byte[]>(capacity);
+			// One more for the end of the frames
+			queuedFrames = new ArrayBlockingQueue<byte[]>(capacity + 1);
+			for (int i = 0; i < capacity; i++) {
+				freeFrames.add(new byte[frameSize]);
+			}
+			thread = new Thread(this, "Pose stream subscriber " + socket.getRemoteSocketAddress());
+			thread.setDaemon(true);
+		}
+
+		void start() {
+			thread.start();
+		}
+
+		@VRServerThread
+		void offer(byte[] frame, int offset) {
+			byte[] slot = freeFrames.poll();
+			if (slot == null) {
+				// Drop the oldest frame, the newest matters most to a live subscriber
+				slot = queuedFrames.poll();
+				dropped++;
+				droppedFrames.incrementAndGet();
+				if (slot == null || slot == endOfFrames) {
+					return;
+				}
+			}
+			System.arraycopy(frame, offset, slot, 0, frameSize);
+			queuedFrames.offer(slot);
+		}
+
+		@Override
+		public void run() {
+			try {
+				out.write(headerBytes);
+				out.flush();
+				while (true) {
+					byte[] frame = queuedFrames.take();
+					if (frame == endOfFrames) {
+						out.flush();
+						break;
+					}
+					out.write(frame, 0, frameSize);
+					freeFrames.offer(frame);
+					sentFrames++;
+					// Send right away unless more frames are waiting
+					if (queuedFrames.isEmpty()) {
+						out.flush();
+					}
+				}
+			} catch (IOException e) {
+				// Disconnected
+			} catch (InterruptedException e) {
+				// Stopped
+			} finally {
+				subscribers.remove(this);
+				try {
+					socket.close();
+				} catch (IOException e) {
+					// Already closed
+				}
+				LogManager.log.info("[PoseStreamer] Subscriber disconnected: " + socket.getRemoteSocketAddress() + ", " + sentFrames + " frames sent, " + dropped + " dropped");
+			}
+		}
+
+		/**
+		 * Sends the queued frames and disconnects
+		 */
+		void finish() {
+			queuedFrames.offer(endOfFrames);
+			try {
+				thread.join(1000L);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (thread.isAlive()) {
+				// Stuck on a subscriber that stopped reading
+				thread.interrupt();
+				try {
+					socket.close();
+				} catch (IOException e) {
+					// Already closed
+				}
+			}
+		}
+	}
+}
@@ -17,6 +17,14 @@ public abstract class PoseDataStream implements AutoCloseable {
 		this.outputStream = outputStream;
 	}
 
+	/**
+	 * For streams that don't write to an output stream, like
+	 * {@link NetworkPoseStream}
+	 */
+	protected PoseDataStream() {
+		this((OutputStream) null);
+	}
+
 	protected PoseDataStream(File file) throws FileNotFoundException {
 		this(new FileOutputStream(file));
 	}
@@ -30,6 +38,46 @@ public abstract class PoseDataStream implements AutoCloseable {
 
 	abstract void writeFrame(HumanSkeleton skeleton) throws IOException;
 
+	/**
+	 * Writes a frame for each of several frame slots that passed since the
+	 * last frame, interpolated between the last frame and the current pose.
+	 * Writes the current pose for every slot unless overridden.
+	 * @param factors how far each slot is from the last frame (0) to the
+	 * current pose (1)
+	 * @param count the number of slots
+	 */
+	void writeFrames(HumanSkeleton skeleton, float[] factors, int count) throws IOException {
+		for(int i = 0; i < count; i++) {
+			writeFrame(skeleton);
+		}
+	}
+
+	/**
+	 * Whether frames can be captured with {@link #snapshotFrame} on one
+	 * thread and written with {@link #writeSnapshot} on another, see
+	 * {@link AsyncPoseDataStream}
+	 */
+	boolean supportsSnapshots() {
+		return false;
+	}
+
+	/**
+	 * Captures the values of a frame of the current pose, without formatting
+	 * or writing anything
+	 */
+	void snapshotFrame(HumanSkeleton skeleton, PoseSnapshot snapshot) {
+		throw new UnsupportedOperationException("Snapshots are not supported");
+	}
+
+	/**
+	 * Writes the frames of a snapshot like {@link #writeFrame} or
+	 * {@link #writeFrames} would have. Can be called from another thread than
+	 * {@link #snapshotFrame}, but not concurrently with itself.
+	 */
+	void writeSnapshot(PoseSnapshot snapshot) throws IOException {
+		throw new UnsupportedOperationException("Snapshots are not supported");
+	}
+
 	public void writeFooter(HumanSkeleton skeleton) throws IOException {
 	}
 
@@ -39,7 +87,9 @@ public abstract class PoseDataStream implements AutoCloseable {
 
 	@Override
 	public void close() throws IOException {
-		outputStream.close();
+		if (outputStream != null) {
+			outputStream.close();
+		}
 		closed = true;
 	}
 }
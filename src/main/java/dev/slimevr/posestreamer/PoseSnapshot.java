@@ -0,0 +1,49 @@
+package dev.slimevr.posestreamer;
+
+/**
+ * Numeric values of the pose of a skeleton, captured by
+ * {@link PoseDataStream#snapshotFrame(io.eiren.vr.processor.HumanSkeleton, PoseSnapshot)}
+ * so the frame can be formatted and written later on another thread. Reused
+ * for many frames, the arrays only grow.
+ */
+final class PoseSnapshot {
+
+	float[] values = new float[64];
+	int valueCount = 0;
+
+	// Interpolation factors of several frame slots, see PoseDataStream#writeFrames
+	float[] factors = new float[4];
+	// 0 for a single frame without interpolation
+	int slotCount = 0;
+
+	void setValues(float[] values, int count) {
+		if (this.values.length < count) {
+			this.values = new float[Math.max(count, this.values.length * 2)];
+		}
+		System.arraycopy(values, 0, this.values, 0, count);
+		valueCount = count;
+	}
+
+	/**
+	 * @param factors the interpolation factors of the slots, or null for a
+	 * single frame without interpolation
+	 */
+	void setSlots(float[] factors, int count) {
+		if (factors == null) {
+			slotCount = 0;
+			return;
+		}
+		if (this.factors.length < count) {
+			this.factors = new float[Math.max(count, this.factors.length * 2)];
+		}
+		System.arraycopy(factors, 0, this.factors, 0, count);
+		slotCount = count;
+	}
+
+	/**
+	 * @return the number of frames this snapshot is written as
+	 */
+	int getFrameCount() {
+		return slotCount > 0 ? slotCount : 1;
+	}
+}
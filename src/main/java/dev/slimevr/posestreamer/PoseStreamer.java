@@ -2,6 +2,7 @@ package dev.slimevr.posestreamer;
 
 import java.io.IOException;
 
+import dev.slimevr.poserecorder.FrameScheduler;
 import io.eiren.util.ann.VRServerThread;
 import io.eiren.util.logging.LogManager;
 import io.eiren.vr.VRServer;
@@ -9,8 +10,16 @@ import io.eiren.vr.processor.HumanSkeleton;
 
 public class PoseStreamer {
 
-	protected long frameRecordingInterval = 60L;
-	protected long nextFrameTimeMs = -1L;
+	protected final FrameScheduler frameScheduler = new FrameScheduler(60000000L);
+	// Whether to interpolate frames for slots that were missed or captured late
+	protected boolean resample = false;
+	// Nanoseconds since the first frame, -1 before the first frame
+	private long lastFrameTimeNs = -1L;
+	private float[] resampleFactors = new float[4];
+
+	// Outputs that support it are written on a background thread, 0 writes them on the server thread
+	private int writeQueueCapacity = AsyncPoseDataStream.DEFAULT_CAPACITY;
+	private AsyncPoseDataStream.OverflowPolicy overflowPolicy = AsyncPoseDataStream.OverflowPolicy.DROP;
 
 	private HumanSkeleton skeleton;
 	private PoseDataStream poseFileStream;
@@ -22,7 +31,7 @@ public class PoseStreamer {
 
 		// Register callbacks/events
 		server.addSkeletonUpdatedCallback(this::onSkeletonUpdated);
-		server.addOnTick(this::onTick);
+		server.addOnTick("Pose streamer", this::onTick);
 	}
 
 	@VRServerThread
@@ -42,17 +51,7 @@ public class PoseStreamer {
 			return;
 		}
 			
-		long curTime = System.currentTimeMillis();
-		if (curTime < nextFrameTimeMs) {
-			return;
-		}
-			
-		nextFrameTimeMs += frameRecordingInterval;
-
-		// To prevent duplicate frames, make sure the frame time is always in the future
-		if (nextFrameTimeMs <= curTime) {
-			nextFrameTimeMs = curTime + frameRecordingInterval;
-		}
+		long curTime = System.nanoTime();
 		
 		// Make sure it's synchronized since this is the server thread interacting with
 		// an unknown outside thread controlling this class
@@ -62,8 +61,27 @@ public class PoseStreamer {
 				return;
 			}
 			
+			// Frames are captured for fixed slots, missed slots are skipped unless resampling
+			int slots = frameScheduler.poll(curTime);
+			if (slots == 0) {
+				return;
+			}
+			long frameTime = frameScheduler.getTime(curTime);
+			
 			try {
-				poseFileStream.writeFrame(skeleton);
+				if (resample && lastFrameTimeNs >= 0 && frameTime > lastFrameTimeNs) {
+					if (resampleFactors.length < slots) {
+						resampleFactors = new float[Math.max(slots, resampleFactors.length * 2)];
+					}
+					long slotTime = frameScheduler.getSlotTime();
+					for (int i = 0; i < slots; i++) {
+						resampleFactors[i] = Math.min(1f, (slotTime + i * frameScheduler.getInterval() - lastFrameTimeNs) / (float) (frameTime - lastFrameTimeNs));
+					}
+					poseFileStream.writeFrames(skeleton, resampleFactors, slots);
+				} else {
+					poseFileStream.writeFrame(skeleton);
+				}
+				lastFrameTimeNs = frameTime;
 			} catch (Exception e) {
 				// Handle any exceptions without crashing the program
 				LogManager.log.severe("[PoseStreamer] Exception while saving frame", e);
@@ -76,17 +94,61 @@ public class PoseStreamer {
 			throw new IllegalArgumentException("intervalMs must at least have a value of 1");
 		}
 
-		this.frameRecordingInterval = intervalMs;
+		frameScheduler.setInterval(intervalMs * 1000000L);
 	}
 
 	public synchronized long getFrameInterval() {
-		return frameRecordingInterval;
+		return frameScheduler.getInterval() / 1000000L;
+	}
+
+	public synchronized long getFrameIntervalNs() {
+		return frameScheduler.getInterval();
 	}
 
+	/**
+	 * @param resample whether to write a frame for every frame slot, with
+	 * frames interpolated to the time of their slot, so the output has exactly
+	 * the frame rate of the interval
+	 */
+	public synchronized void setResample(boolean resample) {
+		this.resample = resample;
+	}
+
+	public synchronized boolean isResampling() {
+		return resample;
+	}
+
+	/**
+	 * Sets how outputs set after this are written. Frames are captured on
+	 * the server thread and written by a background thread through a queue
+	 * of the given capacity, see {@link AsyncPoseDataStream}.
+	 * @param capacity the number of frames that can be waiting to be written,
+	 * 0 to write frames on the server thread
+	 * @param overflowPolicy what to do with frames while the queue is full
+	 */
+	public synchronized void setWriteQueue(int capacity, AsyncPoseDataStream.OverflowPolicy overflowPolicy) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("capacity must not be negative");
+		}
+		this.writeQueueCapacity = capacity;
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	/**
+	 * Sets the output, wrapped in an {@link AsyncPoseDataStream} if it can be
+	 * written on a background thread, see {@link #setWriteQueue}. The
+	 * wrapper is returned by {@link #getOutput()} and closed with
+	 * {@link #closeOutput()}.
+	 */
 	public synchronized void setOutput(PoseDataStream poseFileStream) throws IOException {
+		if (writeQueueCapacity > 0 && poseFileStream.supportsSnapshots()) {
+			poseFileStream = new AsyncPoseDataStream(poseFileStream, writeQueueCapacity, overflowPolicy);
+		}
 		poseFileStream.writeHeader(skeleton, this);
 		this.poseFileStream = poseFileStream;
-		nextFrameTimeMs = -1L; // Reset the frame timing
+		// Reset the frame timing
+		frameScheduler.reset();
+		lastFrameTimeNs = -1L;
 	}
 
 	public synchronized void setOutput(PoseDataStream poseFileStream, long intervalMs) throws IOException {
@@ -109,8 +171,12 @@ public class PoseStreamer {
 
 	public synchronized void closeOutput(PoseDataStream poseFileStream) throws IOException {
 		if (poseFileStream != null) {
-			poseFileStream.writeFooter(skeleton);
-			poseFileStream.close();
+			try {
+				poseFileStream.writeFooter(skeleton);
+			} finally {
+				poseFileStream.close();
+			}
+			LogManager.log.info("[PoseStreamer] Frame timing: " + frameScheduler);
 		}
 	}
 }
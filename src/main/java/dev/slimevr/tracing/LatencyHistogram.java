@@ -0,0 +1,121 @@
+package dev.slimevr.tracing;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import io.eiren.util.ann.ThreadSafe;
+
+/**
+ * Fixed size histogram of nanosecond durations with log-linear buckets
+ * like HdrHistogram: values below 64 ns are exact, every larger power of
+ * two is split into 32 buckets, so percentiles are within about 3% of the
+ * recorded values at any scale.
+ * <p>Recording never allocates or locks. Values can be recorded from one
+ * thread while others read, readers may see a recording half applied.
+ */
+@ThreadSafe
+public final class LatencyHistogram {
+	
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	// Values below this are counted in their own bucket
+	private static final int LINEAR_LIMIT = SUB_BUCKET_COUNT * 2;
+	private static final int BUCKET_COUNT = getIndex(Long.MAX_VALUE) + 1;
+	
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+	
+	static int getIndex(long value) {
+		if(value < LINEAR_LIMIT)
+			return (int) value;
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+	}
+	
+	/**
+	 * @return the largest value counted in the bucket
+	 */
+	static long getHighestValue(int index) {
+		if(index < LINEAR_LIMIT)
+			return index;
+		int shift = (index >>> SUB_BUCKET_BITS) - 1;
+		long subBucket = index - ((long) shift << SUB_BUCKET_BITS);
+		return ((subBucket + 1) << shift) - 1;
+	}
+	
+	/**
+	 * @param valueNs negative values are counted as 0
+	 */
+	public void record(long valueNs) {
+		if(valueNs < 0)
+			valueNs = 0;
+		counts.incrementAndGet(getIndex(valueNs));
+		count.incrementAndGet();
+		sum.addAndGet(valueNs);
+		long currentMax;
+		while(valueNs > (currentMax = max.get()) && !max.compareAndSet(currentMax, valueNs)) {
+			// Retry, another thread raised the maximum
+		}
+	}
+	
+	public long getCount() {
+		return count.get();
+	}
+	
+	public long getMax() {
+		return max.get();
+	}
+	
+	public long getSum() {
+		return sum.get();
+	}
+	
+	public double getMean() {
+		long count = this.count.get();
+		return count > 0 ? sum.get() / (double) count : 0d;
+	}
+	
+	/**
+	 * @param percentile between 0 and 100
+	 * @return the highest value of the bucket the percentile falls into, at
+	 * most the largest recorded value, 0 if nothing was recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long total = count.get();
+		if(total == 0)
+			return 0L;
+		long target = Math.max(1L, (long) Math.ceil(Math.min(percentile, 100d) / 100d * total));
+		long seen = 0;
+		for(int i = 0; i < BUCKET_COUNT; ++i) {
+			seen += counts.get(i);
+			if(seen >= target)
+				return Math.min(getHighestValue(i), max.get());
+		}
+		return max.get();
+	}
+	
+	/**
+	 * @return the number of values recorded at or below the value, rounded
+	 * to the bucket the value falls into
+	 */
+	public long getCountAtOrBelow(long valueNs) {
+		int last = getIndex(Math.max(0L, valueNs));
+		long seen = 0;
+		for(int i = 0; i <= last; ++i)
+			seen += counts.get(i);
+		return seen;
+	}
+	
+	/**
+	 * Clears the histogram, values recorded at the same time may be lost
+	 */
+	public void reset() {
+		for(int i = 0; i < BUCKET_COUNT; ++i)
+			counts.set(i, 0L);
+		count.set(0L);
+		sum.set(0L);
+		max.set(0L);
+	}
+}
@@ -0,0 +1,32 @@
+package dev.slimevr.tracing;
+
+/**
+ * A point on the way from receiving a tracker's data to handing the pose to
+ * a bridge. Records how old the newest sample is when it passes the stage,
+ * counting every sample once.
+ */
+public final class LatencyStage {
+	
+	public final String name;
+	public final LatencyHistogram histogram = new LatencyHistogram();
+	
+	// Only touched by the thread that records the stage
+	private long lastSampleTime = 0L;
+	
+	LatencyStage(String name) {
+		this.name = name;
+	}
+	
+	/**
+	 * Records the time since the sample was received, unless the sample was
+	 * already recorded. Must always be called by the same thread.
+	 * @param sampleTime {@link System#nanoTime()} when the sample was
+	 * received, 0 if unknown
+	 */
+	public void record(long sampleTime) {
+		if(sampleTime == 0L || sampleTime == lastSampleTime)
+			return;
+		lastSampleTime = sampleTime;
+		histogram.record(System.nanoTime() - sampleTime);
+	}
+}
@@ -0,0 +1,80 @@
+package dev.slimevr.tracing;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Traces how long tracker data takes from arriving over UDP to being handed
+ * to each bridge. Samples are stamped with {@link System#nanoTime()} when
+ * the packet is received, and every stage records their age when they pass
+ * it.
+ * <p>Disabled unless the server is started with
+ * {@code -Dslimevr.latencyTracing=true}. Every call site checks
+ * {@link #ENABLED} first, which the JIT folds away when tracing is off.
+ */
+public final class LatencyTracer {
+	
+	public static final boolean ENABLED = Boolean.getBoolean("slimevr.latencyTracing");
+	
+	private static final List<LatencyStage> stages = new CopyOnWriteArrayList<>();
+	
+	/**
+	 * Rotation decoded from the UDP packet
+	 */
+	public static final LatencyStage DECODE = createStage("UDP decode");
+	/**
+	 * Computed trackers updated from the new pose
+	 */
+	public static final LatencyStage SKELETON = createStage("Skeleton");
+	
+	private LatencyTracer() {
+	}
+	
+	private static LatencyStage createStage(String name) {
+		LatencyStage stage = new LatencyStage(name);
+		stages.add(stage);
+		return stage;
+	}
+	
+	/**
+	 * @return the stage of a bridge, created the first time, call once and
+	 * keep the stage
+	 */
+	public static synchronized LatencyStage getBridgeStage(String bridgeName) {
+		String name = "Bridge " + bridgeName;
+		for(LatencyStage stage : stages) {
+			if(stage.name.equals(name))
+				return stage;
+		}
+		return createStage(name);
+	}
+	
+	public static List<LatencyStage> getStages() {
+		return stages;
+	}
+	
+	public static void reset() {
+		for(LatencyStage stage : stages)
+			stage.histogram.reset();
+	}
+	
+	/**
+	 * @return a table of every stage's latency percentiles in milliseconds
+	 */
+	public static String dump() {
+		StringBuilder sb = new StringBuilder();
+		if(!ENABLED)
+			sb.append("Latency tracing is disabled, start the server with -Dslimevr.latencyTracing=true\n");
+		sb.append(String.format("%-24s %10s %9s %9s %9s %9s %9s %9s%n", "Stage", "Samples", "Mean", "p50", "p90", "p99", "p99.9", "Max"));
+		for(LatencyStage stage : stages) {
+			LatencyHistogram histogram = stage.histogram;
+			sb.append(String.format("%-24s %10d %9.3f %9.3f %9.3f %9.3f %9.3f %9.3f%n", stage.name, histogram.getCount(), histogram.getMean() / 1000000d, toMs(histogram.getValueAtPercentile(50d)), toMs(histogram.getValueAtPercentile(90d)), toMs(histogram.getValueAtPercentile(99d)), toMs(histogram.getValueAtPercentile(99.9d)), toMs(histogram.getMax())));
+		}
+		sb.append("All values in ms since the data was received");
+		return sb.toString();
+	}
+	
+	private static double toMs(long ns) {
+		return ns / 1000000d;
+	}
+}
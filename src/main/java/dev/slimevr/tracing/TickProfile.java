@@ -0,0 +1,167 @@
+package dev.slimevr.tracing;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable summary of the {@link io.eiren.vr.VRServer} ticks of one
+ * profiling window, published by {@link TickProfiler}
+ */
+public final class TickProfile {
+	
+	public static final TickProfile EMPTY = new TickProfile(0L, 0L, 0L, 0L, null, null, Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+	
+	/**
+	 * Length of the window in nanoseconds
+	 */
+	public final long windowNs;
+	public final long budgetNs;
+	/**
+	 * Ticks of the window that took longer than the budget
+	 */
+	public final long overBudgetTicks;
+	/**
+	 * Ticks over the budget since the server started
+	 */
+	public final long totalOverBudgetTicks;
+	/**
+	 * Time the ticks spent working, without sleeping, null if empty
+	 */
+	public final SectionStats tick;
+	/**
+	 * Time from the start of a tick to the start of the next, null if empty
+	 */
+	public final SectionStats interval;
+	/**
+	 * Every {@link TickStage} in order
+	 */
+	public final List<SectionStats> stages;
+	/**
+	 * Every onTick callback, then every bridge's read and write
+	 */
+	public final List<SectionStats> sections;
+	/**
+	 * The last ticks over the budget, oldest first
+	 */
+	public final List<SlowTick> slowTicks;
+	
+	TickProfile(long windowNs, long budgetNs, long overBudgetTicks, long totalOverBudgetTicks, SectionStats tick, SectionStats interval, List<SectionStats> stages, List<SectionStats> sections, List<SlowTick> slowTicks) {
+		this.windowNs = windowNs;
+		this.budgetNs = budgetNs;
+		this.overBudgetTicks = overBudgetTicks;
+		this.totalOverBudgetTicks = totalOverBudgetTicks;
+		this.tick = tick;
+		this.interval = interval;
+		this.stages = Collections.unmodifiableList(stages);
+		this.sections = Collections.unmodifiableList(sections);
+		this.slowTicks = Collections.unmodifiableList(slowTicks);
+	}
+	
+	public long getTickCount() {
+		return tick != null ? tick.count : 0L;
+	}
+	
+	/**
+	 * @return ticks per second over the window
+	 */
+	public double getTickRate() {
+		return windowNs > 0 ? getTickCount() * 1000000000d / windowNs : 0d;
+	}
+	
+	/**
+	 * @return a text table of the profile, times in milliseconds
+	 */
+	public String dump() {
+		if(tick == null)
+			return "No ticks profiled yet";
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%d ticks in %.1f s (%.1f/s), %d over the %.3f ms budget (%d since start)%n", getTickCount(), windowNs / 1000000000d, getTickRate(), overBudgetTicks, budgetNs / 1000000d, totalOverBudgetTicks));
+		sb.append(String.format("%-40s %8s %7s %9s %9s %9s %9s%n", "Section", "Calls", "Share", "Mean", "p50", "p99", "Max"));
+		appendRow(sb, tick, true);
+		// Includes the sleep between ticks, not a share of the tick
+		appendRow(sb, interval, false);
+		for(SectionStats stage : stages)
+			appendRow(sb, stage, true);
+		for(SectionStats section : sections)
+			appendRow(sb, section, true);
+		if(!slowTicks.isEmpty()) {
+			sb.append(String.format("%nSlow ticks:%n"));
+			for(SlowTick slowTick : slowTicks)
+				sb.append(slowTick).append(String.format("%n"));
+		}
+		return sb.toString();
+	}
+	
+	private void appendRow(StringBuilder sb, SectionStats stats, boolean share) {
+		String shareText = share ? String.format("%.1f%%", stats.totalNs * 100d / Math.max(1L, tick.totalNs)) : "-";
+		sb.append(String.format("%-40s %8d %7s %9.3f %9.3f %9.3f %9.3f%n", stats.name, stats.count, shareText, stats.meanNs / 1000000d, stats.p50Ns / 1000000d, stats.p99Ns / 1000000d, stats.maxNs / 1000000d));
+	}
+	
+	@Override
+	public String toString() {
+		return dump();
+	}
+	
+	/**
+	 * Time spent in a section of the tick over the window
+	 */
+	public static final class SectionStats {
+		
+		public final String name;
+		public final long count;
+		public final long totalNs;
+		public final double meanNs;
+		public final long p50Ns;
+		public final long p90Ns;
+		public final long p99Ns;
+		public final long maxNs;
+		
+		SectionStats(String name, LatencyHistogram histogram) {
+			this.name = name;
+			this.count = histogram.getCount();
+			this.totalNs = histogram.getSum();
+			this.meanNs = histogram.getMean();
+			this.p50Ns = histogram.getValueAtPercentile(50d);
+			this.p90Ns = histogram.getValueAtPercentile(90d);
+			this.p99Ns = histogram.getValueAtPercentile(99d);
+			this.maxNs = histogram.getMax();
+		}
+	}
+	
+	/**
+	 * A tick that took longer than the budget, with where the time went
+	 */
+	public static final class SlowTick {
+		
+		/**
+		 * {@link System#currentTimeMillis()} at the end of the tick
+		 */
+		public final long time;
+		public final long durationNs;
+		public final String slowestStage;
+		public final long slowestStageNs;
+		/**
+		 * The slowest callback or bridge, null if none ran
+		 */
+		public final String slowestSection;
+		public final long slowestSectionNs;
+		
+		SlowTick(long time, long durationNs, String slowestStage, long slowestStageNs, String slowestSection, long slowestSectionNs) {
+			this.time = time;
+			this.durationNs = durationNs;
+			this.slowestStage = slowestStage;
+			this.slowestStageNs = slowestStageNs;
+			this.slowestSection = slowestSection;
+			this.slowestSectionNs = slowestSectionNs;
+		}
+		
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append(String.format("%tT.%<tL %.3f ms, %s %.3f ms", time, durationNs / 1000000d, slowestStage, slowestStageNs / 1000000d));
+			if(slowestSection != null)
+				sb.append(String.format(", %s %.3f ms", slowestSection, slowestSectionNs / 1000000d));
+			return sb.toString();
+		}
+	}
+}
@@ -0,0 +1,199 @@
+package dev.slimevr.tracing;
+
+import java.util.List;
+
+import dev.slimevr.tracing.TickProfile.SectionStats;
+import dev.slimevr.tracing.TickProfile.SlowTick;
+import io.eiren.util.ann.ThreadSafe;
+import io.eiren.util.ann.VRServerThread;
+import io.eiren.util.collections.FastList;
+
+/**
+ * Measures where the {@link io.eiren.vr.VRServer} ticks spend their time:
+ * every {@link TickStage}, and inside them every onTick callback and every
+ * bridge's read and write. Keeps the durations of a window of ticks in
+ * histograms and publishes a {@link TickProfile} when the window is over,
+ * so readers never touch the histograms being recorded.
+ * <p>Ticks that take longer than the budget are counted, the last ones are
+ * kept with the stage and the callback or bridge that took the longest.
+ */
+public final class TickProfiler {
+	
+	public static final long WINDOW_NS = 5000000000L;
+	private static final int SLOW_TICK_HISTORY = 20;
+	
+	private final long budgetNs;
+	private final Section tick = new Section("Tick");
+	private final Section interval = new Section("Tick interval");
+	private final Section[] stages = new Section[TickStage.values.length];
+	private final FastList<Section> callbacks = new FastList<>();
+	private final FastList<Section> bridgeReads = new FastList<>();
+	private final FastList<Section> bridgeWrites = new FastList<>();
+	private final FastList<SlowTick> slowTicks = new FastList<>(SLOW_TICK_HISTORY + 1);
+	
+	private long tickNumber = 0;
+	private long tickStart = 0;
+	private long stageStart = 0;
+	private long sectionStart = 0;
+	private long windowStart = 0;
+	private long overBudgetTicks = 0;
+	private long totalOverBudgetTicks = 0;
+	
+	private volatile TickProfile profile = TickProfile.EMPTY;
+	
+	/**
+	 * @param budgetNs ticks longer than this are counted as over the budget
+	 */
+	public TickProfiler(long budgetNs) {
+		this.budgetNs = budgetNs;
+		for(TickStage stage : TickStage.values)
+			stages[stage.ordinal()] = new Section(stage.name);
+	}
+	
+	@VRServerThread
+	public void beginTick() {
+		long now = System.nanoTime();
+		if(tickNumber == 0)
+			windowStart = now;
+		else
+			interval.record(now - tickStart, tickNumber);
+		tickNumber++;
+		tickStart = now;
+		stageStart = now;
+		sectionStart = now;
+	}
+	
+	@VRServerThread
+	public void endStage(TickStage stage) {
+		long now = System.nanoTime();
+		stages[stage.ordinal()].record(now - stageStart, tickNumber);
+		stageStart = now;
+		sectionStart = now;
+	}
+	
+	/**
+	 * Ends the callback with the index in the onTick list
+	 * @param name names the callback the first time it runs
+	 */
+	@VRServerThread
+	public void endCallback(int index, String name) {
+		endSection(callbacks, index, "onTick: ", name);
+	}
+	
+	@VRServerThread
+	public void endBridgeRead(int index, Object bridge) {
+		endSection(bridgeReads, index, "dataRead: ", bridge.getClass().getSimpleName());
+	}
+	
+	@VRServerThread
+	public void endBridgeWrite(int index, Object bridge) {
+		endSection(bridgeWrites, index, "dataWrite: ", bridge.getClass().getSimpleName());
+	}
+	
+	private void endSection(FastList<Section> sections, int index, String prefix, String name) {
+		long now = System.nanoTime();
+		// Callbacks and bridges are only ever appended, so new ones show up at the end
+		if(index == sections.size())
+			sections.add(new Section(prefix + name));
+		sections.get(index).record(now - sectionStart, tickNumber);
+		sectionStart = now;
+	}
+	
+	@VRServerThread
+	public void endTick() {
+		long now = System.nanoTime();
+		long duration = now - tickStart;
+		tick.record(duration, tickNumber);
+		if(duration > budgetNs) {
+			overBudgetTicks++;
+			totalOverBudgetTicks++;
+			slowTicks.add(createSlowTick(duration));
+			if(slowTicks.size() > SLOW_TICK_HISTORY)
+				slowTicks.remove(0);
+		}
+		if(now - windowStart >= WINDOW_NS) {
+			publish(now - windowStart);
+			windowStart = now;
+		}
+	}
+	
+	private SlowTick createSlowTick(long duration) {
+		Section slowestStage = getSlowest(null, stages);
+		Section slowestSection = getSlowest(null, callbacks);
+		slowestSection = getSlowest(slowestSection, bridgeReads);
+		slowestSection = getSlowest(slowestSection, bridgeWrites);
+		return new SlowTick(System.currentTimeMillis(), duration, slowestStage.name, slowestStage.lastNs, slowestSection != null ? slowestSection.name : null, slowestSection != null ? slowestSection.lastNs : 0L);
+	}
+	
+	private Section getSlowest(Section slowest, Section[] sections) {
+		for(Section section : sections) {
+			if(section.lastTick == tickNumber && (slowest == null || section.lastNs > slowest.lastNs))
+				slowest = section;
+		}
+		return slowest;
+	}
+	
+	private Section getSlowest(Section slowest, List<Section> sections) {
+		for(int i = 0; i < sections.size(); ++i) {
+			Section section = sections.get(i);
+			if(section.lastTick == tickNumber && (slowest == null || section.lastNs > slowest.lastNs))
+				slowest = section;
+		}
+		return slowest;
+	}
+	
+	private void publish(long windowNs) {
+		FastList<SectionStats> stageStats = new FastList<>(stages.length);
+		for(Section stage : stages)
+			stageStats.add(stage.publish());
+		FastList<SectionStats> sectionStats = new FastList<>(callbacks.size() + bridgeReads.size() + bridgeWrites.size());
+		publish(callbacks, sectionStats);
+		publish(bridgeReads, sectionStats);
+		publish(bridgeWrites, sectionStats);
+		FastList<SlowTick> slowTickList = new FastList<>(slowTicks.size());
+		slowTickList.addAll(slowTicks);
+		profile = new TickProfile(windowNs, budgetNs, overBudgetTicks, totalOverBudgetTicks, tick.publish(), interval.publish(), stageStats, sectionStats, slowTickList);
+		overBudgetTicks = 0;
+	}
+	
+	private static void publish(List<Section> sections, List<SectionStats> stats) {
+		for(int i = 0; i < sections.size(); ++i)
+			stats.add(sections.get(i).publish());
+	}
+	
+	/**
+	 * @return the profile of the last complete window
+	 */
+	@ThreadSafe
+	public TickProfile getProfile() {
+		return profile;
+	}
+	
+	public long getBudgetNs() {
+		return budgetNs;
+	}
+	
+	private static class Section {
+		
+		final String name;
+		final LatencyHistogram histogram = new LatencyHistogram();
+		long lastNs;
+		long lastTick;
+		
+		Section(String name) {
+			this.name = name;
+		}
+		
+		void record(long durationNs, long tickNumber) {
+			histogram.record(durationNs);
+			lastNs = durationNs;
+			lastTick = tickNumber;
+		}
+		
+		SectionStats publish() {
+			SectionStats stats = new SectionStats(name, histogram);
+			histogram.reset();
+			return stats;
+		}
+	}
+}
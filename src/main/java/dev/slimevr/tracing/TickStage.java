@@ -0,0 +1,23 @@
+package dev.slimevr.tracing;
+
+/**
+ * The stages of a {@link io.eiren.vr.VRServer} tick, in the order they run
+ */
+public enum TickStage {
+	
+	TASKS("Tasks"),
+	ON_TICK("onTick callbacks"),
+	BRIDGES_READ("Bridges read"),
+	TRACKERS_TICK("Trackers tick"),
+	POSE_UPDATE("Pose update"),
+	BRIDGES_WRITE("Bridges write"),
+	;
+	
+	public static final TickStage[] values = values();
+	
+	public final String name;
+	
+	private TickStage(String name) {
+		this.name = name;
+	}
+}
@@ -10,6 +10,7 @@ import org.apache.commons.lang3.JavaVersion;
 import org.apache.commons.lang3.SystemUtils;
 
 import dev.slimevr.gui.VRServerGUI;
+import dev.slimevr.metrics.MetricsExporter;
 import io.eiren.util.logging.LogManager;
 
 public class Main {
@@ -50,6 +51,13 @@ public class Main {
 			vrServer = new VRServer();
 			vrServer.start();
 			new Keybinding(vrServer);
+			if(vrServer.config.getBoolean("metrics.enabled", false)) {
+				try {
+					MetricsExporter.fromConfig(vrServer).start();
+				} catch(IOException e) {
+					LogManager.log.severe("[Metrics] Can't start the metrics endpoint: " + e.getMessage(), e);
+				}
+			}
 			new VRServerGUI(vrServer);
 		} catch(Throwable e) {
 			e.printStackTrace();
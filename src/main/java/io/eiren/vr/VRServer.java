@@ -7,6 +7,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -20,6 +22,8 @@ import dev.slimevr.bridge.NamedPipeBridge;
 import dev.slimevr.bridge.SteamVRPipeInputBridge;
 import dev.slimevr.bridge.VMCBridge;
 import dev.slimevr.bridge.WebSocketVRBridge;
+import dev.slimevr.tracing.TickProfiler;
+import dev.slimevr.tracing.TickStage;
 import io.eiren.util.OperatingSystem;
 import io.eiren.util.ann.ThreadSafe;
 import io.eiren.util.ann.ThreadSecure;
@@ -35,24 +39,35 @@ import io.eiren.yaml.YamlFile;
 import io.eiren.yaml.YamlNode;
 import io.eiren.vr.trackers.Tracker;
 import io.eiren.vr.trackers.TrackerConfig;
+import io.eiren.vr.trackers.TrackerPosition;
+import io.eiren.vr.trackers.TrackersByPosition;
+import io.eiren.vr.trackers.TrackersSnapshot;
 
 public class VRServer extends Thread {
 	
-	private final List<Tracker> trackers = new FastList<>();
+	/**
+	 * Only replaced on the server thread, a new snapshot is published every
+	 * time trackers are added or updated so readers never see it mid-change
+	 */
+	private volatile TrackersSnapshot trackers = TrackersSnapshot.EMPTY;
 	public final HumanPoseProcessor humanPoseProcessor;
 	private final TrackersUDPServer trackersServer;
 	private final List<Bridge> bridges = new FastList<>();
 	private final Queue<Runnable> tasks = new LinkedBlockingQueue<>();
 	private final Map<String, TrackerConfig> configuration = new HashMap<>();
+	private final Map<TrackerPosition, String> positionFilters = new EnumMap<>(TrackerPosition.class);
 	public final YamlFile config = new YamlFile();
 	public final HMDTracker hmdTracker;
 	private final List<Consumer<Tracker>> newTrackersConsumers = new FastList<>();
 	private final List<Runnable> onTick = new FastList<>();
+	private final List<String> onTickNames = new FastList<>();
 	private final List<? extends ShareableTracker> shareTrackers;
+	private final TickProfiler profiler;
 	
 	public VRServer() {
 		super("VRServer");
 		loadConfig();
+		profiler = new TickProfiler((long) (config.getFloat("profiler.tickBudget", 2f) * 1000000d));
 		hmdTracker = new HMDTracker("HMD");
 		hmdTracker.position.set(0, 1.8f, 0); // Set starting position for easier debugging
 		// TODO Multiple processors
@@ -108,6 +123,27 @@ public class VRServer extends Thread {
 		return false;
 	}
 
+	/**
+	 * @return every bridge, they're all added when the server is created
+	 */
+	@ThreadSafe
+	public List<Bridge> getBridges() {
+		return Collections.unmodifiableList(bridges);
+	}
+	
+	@ThreadSafe
+	public TrackersUDPServer getTrackersServer() {
+		return trackersServer;
+	}
+	
+	/**
+	 * @return the number of tasks waiting for the next tick
+	 */
+	@ThreadSafe
+	public int getTaskQueueSize() {
+		return tasks.size();
+	}
+	
 	@ThreadSafe
 	public <E extends Bridge> E getVRBridge(Class<E> bridgeClass) {
 		for(int i = 0; i < bridges.size(); ++i) {
@@ -145,16 +181,39 @@ public class VRServer extends Thread {
 				configuration.put(cfg.trackerName, cfg);
 			}
 		}
+		for(TrackerPosition position : TrackerPosition.values) {
+			String filters = config.getString("filters." + position.name().toLowerCase());
+			if(filters != null)
+				positionFilters.put(position, filters);
+		}
 	}
 	
 	public void addOnTick(Runnable runnable) {
+		addOnTick("Callback " + (onTick.size() + 1), runnable);
+	}
+	
+	/**
+	 * @param name shows where the tick time goes in the profiler
+	 */
+	public void addOnTick(String name, Runnable runnable) {
+		this.onTickNames.add(name);
 		this.onTick.add(runnable);
 	}
 	
+	/**
+	 * @return the profiler of the server ticks, see
+	 * {@link TickProfiler#getProfile()}
+	 */
+	@ThreadSafe
+	public TickProfiler getTickProfiler() {
+		return profiler;
+	}
+	
 	@ThreadSafe
 	public void addNewTrackerConsumer(Consumer<Tracker> consumer) {
 		queueTask(() -> {
 			newTrackersConsumers.add(consumer);
+			List<Tracker> trackers = this.trackers.getTrackers();
 			for(int i = 0; i < trackers.size(); ++i)
 				consumer.accept(trackers.get(i));
 		});
@@ -163,6 +222,8 @@ public class VRServer extends Thread {
 	@ThreadSafe
 	public void trackerUpdated(Tracker tracker) {
 		queueTask(() -> {
+			// Body position might have changed, so the index has to be rebuilt
+			trackers = trackers.reindexed();
 			humanPoseProcessor.trackerUpdated(tracker);
 			TrackerConfig tc = getTrackerConfig(tracker);
 			tracker.saveConfig(tc);
@@ -217,24 +278,36 @@ public class VRServer extends Thread {
 	public void run() {
 		trackersServer.start();
 		while(true) {
-			//final long start = System.currentTimeMillis();
+			profiler.beginTick();
 			do {
 				Runnable task = tasks.poll();
 				if(task == null)
 					break;
 				task.run();
 			} while(true);
+			profiler.endStage(TickStage.TASKS);
 			for(int i = 0; i < onTick.size(); ++i) {
 				this.onTick.get(i).run();
+				profiler.endCallback(i, onTickNames.get(i));
 			}
-			for(int i = 0; i < bridges.size(); ++i)
+			profiler.endStage(TickStage.ON_TICK);
+			for(int i = 0; i < bridges.size(); ++i) {
 				bridges.get(i).dataRead();
+				profiler.endBridgeRead(i, bridges.get(i));
+			}
+			profiler.endStage(TickStage.BRIDGES_READ);
+			List<Tracker> trackers = this.trackers.getTrackers();
 			for(int i = 0; i < trackers.size(); ++i)
 				trackers.get(i).tick();
+			profiler.endStage(TickStage.TRACKERS_TICK);
 			humanPoseProcessor.update();
-			for(int i = 0; i < bridges.size(); ++i)
+			profiler.endStage(TickStage.POSE_UPDATE);
+			for(int i = 0; i < bridges.size(); ++i) {
 				bridges.get(i).dataWrite();
-			//final long time = System.currentTimeMillis() - start;
+				profiler.endBridgeWrite(i, bridges.get(i));
+			}
+			profiler.endStage(TickStage.BRIDGES_WRITE);
+			profiler.endTick();
 			try {
 				Thread.sleep(1); // 1000Hz
 			} catch(InterruptedException e) {
@@ -255,9 +328,10 @@ public class VRServer extends Thread {
 	@ThreadSecure
 	public void registerTracker(Tracker tracker) {
 		TrackerConfig config = getTrackerConfig(tracker);
+		config.positionFilters = positionFilters;
 		tracker.loadConfig(config);
 		queueTask(() -> {
-			trackers.add(tracker);
+			trackers = trackers.withTracker(tracker);
 			trackerAdded(tracker);
 			for(int i = 0; i < newTrackersConsumers.size(); ++i)
 				newTrackersConsumers.get(i).accept(tracker);
@@ -276,11 +350,26 @@ public class VRServer extends Thread {
 		});
 	}
 	
+	@ThreadSafe
 	public int getTrackersCount() {
 		return trackers.size();
 	}
 
+	/**
+	 * @return unmodifiable list of the trackers from the current snapshot
+	 */
+	@ThreadSafe
 	public List<Tracker> getAllTrackers() {
-		return new FastList<>(trackers);
+		return trackers.getTrackers();
+	}
+
+	@ThreadSafe
+	public TrackersByPosition<Tracker> getTrackersByPosition() {
+		return trackers.getTrackersByPosition();
+	}
+
+	@ThreadSafe
+	public TrackersSnapshot getTrackersSnapshot() {
+		return trackers;
 	}
 }
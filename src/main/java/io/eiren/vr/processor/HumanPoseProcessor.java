@@ -55,11 +55,9 @@ public class HumanPoseProcessor {
 	
 	@ThreadSafe
 	public float getSkeletonConfig(String key) {
-		if(skeleton != null) {
-			Number f = skeleton.getSkeletonConfig().get(key);
-			if(f != null)
-				return f.floatValue();
-		}
+		SkeletonConfigValue config = SkeletonConfigValue.getByStringValue(key);
+		if(skeleton != null && config != null)
+			return skeleton.getSkeletonConfig(config);
 		return 0.0f;
 	}
 	
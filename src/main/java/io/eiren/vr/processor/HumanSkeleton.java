@@ -19,6 +19,12 @@ public abstract class HumanSkeleton {
 	@ThreadSafe
 	public abstract void setSkeletonConfig(String key, float newLength);
 	
+	@ThreadSafe
+	public abstract float getSkeletonConfig(SkeletonConfigValue config);
+	
+	@ThreadSafe
+	public abstract void setSkeletonConfig(SkeletonConfigValue config, float newLength);
+	
 	@ThreadSafe
 	public abstract void resetSkeletonConfig(String joint);
 
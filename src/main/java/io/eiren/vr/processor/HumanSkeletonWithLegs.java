@@ -10,9 +10,9 @@ import io.eiren.util.ann.VRServerThread;
 import io.eiren.vr.VRServer;
 import io.eiren.vr.trackers.Tracker;
 import io.eiren.vr.trackers.TrackerPosition;
+import io.eiren.vr.trackers.TrackersByPosition;
 import io.eiren.vr.trackers.TrackerRole;
 import io.eiren.vr.trackers.TrackerStatus;
-import io.eiren.vr.trackers.TrackerUtils;
 
 public class HumanSkeletonWithLegs extends HumanSkeletonWithWaist {
 	
@@ -71,13 +71,13 @@ public class HumanSkeletonWithLegs extends HumanSkeletonWithWaist {
 
 	public HumanSkeletonWithLegs(VRServer server, List<ComputedHumanPoseTracker> computedTrackers) {
 		super(server, computedTrackers);
-		List<Tracker> allTrackers = server.getAllTrackers();
-		this.leftLegTracker = TrackerUtils.findTrackerForBodyPositionOrEmpty(allTrackers, TrackerPosition.LEFT_LEG, TrackerPosition.LEFT_ANKLE, null);
-		this.leftAnkleTracker = TrackerUtils.findTrackerForBodyPositionOrEmpty(allTrackers, TrackerPosition.LEFT_ANKLE, TrackerPosition.LEFT_LEG, null);
-		this.leftFootTracker = TrackerUtils.findTrackerForBodyPosition(allTrackers, TrackerPosition.LEFT_FOOT);
-		this.rightLegTracker = TrackerUtils.findTrackerForBodyPositionOrEmpty(allTrackers, TrackerPosition.RIGHT_LEG, TrackerPosition.RIGHT_ANKLE, null);
-		this.rightAnkleTracker = TrackerUtils.findTrackerForBodyPositionOrEmpty(allTrackers, TrackerPosition.RIGHT_ANKLE, TrackerPosition.RIGHT_LEG, null);
-		this.rightFootTracker = TrackerUtils.findTrackerForBodyPosition(allTrackers, TrackerPosition.RIGHT_FOOT);
+		TrackersByPosition<Tracker> trackersByPosition = server.getTrackersByPosition();
+		this.leftLegTracker = trackersByPosition.getOrEmpty(TrackerPosition.LEFT_LEG, TrackerPosition.LEFT_ANKLE, null);
+		this.leftAnkleTracker = trackersByPosition.getOrEmpty(TrackerPosition.LEFT_ANKLE, TrackerPosition.LEFT_LEG, null);
+		this.leftFootTracker = trackersByPosition.get(TrackerPosition.LEFT_FOOT);
+		this.rightLegTracker = trackersByPosition.getOrEmpty(TrackerPosition.RIGHT_LEG, TrackerPosition.RIGHT_ANKLE, null);
+		this.rightAnkleTracker = trackersByPosition.getOrEmpty(TrackerPosition.RIGHT_ANKLE, TrackerPosition.RIGHT_LEG, null);
+		this.rightFootTracker = trackersByPosition.get(TrackerPosition.RIGHT_FOOT);
 		ComputedHumanPoseTracker lat = null;
 		ComputedHumanPoseTracker rat = null;
 		ComputedHumanPoseTracker rkt = null;
@@ -103,11 +103,11 @@ public class HumanSkeletonWithLegs extends HumanSkeletonWithWaist {
 		computedRightKneeTracker = rkt;
 		lat.setStatus(TrackerStatus.OK);
 		rat.setStatus(TrackerStatus.OK);
-		hipsWidth = server.config.getFloat("body.hipsWidth", hipsWidth);
-		kneeHeight = server.config.getFloat("body.kneeHeight", kneeHeight);
-		legsLength = server.config.getFloat("body.legsLength", legsLength);
-		footLength = server.config.getFloat("body.footLength", footLength);
-		footOffset = server.config.getFloat("body.footOffset", footOffset);
+		hipsWidth = skeletonConfig.load(server.config, SkeletonConfigValue.HIPS_WIDTH);
+		kneeHeight = skeletonConfig.load(server.config, SkeletonConfigValue.KNEE_HEIGHT);
+		legsLength = skeletonConfig.load(server.config, SkeletonConfigValue.LEGS_LENGTH);
+		footLength = skeletonConfig.load(server.config, SkeletonConfigValue.FOOT_LENGTH);
+		footOffset = skeletonConfig.load(server.config, SkeletonConfigValue.FOOT_OFFSET);
 		//extendedPelvisModel = server.config.getBoolean("body.model.extendedPelvis", extendedPelvisModel);
 		extendedKneeModel = server.config.getBoolean("body.model.extendedKnee", extendedKneeModel);
 		
@@ -134,12 +134,6 @@ public class HumanSkeletonWithLegs extends HumanSkeletonWithWaist {
 		
 		rightAnkleNode.attachChild(rightFootNode);
 		rightFootNode.localTransform.setTranslation(0, 0, -footLength);
-		
-		configMap.put("Hips width", hipsWidth);
-		configMap.put("Legs length", legsLength);
-		configMap.put("Knee height", kneeHeight);
-		configMap.put("Foot length", footLength);
-		configMap.put("Foot offset", footOffset);
 	}
 	
 	@Override
@@ -182,41 +176,38 @@ public class HumanSkeletonWithLegs extends HumanSkeletonWithWaist {
 	}
 	
 	@Override
-	public void setSkeletonConfig(String joint, float newLength) {
-		super.setSkeletonConfig(joint, newLength);
-		switch(joint) {
-		case "Hips width":
+	public void setSkeletonConfig(SkeletonConfigValue config, float newLength) {
+		super.setSkeletonConfig(config, newLength);
+		switch(config) {
+		case HIPS_WIDTH:
 			hipsWidth = newLength;
-			server.config.setProperty("body.hipsWidth", hipsWidth);
 			leftHipNode.localTransform.setTranslation(-hipsWidth / 2, 0, 0);
 			rightHipNode.localTransform.setTranslation(hipsWidth / 2, 0, 0);
 			break;
-		case "Knee height":
+		case KNEE_HEIGHT:
 			kneeHeight = newLength;
-			server.config.setProperty("body.kneeHeight", kneeHeight);
 			leftAnkleNode.localTransform.setTranslation(0, -kneeHeight, -footOffset);
 			rightAnkleNode.localTransform.setTranslation(0, -kneeHeight, -footOffset);
 			leftKneeNode.localTransform.setTranslation(0, -(legsLength - kneeHeight), 0);
 			rightKneeNode.localTransform.setTranslation(0, -(legsLength - kneeHeight), 0);
 			break;
-		case "Legs length":
+		case LEGS_LENGTH:
 			legsLength = newLength;
-			server.config.setProperty("body.legsLength", legsLength);
 			leftKneeNode.localTransform.setTranslation(0, -(legsLength - kneeHeight), 0);
 			rightKneeNode.localTransform.setTranslation(0, -(legsLength - kneeHeight), 0);
 			break;
-		case "Foot length":
+		case FOOT_LENGTH:
 			footLength = newLength;
-			server.config.setProperty("body.footLength", footLength);
 			leftFootNode.localTransform.setTranslation(0, 0, -footLength);
 			rightFootNode.localTransform.setTranslation(0, 0, -footLength);
 			break;
-		case "Foot offset":
+		case FOOT_OFFSET:
 			footOffset = newLength;
-			server.config.setProperty("body.footOffset", footOffset);
 			leftAnkleNode.localTransform.setTranslation(0, -kneeHeight, -footOffset);
 			rightAnkleNode.localTransform.setTranslation(0, -kneeHeight, -footOffset);
 			break;
+		default:
+			break;
 		}
 	}
 	
@@ -367,6 +358,30 @@ public class HumanSkeletonWithLegs extends HumanSkeletonWithWaist {
 		}
 	}
 	
+	@Override
+	protected long getLatestSampleTime() {
+		long sampleTime = Math.max(super.getLatestSampleTime(), Math.max(leftLegTracker.getSampleTime(), rightLegTracker.getSampleTime()));
+		sampleTime = Math.max(sampleTime, Math.max(leftAnkleTracker.getSampleTime(), rightAnkleTracker.getSampleTime()));
+		if(leftFootTracker != null)
+			sampleTime = Math.max(sampleTime, leftFootTracker.getSampleTime());
+		if(rightFootTracker != null)
+			sampleTime = Math.max(sampleTime, rightFootTracker.getSampleTime());
+		return sampleTime;
+	}
+	
+	@Override
+	protected void setComputedSampleTime(long sampleTime) {
+		super.setComputedSampleTime(sampleTime);
+		if(computedLeftFootTracker != null)
+			computedLeftFootTracker.sampleTime = sampleTime;
+		if(computedLeftKneeTracker != null)
+			computedLeftKneeTracker.sampleTime = sampleTime;
+		if(computedRightFootTracker != null)
+			computedRightFootTracker.sampleTime = sampleTime;
+		if(computedRightKneeTracker != null)
+			computedRightKneeTracker.sampleTime = sampleTime;
+	}
+	
 	@Override
 	@VRServerThread
 	public void resetTrackersFull() {
@@ -1,26 +1,26 @@
 package io.eiren.vr.processor;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import com.jme3.math.Quaternion;
 import com.jme3.math.Vector3f;
 
+import dev.slimevr.tracing.LatencyTracer;
 import io.eiren.util.ann.VRServerThread;
 import io.eiren.vr.VRServer;
 import io.eiren.vr.trackers.HMDTracker;
 import io.eiren.vr.trackers.Tracker;
 import io.eiren.vr.trackers.TrackerPosition;
+import io.eiren.vr.trackers.TrackersByPosition;
 import io.eiren.vr.trackers.TrackerStatus;
-import io.eiren.vr.trackers.TrackerUtils;
 
 public class HumanSkeletonWithWaist extends HumanSkeleton {
 	
 	public static final float HEAD_SHIFT_DEFAULT = 0.1f;
 	public static final float NECK_LENGTH_DEFAULT = 0.1f;
 	
-	protected final Map<String, Float> configMap = new HashMap<>();
+	protected final SkeletonConfigStore skeletonConfig = new SkeletonConfigStore();
 	protected final VRServer server;
 	
 	protected final float[] waistAngles = new float[3];
@@ -69,10 +69,10 @@ public class HumanSkeletonWithWaist extends HumanSkeleton {
 	protected float headShift = HEAD_SHIFT_DEFAULT;
 	
 	public HumanSkeletonWithWaist(VRServer server, List<ComputedHumanPoseTracker> computedTrackers) {
-		List<Tracker> allTrackers = server.getAllTrackers();
-		this.waistTracker = TrackerUtils.findTrackerForBodyPositionOrEmpty(allTrackers, TrackerPosition.WAIST, TrackerPosition.CHEST, TrackerPosition.HIP);
-		this.chestTracker = TrackerUtils.findTrackerForBodyPositionOrEmpty(allTrackers, TrackerPosition.CHEST, TrackerPosition.WAIST, TrackerPosition.HIP);
-		this.hipTracker = TrackerUtils.findTrackerForBodyPositionOrEmpty(allTrackers, TrackerPosition.HIP, TrackerPosition.WAIST, TrackerPosition.CHEST);
+		TrackersByPosition<Tracker> trackersByPosition = server.getTrackersByPosition();
+		this.waistTracker = trackersByPosition.getOrEmpty(TrackerPosition.WAIST, TrackerPosition.CHEST, TrackerPosition.HIP);
+		this.chestTracker = trackersByPosition.getOrEmpty(TrackerPosition.CHEST, TrackerPosition.WAIST, TrackerPosition.HIP);
+		this.hipTracker = trackersByPosition.getOrEmpty(TrackerPosition.HIP, TrackerPosition.WAIST, TrackerPosition.CHEST);
 		this.hmdTracker = server.hmdTracker;
 		this.server = server;
 		ComputedHumanPoseTracker cwt = null;
@@ -87,12 +87,12 @@ public class HumanSkeletonWithWaist extends HumanSkeleton {
 		computedWaistTracker = cwt;
 		computedChestTracker = cct;
 		cwt.setStatus(TrackerStatus.OK);
-		headShift = server.config.getFloat("body.headShift", headShift);
-		neckLength = server.config.getFloat("body.neckLength", neckLength);
-		chestDistance = server.config.getFloat("body.chestDistance", chestDistance);
-		waistDistance = server.config.getFloat("body.waistDistance", waistDistance);
-		torsoLength = server.config.getFloat("body.torsoLength", torsoLength);
-		hipOffset = server.config.getFloat("body.hipOffset", hipOffset);
+		headShift = skeletonConfig.load(server.config, SkeletonConfigValue.HEAD);
+		neckLength = skeletonConfig.load(server.config, SkeletonConfigValue.NECK);
+		chestDistance = skeletonConfig.load(server.config, SkeletonConfigValue.CHEST);
+		waistDistance = skeletonConfig.load(server.config, SkeletonConfigValue.WAIST);
+		torsoLength = skeletonConfig.load(server.config, SkeletonConfigValue.TORSO);
+		hipOffset = skeletonConfig.load(server.config, SkeletonConfigValue.HIP_OFFSET);
 		// Build skeleton
 		hmdNode.attachChild(headNode);
 		headNode.localTransform.setTranslation(0, 0, headShift);
@@ -111,13 +111,6 @@ public class HumanSkeletonWithWaist extends HumanSkeleton {
 
 		hipNode.attachChild(trackerWaistNode);
 		trackerWaistNode.localTransform.setTranslation(0, hipOffset, 0);
-		
-		configMap.put("Head", headShift);
-		configMap.put("Neck", neckLength);
-		configMap.put("Chest", chestDistance);
-		configMap.put("Waist", waistDistance);
-		configMap.put("Hip offset", hipOffset);
-		configMap.put("Torso", torsoLength);
 	}
 	
 	@Override
@@ -163,45 +156,58 @@ public class HumanSkeletonWithWaist extends HumanSkeleton {
 	
 	@Override
 	public Map<String, Float> getSkeletonConfig() {
-		return configMap;
+		return skeletonConfig.toMap();
+	}
+	
+	public SkeletonConfigStore getSkeletonConfigStore() {
+		return skeletonConfig;
+	}
+	
+	@Override
+	public float getSkeletonConfig(SkeletonConfigValue config) {
+		return skeletonConfig.get(config);
 	}
 	
 	@Override
 	public void setSkeletonConfig(String joint, float newLength) {
-		configMap.put(joint, newLength);
-		switch(joint) {
-		case "Head":
+		SkeletonConfigValue config = SkeletonConfigValue.getByStringValue(joint);
+		if(config != null)
+			setSkeletonConfig(config, newLength);
+	}
+	
+	@Override
+	public void setSkeletonConfig(SkeletonConfigValue config, float newLength) {
+		skeletonConfig.set(config, newLength);
+		server.config.setProperty(config.configKey, newLength);
+		switch(config) {
+		case HEAD:
 			headShift = newLength;
-			server.config.setProperty("body.headShift", headShift);
 			headNode.localTransform.setTranslation(0, 0, headShift);
 			break;
-		case "Neck":
+		case NECK:
 			neckLength = newLength;
-			server.config.setProperty("body.neckLength", neckLength);
 			neckNode.localTransform.setTranslation(0, -neckLength, 0);
 			break;
-		case "Torso":
+		case TORSO:
 			torsoLength = newLength;
-			server.config.setProperty("body.torsoLength", torsoLength);
 			waistNode.localTransform.setTranslation(0, (chestDistance - torsoLength + waistDistance), 0);
 			break;
-		case "Chest":
+		case CHEST:
 			chestDistance = newLength;
-			server.config.setProperty("body.chestDistance", chestDistance);
 			chestNode.localTransform.setTranslation(0, -chestDistance, 0);
 			waistNode.localTransform.setTranslation(0, (chestDistance - torsoLength + waistDistance), 0);
 			break;
-		case "Waist":
+		case WAIST:
 			waistDistance = newLength;
-			server.config.setProperty("body.waistDistance", waistDistance);
 			waistNode.localTransform.setTranslation(0, (chestDistance - torsoLength + waistDistance), 0);
 			hipNode.localTransform.setTranslation(0, -waistDistance, 0);
 			break;
-		case "Hip offset":
+		case HIP_OFFSET:
 			hipOffset = newLength;
-			server.config.setProperty("body.hipOffset", hipOffset);
 			trackerWaistNode.localTransform.setTranslation(0, hipOffset, 0);
 			break;
+		default:
+			break;
 		}
 	}
 	
@@ -223,6 +229,11 @@ public class HumanSkeletonWithWaist extends HumanSkeleton {
 		updateLocalTransforms();
 		hmdNode.update();
 		updateComputedTrackers();
+		if(LatencyTracer.ENABLED) {
+			long sampleTime = getLatestSampleTime();
+			setComputedSampleTime(sampleTime);
+			LatencyTracer.SKELETON.record(sampleTime);
+		}
 	}
 	
 	protected void updateLocalTransforms() {
@@ -261,6 +272,21 @@ public class HumanSkeletonWithWaist extends HumanSkeleton {
 		}
 	}
 	
+	/**
+	 * @return when the newest data of the trackers the pose uses was
+	 * received, for latency tracing
+	 */
+	protected long getLatestSampleTime() {
+		return Math.max(waistTracker.getSampleTime(), Math.max(chestTracker.getSampleTime(), hipTracker.getSampleTime()));
+	}
+	
+	protected void setComputedSampleTime(long sampleTime) {
+		if(computedWaistTracker != null)
+			computedWaistTracker.sampleTime = sampleTime;
+		if(computedChestTracker != null)
+			computedChestTracker.sampleTime = sampleTime;
+	}
+	
 	@Override
 	@VRServerThread
 	public void resetTrackersFull() {
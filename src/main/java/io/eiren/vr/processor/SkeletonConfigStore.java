@@ -0,0 +1,150 @@
+package io.eiren.vr.processor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.eiren.yaml.YamlNode;
+
+/**
+ * Skeleton config values stored in a flat float array indexed by
+ * {@link SkeletonConfigValue#ordinal()}, so reads and writes don't box
+ * or hash. Values can be absent, which is tracked separately.
+ */
+public class SkeletonConfigStore {
+	
+	private final float[] values = new float[SkeletonConfigValue.values.length];
+	private final boolean[] present = new boolean[SkeletonConfigValue.values.length];
+	private int size = 0;
+	
+	public SkeletonConfigStore() {
+	}
+	
+	public SkeletonConfigStore(SkeletonConfigStore store) {
+		setAll(store);
+	}
+	
+	public boolean has(SkeletonConfigValue config) {
+		return present[config.ordinal()];
+	}
+	
+	/**
+	 * @return the stored value, or 0 if it's absent
+	 */
+	public float get(SkeletonConfigValue config) {
+		return values[config.ordinal()];
+	}
+	
+	public float get(SkeletonConfigValue config, float defaultValue) {
+		int i = config.ordinal();
+		return present[i] ? values[i] : defaultValue;
+	}
+	
+	public void set(SkeletonConfigValue config, float value) {
+		int i = config.ordinal();
+		if(!present[i]) {
+			present[i] = true;
+			size++;
+		}
+		values[i] = value;
+	}
+	
+	public void remove(SkeletonConfigValue config) {
+		int i = config.ordinal();
+		if(present[i]) {
+			present[i] = false;
+			size--;
+		}
+		values[i] = 0f;
+	}
+	
+	public void clear() {
+		for(int i = 0; i < values.length; ++i) {
+			present[i] = false;
+			values[i] = 0f;
+		}
+		size = 0;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	/**
+	 * Copies all present values of the other store into this one
+	 */
+	public void setAll(SkeletonConfigStore store) {
+		for(int i = 0; i < values.length; ++i) {
+			if(store.present[i]) {
+				set(SkeletonConfigValue.values[i], store.values[i]);
+			}
+		}
+	}
+	
+	/**
+	 * @return the sum of all present values
+	 */
+	public float sum() {
+		float sum = 0f;
+		for(int i = 0; i < values.length; ++i) {
+			if(present[i]) {
+				sum += values[i];
+			}
+		}
+		return sum;
+	}
+	
+	//#region String and YAML adapters
+	public Float get(String key) {
+		SkeletonConfigValue config = SkeletonConfigValue.getByStringValue(key);
+		return config != null && has(config) ? get(config) : null;
+	}
+	
+	/**
+	 * @return false if the key doesn't match any {@link SkeletonConfigValue}
+	 */
+	public boolean set(String key, float value) {
+		SkeletonConfigValue config = SkeletonConfigValue.getByStringValue(key);
+		if(config == null) {
+			return false;
+		}
+		set(config, value);
+		return true;
+	}
+	
+	public void setAll(Map<String, Float> configs) {
+		configs.forEach(this::set);
+	}
+	
+	/**
+	 * @return a new map with the present values keyed by
+	 * {@link SkeletonConfigValue#stringVal}
+	 */
+	public Map<String, Float> toMap() {
+		Map<String, Float> map = new LinkedHashMap<>();
+		for(int i = 0; i < values.length; ++i) {
+			if(present[i]) {
+				map.put(SkeletonConfigValue.values[i].stringVal, values[i]);
+			}
+		}
+		return map;
+	}
+	
+	public float load(YamlNode config, SkeletonConfigValue configVal) {
+		float value = config.getFloat(configVal.configKey, configVal.defaultValue);
+		set(configVal, value);
+		return value;
+	}
+	
+	public void save(YamlNode config) {
+		for(int i = 0; i < values.length; ++i) {
+			if(present[i]) {
+				config.setProperty(SkeletonConfigValue.values[i].configKey, values[i]);
+			}
+		}
+	}
+	//#endregion
+}
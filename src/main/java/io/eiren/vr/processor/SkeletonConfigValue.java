@@ -0,0 +1,49 @@
+package io.eiren.vr.processor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public enum SkeletonConfigValue {
+	
+	HEAD("Head", "body.headShift", HumanSkeletonWithWaist.HEAD_SHIFT_DEFAULT),
+	NECK("Neck", "body.neckLength", HumanSkeletonWithWaist.NECK_LENGTH_DEFAULT),
+	TORSO("Torso", "body.torsoLength", 0.7f),
+	CHEST("Chest", "body.chestDistance", 0.35f),
+	WAIST("Waist", "body.waistDistance", 0.1f),
+	HIP_OFFSET("Hip offset", "body.hipOffset", 0.0f),
+	HIPS_WIDTH("Hips width", "body.hipsWidth", HumanSkeletonWithLegs.HIPS_WIDTH_DEFAULT),
+	LEGS_LENGTH("Legs length", "body.legsLength", 0.84f),
+	KNEE_HEIGHT("Knee height", "body.kneeHeight", 0.42f),
+	FOOT_LENGTH("Foot length", "body.footLength", HumanSkeletonWithLegs.FOOT_LENGTH_DEFAULT),
+	FOOT_OFFSET("Foot offset", "body.footOffset", 0.0f),
+	;
+	
+	/**
+	 * Key used by the string based skeleton config API and the GUI
+	 */
+	public final String stringVal;
+	/**
+	 * Key of the value in vrconfig.yml
+	 */
+	public final String configKey;
+	public final float defaultValue;
+	
+	public static final SkeletonConfigValue[] values = values();
+	private static final Map<String, SkeletonConfigValue> byStringVal = new HashMap<>();
+	
+	private SkeletonConfigValue(String stringVal, String configKey, float defaultValue) {
+		this.stringVal = stringVal;
+		this.configKey = configKey;
+		this.defaultValue = defaultValue;
+	}
+	
+	public static SkeletonConfigValue getByStringValue(String stringVal) {
+		return stringVal == null ? null : byStringVal.get(stringVal.toLowerCase());
+	}
+	
+	static {
+		for(SkeletonConfigValue configVal : values()) {
+			byStringVal.put(configVal.stringVal.toLowerCase(), configVal);
+		}
+	}
+}
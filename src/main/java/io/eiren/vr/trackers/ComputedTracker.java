@@ -14,6 +14,11 @@ public class ComputedTracker implements Tracker, TrackerWithTPS {
 	protected final boolean hasRotation;
 	protected final boolean hasPosition;
 	protected final int trackerId;
+	/**
+	 * When the newest data the pose was computed from was received, only
+	 * set when latency tracing is enabled
+	 */
+	public volatile long sampleTime = 0L;
 	
 	public ComputedTracker(int trackerId, String serial, String name, boolean hasRotation, boolean hasPosition) {
 		this.name = name;
@@ -131,4 +136,9 @@ public class ComputedTracker implements Tracker, TrackerWithTPS {
 	public int getTrackerId() {
 		return this.trackerId;
 	}
+
+	@Override
+	public long getSampleTime() {
+		return sampleTime;
+	}
 }
@@ -35,6 +35,11 @@ public class IMUTracker implements Tracker, TrackerWithTPS, TrackerWithBattery {
 	
 	protected BufferedTimer timer = new BufferedTimer(1f);
 	public int ping = -1;
+	/**
+	 * When the current rotation was received, only set when latency tracing
+	 * is enabled
+	 */
+	public volatile long sampleTime = 0L;
 	
 	public StringBuilder serialBuffer = new StringBuilder();
 	long lastSerialUpdate = 0;
@@ -138,6 +143,11 @@ public class IMUTracker implements Tracker, TrackerWithTPS, TrackerWithBattery {
 		timer.update();
 	}
 	
+	@Override
+	public long getSampleTime() {
+		return sampleTime;
+	}
+	
 	@Override
 	public float getConfidenceLevel() {
 		return confidence;
@@ -0,0 +1,241 @@
+package io.eiren.vr.trackers;
+
+import java.util.Map;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+
+import dev.slimevr.filtering.RotationFilter;
+import dev.slimevr.filtering.RotationFilters;
+import io.eiren.util.ann.ThreadSafe;
+import io.eiren.util.ann.VRServerThread;
+import io.eiren.util.logging.LogManager;
+
+/**
+ * Optional filtering and prediction stage. New rotation samples of the
+ * wrapped tracker are run through the configured {@link RotationFilter}
+ * chain, then extrapolated by the configured horizon to hide network and
+ * sampling latency.
+ * <p>New samples are picked up and the prediction is updated on every
+ * server tick. With no filters and the horizon set to 0 rotations are
+ * passed through unchanged.
+ */
+public class PredictedTracker<E extends Tracker> implements Tracker {
+
+	// Errors are published to other threads at most once per interval
+	private static final long ERROR_PUBLISH_INTERVAL = 1000000000L;
+
+	public final E tracker;
+	protected final RotationPredictor predictor = new RotationPredictor();
+	private volatile RotationPredictor.ErrorSnapshot publishedErrors = RotationPredictor.ErrorSnapshot.EMPTY;
+	private long lastErrorPublish = 0;
+	protected final Quaternion lastRotation = new Quaternion();
+	protected final Quaternion filteredRotation = new Quaternion();
+	protected final Quaternion predictedRotation = new Quaternion();
+	protected final Quaternion tmpRotation = new Quaternion();
+	protected long horizon = 0;
+	protected boolean hasSample = false;
+	protected boolean hasPrediction = false;
+	
+	protected RotationFilter filter = null;
+	protected String filterConfig = null;
+	protected Map<TrackerPosition, String> positionFilters = null;
+	protected TrackerPosition filterPosition = null;
+
+	public PredictedTracker(E tracker) {
+		this.tracker = tracker;
+	}
+
+	public E getTracker() {
+		return this.tracker;
+	}
+
+	/**
+	 * @param horizon how far ahead to predict, in milliseconds
+	 */
+	public void setPredictionHorizon(float horizon) {
+		this.horizon = (long) (horizon * 1000000L);
+		if(this.horizon <= 0) {
+			hasPrediction = false;
+			predictor.reset();
+		}
+	}
+
+	/**
+	 * @return how far ahead the rotation is predicted, in milliseconds
+	 */
+	public float getPredictionHorizon() {
+		return horizon / 1000000f;
+	}
+
+	/**
+	 * Sets the filters for this tracker, overriding the default filters of
+	 * its body position
+	 * @param config see {@link RotationFilters}, null to use the defaults
+	 */
+	public void setFilterConfig(String config) {
+		this.filterConfig = config;
+		updateFilter();
+	}
+	
+	public String getFilterConfig() {
+		return filterConfig;
+	}
+	
+	protected void updateFilter() {
+		filterPosition = tracker.getBodyPosition();
+		String config = filterConfig;
+		if(config == null && positionFilters != null && filterPosition != null)
+			config = positionFilters.get(filterPosition);
+		try {
+			filter = RotationFilters.parse(config);
+		} catch(IllegalArgumentException e) {
+			LogManager.log.warning("[PredictedTracker] Invalid filters for " + getName() + ": " + e.getMessage());
+			filter = null;
+		}
+		hasSample = false;
+		hasPrediction = false;
+	}
+	
+	/**
+	 * @return the prediction errors as of the last second at most
+	 */
+	@ThreadSafe
+	public RotationPredictor.ErrorSnapshot getPredictionErrorStats() {
+		return publishedErrors;
+	}
+
+	@Override
+	@VRServerThread
+	public void tick() {
+		tracker.tick();
+		if(filterConfig == null && positionFilters != null && tracker.getBodyPosition() != filterPosition)
+			updateFilter();
+		if(horizon <= 0 && filter == null)
+			return;
+		long now = System.nanoTime();
+		tracker.getRotation(tmpRotation);
+		// Only a changed rotation is a new sample, trackers don't send duplicates
+		if(!hasSample || !tmpRotation.equals(lastRotation)) {
+			lastRotation.set(tmpRotation);
+			if(filter != null)
+				filter.filter(tmpRotation, now);
+			filteredRotation.set(tmpRotation);
+			hasSample = true;
+			if(horizon > 0)
+				predictor.addSample(tmpRotation, now);
+		}
+		if(horizon > 0) {
+			hasPrediction = predictor.predict(now, horizon, predictedRotation);
+			if(now - lastErrorPublish >= ERROR_PUBLISH_INTERVAL) {
+				lastErrorPublish = now;
+				RotationPredictor.ErrorStats errors = predictor.getErrorStats();
+				if(errors.getCount() != publishedErrors.count)
+					publishedErrors = errors.snapshot();
+			}
+		}
+	}
+
+	@Override
+	public boolean getRotation(Quaternion store) {
+		if(horizon > 0 && hasPrediction) {
+			store.set(predictedRotation);
+			return true;
+		}
+		if(filter != null && hasSample) {
+			store.set(filteredRotation);
+			return true;
+		}
+		return tracker.getRotation(store);
+	}
+
+	@Override
+	public boolean getPosition(Vector3f store) {
+		return tracker.getPosition(store);
+	}
+
+	@Override
+	public String getName() {
+		return tracker.getName();
+	}
+
+	@Override
+	public TrackerStatus getStatus() {
+		return tracker.getStatus();
+	}
+
+	@Override
+	public void loadConfig(TrackerConfig config) {
+		tracker.loadConfig(config);
+		setPredictionHorizon(config.predictionHorizon);
+		positionFilters = config.positionFilters;
+		setFilterConfig(config.filters);
+	}
+
+	@Override
+	public void saveConfig(TrackerConfig config) {
+		tracker.saveConfig(config);
+		config.predictionHorizon = getPredictionHorizon();
+		config.filters = filterConfig;
+	}
+
+	@Override
+	public float getConfidenceLevel() {
+		return tracker.getConfidenceLevel();
+	}
+
+	@Override
+	public void resetFull(Quaternion reference) {
+		tracker.resetFull(reference);
+	}
+
+	@Override
+	public void resetYaw(Quaternion reference) {
+		tracker.resetYaw(reference);
+	}
+
+	@Override
+	public TrackerPosition getBodyPosition() {
+		return tracker.getBodyPosition();
+	}
+
+	@Override
+	public void setBodyPosition(TrackerPosition position) {
+		tracker.setBodyPosition(position);
+	}
+
+	@Override
+	public boolean userEditable() {
+		return tracker.userEditable();
+	}
+
+	@Override
+	public boolean hasRotation() {
+		return tracker.hasRotation();
+	}
+
+	@Override
+	public boolean hasPosition() {
+		return tracker.hasPosition();
+	}
+
+	@Override
+	public boolean isComputed() {
+		return tracker.isComputed();
+	}
+
+	@Override
+	public int getTrackerId() {
+		return tracker.getTrackerId();
+	}
+
+	@Override
+	public String getDescriptiveName() {
+		return tracker.getDescriptiveName();
+	}
+
+	@Override
+	public long getSampleTime() {
+		return tracker.getSampleTime();
+	}
+}
@@ -169,4 +169,9 @@ public class ReferenceAdjustedTracker<E extends Tracker> implements Tracker {
 	public String getDescriptiveName() {
 		return tracker.getDescriptiveName();
 	}
+	
+	@Override
+	public long getSampleTime() {
+		return tracker.getSampleTime();
+	}
 }
@@ -0,0 +1,268 @@
+package io.eiren.vr.trackers;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+
+/**
+ * Extrapolates a stream of rotation samples forward in time using the
+ * angular velocity between consecutive samples.
+ * <p>Every prediction is remembered until its time has passed, and when a
+ * sample arrives close to the time some prediction was made for, the error
+ * of that prediction is added to {@link #getErrorStats()}. The history
+ * grows with the horizon and the rate of predictions.
+ * <p>Not thread safe, other threads should read the errors from a
+ * {@link ErrorStats#snapshot()}. Times are in nanoseconds, on any monotonic clock.
+ */
+public class RotationPredictor {
+
+	/**
+	 * Samples older than this are treated as a stopped tracker, and
+	 * gaps longer than this don't produce a velocity
+	 */
+	public static final long MAX_SAMPLE_AGE = 100_000_000L;
+	/**
+	 * How far a prediction's target time can be from a sample's arrival
+	 * time to still be compared to it
+	 */
+	public static final long MATCH_TOLERANCE = 2_000_000L;
+	private static final int INITIAL_HISTORY_SIZE = 64;
+	/**
+	 * 8 seconds of predictions at 1 kHz, far beyond any useful horizon
+	 */
+	private static final int MAX_HISTORY_SIZE = 8192;
+
+	/**
+	 * Weight of the previous angular velocity when a new sample arrives,
+	 * from 0 (use only the newest pair of samples) to just below 1
+	 */
+	public float velocitySmoothing = 0.5f;
+
+	private final Quaternion lastSample = new Quaternion();
+	private long lastSampleTime = -1;
+	// Radians per second around the local axes of the last sample
+	private final Vector3f angularVelocity = new Vector3f();
+
+	private long[] historyTime = new long[INITIAL_HISTORY_SIZE];
+	private Quaternion[] historyPredicted = new Quaternion[INITIAL_HISTORY_SIZE];
+	private Quaternion[] historyBase = new Quaternion[INITIAL_HISTORY_SIZE];
+	private int historyHead = 0;
+	private int historySize = 0;
+
+	private final ErrorStats errorStats = new ErrorStats();
+
+	private final Quaternion tmpQuat = new Quaternion();
+	private final Vector3f tmpAxis = new Vector3f();
+
+	public RotationPredictor() {
+		for(int i = 0; i < INITIAL_HISTORY_SIZE; ++i) {
+			historyPredicted[i] = new Quaternion();
+			historyBase[i] = new Quaternion();
+		}
+	}
+
+	/**
+	 * Doubles the history, keeping the predictions from the oldest
+	 */
+	private void growHistory() {
+		int oldSize = historyTime.length;
+		int newSize = Math.min(oldSize * 2, MAX_HISTORY_SIZE);
+		long[] newTime = new long[newSize];
+		Quaternion[] newPredicted = new Quaternion[newSize];
+		Quaternion[] newBase = new Quaternion[newSize];
+		for(int i = 0; i < oldSize; ++i) {
+			int index = (historyHead + i) % oldSize;
+			newTime[i] = historyTime[index];
+			newPredicted[i] = historyPredicted[index];
+			newBase[i] = historyBase[index];
+		}
+		for(int i = oldSize; i < newSize; ++i) {
+			newPredicted[i] = new Quaternion();
+			newBase[i] = new Quaternion();
+		}
+		historyTime = newTime;
+		historyPredicted = newPredicted;
+		historyBase = newBase;
+		historyHead = oldSize;
+	}
+
+	public boolean hasSample() {
+		return lastSampleTime >= 0;
+	}
+
+	public void addSample(Quaternion sample, long time) {
+		if(lastSampleTime >= 0) {
+			long dt = time - lastSampleTime;
+			if(dt <= 0)
+				return;
+			measureError(sample, time);
+			if(dt > MAX_SAMPLE_AGE) {
+				angularVelocity.set(0, 0, 0);
+			} else {
+				// Rotation from the last sample to the new one, in the local space
+				tmpQuat.set(lastSample).inverseLocal().multLocal(sample);
+				if(tmpQuat.getW() < 0)
+					tmpQuat.negateLocal();
+				float angle = tmpQuat.toAngleAxis(tmpAxis);
+				tmpAxis.multLocal(angle * 1e9f / dt);
+				angularVelocity.interpolateLocal(tmpAxis, 1f - velocitySmoothing);
+			}
+		}
+		lastSample.set(sample);
+		lastSampleTime = time;
+	}
+
+	/**
+	 * Predicts the rotation at {@code time + horizon} and remembers the
+	 * prediction to measure its error later
+	 * @return false if there were no samples yet
+	 */
+	public boolean predict(long time, long horizon, Quaternion store) {
+		if(lastSampleTime < 0)
+			return false;
+		long lead = time + horizon - lastSampleTime;
+		float speed = angularVelocity.length();
+		if(time - lastSampleTime > MAX_SAMPLE_AGE || lead <= 0 || speed < FastMath.FLT_EPSILON) {
+			store.set(lastSample);
+		} else {
+			lead = Math.min(lead, MAX_SAMPLE_AGE);
+			tmpAxis.set(angularVelocity).divideLocal(speed);
+			tmpQuat.fromAngleNormalAxis(speed * lead / 1e9f, tmpAxis);
+			store.set(lastSample).multLocal(tmpQuat);
+		}
+		// The oldest prediction is still ahead of the samples, so the history is too short for the horizon
+		if(historySize == historyTime.length && historyTime.length < MAX_HISTORY_SIZE && historyTime[historyHead] >= lastSampleTime - MATCH_TOLERANCE)
+			growHistory();
+		historyTime[historyHead] = time + horizon;
+		historyPredicted[historyHead].set(store);
+		historyBase[historyHead].set(lastSample);
+		historyHead = (historyHead + 1) % historyTime.length;
+		if(historySize < historyTime.length)
+			historySize++;
+		return true;
+	}
+
+	private void measureError(Quaternion sample, long time) {
+		int best = -1;
+		long bestDistance = MATCH_TOLERANCE;
+		for(int i = 0; i < historySize; ++i) {
+			long distance = Math.abs(historyTime[i] - time);
+			if(distance <= bestDistance) {
+				best = i;
+				bestDistance = distance;
+			}
+		}
+		if(best >= 0)
+			errorStats.add(angleBetween(historyPredicted[best], sample), angleBetween(historyBase[best], sample));
+	}
+
+	public void reset() {
+		lastSampleTime = -1;
+		angularVelocity.set(0, 0, 0);
+		historyHead = 0;
+		historySize = 0;
+	}
+
+	public ErrorStats getErrorStats() {
+		return errorStats;
+	}
+
+	private static float angleBetween(Quaternion q1, Quaternion q2) {
+		return 2f * FastMath.acos(Math.min(1f, Math.abs(q1.dot(q2))));
+	}
+
+	/**
+	 * Angular error of the predictions, in radians. The baseline is the error
+	 * the same outputs would have had without prediction, i.e. using the
+	 * last received sample as is.
+	 * <p>Updated by the thread that owns the predictor.
+	 */
+	public static class ErrorStats {
+
+		private int count = 0;
+		private double sumError = 0;
+		private double sumSquaredError = 0;
+		private float maxError = 0;
+		private double sumBaselineError = 0;
+
+		public void add(float error, float baselineError) {
+			count++;
+			sumError += error;
+			sumSquaredError += error * error;
+			sumBaselineError += baselineError;
+			if(error > maxError)
+				maxError = error;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		public float getMeanError() {
+			return count > 0 ? (float) (sumError / count) : 0f;
+		}
+
+		public float getRmsError() {
+			return count > 0 ? (float) Math.sqrt(sumSquaredError / count) : 0f;
+		}
+
+		public float getMaxError() {
+			return maxError;
+		}
+
+		public float getMeanBaselineError() {
+			return count > 0 ? (float) (sumBaselineError / count) : 0f;
+		}
+
+		public void reset() {
+			count = 0;
+			sumError = 0;
+			sumSquaredError = 0;
+			maxError = 0;
+			sumBaselineError = 0;
+		}
+
+		/**
+		 * @return the current errors, safe to hand to other threads
+		 */
+		public ErrorSnapshot snapshot() {
+			return new ErrorSnapshot(count, getMeanError(), getRmsError(), maxError, getMeanBaselineError());
+		}
+
+		@Override
+		public String toString() {
+			return snapshot().toString();
+		}
+	}
+
+	/**
+	 * Immutable copy of {@link ErrorStats}, in radians
+	 */
+	public static final class ErrorSnapshot {
+
+		public static final ErrorSnapshot EMPTY = new ErrorSnapshot(0, 0f, 0f, 0f, 0f);
+
+		public final int count;
+		public final float meanError;
+		public final float rmsError;
+		public final float maxError;
+		public final float meanBaselineError;
+
+		public ErrorSnapshot(int count, float meanError, float rmsError, float maxError, float meanBaselineError) {
+			this.count = count;
+			this.meanError = meanError;
+			this.rmsError = rmsError;
+			this.maxError = maxError;
+			this.meanBaselineError = meanBaselineError;
+		}
+
+		@Override
+		public String toString() {
+			return "samples: " + count
+					+ ", mean: " + meanError * FastMath.RAD_TO_DEG
+					+ "°, rms: " + rmsError * FastMath.RAD_TO_DEG
+					+ "°, max: " + maxError * FastMath.RAD_TO_DEG
+					+ "°, mean without prediction: " + meanBaselineError * FastMath.RAD_TO_DEG + "°";
+		}
+	}
+}
@@ -47,6 +47,14 @@ public interface Tracker {
 		return getName();
 	}
 	
+	/**
+	 * @return {@link System#nanoTime()} when the data of the current
+	 * rotation was received, 0 if unknown or latency tracing is disabled
+	 */
+	public default long getSampleTime() {
+		return 0L;
+	}
+	
 	public static int getNextLocalTrackerId() {
 		return nextLocalTrackerId.incrementAndGet();
 	}
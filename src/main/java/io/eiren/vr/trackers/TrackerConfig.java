@@ -1,5 +1,7 @@
 package io.eiren.vr.trackers;
 
+import java.util.Map;
+
 import com.jme3.math.Quaternion;
 
 import io.eiren.yaml.YamlNode;
@@ -12,6 +14,13 @@ public class TrackerConfig {
 	public boolean hide;
 	public Quaternion adjustment;
 	public String mountingRotation;
+	public float predictionHorizon;
+	public String filters;
+	/**
+	 * Default filters by body position, used when {@link #filters} is not
+	 * set. Shared by all configs and not saved with the tracker.
+	 */
+	public Map<TrackerPosition, String> positionFilters;
 	
 	public TrackerConfig(Tracker tracker) {
 		this.trackerName = tracker.getName();
@@ -25,6 +34,8 @@ public class TrackerConfig {
 		this.designation = node.getString("designation");
 		this.hide = node.getBoolean("hide", false);
 		this.mountingRotation = node.getString("rotation");
+		this.predictionHorizon = node.getFloat("predictionHorizon", 0);
+		this.filters = node.getString("filters");
 		YamlNode adjNode = node.getNode("adjustment");
 		if(adjNode != null) {
 			adjustment = new Quaternion(adjNode.getFloat("x", 0), adjNode.getFloat("y", 0), adjNode.getFloat("z", 0), adjNode.getFloat("w", 0));
@@ -58,6 +69,16 @@ public class TrackerConfig {
 		} else {
 			configNode.removeProperty("rotation");
 		}
+		if(predictionHorizon > 0) {
+			configNode.setProperty("predictionHorizon", predictionHorizon);
+		} else {
+			configNode.removeProperty("predictionHorizon");
+		}
+		if(filters != null) {
+			configNode.setProperty("filters", filters);
+		} else {
+			configNode.removeProperty("filters");
+		}
 		if(description != null) {
 			configNode.setProperty("description", description);
 		} else {
@@ -0,0 +1,64 @@
+package io.eiren.vr.trackers;
+
+import java.util.EnumMap;
+import java.util.List;
+
+/**
+ * Maps each {@link TrackerPosition} to the first tracker assigned to it,
+ * giving constant time lookups instead of scanning every tracker.
+ * <p>The first tracker added for a position wins, matching the order
+ * {@link TrackerUtils#findTrackerForBodyPosition(List, TrackerPosition)}
+ * would return. If a tracker is removed or changes its position, the index
+ * must be rebuilt with {@link #rebuild(List)}.
+ * <p>Indices shared between threads are handed out as
+ * {@link TrackersByPosition}, which can't be modified.
+ */
+public class TrackerPositionIndex<T extends Tracker> implements TrackersByPosition<T> {
+
+	private final EnumMap<TrackerPosition, T> trackers = new EnumMap<>(TrackerPosition.class);
+
+	public TrackerPositionIndex() {
+	}
+
+	public TrackerPositionIndex(List<? extends T> allTrackers) {
+		rebuild(allTrackers);
+	}
+
+	public TrackerPositionIndex(TrackerPositionIndex<? extends T> index) {
+		trackers.putAll(index.trackers);
+	}
+
+	public void add(T tracker) {
+		if(tracker == null)
+			return;
+		TrackerPosition position = tracker.getBodyPosition();
+		if(position != null && !trackers.containsKey(position))
+			trackers.put(position, tracker);
+	}
+
+	public void rebuild(List<? extends T> allTrackers) {
+		trackers.clear();
+		for(int i = 0; i < allTrackers.size(); ++i)
+			add(allTrackers.get(i));
+	}
+
+	public void rebuild(T[] allTrackers) {
+		trackers.clear();
+		for(int i = 0; i < allTrackers.length; ++i)
+			add(allTrackers[i]);
+	}
+
+	public void clear() {
+		trackers.clear();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return trackers.isEmpty();
+	}
+
+	@Override
+	public T get(TrackerPosition position) {
+		return position == null ? null : trackers.get(position);
+	}
+}
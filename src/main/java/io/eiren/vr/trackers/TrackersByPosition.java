@@ -0,0 +1,36 @@
+package io.eiren.vr.trackers;
+
+/**
+ * Read only lookup of the first tracker assigned to each
+ * {@link TrackerPosition}, see {@link TrackerPositionIndex}
+ */
+public interface TrackersByPosition<T extends Tracker> {
+	
+	public boolean isEmpty();
+	
+	public T get(TrackerPosition position);
+	
+	public default T get(TrackerPosition position, TrackerPosition altPosition) {
+		T t = get(position);
+		if(t != null)
+			return t;
+		return get(altPosition);
+	}
+	
+	public default T get(TrackerPosition position, TrackerPosition altPosition, TrackerPosition secondAltPosition) {
+		T t = get(position);
+		if(t != null)
+			return t;
+		t = get(altPosition);
+		if(t != null)
+			return t;
+		return get(secondAltPosition);
+	}
+	
+	public default Tracker getOrEmpty(TrackerPosition position, TrackerPosition altPosition, TrackerPosition secondAltPosition) {
+		Tracker t = get(position, altPosition, secondAltPosition);
+		if(t != null)
+			return t;
+		return new ComputedTracker(Tracker.getNextLocalTrackerId(), "Empty tracker", false, false);
+	}
+}
@@ -0,0 +1,64 @@
+package io.eiren.vr.trackers;
+
+import java.util.Collections;
+import java.util.List;
+
+import io.eiren.util.collections.FastList;
+
+/**
+ * Immutable view of all registered trackers at one point in time.
+ * <p>A new snapshot with a higher version is published every time a tracker
+ * is added or updated, so readers on any thread get a consistent list and
+ * position index without copying or locking.
+ */
+public final class TrackersSnapshot {
+
+	public static final TrackersSnapshot EMPTY = new TrackersSnapshot(0, new FastList<>(0));
+
+	public final long version;
+	private final List<Tracker> trackers;
+	private final TrackerPositionIndex<Tracker> trackersByPosition;
+
+	private TrackersSnapshot(long version, FastList<Tracker> trackers) {
+		this.version = version;
+		this.trackers = Collections.unmodifiableList(trackers);
+		this.trackersByPosition = new TrackerPositionIndex<>(trackers);
+	}
+
+	/**
+	 * @return a new snapshot with the tracker appended
+	 */
+	public TrackersSnapshot withTracker(Tracker tracker) {
+		FastList<Tracker> newTrackers = new FastList<>(trackers.size() + 1);
+		newTrackers.addAll(trackers);
+		newTrackers.add(tracker);
+		return new TrackersSnapshot(version + 1, newTrackers);
+	}
+
+	/**
+	 * @return a new snapshot with the same trackers, used when some of them
+	 * changed their body position
+	 */
+	public TrackersSnapshot reindexed() {
+		return new TrackersSnapshot(version + 1, new FastList<>(trackers));
+	}
+
+	/**
+	 * @return unmodifiable list of the trackers in registration order
+	 */
+	public List<Tracker> getTrackers() {
+		return trackers;
+	}
+
+	/**
+	 * @return the position index, read only as it's shared by every reader
+	 * of this snapshot
+	 */
+	public TrackersByPosition<Tracker> getTrackersByPosition() {
+		return trackersByPosition;
+	}
+
+	public int size() {
+		return trackers.size();
+	}
+}
@@ -20,7 +20,9 @@ import com.jme3.math.FastMath;
 import com.jme3.math.Quaternion;
 import com.jme3.math.Vector3f;
 
+import dev.slimevr.tracing.LatencyTracer;
 import io.eiren.util.Util;
+import io.eiren.util.ann.ThreadSafe;
 import io.eiren.util.collections.FastList;
 
 /**
@@ -44,6 +46,7 @@ public class TrackersUDPServer extends Thread {
 	private final Map<InetAddress, TrackerConnection> trackersMap = new HashMap<>();
 	private final Map<Tracker, Consumer<String>> calibrationDataRequests = new HashMap<>();
 	private final Consumer<Tracker> trackersConsumer;
+	private final StringBuilder serialBuffer2 = new StringBuilder();
 	private final int port;
 	
 	protected DatagramSocket socket = null;
@@ -109,7 +112,7 @@ public class TrackersUDPServer extends Thread {
 			String trackerName = macString != null ? "udp://" + macString : "udp:/" + handshakePacket.getAddress().toString();
 			String descriptiveName = "udp:/" + handshakePacket.getAddress().toString();
 			IMUTracker imu = new IMUTracker(Tracker.getNextLocalTrackerId(), trackerName, descriptiveName, this);
-			ReferenceAdjustedTracker<IMUTracker> adjustedTracker = new ReferenceAdjustedTracker<>(imu);
+			ReferenceAdjustedTracker<PredictedTracker<IMUTracker>> adjustedTracker = new ReferenceAdjustedTracker<>(new PredictedTracker<>(imu));
 			trackersConsumer.accept(adjustedTracker);
 			sensor = new TrackerConnection(imu, handshakePacket.getSocketAddress());
 			sensor.isOwoTrack = isOwo;
@@ -131,7 +134,7 @@ public class TrackersUDPServer extends Thread {
 		if(imu == null) {
 			imu = new IMUTracker(Tracker.getNextLocalTrackerId(), connection.sensors.get(0).getName() + "/" + trackerId, connection.sensors.get(0).getDescriptiveName() + "/" + trackerId, this);
 			connection.sensors.put(trackerId, imu);
-			ReferenceAdjustedTracker<IMUTracker> adjustedTracker = new ReferenceAdjustedTracker<>(imu);
+			ReferenceAdjustedTracker<PredictedTracker<IMUTracker>> adjustedTracker = new ReferenceAdjustedTracker<>(new PredictedTracker<>(imu));
 			trackersConsumer.accept(adjustedTracker);
 			System.out.println("[TrackerServer] Sensor added with address " + imu.getName());
 		}
@@ -139,11 +142,210 @@ public class TrackersUDPServer extends Thread {
 	}
 	
 	
+	private static void traceRotation(IMUTracker tracker, long receiveTime) {
+		tracker.sampleTime = receiveTime;
+		LatencyTracer.DECODE.record(receiveTime);
+	}
+	
+	/**
+	 * Decodes and handles one received packet
+	 * @param bb wraps the packet's buffer, it's also used to send responses
+	 */
+	protected void processPacket(DatagramPacket recieve, ByteBuffer bb) throws IOException {
+		bb.rewind();
+		long receiveTime = LatencyTracer.ENABLED ? System.nanoTime() : 0L;
+
+		TrackerConnection connection;
+		IMUTracker tracker = null;
+		synchronized(trackers) {
+			connection = trackersMap.get(recieve.getAddress());
+		}
+		if(connection != null)
+			connection.lastPacket = System.currentTimeMillis();
+		int packetId = bb.getInt();
+		// Pings carry no packet number. bb wraps the whole receive buffer, so
+		// only the datagram's length tells whether a packet number was sent
+		if(connection != null && packetId != 10 && recieve.getLength() >= 12)
+			connection.countPacket(bb.getLong(bb.position()));
+		switch(packetId) {
+		case 0:
+			break;
+		case 3:
+			setUpNewSensor(recieve, bb);
+			break;
+		case 1: // PACKET_ROTATION
+		case 16: // PACKET_ROTATION_2
+			if(connection == null)
+				break;
+			bb.getLong();
+			buf.set(bb.getFloat(), bb.getFloat(), bb.getFloat(), bb.getFloat());
+			offset.mult(buf, buf);
+			if(packetId == 1) {
+				tracker = connection.sensors.get(0);
+			} else {
+				tracker = connection.sensors.get(1);
+			}
+			if(tracker == null)
+				break;
+			tracker.rotQuaternion.set(buf);
+			tracker.dataTick();
+			if(LatencyTracer.ENABLED)
+				traceRotation(tracker, receiveTime);
+			break;
+		case 17: // PACKET_ROTATION_DATA
+			if(connection == null)
+				break;
+			if(connection.isOwoTrack)
+				break;
+			bb.getLong();
+			int sensorId = bb.get() & 0xFF;
+			tracker = connection.sensors.get(sensorId);
+			if(tracker == null)
+				break;
+			
+			int dataType = bb.get() & 0xFF;
+			buf.set(bb.getFloat(), bb.getFloat(), bb.getFloat(), bb.getFloat());
+			offset.mult(buf, buf);
+			int calibrationInfo = bb.get() & 0xFF;
+			
+			switch(dataType) {
+			case 1: // DATA_TYPE_NORMAL
+				tracker.rotQuaternion.set(buf);
+				tracker.calibrationStatus = calibrationInfo;
+				tracker.dataTick();
+				if(LatencyTracer.ENABLED)
+					traceRotation(tracker, receiveTime);
+				break;
+			case 2: // DATA_TYPE_CORRECTION
+				tracker.rotMagQuaternion.set(buf);
+				tracker.magCalibrationStatus = calibrationInfo;
+				tracker.hasNewCorrectionData = true;
+				break;
+			}
+			break;
+		case 18: // PACKET_MAGENTOMETER_ACCURACY
+			if(connection == null)
+				break;
+			if(connection.isOwoTrack)
+				break;
+			bb.getLong();
+			sensorId = bb.get() & 0xFF;
+			tracker = connection.sensors.get(sensorId);
+			if(tracker == null)
+				break;
+			float accuracyInfo = bb.getFloat();
+			tracker.magnetometerAccuracy = accuracyInfo;
+			break;
+		case 2: // PACKET_GYRO
+		case 4: // PACKET_ACCEL
+		case 5: // PACKET_MAG
+		case 9: // PACKET_RAW_MAGENTOMETER
+			break; // None of these packets are used by SlimeVR trackers and are deprecated, use more generic PACKET_ROTATION_DATA
+		case 8: // PACKET_CONFIG
+			if(connection == null)
+				break;
+			if(connection.isOwoTrack)
+				break;
+			bb.getLong();
+			MPUTracker.ConfigurationData data = new MPUTracker.ConfigurationData(bb);
+			Consumer<String> dataConsumer = calibrationDataRequests.remove(connection.sensors.get(0));
+			if(dataConsumer != null) {
+				dataConsumer.accept(data.toTextMatrix());
+			}
+			break;
+		case 10: // PACKET_PING_PONG:
+			if(connection == null)
+				break;
+			if(connection.isOwoTrack)
+				break;
+			int pingId = bb.getInt();
+			if(connection.lastPingPacketId == pingId) {
+				for(int i = 0; i < connection.sensors.size(); ++i) {
+					tracker = connection.sensors.get(i);
+					tracker.ping = (int) (System.currentTimeMillis() - connection.lastPingPacketTime) / 2;
+					tracker.dataTick();
+				}
+			}
+			break;
+		case 11: // PACKET_SERIAL
+			if(connection == null)
+				break;
+			if(connection.isOwoTrack)
+				break;
+			tracker = connection.sensors.get(0);
+			bb.getLong();
+			int length = bb.getInt();
+			for(int i = 0; i < length; ++i) {
+				char ch = (char) bb.get();
+				if(ch == '\n') {
+					serialBuffer2.append('[').append(tracker.getName()).append("] ").append(tracker.serialBuffer);
+					System.out.println(serialBuffer2.toString());
+					serialBuffer2.setLength(0);
+					tracker.serialBuffer.setLength(0);
+				} else {
+					tracker.serialBuffer.append(ch);
+				}
+			}
+			break;
+		case 12: // PACKET_BATTERY_VOLTAGE
+			if(connection == null)
+				break;
+			tracker = connection.sensors.get(0);
+			bb.getLong();
+			tracker.setBatteryVoltage(bb.getFloat());
+			break;
+		case 13: // PACKET_TAP
+			if(connection == null)
+				break;
+			if(connection.isOwoTrack)
+				break;
+			bb.getLong();
+			sensorId = bb.get() & 0xFF;
+			tracker = connection.sensors.get(sensorId);
+			if(tracker == null)
+				break;
+			int tap = bb.get() & 0xFF;
+			BnoTap tapObj = new BnoTap(tap);
+			System.out.println("[TrackerServer] Tap packet received from " + tracker.getName() + "/" + sensorId + ": " + tapObj  + " (b" + Integer.toBinaryString(tap) + ")");
+			break;
+		case 14: // PACKET_RESET_REASON
+			bb.getLong();
+			byte reason = bb.get();
+			System.out.println("[TrackerServer] Reset recieved from " + recieve.getSocketAddress() + ": " + reason);
+			if(connection == null)
+				break;
+			sensorId = bb.get() & 0xFF;
+			tracker = connection.sensors.get(sensorId);
+			if(tracker == null)
+				break;
+			tracker.setStatus(TrackerStatus.ERROR);
+			break;
+		case 15: // PACKET_SENSOR_INFO
+			if(connection == null)
+				break;
+			bb.getLong();
+			sensorId = bb.get() & 0xFF;
+			int sensorStatus = bb.get() & 0xFF;
+			if(sensorId > 0 && sensorStatus == 1) {
+				setUpAuxilarySensor(connection, sensorId);
+			}
+			bb.rewind();
+			bb.putInt(15);
+			bb.put((byte) sensorId);
+			bb.put((byte) sensorStatus);
+			socket.send(new DatagramPacket(bb.array(), bb.position(), connection.address));
+			System.out.println("[TrackerServer] Sensor info for " + connection.sensors.get(0).getName() + "/" + sensorId + ": " + sensorStatus);
+			break;
+		default:
+			System.out.println("[TrackerServer] Unknown data received: " + packetId + " from " + recieve.getSocketAddress());
+			break;
+		}
+	}
+	
 	@Override
 	public void run() {
 		byte[] rcvBuffer = new byte[512];
 		ByteBuffer bb = ByteBuffer.wrap(rcvBuffer).order(ByteOrder.BIG_ENDIAN);
-		StringBuilder serialBuffer2 = new StringBuilder();
 		try {
 			socket = new DatagramSocket(port);
 			socket.setSoTimeout(250);
@@ -151,185 +353,7 @@ public class TrackersUDPServer extends Thread {
 				try {
 					DatagramPacket recieve = new DatagramPacket(rcvBuffer, rcvBuffer.length);
 					socket.receive(recieve);
-					bb.rewind();
-
-					TrackerConnection connection;
-					IMUTracker tracker = null;
-					synchronized(trackers) {
-						connection = trackersMap.get(recieve.getAddress());
-					}
-					if(connection != null)
-						connection.lastPacket = System.currentTimeMillis();
-					int packetId;
-					switch(packetId = bb.getInt()) {
-					case 0:
-						break;
-					case 3:
-						setUpNewSensor(recieve, bb);
-						break;
-					case 1: // PACKET_ROTATION
-					case 16: // PACKET_ROTATION_2
-						if(connection == null)
-							break;
-						bb.getLong();
-						buf.set(bb.getFloat(), bb.getFloat(), bb.getFloat(), bb.getFloat());
-						offset.mult(buf, buf);
-						if(packetId == 1) {
-							tracker = connection.sensors.get(0);
-						} else {
-							tracker = connection.sensors.get(1);
-						}
-						if(tracker == null)
-							break;
-						tracker.rotQuaternion.set(buf);
-						tracker.dataTick();
-						break;
-					case 17: // PACKET_ROTATION_DATA
-						if(connection == null)
-							break;
-						if(connection.isOwoTrack)
-							break;
-						bb.getLong();
-						int sensorId = bb.get() & 0xFF;
-						tracker = connection.sensors.get(sensorId);
-						if(tracker == null)
-							break;
-						
-						int dataType = bb.get() & 0xFF;
-						buf.set(bb.getFloat(), bb.getFloat(), bb.getFloat(), bb.getFloat());
-						offset.mult(buf, buf);
-						int calibrationInfo = bb.get() & 0xFF;
-						
-						switch(dataType) {
-						case 1: // DATA_TYPE_NORMAL
-							tracker.rotQuaternion.set(buf);
-							tracker.calibrationStatus = calibrationInfo;
-							tracker.dataTick();
-							break;
-						case 2: // DATA_TYPE_CORRECTION
-							tracker.rotMagQuaternion.set(buf);
-							tracker.magCalibrationStatus = calibrationInfo;
-							tracker.hasNewCorrectionData = true;
-							break;
-						}
-						break;
-					case 18: // PACKET_MAGENTOMETER_ACCURACY
-						if(connection == null)
-							break;
-						if(connection.isOwoTrack)
-							break;
-						bb.getLong();
-						sensorId = bb.get() & 0xFF;
-						tracker = connection.sensors.get(sensorId);
-						if(tracker == null)
-							break;
-						float accuracyInfo = bb.getFloat();
-						tracker.magnetometerAccuracy = accuracyInfo;
-						break;
-					case 2: // PACKET_GYRO
-					case 4: // PACKET_ACCEL
-					case 5: // PACKET_MAG
-					case 9: // PACKET_RAW_MAGENTOMETER
-						break; // None of these packets are used by SlimeVR trackers and are deprecated, use more generic PACKET_ROTATION_DATA
-					case 8: // PACKET_CONFIG
-						if(connection == null)
-							break;
-						if(connection.isOwoTrack)
-							break;
-						bb.getLong();
-						MPUTracker.ConfigurationData data = new MPUTracker.ConfigurationData(bb);
-						Consumer<String> dataConsumer = calibrationDataRequests.remove(connection.sensors.get(0));
-						if(dataConsumer != null) {
-							dataConsumer.accept(data.toTextMatrix());
-						}
-						break;
-					case 10: // PACKET_PING_PONG:
-						if(connection == null)
-							break;
-						if(connection.isOwoTrack)
-							break;
-						int pingId = bb.getInt();
-						if(connection.lastPingPacketId == pingId) {
-							for(int i = 0; i < connection.sensors.size(); ++i) {
-								tracker = connection.sensors.get(i);
-								tracker.ping = (int) (System.currentTimeMillis() - connection.lastPingPacketTime) / 2;
-								tracker.dataTick();
-							}
-						}
-						break;
-					case 11: // PACKET_SERIAL
-						if(connection == null)
-							break;
-						if(connection.isOwoTrack)
-							break;
-						tracker = connection.sensors.get(0);
-						bb.getLong();
-						int length = bb.getInt();
-						for(int i = 0; i < length; ++i) {
-							char ch = (char) bb.get();
-							if(ch == '\n') {
-								serialBuffer2.append('[').append(tracker.getName()).append("] ").append(tracker.serialBuffer);
-								System.out.println(serialBuffer2.toString());
-								serialBuffer2.setLength(0);
-								tracker.serialBuffer.setLength(0);
-							} else {
-								tracker.serialBuffer.append(ch);
-							}
-						}
-						break;
-					case 12: // PACKET_BATTERY_VOLTAGE
-						if(connection == null)
-							break;
-						tracker = connection.sensors.get(0);
-						bb.getLong();
-						tracker.setBatteryVoltage(bb.getFloat());
-						break;
-					case 13: // PACKET_TAP
-						if(connection == null)
-							break;
-						if(connection.isOwoTrack)
-							break;
-						bb.getLong();
-						sensorId = bb.get() & 0xFF;
-						tracker = connection.sensors.get(sensorId);
-						if(tracker == null)
-							break;
-						int tap = bb.get() & 0xFF;
-						BnoTap tapObj = new BnoTap(tap);
-						System.out.println("[TrackerServer] Tap packet received from " + tracker.getName() + "/" + sensorId + ": " + tapObj  + " (b" + Integer.toBinaryString(tap) + ")");
-						break;
-					case 14: // PACKET_RESET_REASON
-						bb.getLong();
-						byte reason = bb.get();
-						System.out.println("[TrackerServer] Reset recieved from " + recieve.getSocketAddress() + ": " + reason);
-						if(connection == null)
-							break;
-						sensorId = bb.get() & 0xFF;
-						tracker = connection.sensors.get(sensorId);
-						if(tracker == null)
-							break;
-						tracker.setStatus(TrackerStatus.ERROR);
-						break;
-					case 15: // PACKET_SENSOR_INFO
-						if(connection == null)
-							break;
-						bb.getLong();
-						sensorId = bb.get() & 0xFF;
-						int sensorStatus = bb.get() & 0xFF;
-						if(sensorId > 0 && sensorStatus == 1) {
-							setUpAuxilarySensor(connection, sensorId);
-						}
-						bb.rewind();
-						bb.putInt(15);
-						bb.put((byte) sensorId);
-						bb.put((byte) sensorStatus);
-						socket.send(new DatagramPacket(rcvBuffer, bb.position(), connection.address));
-						System.out.println("[TrackerServer] Sensor info for " + connection.sensors.get(0).getName() + "/" + sensorId + ": " + sensorStatus);
-						break;
-					default:
-						System.out.println("[TrackerServer] Unknown data received: " + packetId + " from " + recieve.getSocketAddress());
-						break;
-					}
+					processPacket(recieve, bb);
 				} catch(SocketTimeoutException e) {
 				} catch(Exception e) {
 					e.printStackTrace();
@@ -385,19 +409,65 @@ public class TrackersUDPServer extends Thread {
 		}
 	}
 	
+	/**
+	 * @return the packets received from every board, and the packets that
+	 * never arrived by their packet numbers
+	 */
+	@ThreadSafe
+	public List<BoardStats> getBoardStats() {
+		synchronized(trackers) {
+			List<BoardStats> stats = new FastList<>(trackers.size());
+			for(int i = 0; i < trackers.size(); ++i) {
+				TrackerConnection connection = trackers.get(i);
+				stats.add(new BoardStats(connection.sensors.get(0).getName(), connection.packetsReceived, connection.packetsLost));
+			}
+			return stats;
+		}
+	}
+	
+	public static class BoardStats {
+		
+		public final String name;
+		public final long packetsReceived;
+		public final long packetsLost;
+		
+		BoardStats(String name, long packetsReceived, long packetsLost) {
+			this.name = name;
+			this.packetsReceived = packetsReceived;
+			this.packetsLost = packetsLost;
+		}
+	}
+	
 	private class TrackerConnection {
 		
+		// Larger jumps in packet numbers are a restarted board, not lost packets
+		private static final long MAX_PACKET_GAP = 1000;
+		
 		Map<Integer, IMUTracker> sensors = new HashMap<>();
 		SocketAddress address;
 		public long lastPacket = System.currentTimeMillis();
 		public int lastPingPacketId = -1;
 		public long lastPingPacketTime = 0;
 		public boolean isOwoTrack = false;
+		// Written by the server thread only
+		private long lastPacketNumber = -1;
+		volatile long packetsReceived = 0;
+		volatile long packetsLost = 0;
 		
 		public TrackerConnection(IMUTracker tracker, SocketAddress address) {
 			this.sensors.put(0, tracker);
 			this.address = address;
 		}
+		
+		void countPacket(long packetNumber) {
+			packetsReceived++;
+			long gap = packetNumber - lastPacketNumber;
+			// Packets older than the last one arrived late, they were counted as lost
+			if(lastPacketNumber >= 0 && gap > 1 && gap <= MAX_PACKET_GAP)
+				packetsLost += gap - 1;
+			if(gap > 0 || gap < -MAX_PACKET_GAP)
+				lastPacketNumber = packetNumber;
+		}
 	}
 	
 	static {
@@ -0,0 +1,56 @@
+package dev.slimevr.filtering;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+
+/**
+ * Tests parsing filter configs and the median filter removing spikes
+ */
+public class RotationFiltersTests {
+	
+	private static final long MS = 1000000L;
+	private static final float TOLERANCE = 1e-5f;
+	
+	@Test
+	public void parsesChains() {
+		assertNull(RotationFilters.parse(null));
+		assertNull(RotationFilters.parse(" "));
+		assertNotNull(RotationFilters.parse("median:3, oneeuro:1.0:0.5:1.0, slerp:10"));
+	}
+	
+	@Test
+	public void rejectsInvalidConfigs() {
+		assertThrows(IllegalArgumentException.class, () -> RotationFilters.parse("unknown:1"));
+		assertThrows(IllegalArgumentException.class, () -> RotationFilters.parse("median"));
+		assertThrows(IllegalArgumentException.class, () -> RotationFilters.parse("median:x"));
+		assertThrows(IllegalArgumentException.class, () -> RotationFilters.parse("oneeuro:1.0:0.5"));
+		// Medians of less than 3 samples can't remove a spike
+		for(int size = -1; size < MedianRotationFilter.MIN_SIZE; size++) {
+			String config = "median:" + size;
+			IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> RotationFilters.parse(config));
+			assertTrue(e.getMessage().contains("at least 3"), e.getMessage());
+		}
+	}
+	
+	@Test
+	public void medianRemovesSpike() {
+		RotationFilterChain filter = RotationFilters.parse("median:3");
+		Quaternion steady = new Quaternion().fromAngleAxis(0.2f, Vector3f.UNIT_Y);
+		Quaternion spike = new Quaternion().fromAngleAxis(1.5f, Vector3f.UNIT_X);
+		Quaternion rotation = new Quaternion();
+		for(int i = 0; i < 6; i++) {
+			rotation.set(i == 3 ? spike : steady);
+			filter.filter(rotation, i * 10 * MS);
+			if(i >= 2) {
+				assertEquals(steady.getX(), rotation.getX(), TOLERANCE);
+				assertEquals(steady.getY(), rotation.getY(), TOLERANCE);
+				assertEquals(steady.getZ(), rotation.getZ(), TOLERANCE);
+				assertEquals(steady.getW(), rotation.getW(), TOLERANCE);
+			}
+		}
+	}
+}
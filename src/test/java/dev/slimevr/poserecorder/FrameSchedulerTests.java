@@ -0,0 +1,95 @@
+package dev.slimevr.poserecorder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link FrameScheduler} with a scripted sequence of polls
+ */
+public class FrameSchedulerTests {
+	
+	private static final long MS = 1000000L;
+	private static final long INTERVAL = 10 * MS;
+	// Any System.nanoTime() origin, including negative ones
+	private static final long START = -5000 * MS;
+	
+	/**
+	 * Polls at these times in milliseconds after the first poll, with the
+	 * slots each poll returns
+	 */
+	private static final long[] POLL_TIMES = {0, 5, 12, 19, 20, 55, 60, 69};
+	private static final int[] POLL_SLOTS = {1, 0, 1, 0, 1, 3, 1, 0};
+	// The first slot due on each poll that returned a frame
+	private static final long[] SLOT_TIMES = {0, 0, 10, 10, 20, 30, 60, 60};
+	
+	private static FrameScheduler pollScript() {
+		FrameScheduler scheduler = new FrameScheduler(INTERVAL);
+		for(int i = 0; i < POLL_TIMES.length; i++) {
+			long now = START + POLL_TIMES[i] * MS;
+			assertEquals(POLL_SLOTS[i], scheduler.poll(now), "poll at " + POLL_TIMES[i] + " ms");
+			assertEquals(SLOT_TIMES[i] * MS, scheduler.getSlotTime(), "slot at " + POLL_TIMES[i] + " ms");
+			assertEquals(POLL_TIMES[i] * MS, scheduler.getTime(now));
+		}
+		return scheduler;
+	}
+	
+	@Test
+	public void skipsMissedSlots() {
+		FrameScheduler scheduler = pollScript();
+		// Frames at 0, 12, 20, 55 and 60 ms, the slots at 40 and 50 ms were missed
+		assertEquals(5L, scheduler.getFrames());
+		assertEquals(2L, scheduler.getMissedFrames());
+		// The grid didn't move, the next slot is at 70 ms
+		assertEquals(0, scheduler.poll(START + 69 * MS + MS / 2));
+		assertEquals(1, scheduler.poll(START + 70 * MS));
+		assertEquals(70 * MS, scheduler.getSlotTime());
+	}
+	
+	@Test
+	public void jitterStatistics() {
+		FrameScheduler scheduler = pollScript();
+		// Frames were 0, 2, 0, 5 and 0 ms late, 55 ms is late for the 50 ms slot
+		assertEquals(1.4 * MS, scheduler.getMeanJitter(), 1e-3);
+		assertEquals(Math.sqrt((4d + 25d) / 5d - 1.4 * 1.4) * MS, scheduler.getJitterStdDev(), 1e-3);
+		assertEquals(5 * MS, scheduler.getMaxJitter());
+		
+		Map<String, String> metadata = new HashMap<String, String>();
+		scheduler.putMetadata(metadata);
+		assertEquals(Long.toString(INTERVAL), metadata.get(FrameScheduler.METADATA_INTERVAL));
+		assertEquals("5", metadata.get(FrameScheduler.METADATA_FRAMES));
+		assertEquals("2", metadata.get(FrameScheduler.METADATA_MISSED_FRAMES));
+		assertEquals(Long.toString(14 * MS / 10), metadata.get(FrameScheduler.METADATA_JITTER_MEAN));
+		assertEquals(Long.toString(5 * MS), metadata.get(FrameScheduler.METADATA_JITTER_MAX));
+	}
+	
+	@Test
+	public void resetStartsNewGrid() {
+		FrameScheduler scheduler = pollScript();
+		scheduler.reset();
+		assertEquals(0L, scheduler.getFrames());
+		assertEquals(0L, scheduler.getMissedFrames());
+		assertEquals(0d, scheduler.getMeanJitter());
+		assertEquals(0d, scheduler.getJitterStdDev());
+		assertEquals(0L, scheduler.getMaxJitter());
+		assertEquals(0L, scheduler.getTime(START));
+		
+		// The first poll after a reset is a frame and starts the grid there
+		long restart = START + 1003 * MS;
+		assertEquals(1, scheduler.poll(restart));
+		assertEquals(0L, scheduler.getSlotTime());
+		assertEquals(0, scheduler.poll(restart + INTERVAL - 1));
+		assertEquals(1, scheduler.poll(restart + INTERVAL));
+		assertEquals(0L, scheduler.getMissedFrames());
+		assertEquals(0d, scheduler.getMeanJitter());
+	}
+	
+	@Test
+	public void rejectsInvalidInterval() {
+		assertThrows(IllegalArgumentException.class, () -> new FrameScheduler(0));
+		assertThrows(IllegalArgumentException.class, () -> new FrameScheduler(INTERVAL).setInterval(-1));
+	}
+}
@@ -0,0 +1,218 @@
+package dev.slimevr.poserecorder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import org.junit.jupiter.api.Test;
+
+import io.eiren.vr.trackers.TrackerPosition;
+
+/**
+ * Tests compressed recordings, see {@link PoseFrameCodec}
+ */
+public class PoseFrameCodecTests {
+	
+	private static final float ROTATION_TOLERANCE = 1f / 65536f;
+	private static final float POSITION_TOLERANCE = 1e-4f;
+	// More than two blocks, the short tracker ends in the middle of the second
+	private static final int FRAME_COUNT = PoseFrameCodec.BLOCK_FRAMES * 2 + 100;
+	private static final int SHORT_FRAME_COUNT = PoseFrameCodec.BLOCK_FRAMES + 44;
+	
+	private final Random random = new Random(42);
+	
+	/**
+	 * Creates frames of a smooth motion with noise and timestamps, the last
+	 * tracker has fewer frames than the others
+	 */
+	private PoseFrames createFrames(int trackerCount) {
+		PoseFrames frames = PoseFrameTestData.createFrames(random, trackerCount, FRAME_COUNT, SHORT_FRAME_COUNT, true, true);
+		for(int i = 0; i < FRAME_COUNT; i++) {
+			frames.setFrameTime(i, i * 16666667L + random.nextInt(100000));
+		}
+		return frames;
+	}
+	
+	private static TrackerPosition[][] getDesignationTables(int trackerCount) {
+		TrackerPosition[][] designationTables = new TrackerPosition[trackerCount][];
+		for(int t = 0; t < trackerCount; t++) {
+			designationTables[t] = PoseFrameTestData.DESIGNATIONS;
+		}
+		return designationTables;
+	}
+	
+	private static void assertFrameEquals(TrackerFrame expected, TrackerFrame actual, String where) {
+		if(expected == null) {
+			assertNull(actual, where);
+			return;
+		}
+		assertNotNull(actual, where);
+		assertEquals(expected.getDataFlags(), actual.getDataFlags(), where);
+		assertEquals(expected.getBodyPosition(), actual.getBodyPosition(), where);
+		if(expected.hasData(TrackerFrameData.ROTATION)) {
+			assertEquals(expected.rotation.getX(), actual.rotation.getX(), ROTATION_TOLERANCE, where);
+			assertEquals(expected.rotation.getY(), actual.rotation.getY(), ROTATION_TOLERANCE, where);
+			assertEquals(expected.rotation.getZ(), actual.rotation.getZ(), ROTATION_TOLERANCE, where);
+			assertEquals(expected.rotation.getW(), actual.rotation.getW(), ROTATION_TOLERANCE, where);
+		}
+		if(expected.hasData(TrackerFrameData.POSITION)) {
+			assertEquals(expected.position.getX(), actual.position.getX(), POSITION_TOLERANCE, where);
+			assertEquals(expected.position.getY(), actual.position.getY(), POSITION_TOLERANCE, where);
+			assertEquals(expected.position.getZ(), actual.position.getZ(), POSITION_TOLERANCE, where);
+		}
+	}
+	
+	private static File writeCompressed(PoseFrames frames) throws IOException {
+		File file = File.createTempFile("PoseFrameCodecTests", ".pfr");
+		file.deleteOnExit();
+		assertTrue(PoseFrameIO.writeToFile(file, frames, true));
+		return file;
+	}
+	
+	@Test
+	public void fileRoundTrip() throws IOException {
+		PoseFrames frames = createFrames(4);
+		PoseFrames actual = PoseFrameIO.readFromFile(writeCompressed(frames));
+		assertNotNull(actual);
+		assertEquals(frames.getTrackerCount(), actual.getTrackerCount());
+		assertEquals(FRAME_COUNT, actual.getMaxFrameCount());
+		
+		TrackerFrame expectedView = TrackerFrame.createView();
+		TrackerFrame view = TrackerFrame.createView();
+		for(int t = 0; t < frames.getTrackerCount(); t++) {
+			TrackerFrameSource expectedTracker = frames.getTrackerFrames(t);
+			TrackerFrameSource actualTracker = actual.getTrackerFrames(t);
+			assertEquals(expectedTracker.getName(), actualTracker.getName());
+			assertEquals(expectedTracker.getFrameCount(), actualTracker.getFrameCount());
+			for(int i = 0; i < expectedTracker.getFrameCount(); i++) {
+				assertFrameEquals(expectedTracker.getFrame(i, expectedView), actualTracker.getFrame(i, view), expectedTracker.getName() + " frame " + i);
+			}
+		}
+		for(int i = 0; i < FRAME_COUNT; i++) {
+			assertEquals(frames.getFrameTime(i), actual.getFrameTime(i));
+		}
+	}
+	
+	@Test
+	public void blockRoundTrip() throws IOException {
+		PoseFrames frames = createFrames(3);
+		String[] names = new String[frames.getTrackerCount()];
+		int[] frameCounts = new int[frames.getTrackerCount()];
+		for(int t = 0; t < names.length; t++) {
+			names[t] = frames.getTrackerFrames(t).getName();
+			frameCounts[t] = frames.getTrackerFrames(t).getFrameCount();
+		}
+		TrackerPosition[][] designationTables = getDesignationTables(names.length);
+		PoseFrameCodec.BlockBuffer raw = new PoseFrameCodec.BlockBuffer(16);
+		PoseFrameCodec.BlockBuffer compressed = new PoseFrameCodec.BlockBuffer(16);
+		Deflater deflater = new Deflater();
+		try {
+			// Every block, the last one is partial and the short tracker ends in the second
+			for(int start = 0; start < FRAME_COUNT; start += PoseFrameCodec.BLOCK_FRAMES) {
+				int count = Math.min(PoseFrameCodec.BLOCK_FRAMES, FRAME_COUNT - start);
+				PoseFrameCodec.encodeBlock(frames, start, count, designationTables, deflater, raw, compressed);
+				TrackerFrameColumns[] trackers = PoseFrameCodec.decodeBlock(compressed.bytes, compressed.size, raw.size, start, count, names, frameCounts, designationTables);
+				assertEquals(names.length, trackers.length);
+				for(int t = 0; t < names.length; t++) {
+					assertEquals(Math.max(0, Math.min(count, frameCounts[t] - start)), trackers[t].getFrameCount());
+					for(int i = 0; i < trackers[t].getFrameCount(); i++) {
+						assertFrameEquals(frames.getTrackerFrames(t).getFrame(start + i, TrackerFrame.createView()), trackers[t].getFrame(i, TrackerFrame.createView()), names[t] + " frame " + (start + i));
+					}
+				}
+			}
+		} finally {
+			deflater.end();
+		}
+	}
+	
+	@Test
+	public void corruptedBlockThrowsIOException() throws IOException {
+		PoseFrames frames = createFrames(3);
+		String[] names = {"Tracker 0", "Tracker 1", "Tracker 2"};
+		int[] frameCounts = {FRAME_COUNT, FRAME_COUNT, SHORT_FRAME_COUNT};
+		TrackerPosition[][] designationTables = getDesignationTables(names.length);
+		PoseFrameCodec.BlockBuffer raw = new PoseFrameCodec.BlockBuffer(16);
+		PoseFrameCodec.BlockBuffer compressed = new PoseFrameCodec.BlockBuffer(16);
+		Deflater deflater = new Deflater();
+		try {
+			int count = PoseFrameCodec.BLOCK_FRAMES;
+			PoseFrameCodec.encodeBlock(frames, 0, count, designationTables, deflater, raw, compressed);
+			byte[] valid = Arrays.copyOf(compressed.bytes, compressed.size);
+			int rawSize = raw.size;
+			
+			// Flipped bits anywhere in the deflated block
+			for(int n = 0; n < 200; n++) {
+				byte[] corrupted = valid.clone();
+				corrupted[random.nextInt(corrupted.length)] ^= 1 << random.nextInt(8);
+				assertThrows(IOException.class, () -> PoseFrameCodec.decodeBlock(corrupted, corrupted.length, rawSize, 0, count, names, frameCounts, designationTables));
+			}
+			// Truncated block and sizes that don't match it
+			assertThrows(IOException.class, () -> PoseFrameCodec.decodeBlock(valid, valid.length / 2, rawSize, 0, count, names, frameCounts, designationTables));
+			assertThrows(IOException.class, () -> PoseFrameCodec.decodeBlock(valid, valid.length, rawSize + 1, 0, count, names, frameCounts, designationTables));
+			assertThrows(IOException.class, () -> PoseFrameCodec.decodeBlock(valid, valid.length, rawSize - 1, 0, count, names, frameCounts, designationTables));
+			assertThrows(IOException.class, () -> PoseFrameCodec.decodeBlock(valid, valid.length, -1, 0, count, names, frameCounts, designationTables));
+			assertThrows(IOException.class, () -> PoseFrameCodec.decodeBlock(valid, valid.length + 1, rawSize, 0, count, names, frameCounts, designationTables));
+			assertThrows(IOException.class, () -> PoseFrameCodec.decodeBlock(valid, valid.length, rawSize, 0, -1, names, frameCounts, designationTables));
+			assertThrows(IOException.class, () -> PoseFrameCodec.decodeBlock(valid, valid.length, rawSize, 0, count + 1, names, frameCounts, designationTables));
+			
+			// A valid deflated block with a cut off or garbage frame encoding
+			PoseFrameCodec.BlockBuffer garbage = new PoseFrameCodec.BlockBuffer(rawSize);
+			for(int size : new int[] {rawSize / 3, rawSize - 1}) {
+				garbage.clear();
+				for(int i = 0; i < size; i++) {
+					garbage.writeByte(i < rawSize / 3 ? raw.bytes[i] : 0xFF);
+				}
+				PoseFrameCodec.BlockBuffer deflated = new PoseFrameCodec.BlockBuffer(16);
+				deflater.reset();
+				deflater.setInput(garbage.bytes, 0, garbage.size);
+				deflater.finish();
+				while(!deflater.finished()) {
+					deflated.ensureCapacity(deflated.size + 4096);
+					deflated.size += deflater.deflate(deflated.bytes, deflated.size, deflated.bytes.length - deflated.size);
+				}
+				int garbageSize = garbage.size;
+				assertThrows(IOException.class, () -> PoseFrameCodec.decodeBlock(deflated.bytes, deflated.size, garbageSize, 0, count, names, frameCounts, designationTables));
+			}
+		} finally {
+			deflater.end();
+		}
+	}
+	
+	@Test
+	public void corruptedBlockHeaderThrowsIOException() throws IOException {
+		File file = writeCompressed(createFrames(2));
+		// The frame data follows the header, the first block follows the timestamps
+		long firstBlock;
+		try(RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			raf.seek(8);
+			long dataOffset = raf.readLong();
+			raf.seek(dataOffset + 4);
+			firstBlock = dataOffset + 8 + raf.readInt();
+		}
+		for(int field = 0; field < 3; field++) {
+			for(int value : new int[] {-1, Integer.MAX_VALUE}) {
+				File corrupted = File.createTempFile("PoseFrameCodecTests", ".pfr");
+				corrupted.deleteOnExit();
+				Files.copy(file.toPath(), corrupted.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				try(RandomAccessFile raf = new RandomAccessFile(corrupted, "rw")) {
+					raf.seek(firstBlock + field * 4);
+					raf.writeInt(value);
+				}
+				assertThrows(IOException.class, () -> PoseFrameIO.mapFile(corrupted));
+			}
+		}
+		
+		// Cut off in the middle of the last block
+		try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(raf.length() - 10);
+		}
+		assertThrows(IOException.class, () -> PoseFrameIO.mapFile(file));
+	}
+}
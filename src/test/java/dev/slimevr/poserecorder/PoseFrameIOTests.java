@@ -0,0 +1,202 @@
+package dev.slimevr.poserecorder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.Test;
+
+import io.eiren.util.collections.FastList;
+import io.eiren.vr.trackers.Tracker;
+
+/**
+ * Tests reading and writing version 2 recordings with {@link PoseFrameIO}
+ */
+public class PoseFrameIOTests {
+	
+	private static final long FRAME_INTERVAL_NS = 11111111L;
+	
+	private final Random random = new Random(42);
+	
+	/**
+	 * Creates random frames
+	 * @param shortTracker if true the last tracker has half the frames
+	 */
+	private PoseFrames createFrames(int trackerCount, int frameCount, boolean missingFrames, boolean shortTracker) {
+		return PoseFrameTestData.createFrames(random, trackerCount, frameCount, shortTracker ? frameCount / 2 : frameCount, missingFrames, false);
+	}
+	
+	private static File createTempFile() throws IOException {
+		File file = File.createTempFile("PoseFrameIOTests", ".pfr");
+		file.deleteOnExit();
+		return file;
+	}
+	
+	private static void writeV1(File file, PoseFrames frames) throws IOException {
+		try(DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			assertTrue(PoseFrameIO.writeFrames(outputStream, frames));
+		}
+	}
+	
+	/**
+	 * Writes frames grouped by frame the way {@link PoseRecorder} does, by
+	 * stepping the trackers through the frames
+	 */
+	private static PoseFrameStreamWriter writeFramesLayout(File file, PoseFrames frames) throws IOException {
+		List<Tracker> trackers = new FastList<Tracker>(frames.getTrackerCount());
+		for(int t = 0; t < frames.getTrackerCount(); t++) {
+			trackers.add(frames.getTrackerFrames(t).toTracker());
+		}
+		PoseFrameStreamWriter writer = new PoseFrameStreamWriter(file, trackers, frames.getMaxFrameCount(), PoseFrameStreamWriter.DEFAULT_FLUSH_INTERVAL);
+		for(int i = 0; i < frames.getMaxFrameCount(); i++) {
+			for(Tracker tracker : trackers) {
+				((PoseFrameTracker) tracker).setCursor(i);
+			}
+			assertTrue(writer.addFrame(i * FRAME_INTERVAL_NS));
+		}
+		return writer;
+	}
+	
+	private static void assertFramesEqual(PoseFrames expected, PoseFrames actual, int frameCount) {
+		assertNotNull(actual);
+		assertEquals(expected.getTrackerCount(), actual.getTrackerCount());
+		TrackerFrame expectedView = TrackerFrame.createView();
+		TrackerFrame actualView = TrackerFrame.createView();
+		for(int t = 0; t < expected.getTrackerCount(); t++) {
+			TrackerFrameSource expectedTracker = expected.getTrackerFrames(t);
+			TrackerFrameSource actualTracker = actual.getTrackerFrames(t);
+			assertEquals(expectedTracker.getName(), actualTracker.getName());
+			assertEquals(Math.min(expectedTracker.getFrameCount(), frameCount), actualTracker.getFrameCount());
+			for(int i = 0; i < actualTracker.getFrameCount(); i++) {
+				TrackerFrame expectedFrame = expectedTracker.getFrame(i, expectedView);
+				TrackerFrame actualFrame = actualTracker.getFrame(i, actualView);
+				String where = expectedTracker.getName() + " frame " + i;
+				if(expectedFrame == null) {
+					assertNull(actualFrame, where);
+					continue;
+				}
+				assertNotNull(actualFrame, where);
+				assertEquals(expectedFrame.getDataFlags(), actualFrame.getDataFlags(), where);
+				assertEquals(expectedFrame.getBodyPosition(), actualFrame.getBodyPosition(), where);
+				if(expectedFrame.hasData(TrackerFrameData.ROTATION)) {
+					assertEquals(expectedFrame.rotation, actualFrame.rotation, where);
+				}
+				if(expectedFrame.hasData(TrackerFrameData.POSITION)) {
+					assertEquals(expectedFrame.position, actualFrame.position, where);
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void convertV1ToTrackersLayout() throws IOException {
+		PoseFrames frames = createFrames(4, 300, false, true);
+		File v1File = createTempFile();
+		File v2File = createTempFile();
+		writeV1(v1File, frames);
+		assertFalse(PoseFrameIO.isV2File(v1File));
+		
+		assertTrue(PoseFrameIO.convertToV2(v1File, v2File));
+		assertTrue(PoseFrameIO.isV2File(v2File));
+		assertFramesEqual(frames, PoseFrameIO.readFromFile(v2File), Integer.MAX_VALUE);
+		assertFalse(PoseFrameIO.readFromFile(v2File).hasFrameTimes());
+	}
+	
+	@Test
+	public void convertV1ToFramesLayout() throws IOException, InterruptedException, ExecutionException {
+		PoseFrames frames = createFrames(4, 300, false, false);
+		File v1File = createTempFile();
+		File v2File = createTempFile();
+		writeV1(v1File, frames);
+		
+		PoseFrames v1Frames = PoseFrameIO.readFromFile(v1File);
+		assertFramesEqual(frames, v1Frames, Integer.MAX_VALUE);
+		PoseFrameStreamWriter writer = writeFramesLayout(v2File, v1Frames);
+		assertEquals(v2File, writer.close().get());
+		assertEquals(300L, writer.getWrittenFrames());
+		assertEquals(0L, writer.getDroppedFrames());
+		
+		PoseFrames v2Frames = PoseFrameIO.readFromFile(v2File);
+		assertFramesEqual(frames, v2Frames, Integer.MAX_VALUE);
+		assertTrue(v2Frames.hasFrameTimes());
+		for(int i = 0; i < 300; i++) {
+			assertEquals(i * FRAME_INTERVAL_NS, v2Frames.getFrameTime(i));
+		}
+	}
+	
+	@Test
+	public void metadataAndFrameTimesRoundTrip() throws IOException {
+		PoseFrames frames = createFrames(3, 100, true, true);
+		for(int i = 0; i < 100; i++) {
+			frames.setFrameTime(i, i * FRAME_INTERVAL_NS + random.nextInt(1000000));
+		}
+		frames.getMetadata().put("server.version", "0.0.0");
+		frames.getMetadata().put("frames.interval", "11.1");
+		File file = createTempFile();
+		assertTrue(PoseFrameIO.writeToFile(file, frames));
+		
+		// Both the mapped and the stream reader
+		PoseFrames mapped = PoseFrameIO.readFromFile(file);
+		PoseFrames read;
+		try(DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			read = PoseFrameIO.readFrames(inputStream);
+		}
+		for(PoseFrames actual : new PoseFrames[] {mapped, read}) {
+			assertFramesEqual(frames, actual, Integer.MAX_VALUE);
+			assertEquals(frames.getMetadata(), actual.getMetadata());
+			assertTrue(actual.hasFrameTimes());
+			for(int i = 0; i < 100; i++) {
+				assertEquals(frames.getFrameTime(i), actual.getFrameTime(i));
+			}
+		}
+	}
+	
+	@Test
+	public void metadataAddedWhenClosingFramesLayout() throws IOException, InterruptedException, ExecutionException {
+		PoseFrames frames = createFrames(2, 50, true, false);
+		File file = createTempFile();
+		PoseFrameStreamWriter writer = writeFramesLayout(file, frames);
+		Map<String, String> metadata = new LinkedHashMap<String, String>();
+		metadata.put("frames.dropped", "0");
+		writer.close(metadata).get();
+		
+		PoseFrames actual = PoseFrameIO.readFromFile(file);
+		assertFramesEqual(frames, actual, Integer.MAX_VALUE);
+		assertEquals(metadata, actual.getMetadata());
+	}
+	
+	@Test
+	public void truncatedFramesLayoutReadsWholeFrames() throws IOException, InterruptedException, ExecutionException {
+		PoseFrames frames = createFrames(3, 40, true, false);
+		File file = createTempFile();
+		writeFramesLayout(file, frames).close().get();
+		
+		// The timestamp record and one record per tracker
+		int frameSize = (frames.getTrackerCount() + 1) * PoseFrameIO.V2_RECORD_SIZE;
+		long dataOffset = file.length() - 40L * frameSize;
+		try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			// A crash in the middle of writing frame 25
+			raf.setLength(dataOffset + 25L * frameSize + frameSize / 2);
+		}
+		
+		PoseFrames actual = PoseFrameIO.readFromFile(file);
+		assertEquals(25, actual.getMaxFrameCount());
+		assertFramesEqual(frames, actual, 25);
+		for(int i = 0; i < 25; i++) {
+			assertEquals(i * FRAME_INTERVAL_NS, actual.getFrameTime(i));
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package dev.slimevr.poserecorder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+
+import io.eiren.util.collections.FastList;
+import io.eiren.vr.trackers.TrackerPosition;
+
+/**
+ * Tests {@link PoseFrameResampler} on frames recorded at known times
+ */
+public class PoseFrameResamplerTests {
+	
+	private static final long INTERVAL = 10;
+	// Resampled frames at 0 to 50, 20 and 30 fall between the recorded frames
+	private static final long[] FRAME_TIMES = {0, 10, 40, 50};
+	private static final float[] ANGLES = {0f, 0.3f, 0.9f, 1.2f};
+	private static final float TOLERANCE = 1e-5f;
+	
+	private static Quaternion rotation(float angle) {
+		return new Quaternion().fromAngleAxis(angle, Vector3f.UNIT_Y);
+	}
+	
+	private static Vector3f position(float angle) {
+		return new Vector3f(angle, 1f, -angle * 2f);
+	}
+	
+	private static TrackerFrame frame(int i) {
+		return new TrackerFrame(TrackerPosition.WAIST, rotation(ANGLES[i]), position(ANGLES[i]));
+	}
+	
+	/**
+	 * @param missing a frame that is missing, or -1
+	 * @param rotationOnly a frame without a position, or -1
+	 */
+	private static PoseFrameTracker createTracker(String name, int missing, int rotationOnly) {
+		PoseFrameTracker tracker = new PoseFrameTracker(name, FRAME_TIMES.length);
+		for(int i = 0; i < FRAME_TIMES.length; i++) {
+			if(i == missing) {
+				tracker.addFrame(null);
+			} else if(i == rotationOnly) {
+				tracker.addFrame(new TrackerFrame(TrackerPosition.WAIST, rotation(ANGLES[i]), null));
+			} else {
+				tracker.addFrame(frame(i));
+			}
+		}
+		return tracker;
+	}
+	
+	private static PoseFrames resample(PoseFrameTracker tracker) {
+		FastList<PoseFrameTracker> trackers = new FastList<PoseFrameTracker>(1);
+		trackers.add(tracker);
+		PoseFrames frames = new PoseFrames(trackers);
+		for(int i = 0; i < FRAME_TIMES.length; i++) {
+			frames.setFrameTime(i, FRAME_TIMES[i]);
+		}
+		PoseFrames resampled = PoseFrameResampler.resample(frames, INTERVAL);
+		assertEquals(6, resampled.getMaxFrameCount());
+		return resampled;
+	}
+	
+	/**
+	 * The rotation slerped between two frames, slerp of close rotations is
+	 * approximated so the result isn't exactly the rotation at the angle
+	 */
+	private static Quaternion slerp(int from, int to, float factor) {
+		return new Quaternion().slerp(rotation(ANGLES[from]), rotation(ANGLES[to]), factor);
+	}
+	
+	private static void assertRotation(float expectedAngle, TrackerFrame frame) {
+		assertRotation(rotation(expectedAngle), frame);
+	}
+	
+	private static void assertRotation(Quaternion expected, TrackerFrame frame) {
+		assertTrue(frame.hasData(TrackerFrameData.ROTATION));
+		assertEquals(expected.getX(), frame.rotation.getX(), TOLERANCE);
+		assertEquals(expected.getY(), frame.rotation.getY(), TOLERANCE);
+		assertEquals(expected.getZ(), frame.rotation.getZ(), TOLERANCE);
+		assertEquals(expected.getW(), frame.rotation.getW(), TOLERANCE);
+	}
+	
+	private static void assertPosition(Vector3f expected, TrackerFrame frame) {
+		assertTrue(frame.hasData(TrackerFrameData.POSITION));
+		assertEquals(expected.getX(), frame.position.getX(), TOLERANCE);
+		assertEquals(expected.getY(), frame.position.getY(), TOLERANCE);
+		assertEquals(expected.getZ(), frame.position.getZ(), TOLERANCE);
+	}
+	
+	private static float lerp(float a, float b, float factor) {
+		return a + (b - a) * factor;
+	}
+	
+	@Test
+	public void interpolatesOnGrid() {
+		PoseFrames resampled = resample(createTracker("Tracker", -1, -1));
+		TrackerFrameSource tracker = resampled.getTrackerFrames(0);
+		TrackerFrame view = TrackerFrame.createView();
+		for(int i = 0; i < 6; i++) {
+			assertEquals(i * INTERVAL, resampled.getFrameTime(i));
+		}
+		
+		// Frames on the grid are kept as they are
+		int[] exact = {0, 1, -1, -1, 2, 3};
+		for(int i = 0; i < exact.length; i++) {
+			if(exact[i] < 0) {
+				continue;
+			}
+			TrackerFrame frame = tracker.getFrame(i, view);
+			assertEquals(TrackerPosition.WAIST, frame.getBodyPosition());
+			assertRotation(ANGLES[exact[i]], frame);
+			assertPosition(position(ANGLES[exact[i]]), frame);
+		}
+		
+		// 20 and 30 are a third and two thirds of the way from 10 to 40
+		for(int i = 2; i <= 3; i++) {
+			float factor = (i - 1) / 3f;
+			float angle = lerp(ANGLES[1], ANGLES[2], factor);
+			TrackerFrame frame = tracker.getFrame(i, view);
+			assertRotation(slerp(1, 2, factor), frame);
+			assertPosition(position(angle), frame);
+		}
+		assertEquals(Long.toString(INTERVAL), resampled.getMetadata().get(PoseFrameResampler.METADATA_RESAMPLED_INTERVAL));
+	}
+	
+	@Test
+	public void missingFrameUsesNearest() {
+		// The frame at 40 is missing
+		TrackerFrameSource tracker = resample(createTracker("Tracker", 2, -1)).getTrackerFrames(0);
+		TrackerFrame view = TrackerFrame.createView();
+		// 20 and 30 only have the frame at 10
+		for(int i = 2; i <= 3; i++) {
+			TrackerFrame frame = tracker.getFrame(i, view);
+			assertRotation(ANGLES[1], frame);
+			assertPosition(position(ANGLES[1]), frame);
+		}
+		// 40 has the frame at 50 after it
+		assertRotation(ANGLES[3], tracker.getFrame(4, view));
+		assertPosition(position(ANGLES[3]), tracker.getFrame(4, view));
+	}
+	
+	@Test
+	public void missingPositionUsesNearest() {
+		// The frame at 40 has no position
+		TrackerFrameSource tracker = resample(createTracker("Tracker", -1, 2)).getTrackerFrames(0);
+		TrackerFrame view = TrackerFrame.createView();
+		
+		// Rotations are still interpolated, positions come from the nearest frame
+		TrackerFrame frame = tracker.getFrame(2, view);
+		assertRotation(slerp(1, 2, 1f / 3f), frame);
+		assertPosition(position(ANGLES[1]), frame);
+		
+		frame = tracker.getFrame(3, view);
+		assertRotation(slerp(1, 2, 2f / 3f), frame);
+		assertFalse(frame.hasData(TrackerFrameData.POSITION));
+	}
+	
+	@Test
+	public void framesWithoutTimesAreUnchanged() {
+		FastList<PoseFrameTracker> trackers = new FastList<PoseFrameTracker>(1);
+		trackers.add(createTracker("Tracker", -1, -1));
+		PoseFrames frames = new PoseFrames(trackers);
+		assertSame(frames, PoseFrameResampler.resample(frames, INTERVAL));
+		assertThrows(IllegalArgumentException.class, () -> PoseFrameResampler.resample(frames, 0));
+	}
+}
@@ -0,0 +1,61 @@
+package dev.slimevr.poserecorder;
+
+import java.util.Random;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+
+import io.eiren.util.collections.FastList;
+import io.eiren.vr.trackers.TrackerPosition;
+
+/**
+ * Recordings shared by the tests of the recording formats
+ */
+final class PoseFrameTestData {
+	
+	static final TrackerPosition[] DESIGNATIONS = {TrackerPosition.HMD, TrackerPosition.CHEST, TrackerPosition.WAIST, TrackerPosition.LEFT_ANKLE, TrackerPosition.RIGHT_ANKLE};
+	
+	private PoseFrameTestData() {
+		// Do not allow instantiating
+	}
+	
+	/**
+	 * Creates frames with some of them without a rotation, a position or a
+	 * designation, and trackers switching designations while recording
+	 * @param lastTrackerFrameCount frames of the last tracker, which may have
+	 * fewer than the others
+	 * @param missingFrames if true some frames are missing, version 1 reads
+	 * them back as frames without data
+	 * @param smooth if true the trackers follow a smooth motion with a little
+	 * noise like real recordings, which compress well, otherwise every value
+	 * is random
+	 */
+	static PoseFrames createFrames(Random random, int trackerCount, int frameCount, int lastTrackerFrameCount, boolean missingFrames, boolean smooth) {
+		FastList<PoseFrameTracker> trackers = new FastList<PoseFrameTracker>(trackerCount);
+		for(int t = 0; t < trackerCount; t++) {
+			int trackerFrameCount = t == trackerCount - 1 ? lastTrackerFrameCount : frameCount;
+			PoseFrameTracker tracker = new PoseFrameTracker("Tracker " + t, trackerFrameCount);
+			for(int i = 0; i < trackerFrameCount; i++) {
+				int kind = random.nextInt(10);
+				if(kind == 0 && missingFrames) {
+					tracker.addFrame(null);
+					continue;
+				}
+				Quaternion rotation = null;
+				Vector3f position = null;
+				if(smooth) {
+					float angle = i * 0.01f + t;
+					rotation = new Quaternion().fromAngles(angle + random.nextFloat() * 0.01f, angle * 2f, random.nextFloat() - 0.5f);
+					position = new Vector3f((float) Math.sin(angle), 1f + random.nextFloat() * 0.01f, -t * 0.3f);
+				} else {
+					rotation = new Quaternion(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f).normalizeLocal();
+					position = new Vector3f(random.nextFloat() * 2f - 1f, random.nextFloat() * 2f, random.nextFloat() * 2f - 1f);
+				}
+				TrackerPosition designation = kind == 3 ? null : DESIGNATIONS[(t + i / 50) % DESIGNATIONS.length];
+				tracker.addFrame(new TrackerFrame(designation, kind == 1 ? null : rotation, kind == 2 ? null : position));
+			}
+			trackers.add(tracker);
+		}
+		return new PoseFrames(trackers);
+	}
+}
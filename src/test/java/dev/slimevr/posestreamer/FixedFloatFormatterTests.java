@@ -0,0 +1,86 @@
+package dev.slimevr.posestreamer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that {@link FixedFloatFormatter} writes the values
+ * {@link Float#toString(float)} does, up to its precision
+ */
+public class FixedFloatFormatterTests {
+	
+	// Half of the last of the default 6 decimals
+	private static final double TOLERANCE = 5e-7;
+	
+	private final FixedFloatFormatter formatter = new FixedFloatFormatter();
+	
+	private String format(float value) {
+		return new String(formatter.getBuffer(), 0, formatter.format(value));
+	}
+	
+	private void assertFormatted(float value) {
+		String formatted = format(value);
+		if(!(Math.abs((double) value) < 1e12)) {
+			// NaN, infinity and huge values are written by Float.toString
+			assertEquals(Float.toString(value), formatted);
+			return;
+		}
+		// Rounded to the decimals, off by at most half of the last one, and
+		// by the rounding of the difference of the doubles
+		double expected = Float.parseFloat(Float.toString(value));
+		assertEquals(expected, Double.parseDouble(formatted), TOLERANCE + Math.ulp(expected), Float.toString(value) + " formatted as " + formatted);
+	}
+	
+	@Test
+	public void randomValues() {
+		Random random = new Random(42);
+		// BVH angles and positions, small values and every magnitude up to the fixed limit
+		float[] ranges = {1f, 360f, 400f, 1e4f, 1e7f, 1e12f};
+		for(int i = 0; i < 100000; i++) {
+			float range = ranges[i % ranges.length];
+			assertFormatted((random.nextFloat() - 0.5f) * 2f * range);
+		}
+		for(int i = 0; i < 100000; i++) {
+			assertFormatted(Float.intBitsToFloat(random.nextInt()));
+		}
+	}
+	
+	@Test
+	public void valuesNearFixedLimit() {
+		float limit = 1e12f;
+		float value = limit;
+		for(int i = 0; i < 100; i++) {
+			assertFormatted(value);
+			assertFormatted(-value);
+			value = Math.nextDown(value);
+		}
+		value = limit;
+		for(int i = 0; i < 100; i++) {
+			assertFormatted(value);
+			assertFormatted(-value);
+			value = Math.nextUp(value);
+		}
+		// 1e12f is just below the limit and is written whole, the next float as an exponent
+		assertEquals("999999995904.0", format(limit));
+		assertEquals(Float.toString(Math.nextUp(limit)), format(Math.nextUp(limit)));
+	}
+	
+	@Test
+	public void specialValues() {
+		assertEquals("0.0", format(0f));
+		// Negative zero and values rounding to it are written without the sign
+		assertEquals("0.0", format(-0f));
+		assertEquals("0.0", format(-1e-9f));
+		assertEquals("-1.0", format(-1f));
+		assertEquals("0.5", format(0.5f));
+		assertEquals("0.000001", format(1e-6f));
+		assertEquals("NaN", format(Float.NaN));
+		assertEquals("Infinity", format(Float.POSITIVE_INFINITY));
+		assertEquals("-Infinity", format(Float.NEGATIVE_INFINITY));
+		assertEquals(Float.toString(Float.MAX_VALUE), format(Float.MAX_VALUE));
+		assertEquals(Float.toString(-Float.MAX_VALUE), format(-Float.MAX_VALUE));
+	}
+}
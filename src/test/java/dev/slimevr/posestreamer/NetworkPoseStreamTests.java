@@ -0,0 +1,194 @@
+package dev.slimevr.posestreamer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.jme3.math.Quaternion;
+
+import io.eiren.vr.processor.HumanSkeleton;
+import io.eiren.vr.processor.SkeletonConfigValue;
+import io.eiren.vr.processor.TransformNode;
+
+/**
+ * Tests {@link NetworkPoseStream} and {@link NetworkPoseReceiver} over
+ * loopback
+ */
+public class NetworkPoseStreamTests {
+	
+	private static final long FRAME_INTERVAL_NS = 16666667L;
+	private static final int FRAMES = 20;
+	
+	private final TransformNode[] nodes;
+	private final HumanSkeleton skeleton;
+	private final MotionEncoder expected = new MotionEncoder(TransformNodeWrapper::wrapFullHierarchy);
+	private final Random random = new Random(42);
+	
+	public NetworkPoseStreamTests() {
+		TransformNode hip = new TransformNode("Hip", false);
+		TransformNode chest = new TransformNode("Chest", false);
+		TransformNode head = new TransformNode("Head", false);
+		TransformNode leftKnee = new TransformNode("Left knee", false);
+		TransformNode leftFoot = new TransformNode("Left foot", false);
+		TransformNode rightKnee = new TransformNode("Right knee", false);
+		TransformNode rightFoot = new TransformNode("Right foot", false);
+		hip.attachChild(chest);
+		chest.attachChild(head);
+		hip.attachChild(leftKnee);
+		leftKnee.attachChild(leftFoot);
+		hip.attachChild(rightKnee);
+		rightKnee.attachChild(rightFoot);
+		chest.localTransform.setTranslation(0f, 0.3f, 0f);
+		head.localTransform.setTranslation(0f, 0.2f, 0f);
+		leftKnee.localTransform.setTranslation(0.1f, -0.5f, 0f);
+		leftFoot.localTransform.setTranslation(0f, -0.45f, 0f);
+		rightKnee.localTransform.setTranslation(-0.1f, -0.5f, 0f);
+		rightFoot.localTransform.setTranslation(0f, -0.45f, 0f);
+		nodes = new TransformNode[] {hip, chest, head, leftKnee, leftFoot, rightKnee, rightFoot};
+		
+		skeleton = new HumanSkeleton() {
+			@Override
+			public void updatePose() {
+				hip.update();
+			}
+			
+			@Override
+			public TransformNode getRootNode() {
+				return hip;
+			}
+			
+			@Override
+			public Map<String, Float> getSkeletonConfig() {
+				return null;
+			}
+			
+			@Override
+			public void setSkeletonConfig(String key, float newLength) {
+			}
+			
+			@Override
+			public float getSkeletonConfig(SkeletonConfigValue config) {
+				return 0f;
+			}
+			
+			@Override
+			public void setSkeletonConfig(SkeletonConfigValue config, float newLength) {
+			}
+			
+			@Override
+			public void resetSkeletonConfig(String joint) {
+			}
+			
+			@Override
+			public void resetTrackersFull() {
+			}
+			
+			@Override
+			public void resetTrackersYaw() {
+			}
+		};
+	}
+	
+	// Moves the skeleton to a random pose and returns the values it encodes to
+	private float[] nextPose() {
+		for(TransformNode node : nodes) {
+			node.localTransform.setRotation(new Quaternion().fromAngles(random.nextFloat() - 0.5f, random.nextFloat() * 6f - 3f, random.nextFloat() - 0.5f));
+		}
+		nodes[0].localTransform.setTranslation(random.nextFloat(), 1f, random.nextFloat());
+		skeleton.updatePose();
+		
+		int count = expected.computeFrame(skeleton);
+		float[] values = new float[count];
+		System.arraycopy(expected.getValues(), 0, values, 0, count);
+		return values;
+	}
+	
+	private static void waitForSubscribers(NetworkPoseStream stream, int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000L;
+		while(stream.getSubscriberCount() < count) {
+			assertTrue(System.currentTimeMillis() < deadline, "Subscriber never connected");
+			Thread.sleep(10L);
+		}
+	}
+	
+	@Test
+	public void tcpLoopback() throws IOException, InterruptedException {
+		float[][] frames = new float[FRAMES][];
+		try(NetworkPoseStream stream = NetworkPoseStream.openTcp(InetAddress.getLoopbackAddress(), 0, FRAMES)) {
+			stream.writeHeader(skeleton, FRAME_INTERVAL_NS);
+			try(NetworkPoseReceiver receiver = NetworkPoseReceiver.connectTcp(InetAddress.getLoopbackAddress().getHostAddress(), stream.getLocalPort())) {
+				receiver.setTimeout(5000);
+				assertArrayEquals(new String[] {"Hip", "Chest", "Head", "Left knee", "Left foot", "Right knee", "Right foot"}, receiver.getJointNames());
+				waitForSubscribers(stream, 1);
+				
+				for(int i = 0; i < FRAMES; i++) {
+					frames[i] = nextPose();
+					stream.writeFrame(skeleton);
+				}
+				// Sends the queued frames and disconnects
+				stream.close();
+				
+				float[] values = null;
+				for(int i = 0; i < FRAMES; i++) {
+					assertTrue(receiver.readFrame(), "Missing frame " + i);
+					values = receiver.getFrame(values);
+					assertArrayEquals(frames[i], values);
+				}
+				assertFalse(receiver.readFrame());
+				assertEquals(0L, stream.getDroppedFrames());
+			}
+		}
+	}
+	
+	@Test
+	public void udpLoopback() throws IOException {
+		try(NetworkPoseReceiver receiver = NetworkPoseReceiver.listenUdp(InetAddress.getLoopbackAddress(), 0)) {
+			receiver.setTimeout(5000);
+			try(NetworkPoseStream stream = NetworkPoseStream.openUdp(new InetSocketAddress(InetAddress.getLoopbackAddress(), receiver.getLocalPort()))) {
+				stream.writeHeader(skeleton, FRAME_INTERVAL_NS);
+				
+				float[][] frames = new float[FRAMES][];
+				for(int i = 0; i < FRAMES; i++) {
+					frames[i] = nextPose();
+					stream.writeFrame(skeleton);
+				}
+				
+				float[] values = null;
+				for(int i = 0; i < FRAMES; i++) {
+					assertTrue(receiver.readFrame());
+					values = receiver.getFrame(values);
+					assertArrayEquals(frames[i], values);
+				}
+				assertEquals(frames[0].length, receiver.getFrameStride());
+				assertEquals(0L, receiver.getLostFrames());
+			}
+		}
+	}
+	
+	@Test
+	public void slowSubscriberDropsFrames() throws IOException, InterruptedException {
+		try(NetworkPoseStream stream = NetworkPoseStream.openTcp(InetAddress.getLoopbackAddress(), 0, 4)) {
+			stream.writeHeader(skeleton, FRAME_INTERVAL_NS);
+			// Never reads, the socket buffers fill up and the subscriber falls behind
+			try(Socket socket = new Socket(InetAddress.getLoopbackAddress(), stream.getLocalPort())) {
+				waitForSubscribers(stream, 1);
+				
+				nextPose();
+				long start = System.nanoTime();
+				for(int i = 0; i < 200000; i++) {
+					stream.writeFrame(skeleton);
+				}
+				assertTrue(stream.getDroppedFrames() > 0L, "No frames were dropped");
+				// Writing never waited on the subscriber
+				assertTrue(System.nanoTime() - start < 30000000000L);
+			}
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package io.eiren.unit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+
+import io.eiren.vr.trackers.RotationPredictor;
+
+/**
+ * Tests that {@link RotationPredictor} measures the error of its predictions
+ * for short and long horizons
+ */
+public class RotationPredictorTests {
+	
+	private static final long MS = 1000000L;
+	// Samples every 20 ms, predictions on a 1 kHz tick
+	private static final int SAMPLE_INTERVAL = 20;
+	private static final int TICKS = 5000;
+	// Radians per ms
+	private static final float SPEED = 0.001f;
+	
+	private static RotationPredictor predictConstantSpeed(long horizon) {
+		RotationPredictor predictor = new RotationPredictor();
+		Quaternion sample = new Quaternion();
+		Quaternion predicted = new Quaternion();
+		for(int tick = 0; tick < TICKS; tick++) {
+			if(tick % SAMPLE_INTERVAL == 0)
+				predictor.addSample(sample.fromAngleAxis(tick * SPEED, Vector3f.UNIT_Y), tick * MS);
+			assertTrue(predictor.predict(tick * MS, horizon * MS, predicted));
+		}
+		return predictor;
+	}
+	
+	@Test
+	public void measuresEveryHorizon() {
+		long[] horizons = {0, 20, 60, 100, 500, 2000};
+		for(long horizon : horizons) {
+			RotationPredictor.ErrorStats stats = predictConstantSpeed(horizon).getErrorStats();
+			// Every sample after the horizon has passed meets a prediction made for its time
+			int expected = (int) ((TICKS - horizon) / SAMPLE_INTERVAL) - 2;
+			assertTrue(stats.getCount() >= expected, horizon + " ms horizon measured " + stats.getCount() + " predictions");
+			// The speed is constant, so predictions beat holding the last sample
+			if(horizon > 0)
+				assertTrue(stats.getMeanError() < stats.getMeanBaselineError(), horizon + " ms horizon");
+		}
+	}
+	
+	@Test
+	public void noPredictionWithoutSamples() {
+		RotationPredictor predictor = new RotationPredictor();
+		assertFalse(predictor.predict(0, 20 * MS, new Quaternion()));
+		assertFalse(predictor.hasSample());
+	}
+}